@@ -15,6 +15,7 @@ public abstract class AbstractOperation<C, R> implements Operation<C, R> {
     private final TypeToken<R> resultType;
 
     private String description;
+    private volatile OperationDescriptor descriptor;
 
 // Constructors
 
@@ -49,10 +50,29 @@ public abstract class AbstractOperation<C, R> implements Operation<C, R> {
      * <p>
      * The implementation in {@code AbstractOperation} returns the description provided to the constructor,
      * if any, or else creates a description from this instance's class name by expanding it from {@code camelCase}.
+     * The result is computed once and cached as part of this instance's {@linkplain #getDescriptor descriptor}.
      */
     @Override
     public String getLabel() {
-        return Optional.ofNullable(this.description)
-          .orElseGet(() -> Util.nameFromCamelCase(this.getClass().getSimpleName()));
+        return this.getDescriptor().getLabel();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * The implementation in {@code AbstractOperation} creates the descriptor on first access and caches it.
+     * The descriptor's label is the one computed by {@link AbstractOperation#getLabel}; subclasses that
+     * override {@link #getLabel} should override this method as well.
+     */
+    @Override
+    public OperationDescriptor getDescriptor() {
+        OperationDescriptor result = this.descriptor;
+        if (result == null) {
+            final String label = Optional.ofNullable(this.description)
+              .orElseGet(() -> Util.nameFromCamelCase(this.getClass().getSimpleName()));
+            this.descriptor = result = new OperationDescriptor(this.configType, this.resultType, label);
+        }
+        return result;
     }
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops;
+
+import com.google.common.base.Preconditions;
+
+import java.util.function.Supplier;
+
+/**
+ * Support superclass for {@link ProgressReporter} implementations.
+ *
+ * <p>
+ * Subclasses need only implement {@link #update(double, Supplier)}; this class provides {@linkplain #child child}
+ * reporters that roll up into it.
+ */
+public abstract class AbstractProgressReporter implements ProgressReporter {
+
+    private double allocated;                                       // guarded by this
+
+    @Override
+    public synchronized ProgressReporter child(double weight) {
+        Preconditions.checkArgument(weight >= 0.0 && weight <= 1.0, "invalid weight");
+        final double start = this.allocated;
+        this.allocated = Math.min(1.0, start + weight);
+        return new Child(this, start, this.allocated - start);
+    }
+
+// Child
+
+    private static final class Child extends AbstractProgressReporter {
+
+        private final ProgressReporter parent;
+        private final double start;
+        private final double weight;
+
+        Child(ProgressReporter parent, double start, double weight) {
+            this.parent = parent;
+            this.start = start;
+            this.weight = weight;
+        }
+
+        @Override
+        public void update(double ratio, Supplier<String> message) {
+            final double scaled = Double.isFinite(ratio) ?
+              this.start + this.weight * Math.max(0.0, Math.min(1.0, ratio)) : this.start;
+            this.parent.update(scaled, message);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops;
+
+import com.google.common.base.Preconditions;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Resolves and caches {@link ConfigFactory}s used by the default implementations of
+ * {@link StaticOperation#newConfig} and {@link InstanceOperation#newConfig}.
+ *
+ * <p>
+ * For each configuration type and exact target class, the appropriate constructor is resolved once and then
+ * invoked via a {@link MethodHandle}:
+ * <ul>
+ *  <li>If the configuration type is {@link Void}, the factory returns null.</li>
+ *  <li>If there is a target, the public constructor taking a single parameter assignable from the target's class is used;
+ *      if there are several, the one with the most specific parameter type is chosen.</li>
+ *  <li>Otherwise, including when the target is null, the public default constructor is used.</li>
+ * </ul>
+ *
+ * <p>
+ * Resolved factories are attached via {@link ClassValue} to either the configuration type or the target class,
+ * whichever has a class loader that already keeps the other's loader reachable, so they never prevent a class loader
+ * from being unloaded. If neither class loader is an ancestor of the other, the factory is resolved on each call.
+ *
+ * <p>
+ * Custom factories may be {@linkplain #register registered} for specific configuration types; they take
+ * precedence over constructor resolution.
+ */
+public final class ConfigFactories {
+
+    private static final MethodType NO_ARG_TYPE = MethodType.methodType(Object.class);
+    private static final MethodType ONE_ARG_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final ConfigFactory<Void> VOID_FACTORY = target -> null;
+
+    // Resolved factories, keyed by [ configuration type, exact target class or null ]; see get()
+    private static final ClassValue<ConcurrentHashMap<List<Class<?>>, ConfigFactory<?>>> RESOLVED = new ClassValue<>() {
+        @Override
+        protected ConcurrentHashMap<List<Class<?>>, ConfigFactory<?>> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>(2);
+        }
+    };
+
+    // Registered factories, attached to the configuration type
+    private static final ClassValue<AtomicReference<ConfigFactory<?>>> REGISTERED = new ClassValue<>() {
+        @Override
+        protected AtomicReference<ConfigFactory<?>> computeValue(Class<?> configType) {
+            return new AtomicReference<>();
+        }
+    };
+
+    private ConfigFactories() {
+    }
+
+    /**
+     * Register a custom factory for the given configuration type, or unregister any previously registered factory.
+     *
+     * @param configType configuration type
+     * @param factory custom factory, or null to revert to constructor resolution
+     * @param <C> configuration type
+     * @throws IllegalArgumentException if {@code configType} is null
+     */
+    public static <C> void register(Class<C> configType, ConfigFactory<? extends C> factory) {
+        Preconditions.checkArgument(configType != null, "null configType");
+        REGISTERED.get(configType).set(factory);
+    }
+
+    /**
+     * Get the factory for the given configuration type and target class.
+     *
+     * <p>
+     * If no suitable constructor exists, the returned factory throws {@link RuntimeException} when invoked.
+     *
+     * @param configType configuration type
+     * @param targetType exact class of the target instance, or null for none
+     * @param <C> configuration type
+     * @return config factory
+     * @throws IllegalArgumentException if {@code configType} is null
+     */
+    @SuppressWarnings("unchecked")
+    public static <C> ConfigFactory<C> get(Class<C> configType, Class<?> targetType) {
+        Preconditions.checkArgument(configType != null, "null configType");
+        final ConfigFactory<?> registered = REGISTERED.get(configType).get();
+        if (registered != null)
+            return (ConfigFactory<C>)registered;
+
+        // Find a class to attach the factory to; the factory references both classes
+        final Class<?> owner;
+        if (targetType == null || Util.isAncestorLoader(configType, targetType))
+            owner = targetType != null ? targetType : configType;
+        else if (Util.isAncestorLoader(targetType, configType))
+            owner = configType;
+        else
+            return (ConfigFactory<C>)ConfigFactories.resolve(configType, targetType);
+        return (ConfigFactory<C>)RESOLVED.get(owner).computeIfAbsent(Arrays.asList(configType, targetType),
+          key -> ConfigFactories.resolve(configType, targetType));
+    }
+
+    private static ConfigFactory<?> resolve(Class<?> configType, Class<?> targetType) {
+
+        // Handle Void
+        if (configType == Void.class)
+            return VOID_FACTORY;
+
+        // Find the best matching single-argument constructor, or else the default constructor
+        Constructor<?> best = null;
+        if (targetType != null) {
+            for (Constructor<?> constructor : configType.getConstructors()) {
+                if (constructor.getParameterCount() != 1)
+                    continue;
+                final Class<?> ptype = constructor.getParameterTypes()[0];
+                if (ptype.isAssignableFrom(targetType)
+                  && (best == null || best.getParameterTypes()[0].isAssignableFrom(ptype)))
+                    best = constructor;
+            }
+        }
+        if (best == null) {
+            try {
+                best = configType.getConstructor();
+            } catch (NoSuchMethodException e) {
+                return target -> {
+                    throw new RuntimeException("can't instantiate " + configType, e);
+                };
+            }
+        }
+        final Constructor<?> constructor = best;
+
+        // Compile constructor into a method handle, falling back to reflection
+        final boolean hasArg = constructor.getParameterCount() == 1;
+        MethodHandle handle = null;
+        if (constructor.trySetAccessible()) {
+            try {
+                handle = MethodHandles.lookup().unreflectConstructor(constructor);
+            } catch (IllegalAccessException e) {
+                // fall back to reflection
+            }
+        }
+        if (handle == null) {
+            return target -> {
+                try {
+                    return hasArg ? constructor.newInstance(target) : constructor.newInstance();
+                } catch (ReflectiveOperationException e) {
+                    throw new RuntimeException("can't instantiate " + configType, e);
+                }
+            };
+        }
+        final MethodHandle invoker = handle.asType(hasArg ? ONE_ARG_TYPE : NO_ARG_TYPE);
+        return target -> {
+            try {
+                return hasArg ? (Object)invoker.invokeExact(target) : (Object)invoker.invokeExact();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new RuntimeException("can't instantiate " + configType, t);
+            }
+        };
+    }
+}
@@ -0,0 +1,23 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops;
+
+/**
+ * Creates new configuration objects for {@link Operation}s.
+ *
+ * @param <C> configuration type
+ * @see ConfigFactories
+ */
+@FunctionalInterface
+public interface ConfigFactory<C> {
+
+    /**
+     * Create a new configuration object.
+     *
+     * @param target target instance for an {@link InstanceOperation}, or null for a {@link StaticOperation}
+     * @return new configuration object
+     */
+    C newConfig(Object target);
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Adapts a progress {@link Consumer} into a {@link ProgressReporter}, dropping updates that would not visibly change
+ * the progress displayed.
+ *
+ * @see ProgressReporter#of
+ */
+final class ConsumerProgressReporter extends AbstractProgressReporter {
+
+    // Minimum change in ratio that is delivered
+    static final double RATIO_GRANULARITY = 0.001;
+
+    // Minimum time between deliveries of a new message with an unchanged ratio
+    static final long MESSAGE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Consumer<? super Operation.Progress> consumer;
+
+    // Last delivered update; guarded by this
+    private boolean delivered;
+    private double lastRatio;
+    private Supplier<String> lastMessage;
+    private long lastTime;
+
+    ConsumerProgressReporter(Consumer<? super Operation.Progress> consumer) {
+        this.consumer = consumer;
+    }
+
+    @Override
+    public void update(double ratio, Supplier<String> message) {
+        ratio = !Double.isFinite(ratio) ? Double.NaN : Math.max(0.0, Math.min(1.0, ratio));
+        synchronized (this) {
+            final long now = System.nanoTime();
+            if (this.delivered && !this.isRatioChange(ratio)
+              && (message == this.lastMessage || now - this.lastTime < MESSAGE_INTERVAL_NANOS))
+                return;
+            this.delivered = true;
+            this.lastRatio = ratio;
+            this.lastMessage = message;
+            this.lastTime = now;
+        }
+        this.consumer.accept(new Operation.Progress(ratio, message != null ? message.get() : null));
+    }
+
+    private boolean isRatioChange(double ratio) {
+        if (Double.isNaN(ratio) || Double.isNaN(this.lastRatio))
+            return Double.isNaN(ratio) != Double.isNaN(this.lastRatio);
+        return Math.abs(ratio - this.lastRatio) >= RATIO_GRANULARITY || (ratio == 1.0 && this.lastRatio != 1.0);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link Query} that can filter its results itself, e.g., using a database index, based on properties of its configuration.
+ *
+ * <p>
+ * This allows viewers to push filtering down into the query instead of filtering the results in memory.
+ * Filter values are the text entered by the user; how each value is interpreted for its property is up to the query.
+ *
+ * @param <C> configuration type for this query
+ * @param <R> result type for this query
+ * @see SortableQuery
+ */
+public interface FilterableQuery<C, R> extends Query<C, R> {
+
+    /**
+     * Get the names of the properties on which this query can filter its results.
+     *
+     * @return filterable property names, possibly empty
+     */
+    Set<String> getFilterProperties();
+
+    /**
+     * Modify the given configuration so that subsequent executions of this query filter the results as specified.
+     *
+     * @param config query configuration
+     * @param filters mapping from property name to filter value; properties not present are not filtered
+     * @throws IllegalArgumentException if {@code filters} is null or contains a property not in {@link #getFilterProperties}
+     * @throws IllegalArgumentException if {@code config} is invalid
+     */
+    void applyFilters(C config, Map<String, String> filters);
+
+// Config
+
+    /**
+     * Configuration types for annotation-defined queries that declare
+     * {@linkplain org.dellroad.dataskin.ops.annotation.DataSkinQuery#filterable filterable properties} must implement
+     * this interface.
+     */
+    interface Config {
+
+        /**
+         * Configure the filters.
+         *
+         * @param filters mapping from property name to filter value; properties not present are not filtered
+         */
+        void setFilters(Map<String, String> filters);
+    }
+}
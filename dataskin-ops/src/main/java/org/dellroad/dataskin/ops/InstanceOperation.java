@@ -4,9 +4,10 @@
 
 package org.dellroad.dataskin.ops;
 
+import com.google.common.base.Preconditions;
 import com.google.common.reflect.TypeToken;
 
-import java.lang.reflect.Constructor;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Consumer;
 
 /**
@@ -45,6 +46,25 @@ public interface InstanceOperation<T, C, R> extends Operation<C, R> {
      */
     R perform(T target, C config, Consumer<? super Progress> progressUpdater) throws InterruptedException;
 
+    /**
+     * Execute this operation asynchronously on the specified target object.
+     *
+     * <p>
+     * The same rules as {@link Handle#performAsync Handle.performAsync()} apply. The implementation
+     * in {@link InstanceOperation} invokes {@link #perform perform()} synchronously in the current thread
+     * and returns an already completed stage.
+     *
+     * @param target target instance
+     * @param config the configuration for the operation
+     * @param progressUpdater where progress reports should be sent
+     * @return operation result
+     * @throws IllegalArgumentException if {@code progressUpdater} is null
+     */
+    default CompletionStage<R> performAsync(T target, C config, Consumer<? super Progress> progressUpdater) {
+        Preconditions.checkArgument(progressUpdater != null, "null progressUpdater");
+        return Util.performNow(() -> this.perform(target, config, progressUpdater));
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     default Handle<C, R> getHandle(Object target) {
@@ -55,37 +75,34 @@ public interface InstanceOperation<T, C, R> extends Operation<C, R> {
         } catch (ClassCastException e) {
             throw new IllegalArgumentException("target is not of type " + targetType.getName());
         }
-        return (config, progress) -> this.perform(target2, config, progress);
+        return new Handle<C, R>() {
+            @Override
+            public R perform(C config, Consumer<? super Progress> progress) throws InterruptedException {
+                return InstanceOperation.this.perform(target2, config, progress);
+            }
+
+            @Override
+            public CompletionStage<R> performAsync(C config, Consumer<? super Progress> progress) {
+                return InstanceOperation.this.performAsync(target2, config, progress);
+            }
+        };
     }
 
     /**
      * Create a new configuration object for this operation in the context of the specified target instance.
      *
      * <p>
-     * The implementation in {@link InstanceOperation} attempts to instantiate an instance
-     * of the {@linkplain #getConfigType configuration type} using a constructor taking one
-     * argument (the {@code target}), and if that fails, falls back to a default constructor.
+     * The implementation in {@link InstanceOperation} instantiates the {@linkplain #getConfigType configuration type}
+     * via {@link ConfigFactories} using a constructor taking one argument (the {@code target}), or if there is none,
+     * a default constructor. The resolved constructor is cached per exact target class. If {@code target} is null,
+     * the default constructor is used, even if there is a single-argument constructor.
      *
      * @param target target instance
      * @return new configuration object, never null unless the configuration type is {@link Void}
      */
     @SuppressWarnings("unchecked")
     default C newConfig(T target) {
-        final Class<? super C> type = this.getConfigType().getRawType();
-        for (Constructor<?> constructor : type.getConstructors()) {
-            final Class<?>[] ptypes = constructor.getParameterTypes();
-            if (ptypes.length == 1) {
-                try {
-                    return (C)constructor.newInstance(target);
-                } catch (IllegalArgumentException | ReflectiveOperationException e) {
-                    // nope
-                }
-            }
-        }
-        try {
-            return (C)type.getConstructor().newInstance();
-        } catch (ReflectiveOperationException e) {
-            throw new RuntimeException("can't instantiate " + type, e);
-        }
+        final Class<?> targetType = target != null ? target.getClass() : null;
+        return (C)ConfigFactories.get(this.getConfigType().getRawType(), targetType).newConfig(target);
     }
 }
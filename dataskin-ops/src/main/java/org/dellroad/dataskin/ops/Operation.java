@@ -4,8 +4,10 @@
 
 package org.dellroad.dataskin.ops;
 
+import com.google.common.base.Preconditions;
 import com.google.common.reflect.TypeToken;
 
+import java.util.concurrent.CompletionStage;
 import java.util.function.Consumer;
 
 /**
@@ -19,6 +21,11 @@ import java.util.function.Consumer;
  */
 public interface Operation<C, R> {
 
+    /**
+     * The configuration type of operations that do not require configuration.
+     */
+    TypeToken<Void> VOID_TYPE = TypeToken.of(Void.class);
+
     /**
      * Get the type of the objects that are used to configure this operation, if any.
      *
@@ -47,7 +54,7 @@ public interface Operation<C, R> {
      * The implementation in {@link Operation} compares the configuration Java type to {@link Void}.
      */
     default boolean requiresConfiguration() {
-        return !this.getConfigType().equals(TypeToken.of(Void.class));
+        return !Operation.VOID_TYPE.equals(this.getConfigType());
     }
 
     /**
@@ -61,6 +68,20 @@ public interface Operation<C, R> {
      */
     String getLabel();
 
+    /**
+     * Get the descriptor for this operation.
+     *
+     * <p>
+     * The implementation in {@link Operation} creates the descriptor on first access and caches it in a shared
+     * table that is weakly keyed on this instance's identity. Therefore, implementations must not invoke this
+     * method from {@link #getConfigType}, {@link #getResultType}, or {@link #getLabel}.
+     *
+     * @return operation descriptor
+     */
+    default OperationDescriptor getDescriptor() {
+        return OperationDescriptor.cached(this);
+    }
+
     /**
      * Get a handle for executing this operation on the specified instance (if any).
      *
@@ -139,7 +160,8 @@ public interface Operation<C, R> {
          * <p>
          * The operation executes synchronously in the current thread. Progress updates may delivered
          * to {@code progressUpdater} to update the progrss of the operation; these callbacks may occur
-         * in the current thread or in another thread.
+         * in the current thread or in another thread. Operations that report progress frequently can use
+         * {@link ProgressReporter#of ProgressReporter.of()} to avoid creating a {@link Progress} for every update.
          *
          * <p>
          * An in-progress operation may be cancelled by interrupting the current thread; if so,
@@ -155,5 +177,31 @@ public interface Operation<C, R> {
          * @throws IllegalArgumentException if {@code progressUpdater} is null
          */
         R perform(C config, Consumer<? super Progress> progressUpdater) throws InterruptedException;
+
+        /**
+         * Perform an operation asynchronously.
+         *
+         * <p>
+         * Handles for operations backed by an asynchronous API return without waiting for the operation to complete.
+         * Progress updates are delivered to {@code progressUpdater} as with {@link #perform perform()}, possibly from
+         * some other thread. An in-progress operation may be cancelled by cancelling the returned stage's
+         * {@link java.util.concurrent.CompletableFuture}; whether cancellation actually stops the underlying work
+         * depends on the implementation. Failures, including an invalid {@code config}, are reported through the
+         * returned stage.
+         *
+         * <p>
+         * The implementation in {@link Handle} invokes {@link #perform perform()} synchronously in the current thread
+         * and returns an already completed stage, which is cancelled if the current thread was interrupted.
+         *
+         * @param config the configuration for the operation
+         * @param progressUpdater where progress reports should be sent
+         * @return operation result
+         * @see Util#await Util.await()
+         * @throws IllegalArgumentException if {@code progressUpdater} is null
+         */
+        default CompletionStage<R> performAsync(C config, Consumer<? super Progress> progressUpdater) {
+            Preconditions.checkArgument(progressUpdater != null, "null progressUpdater");
+            return Util.performNow(() -> this.perform(config, progressUpdater));
+        }
     }
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.reflect.TypeToken;
+
+import java.util.stream.Stream;
+
+/**
+ * Immutable snapshot of the type metadata and label of an {@link Operation}.
+ *
+ * <p>
+ * Derived information, such as whether configuration is required and the result item type of queries,
+ * is computed once at construction time, so repeated access is cheap.
+ *
+ * @see Operation#getDescriptor
+ */
+public final class OperationDescriptor {
+
+    // Descriptors of operations that don't cache their own; weak keys are compared by identity
+    private static final Cache<Operation<?, ?>, OperationDescriptor> CACHE = CacheBuilder.newBuilder().weakKeys().build();
+
+    private final TypeToken<?> configType;
+    private final TypeToken<?> resultType;
+    private final TypeToken<?> resultItemType;
+    private final boolean requiresConfiguration;
+    private final String label;
+
+    /**
+     * Constructor.
+     *
+     * @param configType operation configuration type
+     * @param resultType operation result type
+     * @param label operation label
+     * @throws IllegalArgumentException if any parameter is null
+     */
+    public OperationDescriptor(TypeToken<?> configType, TypeToken<?> resultType, String label) {
+        Preconditions.checkArgument(configType != null, "null configType");
+        Preconditions.checkArgument(resultType != null, "null resultType");
+        Preconditions.checkArgument(label != null, "null label");
+        this.configType = configType;
+        this.resultType = resultType;
+        this.label = label;
+        this.requiresConfiguration = !Operation.VOID_TYPE.equals(configType);
+        this.resultItemType = Stream.class.isAssignableFrom(resultType.getRawType()) ?
+          resultType.resolveType(Stream.class.getTypeParameters()[0]) : null;
+    }
+
+    /**
+     * Create a descriptor for the given operation.
+     *
+     * @param operation operation to describe
+     * @return new descriptor
+     * @throws IllegalArgumentException if {@code operation} is null
+     */
+    public static OperationDescriptor of(Operation<?, ?> operation) {
+        Preconditions.checkArgument(operation != null, "null operation");
+        return new OperationDescriptor(operation.getConfigType(), operation.getResultType(), operation.getLabel());
+    }
+
+    // Used by Operation.getDescriptor(); the descriptor is created outside of any lock
+    static OperationDescriptor cached(Operation<?, ?> operation) {
+        OperationDescriptor descriptor = OperationDescriptor.CACHE.getIfPresent(operation);
+        if (descriptor == null) {
+            descriptor = OperationDescriptor.of(operation);
+            final OperationDescriptor previous = OperationDescriptor.CACHE.asMap().putIfAbsent(operation, descriptor);
+            if (previous != null)
+                descriptor = previous;
+        }
+        return descriptor;
+    }
+
+    /**
+     * Get the operation configuration type.
+     *
+     * @return configuration type
+     * @see Operation#getConfigType
+     */
+    public TypeToken<?> getConfigType() {
+        return this.configType;
+    }
+
+    /**
+     * Get the operation result type.
+     *
+     * @return result type
+     * @see Operation#getResultType
+     */
+    public TypeToken<?> getResultType() {
+        return this.resultType;
+    }
+
+    /**
+     * Get the result item type, if the result type is a {@link Stream}.
+     *
+     * @return result item type, or null if the result type is not a {@link Stream}
+     * @see Query#getResultItemType
+     */
+    public TypeToken<?> getResultItemType() {
+        return this.resultItemType;
+    }
+
+    /**
+     * Determine whether the operation requires configuration.
+     *
+     * @return true if the configuration type is not {@link Void}
+     * @see Operation#requiresConfiguration
+     */
+    public boolean requiresConfiguration() {
+        return this.requiresConfiguration;
+    }
+
+    /**
+     * Get the operation label.
+     *
+     * @return operation label
+     * @see Operation#getLabel
+     */
+    public String getLabel() {
+        return this.label;
+    }
+}
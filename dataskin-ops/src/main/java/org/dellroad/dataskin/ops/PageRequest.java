@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Identifies a contiguous range of query result items to fetch.
+ *
+ * <p>
+ * Methods annotated with {@link org.dellroad.dataskin.ops.annotation.DataSkinQuery &#64;DataSkinQuery} may declare
+ * a final parameter of this type to indicate they support fetching results a page at a time.
+ *
+ * @see PageableQuery
+ */
+public final class PageRequest {
+
+    /**
+     * Page request that covers all results.
+     */
+    public static final PageRequest ALL = new PageRequest(0, Integer.MAX_VALUE);
+
+    private final int offset;
+    private final int limit;
+
+    /**
+     * Constructor.
+     *
+     * @param offset index of the first item to return
+     * @param limit maximum number of items to return
+     * @throws IllegalArgumentException if either parameter is negative
+     */
+    public PageRequest(int offset, int limit) {
+        Preconditions.checkArgument(offset >= 0, "negative offset");
+        Preconditions.checkArgument(limit >= 0, "negative limit");
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    /**
+     * Get the index of the first item to return.
+     *
+     * @return offset
+     */
+    public int getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * Get the maximum number of items to return.
+     *
+     * @return limit
+     */
+    public int getLimit() {
+        return this.limit;
+    }
+
+    /**
+     * Determine whether this request covers all results.
+     *
+     * @return true if offset is zero and there is no limit
+     */
+    public boolean isAll() {
+        return this.offset == 0 && this.limit == Integer.MAX_VALUE;
+    }
+
+// Object
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this)
+            return true;
+        if (obj == null || obj.getClass() != this.getClass())
+            return false;
+        final PageRequest that = (PageRequest)obj;
+        return this.offset == that.offset && this.limit == that.limit;
+    }
+
+    @Override
+    public int hashCode() {
+        return this.offset * 31 + this.limit;
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "[offset=" + this.offset + ",limit=" + this.limit + "]";
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops;
+
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * A {@link Query} that can fetch its results one page at a time.
+ *
+ * <p>
+ * This allows viewers to display very large results lazily, fetching only the rows actually displayed.
+ *
+ * @param <C> configuration type for this query
+ * @param <R> result type for this query
+ */
+public interface PageableQuery<C, R> extends Query<C, R> {
+
+    @Override
+    PageHandle<C, R> getHandle(Object target);
+
+// PageHandle
+
+    /**
+     * A {@link Handle} for a {@link PageableQuery}.
+     *
+     * <p>
+     * Viewers use {@link #count count()}, if {@linkplain #supportsCount supported}, to size lazily loaded displays.
+     *
+     * @param <C> configuration type for the query
+     * @param <R> result type for the query
+     */
+    interface PageHandle<C, R> extends SizedHandle<C, R> {
+
+        /**
+         * Fetch one page of results.
+         *
+         * <p>
+         * The same execution and cancellation rules as {@link Handle#perform perform()} apply.
+         *
+         * @param config the configuration for the query
+         * @param page the range of results to fetch
+         * @param progressUpdater where progress reports should be sent
+         * @return query results in the given range
+         * @throws IllegalArgumentException if {@code config} is invalid
+         * @throws IllegalArgumentException if {@code page} or {@code progressUpdater} is null
+         * @throws InterruptedException if the current thread is interrupted
+         */
+        Stream<R> fetch(C config, PageRequest page, Consumer<? super Progress> progressUpdater) throws InterruptedException;
+
+        /**
+         * Fetch all results.
+         *
+         * <p>
+         * The implementation in {@link PageHandle} invokes {@link #fetch fetch()} with {@link PageRequest#ALL}.
+         */
+        @Override
+        default Stream<R> perform(C config, Consumer<? super Progress> progressUpdater) throws InterruptedException {
+            return this.fetch(config, PageRequest.ALL, progressUpdater);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops;
+
+import com.google.common.base.Preconditions;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Receives progress updates from an {@link Operation} without requiring an {@link Operation.Progress} to be created
+ * for each update.
+ *
+ * <p>
+ * Progress is reported as a ratio from zero to one, or {@link Double#NaN} if indeterminate, plus an optional message.
+ * Messages are supplied lazily: the {@link Supplier} is only invoked if and when the update is actually displayed,
+ * which may be later and in another thread, so it should only capture values that won't change. Implementations
+ * may drop updates that arrive faster than they can usefully be displayed.
+ *
+ * <p>
+ * An operation made up of several steps can divide its progress range among them using {@linkplain #child child}
+ * reporters, e.g.:
+ * <pre><code class="language-java">
+ *  final ProgressReporter load = reporter.child(0.8);
+ *  final ProgressReporter index = reporter.child(0.2);
+ *  for (int i = 0; i &lt; total; i++) {
+ *      ...
+ *      load.update(i + 1, total);
+ *  }
+ *  ...
+ * </code></pre>
+ *
+ * <p>
+ * A {@link ProgressReporter} is also a progress {@link Consumer}, so it may be passed wherever one is expected,
+ * including to {@link Operation.Handle#perform Operation.Handle.perform()}; conversely, {@link #of of()} adapts
+ * any progress {@link Consumer} into a {@link ProgressReporter}. Methods annotated with
+ * {@link org.dellroad.dataskin.ops.annotation.DataSkinQuery &#64;DataSkinQuery} or
+ * {@link org.dellroad.dataskin.ops.annotation.DataSkinAction &#64;DataSkinAction} may declare a parameter of
+ * this type in place of a progress {@link Consumer}.
+ *
+ * @see AbstractProgressReporter
+ */
+public interface ProgressReporter extends Consumer<Operation.Progress> {
+
+    /**
+     * Report progress with a lazily computed message.
+     *
+     * @param ratio progress ratio, a value from zero to one or {@link Double#NaN} for indeterminate
+     * @param message supplies the status message, or null for none
+     */
+    void update(double ratio, Supplier<String> message);
+
+    /**
+     * Report progress without a message.
+     *
+     * @param ratio progress ratio, a value from zero to one or {@link Double#NaN} for indeterminate
+     */
+    default void update(double ratio) {
+        this.update(ratio, null);
+    }
+
+    /**
+     * Report progress as a number of completed units of work out of a total.
+     *
+     * @param done number of units completed
+     * @param total total number of units, or zero or negative if unknown
+     */
+    default void update(long done, long total) {
+        this.update(ProgressReporter.ratio(done, total), null);
+    }
+
+    /**
+     * Report progress as a number of completed units of work out of a total, with a lazily computed message.
+     *
+     * @param done number of units completed
+     * @param total total number of units, or zero or negative if unknown
+     * @param message supplies the status message, or null for none
+     */
+    default void update(long done, long total, Supplier<String> message) {
+        this.update(ProgressReporter.ratio(done, total), message);
+    }
+
+    /**
+     * Create a reporter for a sub-step that makes up the given fraction of this reporter's range.
+     *
+     * <p>
+     * Each child is allocated the next {@code weight} fraction of this reporter's range, following any previously
+     * created children. Updates to the child are scaled into its allocated range and reported to this reporter;
+     * an indeterminate child ratio is reported as the start of its range.
+     *
+     * @param weight fraction of this reporter's range, from zero to one
+     * @return child reporter
+     * @throws IllegalArgumentException if {@code weight} is not between zero and one
+     */
+    ProgressReporter child(double weight);
+
+    /**
+     * Report progress using an {@link Operation.Progress}.
+     *
+     * <p>
+     * The implementation in {@link ProgressReporter} delegates to {@link #update(double, Supplier)}.
+     *
+     * @param progress progress update
+     * @throws IllegalArgumentException if {@code progress} is null
+     */
+    @Override
+    default void accept(Operation.Progress progress) {
+        Preconditions.checkArgument(progress != null, "null progress");
+        final String message = progress.getMessage();
+        this.update(progress.getRatio(), message != null ? () -> message : null);
+    }
+
+    /**
+     * Adapt a progress {@link Consumer} into a {@link ProgressReporter}.
+     *
+     * <p>
+     * If {@code consumer} is already a {@link ProgressReporter}, it is returned. Otherwise, the returned reporter
+     * creates an {@link Operation.Progress} for {@code consumer} only when the ratio changes by at least 0.1%,
+     * or the message supplier changes and at least 100ms have elapsed since the previous delivery; other updates
+     * are dropped without allocating anything.
+     *
+     * @param consumer progress consumer
+     * @return progress reporter
+     * @throws IllegalArgumentException if {@code consumer} is null
+     */
+    static ProgressReporter of(Consumer<? super Operation.Progress> consumer) {
+        Preconditions.checkArgument(consumer != null, "null consumer");
+        if (consumer instanceof ProgressReporter)
+            return (ProgressReporter)consumer;
+        return new ConsumerProgressReporter(consumer);
+    }
+
+    private static double ratio(long done, long total) {
+        return total > 0 ? (double)Math.max(0, Math.min(done, total)) / total : Double.NaN;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops;
+
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * A {@link Query} whose results can be pushed by the producer as they become available.
+ *
+ * <p>
+ * This suits backends that deliver results asynchronously, e.g., from a network cursor: rows are published to
+ * a {@link Flow.Subscriber} as the subscriber requests them, so a slow consumer limits how far ahead the producer
+ * reads, and cancelling the subscription cancels the query.
+ *
+ * @param <C> configuration type for this query
+ * @param <R> result type for this query
+ * @see Publishers
+ */
+public interface PublisherQuery<C, R> extends Query<C, R> {
+
+    @Override
+    PublisherHandle<C, R> getHandle(Object target);
+
+// PublisherHandle
+
+    /**
+     * A {@link Handle} for a {@link PublisherQuery}.
+     *
+     * <p>
+     * Viewers that support it subscribe to {@link #publish publish()} directly; others use {@link #perform perform()},
+     * which adapts the publisher into a {@link Stream}.
+     *
+     * @param <C> configuration type for the query
+     * @param <R> result type for the query
+     */
+    interface PublisherHandle<C, R> extends Handle<C, Stream<R>> {
+
+        /**
+         * Create a publisher of the query's results.
+         *
+         * <p>
+         * The query is performed separately for each subscriber, starting when the subscriber first requests
+         * results. Progress updates may delivered to {@code progressUpdater} from any thread. Cancelling the
+         * subscription cancels the query.
+         *
+         * @param config the configuration for the query
+         * @param progressUpdater where progress reports should be sent
+         * @return query results publisher
+         * @throws IllegalArgumentException if {@code config} is invalid
+         * @throws IllegalArgumentException if {@code progressUpdater} is null
+         */
+        Flow.Publisher<R> publish(C config, Consumer<? super Progress> progressUpdater);
+
+        /**
+         * Perform the query and return its results as a {@link Stream}.
+         *
+         * <p>
+         * The implementation in {@link PublisherHandle} subscribes to {@link #publish publish()} via
+         * {@link Publishers#toStream Publishers.toStream()}, requesting {@link Publishers#DEFAULT_BATCH_SIZE} results
+         * at a time; closing the returned stream cancels the subscription.
+         */
+        @Override
+        default Stream<R> perform(C config, Consumer<? super Progress> progressUpdater) throws InterruptedException {
+            return Publishers.toStream(this.publish(config, progressUpdater), Publishers.DEFAULT_BATCH_SIZE);
+        }
+    }
+}
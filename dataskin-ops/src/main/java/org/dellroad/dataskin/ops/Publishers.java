@@ -0,0 +1,327 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayDeque;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Adapters between {@link Stream}s and {@link Flow.Publisher}s.
+ *
+ * <p>
+ * These allow {@link PublisherQuery}s to be consumed wherever a {@link Stream} of results is expected, and ordinary
+ * {@link Query}s to be consumed wherever a {@link Flow.Publisher} is expected. In both directions, the producer
+ * never gets more than a bounded number of results ahead of the consumer, and cancellation propagates to the producer.
+ *
+ * @see PublisherQuery
+ */
+public final class Publishers {
+
+    /**
+     * Default number of results requested at a time by {@link PublisherQuery.PublisherHandle#perform}.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private Publishers() {
+    }
+
+    /**
+     * Subscribe to a {@link Flow.Publisher} and return the published items as a {@link Stream}.
+     *
+     * <p>
+     * The subscriber initially requests {@code batchSize} items, and requests more as the stream is consumed,
+     * so that at most {@code batchSize} items are ever buffered. The stream blocks while waiting for items.
+     * If the publisher signals an error, it is rethrown by the stream if unchecked, otherwise wrapped in a
+     * {@link RuntimeException}. If the consuming thread is interrupted while waiting, the subscription is cancelled,
+     * the thread's interrupt status is restored, and a {@link CancellationException} is thrown.
+     *
+     * <p>
+     * Closing the returned stream cancels the subscription.
+     *
+     * @param publisher publisher
+     * @param batchSize maximum number of items to buffer
+     * @param <R> item type
+     * @return stream of published items
+     * @throws IllegalArgumentException if {@code publisher} is null
+     * @throws IllegalArgumentException if {@code batchSize} is not positive
+     */
+    public static <R> Stream<R> toStream(Flow.Publisher<? extends R> publisher, int batchSize) {
+        Preconditions.checkArgument(publisher != null, "null publisher");
+        Preconditions.checkArgument(batchSize > 0, "invalid batchSize");
+        final StreamSubscriber<R> subscriber = new StreamSubscriber<>(batchSize);
+        publisher.subscribe(subscriber);
+        return StreamSupport.stream(subscriber, false).onClose(subscriber::cancel);
+    }
+
+    /**
+     * Create a {@link Flow.Publisher} that publishes the items in a {@link Stream}.
+     *
+     * <p>
+     * For each subscriber, the stream is obtained from {@code source} and read by a task submitted to
+     * {@code executor} when the subscriber first requests items. Items are read only as the subscriber requests them.
+     * Cancelling the subscription closes the stream and interrupts the task, if it is running.
+     *
+     * @param source supplies the stream of items; invoked once per subscriber
+     * @param executor executes the tasks that read the stream
+     * @param <R> item type
+     * @return publisher of stream items
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public static <R> Flow.Publisher<R> fromStream(Callable<? extends Stream<? extends R>> source, Executor executor) {
+        Preconditions.checkArgument(source != null, "null source");
+        Preconditions.checkArgument(executor != null, "null executor");
+        return subscriber -> {
+            Preconditions.checkArgument(subscriber != null, "null subscriber");
+            subscriber.onSubscribe(new StreamSubscription<R>(subscriber, source, executor));
+        };
+    }
+
+    /**
+     * Create a {@link Flow.Publisher} that performs a query and publishes its results.
+     *
+     * <p>
+     * The query is performed for each subscriber via {@link Operation.Handle#performAsync performAsync()}, and its
+     * results published as with {@link #fromStream fromStream()}. Cancelling the subscription cancels the query.
+     *
+     * @param handle query handle
+     * @param config the configuration for the query
+     * @param progressUpdater where progress reports should be sent
+     * @param executor executes the tasks that perform the query
+     * @param <C> configuration type for the query
+     * @param <R> result type for the query
+     * @return publisher of query results
+     * @throws IllegalArgumentException if {@code handle}, {@code progressUpdater}, or {@code executor} is null
+     */
+    public static <C, R> Flow.Publisher<R> fromHandle(Operation.Handle<C, ? extends Stream<? extends R>> handle, C config,
+      Consumer<? super Operation.Progress> progressUpdater, Executor executor) {
+        Preconditions.checkArgument(handle != null, "null handle");
+        Preconditions.checkArgument(progressUpdater != null, "null progressUpdater");
+        return Publishers.fromStream(() -> Util.await(handle.performAsync(config, progressUpdater)), executor);
+    }
+
+// StreamSubscriber
+
+    private static final class StreamSubscriber<R> extends Spliterators.AbstractSpliterator<R> implements Flow.Subscriber<R> {
+
+        private final int batchSize;
+        private final int replenishSize;
+
+        // All guarded by this
+        private final ArrayDeque<R> buffer = new ArrayDeque<>();
+        private Flow.Subscription subscription;
+        private int consumed;                                   // items consumed since the last request
+        private boolean done;
+        private boolean cancelled;
+        private Throwable error;
+
+        StreamSubscriber(int batchSize) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.batchSize = batchSize;
+            this.replenishSize = Math.max(1, batchSize / 2);
+        }
+
+    // Flow.Subscriber
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            Preconditions.checkArgument(subscription != null, "null subscription");
+            synchronized (this) {
+                if (this.subscription != null || this.cancelled) {
+                    subscription.cancel();
+                    return;
+                }
+                this.subscription = subscription;
+            }
+            subscription.request(this.batchSize);
+        }
+
+        @Override
+        public synchronized void onNext(R item) {
+            Preconditions.checkArgument(item != null, "null item");
+            if (this.cancelled)
+                return;
+            this.buffer.add(item);
+            this.notifyAll();
+        }
+
+        @Override
+        public synchronized void onError(Throwable error) {
+            Preconditions.checkArgument(error != null, "null error");
+            this.error = error;
+            this.done = true;
+            this.notifyAll();
+        }
+
+        @Override
+        public synchronized void onComplete() {
+            this.done = true;
+            this.notifyAll();
+        }
+
+    // Spliterator
+
+        @Override
+        public boolean tryAdvance(Consumer<? super R> action) {
+            Preconditions.checkArgument(action != null, "null action");
+            final R item;
+            final Flow.Subscription requestFrom;
+            final int requestCount;
+            synchronized (this) {
+                try {
+                    while (this.buffer.isEmpty() && !this.done)
+                        this.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    this.cancel();
+                    throw new CancellationException("interrupted while waiting for results");
+                }
+                if (this.buffer.isEmpty()) {
+                    if (this.error instanceof RuntimeException)
+                        throw (RuntimeException)this.error;
+                    if (this.error instanceof Error)
+                        throw (Error)this.error;
+                    if (this.error != null)
+                        throw new RuntimeException(this.error);
+                    return false;
+                }
+                item = this.buffer.poll();
+                requestCount = ++this.consumed >= this.replenishSize && !this.done ? this.consumed : 0;
+                if (requestCount > 0)
+                    this.consumed = 0;
+                requestFrom = this.subscription;
+            }
+            if (requestCount > 0)
+                requestFrom.request(requestCount);
+            action.accept(item);
+            return true;
+        }
+
+        void cancel() {
+            final Flow.Subscription cancelTarget;
+            synchronized (this) {
+                if (this.cancelled)
+                    return;
+                this.cancelled = true;
+                cancelTarget = this.done ? null : this.subscription;
+                this.done = true;
+                this.buffer.clear();
+                this.notifyAll();
+            }
+            if (cancelTarget != null)
+                cancelTarget.cancel();
+        }
+    }
+
+// StreamSubscription
+
+    private static final class StreamSubscription<R> implements Flow.Subscription, Runnable {
+
+        private final Flow.Subscriber<? super R> subscriber;
+        private final Callable<? extends Stream<? extends R>> source;
+        private final Executor executor;
+
+        // All guarded by this
+        private long demand;
+        private boolean started;
+        private boolean cancelled;
+        private boolean invalidRequest;
+        private Thread thread;                                  // thread reading the stream, if any
+
+        StreamSubscription(Flow.Subscriber<? super R> subscriber, Callable<? extends Stream<? extends R>> source,
+          Executor executor) {
+            this.subscriber = subscriber;
+            this.source = source;
+            this.executor = executor;
+        }
+
+    // Flow.Subscription
+
+        @Override
+        public void request(long count) {
+            synchronized (this) {
+                if (this.cancelled)
+                    return;
+                if (count <= 0)
+                    this.invalidRequest = true;
+                else
+                    this.demand = this.demand + count < 0 ? Long.MAX_VALUE : this.demand + count;
+                this.notifyAll();
+                if (this.started)
+                    return;
+                this.started = true;
+            }
+            try {
+                this.executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    this.cancelled = true;
+                }
+                this.subscriber.onError(e);
+            }
+        }
+
+        @Override
+        public synchronized void cancel() {
+            if (this.cancelled)
+                return;
+            this.cancelled = true;
+            if (this.thread != null && this.thread != Thread.currentThread())
+                this.thread.interrupt();
+            this.notifyAll();
+        }
+
+    // Runnable
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (this.cancelled)
+                    return;
+                this.thread = Thread.currentThread();
+            }
+            try (Stream<? extends R> stream = this.source.call()) {
+                final Spliterator<? extends R> spliterator = stream.spliterator();
+                do {
+                    synchronized (this) {
+                        while (this.demand == 0 && !this.cancelled && !this.invalidRequest)
+                            this.wait();
+                        if (this.cancelled)
+                            return;
+                        if (this.invalidRequest)
+                            throw new IllegalArgumentException("non-positive subscription request");
+                        if (this.demand != Long.MAX_VALUE)
+                            this.demand--;
+                    }
+                } while (spliterator.tryAdvance(this.subscriber::onNext));
+                if (!this.isCancelled())
+                    this.subscriber.onComplete();
+            } catch (Throwable t) {
+                if (!this.isCancelled())
+                    this.subscriber.onError(t);
+            } finally {
+                synchronized (this) {
+                    this.thread = null;
+                    if (this.cancelled)
+                        Thread.interrupted();                   // clear any interrupt sent by cancel()
+                }
+            }
+        }
+
+        private synchronized boolean isCancelled() {
+            return this.cancelled;
+        }
+    }
+}
@@ -4,10 +4,9 @@
 
 package org.dellroad.dataskin.ops;
 
+import com.google.common.base.Preconditions;
 import com.google.common.reflect.TypeToken;
 
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
 import java.util.stream.Stream;
 
 /**
@@ -27,15 +26,15 @@ public interface Query<C, R> extends Operation<C, Stream<R>> {
      * Get the item type returned by this query with the given config.
      *
      * <p>
-     * The implementation in {@link Query} uses reflection to resolve the generic type parameter {@code <R>}.
+     * The implementation in {@link Query} returns the item type from this instance's {@linkplain #getDescriptor descriptor},
+     * so the generic type parameter {@code <R>} is only resolved once. Therefore, implementations must not invoke this
+     * method from {@link #getConfigType}, {@link #getResultType}, or {@link #getLabel}.
      *
      * @return query item result type
      */
     @SuppressWarnings("unchecked")
     default TypeToken<R> getResultItemType() {
-        final ParameterizedType streamType = (ParameterizedType)Query.class.getTypeParameters()[1];
-        final Type itemType = streamType.getActualTypeArguments()[0];
-        return (TypeToken<R>)this.getResultType().resolveType(itemType);
+        return (TypeToken<R>)this.getDescriptor().getResultItemType();
     }
 
     /**
@@ -53,4 +52,89 @@ public interface Query<C, R> extends Operation<C, Stream<R>> {
      * @return instance operations
      */
     Stream<? extends InstanceOperation<? super R, ?, ?>> getInstanceOperations(C config);
+
+    /**
+     * Estimate the number of results the given handle will return, if possible.
+     *
+     * <p>
+     * This returns the {@linkplain SizedHandle#estimateSize estimate} if {@code handle} is a {@link SizedHandle},
+     * otherwise -1. Note that a query's result stream may also report its size via a {@link java.util.Spliterator#SIZED}
+     * spliterator, but that is only available after the query has been performed.
+     *
+     * @param handle query handle
+     * @param config the configuration for the query
+     * @param <C> configuration type for the query
+     * @param <R> result type for the query
+     * @return estimated number of results, or -1 if unknown
+     * @throws IllegalArgumentException if {@code handle} is null
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    @SuppressWarnings("unchecked")
+    static <C, R> long estimateSize(Handle<C, Stream<R>> handle, C config) throws InterruptedException {
+        Preconditions.checkArgument(handle != null, "null handle");
+        return handle instanceof SizedHandle ? ((SizedHandle<C, R>)handle).estimateSize(config) : -1;
+    }
+
+// SizedHandle
+
+    /**
+     * A {@link Handle} for a {@link Query} that can report the number of results without performing the query.
+     *
+     * <p>
+     * Viewers use this information to display progress ratios, size lazily loaded displays, and warn before
+     * loading very large results.
+     *
+     * @param <C> configuration type for the query
+     * @param <R> result type for the query
+     */
+    interface SizedHandle<C, R> extends Handle<C, Stream<R>> {
+
+        /**
+         * Count the total number of results, if possible.
+         *
+         * <p>
+         * The implementation in {@link SizedHandle} returns -1.
+         *
+         * @param config the configuration for the query
+         * @return exact number of results, or -1 if unknown
+         * @throws InterruptedException if the current thread is interrupted
+         */
+        default long count(C config) throws InterruptedException {
+            return -1;
+        }
+
+        /**
+         * Determine whether {@link #count count()} is supported.
+         *
+         * <p>
+         * This method must be cheap; viewers use it to decide whether to rely on {@link #count count()} or
+         * fall back to {@link #estimateSize estimateSize()}.
+         *
+         * <p>
+         * The implementation in {@link SizedHandle} returns false; implementations that override {@link #count count()}
+         * should override this method as well.
+         *
+         * @return true if {@link #count count()} can return an exact number of results
+         */
+        default boolean supportsCount() {
+            return false;
+        }
+
+        /**
+         * Estimate the total number of results, if possible.
+         *
+         * <p>
+         * This may be cheaper than {@link #count count()}, e.g., by using database statistics.
+         *
+         * <p>
+         * The implementation in {@link SizedHandle} delegates to {@link #count count()}.
+         *
+         * @param config the configuration for the query
+         * @return estimated number of results, or -1 if unknown
+         * @throws InterruptedException if the current thread is interrupted
+         */
+        default long estimateSize(C config) throws InterruptedException {
+            return this.count(config);
+        }
+    }
 }
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Identifies a property by which query results should be sorted, and the sort direction.
+ *
+ * @see SortableQuery
+ */
+public final class SortKey {
+
+    private final String property;
+    private final boolean ascending;
+
+    /**
+     * Constructor.
+     *
+     * @param property sort property name
+     * @param ascending true for ascending order, false for descending order
+     * @throws IllegalArgumentException if {@code property} is null
+     */
+    public SortKey(String property, boolean ascending) {
+        Preconditions.checkArgument(property != null, "null property");
+        this.property = property;
+        this.ascending = ascending;
+    }
+
+    /**
+     * Get the name of the sort property.
+     *
+     * @return property name
+     */
+    public String getProperty() {
+        return this.property;
+    }
+
+    /**
+     * Get the sort direction.
+     *
+     * @return true for ascending order, false for descending order
+     */
+    public boolean isAscending() {
+        return this.ascending;
+    }
+
+// Object
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this)
+            return true;
+        if (obj == null || obj.getClass() != this.getClass())
+            return false;
+        final SortKey that = (SortKey)obj;
+        return this.property.equals(that.property) && this.ascending == that.ascending;
+    }
+
+    @Override
+    public int hashCode() {
+        return this.property.hashCode() ^ (this.ascending ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return this.property + (this.ascending ? " ASC" : " DESC");
+    }
+}
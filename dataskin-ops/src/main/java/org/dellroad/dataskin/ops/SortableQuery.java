@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A {@link Query} that can sort its results itself, e.g., using a database index, based on properties of its configuration.
+ *
+ * <p>
+ * This allows viewers to push sorting down into the query instead of sorting the results in memory.
+ * The property names are the names of result item properties, e.g., as used for grid column keys.
+ *
+ * @param <C> configuration type for this query
+ * @param <R> result type for this query
+ * @see FilterableQuery
+ */
+public interface SortableQuery<C, R> extends Query<C, R> {
+
+    /**
+     * Get the names of the properties by which this query can sort its results.
+     *
+     * @return sortable property names, possibly empty
+     */
+    Set<String> getSortProperties();
+
+    /**
+     * Modify the given configuration so that subsequent executions of this query sort the results as specified.
+     *
+     * @param config query configuration
+     * @param sortKeys sort keys in order of precedence, or empty list for the query's natural ordering
+     * @throws IllegalArgumentException if {@code sortKeys} is null or contains a property not in {@link #getSortProperties}
+     * @throws IllegalArgumentException if {@code config} is invalid
+     */
+    void applySort(C config, List<SortKey> sortKeys);
+
+// Config
+
+    /**
+     * Configuration types for annotation-defined queries that declare
+     * {@linkplain org.dellroad.dataskin.ops.annotation.DataSkinQuery#sortable sortable properties} must implement this interface.
+     */
+    interface Config {
+
+        /**
+         * Configure the sort order.
+         *
+         * @param sortKeys sort keys in order of precedence, or empty list for the query's natural ordering
+         */
+        void setSortKeys(List<SortKey> sortKeys);
+    }
+}
@@ -4,6 +4,9 @@
 
 package org.dellroad.dataskin.ops;
 
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.CompletionStage;
 import java.util.function.Consumer;
 
 /**
@@ -35,27 +38,50 @@ public interface StaticOperation<C, R> extends Operation<C, R> {
      */
     R perform(C config, Consumer<? super Progress> progressUpdater) throws InterruptedException;
 
+    /**
+     * Execute this operation asynchronously.
+     *
+     * <p>
+     * The same rules as {@link Handle#performAsync Handle.performAsync()} apply. The implementation
+     * in {@link StaticOperation} invokes {@link #perform perform()} synchronously in the current thread
+     * and returns an already completed stage.
+     *
+     * @param config the configuration for the operation
+     * @param progressUpdater where progress reports should be sent
+     * @return operation result
+     * @throws IllegalArgumentException if {@code progressUpdater} is null
+     */
+    default CompletionStage<R> performAsync(C config, Consumer<? super Progress> progressUpdater) {
+        Preconditions.checkArgument(progressUpdater != null, "null progressUpdater");
+        return Util.performNow(() -> this.perform(config, progressUpdater));
+    }
+
     @Override
     default Handle<C, R> getHandle(Object target) {
-        return (config, progress) -> this.perform(config, progress);
+        return new Handle<C, R>() {
+            @Override
+            public R perform(C config, Consumer<? super Progress> progress) throws InterruptedException {
+                return StaticOperation.this.perform(config, progress);
+            }
+
+            @Override
+            public CompletionStage<R> performAsync(C config, Consumer<? super Progress> progress) {
+                return StaticOperation.this.performAsync(config, progress);
+            }
+        };
     }
 
     /**
      * Create a new configuration object for this operation.
      *
      * <p>
-     * The implementation in {@link StaticOperation} attempts to instantiate an instance
-     * of the {@linkplain #getConfigType configuration type} using a default constructor.
+     * The implementation in {@link StaticOperation} instantiates the {@linkplain #getConfigType configuration type}
+     * using its default constructor via {@link ConfigFactories}, which caches the resolved constructor.
      *
      * @return new configuration object, never null unless the configuration type is {@link Void}
      */
     @SuppressWarnings("unchecked")
     default C newConfig() {
-        final Class<? super C> type = this.getConfigType().getRawType();
-        try {
-            return (C)type.getConstructor().newInstance();
-        } catch (ReflectiveOperationException e) {
-            throw new RuntimeException("can't instantiate " + type, e);
-        }
+        return (C)ConfigFactories.get(this.getConfigType().getRawType(), null).newConfig(null);
     }
 }
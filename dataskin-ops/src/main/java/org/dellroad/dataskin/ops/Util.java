@@ -7,6 +7,11 @@ package org.dellroad.dataskin.ops;
 import com.google.common.base.Preconditions;
 
 import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -36,4 +41,124 @@ public final class Util {
           .map(word -> word.substring(0, 1).toUpperCase(Locale.ROOT).concat(word.substring(1)))
           .collect(Collectors.joining(" "));
     }
+
+    /**
+     * Wait for an asynchronous operation to complete and return its result.
+     *
+     * <p>
+     * If the current thread is interrupted while waiting, the operation is cancelled via
+     * {@link CompletableFuture#cancel CompletableFuture.cancel()} and {@link InterruptedException} is thrown.
+     * If the operation fails, its exception is rethrown if unchecked, otherwise wrapped in a {@link RuntimeException}.
+     *
+     * @param stage asynchronous operation
+     * @param <R> result type
+     * @return operation result
+     * @throws IllegalArgumentException if {@code stage} is null
+     * @throws InterruptedException if the current thread is interrupted
+     * @throws CancellationException if the operation was cancelled by some other means
+     */
+    public static <R> R await(CompletionStage<? extends R> stage) throws InterruptedException {
+        Preconditions.checkArgument(stage != null, "null stage");
+        final CompletableFuture<? extends R> future = stage.toCompletableFuture();
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (CancellationException e) {
+            if (Thread.interrupted())                   // see performNow()
+                throw new InterruptedException();
+            throw e;
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Perform a synchronous operation in the current thread and return its outcome as an already completed stage.
+     *
+     * <p>
+     * If the operation throws {@link InterruptedException}, the returned stage is cancelled and the current thread's
+     * interrupt status is restored; any other exception completes the returned stage exceptionally.
+     *
+     * @param operation synchronous operation
+     * @param <R> result type
+     * @return completed stage
+     * @throws IllegalArgumentException if {@code operation} is null
+     */
+    public static <R> CompletableFuture<R> performNow(Callable<? extends R> operation) {
+        Preconditions.checkArgument(operation != null, "null operation");
+        final CompletableFuture<R> future = new CompletableFuture<>();
+        try {
+            future.complete(operation.call());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(false);
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+        }
+        return future;
+    }
+
+    /**
+     * Start an asynchronous operation in the current thread and return its stage.
+     *
+     * <p>
+     * If starting the operation throws {@link InterruptedException}, the returned stage is cancelled and the current
+     * thread's interrupt status is restored; if it throws any other exception or returns null, the returned stage
+     * is completed exceptionally. Otherwise, the operation's own stage is returned, so that cancelling it cancels
+     * the operation.
+     *
+     * @param operation starts the asynchronous operation
+     * @param <R> result type
+     * @return operation's stage
+     * @throws IllegalArgumentException if {@code operation} is null
+     */
+    public static <R> CompletionStage<R> startNow(Callable<? extends CompletionStage<R>> operation) {
+        Preconditions.checkArgument(operation != null, "null operation");
+        final CompletionStage<R> stage;
+        try {
+            stage = operation.call();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            final CompletableFuture<R> future = new CompletableFuture<>();
+            future.cancel(false);
+            return future;
+        } catch (Throwable t) {
+            return CompletableFuture.failedFuture(t);
+        }
+        if (stage == null)
+            return CompletableFuture.failedFuture(new IllegalStateException("operation returned a null stage"));
+        return stage;
+    }
+
+    /**
+     * Determine whether the class loader of {@code type} is that of {@code other} or one of its ancestors.
+     *
+     * <p>
+     * If so, {@code other} already keeps the class loader of {@code type} reachable, so information about {@code type}
+     * may be attached to {@code other} (e.g., via {@link ClassValue}) without preventing either from being unloaded.
+     *
+     * @param type some class
+     * @param other other class
+     * @return true if {@code type}'s class loader is {@code other}'s class loader or one of its ancestors
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public static boolean isAncestorLoader(Class<?> type, Class<?> other) {
+        Preconditions.checkArgument(type != null, "null type");
+        Preconditions.checkArgument(other != null, "null other");
+        final ClassLoader typeLoader = type.getClassLoader();
+        if (typeLoader == null)
+            return true;
+        for (ClassLoader loader = other.getClassLoader(); loader != null; loader = loader.getParent()) {
+            if (loader == typeLoader)
+                return true;
+        }
+        return false;
+    }
 }
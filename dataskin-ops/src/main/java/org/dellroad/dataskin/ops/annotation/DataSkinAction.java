@@ -9,10 +9,12 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Consumer;
 
 import org.dellroad.dataskin.ops.Action;
 import org.dellroad.dataskin.ops.InstanceAction;
+import org.dellroad.dataskin.ops.ProgressReporter;
 import org.dellroad.dataskin.ops.StaticAction;
 import org.dellroad.dataskin.ops.scanner.ActionMethodScanner;
 
@@ -35,7 +37,8 @@ import org.dellroad.dataskin.ops.scanner.ActionMethodScanner;
  * The method takes up to three parameters, all optional, in this order:
  * <ul>
  *  <li>A context object parameter, whose required type depends on the {@link ActionMethodScanner}
- *  <li>A {@link Consumer Consumer&lt;? super Operation.Progress&gt;} for providing progress updates
+ *  <li>A {@link Consumer Consumer&lt;? super Operation.Progress&gt;} or a {@link ProgressReporter}
+ *      for providing progress updates
  *  <li>A configuration object of arbitrary type {@code C}; the type {@code C} will be
  *      used as the {@linkplain Action#getConfigType action config type}.
  * </ul>
@@ -45,6 +48,11 @@ import org.dellroad.dataskin.ops.scanner.ActionMethodScanner;
  * <p>
  * The method may return {@code void}, or some arbitrary type {@code R} which will be used as the result type.
  *
+ * <p>
+ * If the method returns {@link CompletionStage CompletionStage&lt;R&gt;}, the action is asynchronous and {@code R} is used
+ * as the result type: {@link org.dellroad.dataskin.ops.Operation.Handle#performAsync performAsync()} returns
+ * the method's stage directly, and {@link org.dellroad.dataskin.ops.Operation.Handle#perform perform()} waits for it.
+ *
  * @see Action
  */
 @Retention(RetentionPolicy.RUNTIME)
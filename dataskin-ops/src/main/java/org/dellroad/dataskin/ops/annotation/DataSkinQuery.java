@@ -9,11 +9,17 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
+import org.dellroad.dataskin.ops.FilterableQuery;
 import org.dellroad.dataskin.ops.InstanceQuery;
+import org.dellroad.dataskin.ops.PageRequest;
+import org.dellroad.dataskin.ops.PageableQuery;
+import org.dellroad.dataskin.ops.ProgressReporter;
 import org.dellroad.dataskin.ops.Query;
+import org.dellroad.dataskin.ops.SortableQuery;
 import org.dellroad.dataskin.ops.StaticQuery;
 import org.dellroad.dataskin.ops.scanner.QueryMethodScanner;
 
@@ -33,20 +39,43 @@ import org.dellroad.dataskin.ops.scanner.QueryMethodScanner;
  * <p><b>Method Parameters</b>
  *
  * <p>
- * The method takes up to three parameters, all optional, in this order:
+ * The method takes up to four parameters, all optional, in this order:
  * <ul>
  *  <li>A context object parameter, whose required type depends on the {@link QueryMethodScanner}
- *  <li>A {@link Consumer Consumer&lt;? super Operation.Progress&gt;} for providing progress updates
+ *  <li>A {@link Consumer Consumer&lt;? super Operation.Progress&gt;} or a {@link ProgressReporter}
+ *      for providing progress updates
  *  <li>A configuration object of arbitrary type {@code C}; the type {@code C} will be
  *      used as the {@linkplain Query#getConfigType query config type}.
+ *  <li>A {@link PageRequest}; if present, the resulting {@link Query} will be a {@link PageableQuery}
+ *      and the method should return only the requested range of results.
  * </ul>
  *
  * <p><b>Return Type</b>
  *
  * <p>
- * The method must return {@link Stream Stream<R>} for some {@code R}; the type {@code R} will be used
+ * The method must return {@link Stream Stream&lt;R&gt;} for some {@code R}; the type {@code R} will be used
  * as the {@linkplain Query#getResultType query result item type}.
  *
+ * <p>
+ * Alternatively, the method may return {@link CompletionStage CompletionStage&lt;Stream&lt;R&gt;&gt;}, in which case the query
+ * is asynchronous: {@link org.dellroad.dataskin.ops.Operation.Handle#performAsync performAsync()} returns the method's
+ * stage directly, and {@link org.dellroad.dataskin.ops.Operation.Handle#perform perform()} waits for it.
+ *
+ * <p><b>Sorting and Filtering</b>
+ *
+ * <p>
+ * The resulting {@link Query} will be a {@link SortableQuery} and a {@link FilterableQuery}, supporting the
+ * properties listed by {@link #sortable} and {@link #filterable} (respectively), if any. When any are listed,
+ * the configuration type must implement {@link SortableQuery.Config} or {@link FilterableQuery.Config} (respectively).
+ *
+ * <p><b>Counting</b>
+ *
+ * <p>
+ * A {@link PageableQuery} may name a companion method via {@link #count} that counts the query's results, allowing
+ * viewers to size lazily loaded displays exactly. The companion method must be declared in the same class, have the
+ * same static-ness, take the same parameters as the query method except for the {@link PageRequest}, return
+ * {@code long} or {@code int}, and be accessible via reflection; a negative return value means the count is not known.
+ *
  * @see Query
  */
 @Retention(RetentionPolicy.RUNTIME)
@@ -60,4 +89,31 @@ public @interface DataSkinQuery {
      * @return query label
      */
     String label();
+
+    /**
+     * Get the names of the result item properties by which this query can sort its results.
+     *
+     * @return sortable property names
+     * @see SortableQuery#getSortProperties
+     */
+    String[] sortable() default {};
+
+    /**
+     * Get the names of the result item properties on which this query can filter its results.
+     *
+     * @return filterable property names
+     * @see FilterableQuery#getFilterProperties
+     */
+    String[] filterable() default {};
+
+    /**
+     * Get the name of the companion method that counts the results of this query, if any.
+     *
+     * <p>
+     * Only allowed for {@linkplain PageableQuery pageable} queries.
+     *
+     * @return count method name, or empty string for none
+     * @see org.dellroad.dataskin.ops.Query.SizedHandle#count
+     */
+    String count() default "";
 }
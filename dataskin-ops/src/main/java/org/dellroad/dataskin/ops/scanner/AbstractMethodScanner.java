@@ -5,18 +5,28 @@
 package org.dellroad.dataskin.ops.scanner;
 
 import com.google.common.base.Preconditions;
+import com.google.common.primitives.Primitives;
 import com.google.common.reflect.TypeToken;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.dellroad.dataskin.ops.Operation;
+import org.dellroad.dataskin.ops.PageRequest;
+import org.dellroad.dataskin.ops.ProgressReporter;
+import org.dellroad.dataskin.ops.Util;
 import org.dellroad.stuff.java.MethodAnnotationScanner;
 
 /**
@@ -28,6 +38,38 @@ import org.dellroad.stuff.java.MethodAnnotationScanner;
  */
 abstract class AbstractMethodScanner<T, A extends Annotation, X> extends MethodAnnotationScanner<T, A> {
 
+    /**
+     * System property that, when set to {@code true}, disables compiled invokers
+     * and causes annotated methods to be invoked via reflection instead.
+     *
+     * <p>
+     * The property is consulted when each method is scanned, not when it is invoked.
+     */
+    public static final String USE_REFLECTION_PROPERTY = "org.dellroad.dataskin.ops.scanner.useReflection";
+
+    // Parameter layout flags
+    static final int HAS_CONTEXT = 0x01;
+    static final int HAS_PROGRESS = 0x02;
+    static final int HAS_CONFIG = 0x04;
+    static final int HAS_PAGE = 0x08;
+    static final int HAS_REPORTER = 0x10;                  // progress parameter is a ProgressReporter
+
+    // Uniform signature of compiled invokers: (target, context, progress, config, page) -> result
+    private static final MethodType INVOKER_TYPE = MethodType.genericMethodType(5);
+
+    // Bytecode of InvokerTemplate, or null if unavailable
+    private static final byte[] INVOKER_TEMPLATE;
+    static {
+        byte[] bytes = null;
+        try (InputStream input = AbstractMethodScanner.class.getResourceAsStream("InvokerTemplate.class")) {
+            if (input != null)
+                bytes = input.readAllBytes();
+        } catch (IOException e) {
+            // ignore
+        }
+        INVOKER_TEMPLATE = bytes;
+    }
+
     protected final TypeToken<X> contextParameterType;
 
     AbstractMethodScanner(Class<T> type, Class<A> atype, TypeToken<X> contextParameterType) {
@@ -43,35 +85,169 @@ abstract class AbstractMethodScanner<T, A extends Annotation, X> extends MethodA
         return String.format("invalid %s annotation on method %s", this.getAnnotationDescription(), method);
     }
 
-// Subclass Helpers
-
-    <OP extends Operation<?, ?>> Stream<OP> findOperations(Class<?> targetType, Class<OP> operationType, X context) {
-        Preconditions.checkArgument(targetType != null, "null targetType");
-        Preconditions.checkArgument(operationType != null, "null operationType");
-        return Stream.<AbstractMethodScanner<?, ?, X>.OperationInfo<?, ?>>concat(
-            new QueryMethodScanner<>(targetType, this.contextParameterType).queryInfos(),
-            new ActionMethodScanner<>(targetType, this.contextParameterType).actionInfos())
-          .map(info -> info.getOperation(context))
-          .filter(operationType::isInstance)
-          .map(operationType::cast);
-    }
+    /**
+     * Get the operation label specified by the given annotation.
+     *
+     * @param annotation method annotation
+     * @return operation label
+     */
+    abstract String getLabel(A annotation);
+
+    /**
+     * Recreate the {@link OperationInfo} for a method previously found by scanning, without rescanning the type
+     * or resolving any generic types.
+     *
+     * @param method annotated method
+     * @param annotation method's annotation
+     * @param restored method's previously computed label, types, and parameter layout
+     * @return method info
+     * @throws IllegalArgumentException if {@code method} does not match {@code restored}
+     */
+    abstract OperationInfo<?, ?> restoreMethodInfo(Method method, A annotation, RestoredMethod restored);
 
 // OperationInfo
 
     public abstract class OperationInfo<C, R> extends MethodAnnotationScanner<T, A>.MethodInfo {
 
         final OperationTypeAnalysis<C, R> typeAnalysis;
+        final String label;
+
+        // Invoking through a spun class avoids reflection's parameter array and per-call checks, and lets the JIT
+        // inline the target method into the spun class; null if disabled or the method could not be compiled
+        final Invoker invoker;
 
-        OperationInfo(Method method, A annotation, OperationTypeAnalysis<C, R> typeAnalysis) {
+        OperationInfo(Method method, A annotation, String label, OperationTypeAnalysis<C, R> typeAnalysis) {
             super(method, annotation);
             this.typeAnalysis = typeAnalysis;
+            this.label = label != null ? label : AbstractMethodScanner.this.getLabel(annotation);
+            this.invoker = !Boolean.getBoolean(USE_REFLECTION_PROPERTY) ? typeAnalysis.compile(method, typeAnalysis.hasPage) : null;
         }
 
         public OperationTypeAnalysis<C, R> getTypeAnalysis() {
             return this.typeAnalysis;
         }
 
-        public abstract Operation<C, R> getOperation(X context);
+        /**
+         * Get the label of the associated operation.
+         *
+         * @return operation label
+         */
+        public String getLabel() {
+            return this.label;
+        }
+
+        /**
+         * Create a new {@link Operation} that invokes the associated method using the given context object.
+         *
+         * <p>
+         * Operations returned by this method for the same context object share a single {@link OperationCache},
+         * which lives as long as any of those operations is reachable.
+         *
+         * @param context method context object
+         * @return new bound operation
+         */
+        public Operation<C, R> getOperation(X context) {
+            return this.getOperation(context, OperationCache.shared(context));
+        }
+
+        /**
+         * Create a new {@link Operation} that invokes the associated method using the given context object.
+         *
+         * <p>
+         * Instances of this class may be shared among multiple contexts, so each invocation returns a new operation.
+         * For queries, the operations available on the query's result items are resolved lazily via {@code cache}.
+         *
+         * @param context method context object
+         * @param cache cache used to resolve operations on query result items
+         * @return new bound operation
+         * @throws IllegalArgumentException if {@code cache} is null
+         */
+        public abstract Operation<C, R> getOperation(X context, OperationCache cache);
+
+        /**
+         * Invoke the associated method.
+         *
+         * <p>
+         * Uses the compiled invoker if available, otherwise falls back to reflection. If the method takes a
+         * {@link ProgressReporter}, {@code progressConsumer} is adapted via {@link ProgressReporter#of}, which
+         * is free when it is already a {@link ProgressReporter}.
+         *
+         * @param target target instance, or null for static methods
+         * @param context method context object
+         * @param progressConsumer progress consumer
+         * @param config operation configuration
+         * @param page page request, or null for {@link PageRequest#ALL}
+         * @return method return value
+         * @throws InterruptedException if the method is interrupted
+         */
+        @SuppressWarnings("unchecked")
+        Object invoke(Object target, X context, Consumer<? super Operation.Progress> progressConsumer, Object config,
+          PageRequest page) throws InterruptedException {
+            if (page == null)
+                page = PageRequest.ALL;
+            final Object progress = this.typeAnalysis.hasReporter ? ProgressReporter.of(progressConsumer) : progressConsumer;
+            if (this.invoker == null)
+                return this.invoke((T)target, this.typeAnalysis.buildParamArray(context, progress, config, page));
+            try {
+                return this.invoker.invoke(target, context, progress, config, page);
+            } catch (RuntimeException | Error | InterruptedException e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new RuntimeException(t);
+            }
+        }
+
+        /**
+         * Invoke the associated method and wait for its result.
+         *
+         * <p>
+         * If the method is {@linkplain OperationTypeAnalysis#isAsync asynchronous}, this waits for the returned stage
+         * to complete, cancelling it if the current thread is interrupted.
+         *
+         * @param target target instance, or null for static methods
+         * @param context method context object
+         * @param progressConsumer progress consumer
+         * @param config operation configuration
+         * @param page page request, or null for {@link PageRequest#ALL}
+         * @return operation result
+         * @throws InterruptedException if the method is interrupted
+         */
+        Object perform(Object target, X context, Consumer<? super Operation.Progress> progressConsumer, Object config,
+          PageRequest page) throws InterruptedException {
+            final Object result = this.invoke(target, context, progressConsumer, config, page);
+            return this.typeAnalysis.isAsync ? Util.await(this.asStage(result)) : result;
+        }
+
+        /**
+         * Invoke the associated method asynchronously.
+         *
+         * <p>
+         * If the method is {@linkplain OperationTypeAnalysis#isAsync asynchronous}, the stage it returns is returned
+         * directly, so cancelling it cancels the method's own operation. Otherwise, the method is invoked synchronously
+         * and an already completed stage is returned.
+         *
+         * @param target target instance, or null for static methods
+         * @param context method context object
+         * @param progressConsumer progress consumer
+         * @param config operation configuration
+         * @param page page request, or null for {@link PageRequest#ALL}
+         * @return operation result
+         */
+        CompletionStage<?> performAsync(Object target, X context, Consumer<? super Operation.Progress> progressConsumer,
+          Object config, PageRequest page) {
+            if (!this.typeAnalysis.isAsync)
+                return Util.performNow(() -> this.invoke(target, context, progressConsumer, config, page));
+            return Util.startNow(() -> this.asStage(this.invoke(target, context, progressConsumer, config, page)));
+        }
+
+        @SuppressWarnings("unchecked")
+        private CompletionStage<Object> asStage(Object result) {
+            if (result == null) {
+                throw new IllegalStateException(String.format("method %s returned a null %s",
+                  this.getMethod(), CompletionStage.class.getSimpleName()));
+            }
+            return (CompletionStage<Object>)result;
+        }
     }
 
 // OperationTypeAnalysis
@@ -79,12 +255,23 @@ abstract class AbstractMethodScanner<T, A extends Annotation, X> extends MethodA
     abstract class OperationTypeAnalysis<C, R> {
 
         protected final boolean isStatic;
+        protected final boolean isAsync;
         protected final boolean hasContext;
         protected final boolean hasProgress;
+        protected final boolean hasReporter;
         protected final boolean hasConfig;
+        protected final boolean hasPage;
         protected final TypeToken<C> configType;
         protected final TypeToken<R> resultType;
 
+        /**
+         * Constructor.
+         *
+         * @param method the method being analyzed
+         * @param resultType operation result type; for asynchronous methods, the type of the value the method's
+         *  {@link CompletionStage} completes with
+         * @throws IllegalArgumentException if the method's parameters are invalid
+         */
         @SuppressWarnings("unchecked")
         protected OperationTypeAnalysis(Method method, TypeToken<R> resultType) {
             Preconditions.checkArgument(method != null, "null method");
@@ -93,12 +280,19 @@ abstract class AbstractMethodScanner<T, A extends Annotation, X> extends MethodA
             // Initialize
             this.resultType = resultType;
             this.isStatic = (method.getModifiers() & Modifier.STATIC) != 0;
+            this.isAsync = CompletionStage.class.isAssignableFrom(method.getReturnType());
 
             // Get parameter types
             List<TypeToken<?>> paramTypes = Stream.of(method.getGenericParameterTypes())
               .map(TypeToken::of)
               .collect(Collectors.toList());
 
+            // Page request parameter? This must be the last parameter
+            final int lastParam = paramTypes.size() - 1;
+            this.hasPage = lastParam >= 0 && paramTypes.get(lastParam).getRawType() == PageRequest.class;
+            if (this.hasPage)
+                paramTypes = paramTypes.subList(0, lastParam);
+
             // Context parameter?
             this.hasContext = !paramTypes.isEmpty()
               && (AbstractMethodScanner.this.contextParameterType == null
@@ -106,9 +300,10 @@ abstract class AbstractMethodScanner<T, A extends Annotation, X> extends MethodA
             if (this.hasContext)
                 paramTypes = paramTypes.subList(1, paramTypes.size());
 
-            // Progress consumer parameter?
-            this.hasProgress = !paramTypes.isEmpty()
-              && paramTypes.get(0).isSupertypeOf(new TypeToken<Consumer<? super Operation.Progress>>() { });
+            // Progress consumer or reporter parameter?
+            this.hasReporter = !paramTypes.isEmpty() && paramTypes.get(0).getRawType() == ProgressReporter.class;
+            this.hasProgress = this.hasReporter || (!paramTypes.isEmpty()
+              && paramTypes.get(0).isSupertypeOf(new TypeToken<Consumer<? super Operation.Progress>>() { }));
             if (this.hasProgress)
                 paramTypes = paramTypes.subList(1, paramTypes.size());
 
@@ -118,7 +313,7 @@ abstract class AbstractMethodScanner<T, A extends Annotation, X> extends MethodA
                 this.configType = (TypeToken<C>)paramTypes.get(0);
                 paramTypes = paramTypes.subList(1, paramTypes.size());
             } else
-                this.configType = (TypeToken<C>)(Object)TypeToken.of(Void.class);
+                this.configType = (TypeToken<C>)(Object)Operation.VOID_TYPE;
 
             // There should be no more parameters
             if (!paramTypes.isEmpty()) {
@@ -127,19 +322,170 @@ abstract class AbstractMethodScanner<T, A extends Annotation, X> extends MethodA
             }
         }
 
+        /**
+         * Constructor for a method previously analyzed by {@link #OperationTypeAnalysis(Method, TypeToken)}.
+         *
+         * <p>
+         * No generic types are resolved; the previous results are only checked for consistency with the method's
+         * raw parameter and return types.
+         *
+         * @param method the method being analyzed
+         * @param restored method's previously computed types and parameter layout
+         * @throws IllegalArgumentException if the method doesn't match {@code restored}
+         */
+        @SuppressWarnings("unchecked")
+        protected OperationTypeAnalysis(Method method, RestoredMethod restored) {
+            Preconditions.checkArgument(method != null, "null method");
+            Preconditions.checkArgument(restored != null, "null restored");
+
+            // Initialize
+            final int layout = restored.layout;
+            this.isStatic = (method.getModifiers() & Modifier.STATIC) != 0;
+            this.isAsync = CompletionStage.class.isAssignableFrom(method.getReturnType());
+            this.hasContext = (layout & HAS_CONTEXT) != 0;
+            this.hasProgress = (layout & HAS_PROGRESS) != 0;
+            this.hasReporter = (layout & HAS_REPORTER) != 0;
+            this.hasConfig = (layout & HAS_CONFIG) != 0;
+            this.hasPage = (layout & HAS_PAGE) != 0;
+            this.configType = (TypeToken<C>)restored.configType;
+            this.resultType = (TypeToken<R>)restored.resultType;
+
+            // Sanity check against the raw types
+            final Class<?>[] paramTypes = method.getParameterTypes();
+            int index = this.hasContext ? 1 : 0;
+            boolean valid = layout == this.getLayout()
+              && paramTypes.length == index + (this.hasProgress ? 1 : 0) + (this.hasConfig ? 1 : 0) + (this.hasPage ? 1 : 0)
+              && (!this.hasReporter || (this.hasProgress && paramTypes[index] == ProgressReporter.class))
+              && (this.isAsync || this.resultType.getRawType() == Primitives.wrap(method.getReturnType()));
+            if (this.hasProgress)
+                index++;
+            if (valid && this.hasConfig)
+                valid = this.configType.getRawType() == paramTypes[index++];
+            else if (valid)
+                valid = this.configType.equals(Operation.VOID_TYPE);
+            if (valid && this.hasPage)
+                valid = paramTypes[index] == PageRequest.class;
+            if (!valid) {
+                throw new IllegalArgumentException(String.format(
+                  "%s: method does not match restored information", AbstractMethodScanner.this.getErrorPrefix(method)));
+            }
+        }
+
+        /**
+         * Get the parameter layout of the analyzed method.
+         *
+         * @return bitwise OR of {@link #HAS_CONTEXT}, {@link #HAS_PROGRESS}, {@link #HAS_REPORTER}, {@link #HAS_CONFIG},
+         *  and {@link #HAS_PAGE}
+         */
+        int getLayout() {
+            return (this.hasContext ? HAS_CONTEXT : 0)
+              | (this.hasProgress ? HAS_PROGRESS : 0)
+              | (this.hasReporter ? HAS_REPORTER : 0)
+              | (this.hasConfig ? HAS_CONFIG : 0)
+              | (this.hasPage ? HAS_PAGE : 0);
+        }
+
         boolean isStatic() {
             return this.isStatic;
         }
 
-        Object[] buildParamArray(X context, Consumer<? super Operation.Progress> progressConsumer, Object config) {
-            final ArrayList<Object> params = new ArrayList<>(3);
+        /**
+         * Determine whether the analyzed method is asynchronous, i.e., it returns a {@link CompletionStage}.
+         *
+         * @return true if the method is asynchronous
+         */
+        boolean isAsync() {
+            return this.isAsync;
+        }
+
+        Object[] buildParamArray(X context, Object progress, Object config, PageRequest page) {
+            final ArrayList<Object> params = new ArrayList<>(4);
             if (this.hasContext)
                 params.add(context);
             if (this.hasProgress)
-                params.add(progressConsumer);
-            if (this.hasProgress)
+                params.add(progress);
+            if (this.hasConfig)
                 params.add(config);
+            if (this.hasPage)
+                params.add(page);
             return params.toArray();
         }
+
+        /**
+         * Compile the given method, which must have this instance's parameter layout except possibly for the
+         * {@link PageRequest} parameter, into an {@link Invoker}.
+         *
+         * <p>
+         * A hidden class is spun from {@link InvokerTemplate} for each method, holding the method's {@link MethodHandle}
+         * as a {@code static final} constant. Slots not used by the method are dropped, so invocation requires no
+         * parameter array. The progress slot is passed through as is, so for methods taking a {@link ProgressReporter}
+         * the caller must supply one.
+         *
+         * @param method the method to compile
+         * @param withPage whether {@code method} takes a trailing {@link PageRequest} parameter
+         * @return compiled invoker, or null if the method is not accessible or cannot be compiled
+         */
+        Invoker compile(Method method, boolean withPage) {
+            if (INVOKER_TEMPLATE == null || !method.trySetAccessible())
+                return null;
+            MethodHandle handle;
+            try {
+                handle = MethodHandles.lookup().unreflect(method);
+            } catch (IllegalAccessException e) {
+                return null;
+            }
+            handle = handle.asType(handle.type().generic());
+            final boolean[] slots = new boolean[] {
+              !this.isStatic, this.hasContext, this.hasProgress, this.hasConfig, withPage
+            };
+            for (int i = 0; i < slots.length; i++) {
+                if (!slots[i])
+                    handle = MethodHandles.dropArguments(handle, i, Object.class);
+            }
+            handle = handle.asType(INVOKER_TYPE);
+            try {
+                final MethodHandles.Lookup lookup = MethodHandles.lookup()
+                  .defineHiddenClassWithClassData(INVOKER_TEMPLATE, handle, true);
+                return (Invoker)lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                return null;
+            }
+        }
+    }
+
+// RestoredMethod
+
+    /**
+     * Information about an annotated method previously found by scanning, as recorded by {@link ScanIndex}.
+     */
+    static final class RestoredMethod {
+
+        final int layout;
+        final String label;
+        final TypeToken<?> configType;
+        final TypeToken<?> resultType;
+        final TypeToken<?> itemType;
+
+        /**
+         * Constructor.
+         *
+         * @param layout parameter layout
+         * @param label operation label
+         * @param configType operation configuration type
+         * @param resultType operation result type
+         * @param itemType query result item type, or null for actions
+         */
+        RestoredMethod(int layout, String label, TypeToken<?> configType, TypeToken<?> resultType, TypeToken<?> itemType) {
+            Preconditions.checkArgument(label != null, "null label");
+            Preconditions.checkArgument(configType != null, "null configType");
+            Preconditions.checkArgument(resultType != null, "null resultType");
+            this.layout = layout;
+            this.label = label;
+            this.configType = configType;
+            this.resultType = resultType;
+            this.itemType = itemType;
+        }
     }
 }
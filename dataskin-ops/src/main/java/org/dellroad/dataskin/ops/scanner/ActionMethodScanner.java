@@ -7,6 +7,7 @@ package org.dellroad.dataskin.ops.scanner;
 import com.google.common.reflect.TypeToken;
 
 import java.lang.reflect.Method;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
@@ -15,6 +16,7 @@ import org.dellroad.dataskin.ops.AbstractStaticAction;
 import org.dellroad.dataskin.ops.Action;
 import org.dellroad.dataskin.ops.InstanceAction;
 import org.dellroad.dataskin.ops.Operation;
+import org.dellroad.dataskin.ops.PageRequest;
 import org.dellroad.dataskin.ops.StaticAction;
 import org.dellroad.dataskin.ops.annotation.DataSkinAction;
 
@@ -43,20 +45,33 @@ public class ActionMethodScanner<T, X> extends AbstractMethodScanner<T, DataSkin
 
     @Override
     protected ActionInfo<?, ?> createMethodInfo(Method method, DataSkinAction annotation) {
-        return this.createActionInfo(method, annotation, this.newActionTypeAnalysis(method));
+        return this.createActionInfo(method, annotation, null, this.newActionTypeAnalysis(method));
+    }
+
+    @Override
+    String getLabel(DataSkinAction annotation) {
+        return annotation.label();
+    }
+
+    @Override
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    ActionInfo<?, ?> restoreMethodInfo(Method method, DataSkinAction annotation, RestoredMethod restored) {
+        return this.createActionInfo(method, annotation, restored.label, new ActionTypeAnalysis(method, restored));
     }
 
     // This method exists solely to bind the generic types
     private <OT, C, R>  ActionInfo<C, R> createActionInfo(Method method,
-      DataSkinAction annotation, ActionTypeAnalysis<C, R> typeAnalysis) {
+      DataSkinAction annotation, String label, ActionTypeAnalysis<C, R> typeAnalysis) {
         return typeAnalysis.isStatic() ?
-          new StaticActionInfo<>(method, annotation, typeAnalysis) :
-          new InstanceActionInfo<>(method, annotation, typeAnalysis);
+          new StaticActionInfo<>(method, annotation, label, typeAnalysis) :
+          new InstanceActionInfo<>(method, annotation, label, typeAnalysis);
     }
 
     @SuppressWarnings({ "unchecked", "rawtypes" })
     private ActionTypeAnalysis<?, ?> newActionTypeAnalysis(Method method) {
-        final TypeToken<?> returnType = TypeToken.of(method.getGenericReturnType());
+        TypeToken<?> returnType = TypeToken.of(method.getGenericReturnType());
+        if (returnType.isSubtypeOf(CompletionStage.class))
+            returnType = returnType.resolveType(CompletionStage.class.getTypeParameters()[0]);
         return (ActionTypeAnalysis<?, ?>)new ActionTypeAnalysis(method, returnType.wrap());
     }
 
@@ -64,8 +79,8 @@ public class ActionMethodScanner<T, X> extends AbstractMethodScanner<T, DataSkin
 
     public abstract class ActionInfo<C, R> extends OperationInfo<C, R> {
 
-        ActionInfo(Method method, DataSkinAction annotation, ActionTypeAnalysis<C, R> typeAnalysis) {
-            super(method, annotation, typeAnalysis);
+        ActionInfo(Method method, DataSkinAction annotation, String label, ActionTypeAnalysis<C, R> typeAnalysis) {
+            super(method, annotation, label, typeAnalysis);
         }
 
         @Override
@@ -74,31 +89,32 @@ public class ActionMethodScanner<T, X> extends AbstractMethodScanner<T, DataSkin
         }
 
         @Override
-        public abstract Action<C, R> getOperation(X context);
+        public abstract Action<C, R> getOperation(X context, OperationCache cache);
     }
 
     public class StaticActionInfo<C, R> extends ActionInfo<C, R> {
 
-        private AbstractStaticAction<C, R> action;
-
-        StaticActionInfo(Method method, DataSkinAction annotation, ActionTypeAnalysis<C, R> typeAnalysis) {
-            super(method, annotation, typeAnalysis);
+        StaticActionInfo(Method method, DataSkinAction annotation, String label, ActionTypeAnalysis<C, R> typeAnalysis) {
+            super(method, annotation, label, typeAnalysis);
         }
 
         @Override
-        public StaticAction<C, R> getOperation(X context) {
-            if (this.action != null) {
-                this.action = new AbstractStaticAction<C, R>(
-                  this.typeAnalysis.configType, this.typeAnalysis.resultType, this.getAnnotation().label()) {
-                    @Override
-                    @SuppressWarnings("unchecked")
-                    public R perform(C config, Consumer<? super Operation.Progress> progressConsumer) {
-                        return (R)StaticActionInfo.this.invoke(null,
-                          StaticActionInfo.this.typeAnalysis.buildParamArray(context, progressConsumer, config));
-                    }
-                };
-            }
-            return this.action;
+        public StaticAction<C, R> getOperation(X context, OperationCache cache) {
+            return new AbstractStaticAction<C, R>(
+              this.typeAnalysis.configType, this.typeAnalysis.resultType, this.label) {
+                @Override
+                @SuppressWarnings("unchecked")
+                public R perform(C config, Consumer<? super Operation.Progress> progressConsumer)
+                  throws InterruptedException {
+                    return (R)StaticActionInfo.this.perform(null, context, progressConsumer, config, null);
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public CompletionStage<R> performAsync(C config, Consumer<? super Operation.Progress> progressConsumer) {
+                    return (CompletionStage<R>)StaticActionInfo.this.performAsync(null, context, progressConsumer, config, null);
+                }
+            };
         }
     }
 
@@ -106,26 +122,30 @@ public class ActionMethodScanner<T, X> extends AbstractMethodScanner<T, DataSkin
 
     public class InstanceActionInfo<C, R> extends ActionInfo<C, R> {
 
-        private AbstractInstanceAction<T, C, R> action;
-
-        InstanceActionInfo(Method method, DataSkinAction annotation, ActionTypeAnalysis<C, R> typeAnalysis) {
-            super(method, annotation, typeAnalysis);
+        InstanceActionInfo(Method method, DataSkinAction annotation, String label, ActionTypeAnalysis<C, R> typeAnalysis) {
+            super(method, annotation, label, typeAnalysis);
         }
 
         @Override
-        public InstanceAction<T, C, R> getOperation(X context) {
-            if (this.action != null) {
-                this.action = new AbstractInstanceAction<T, C, R>(TypeToken.of(ActionMethodScanner.this.type),
-                  this.typeAnalysis.configType, this.typeAnalysis.resultType, this.getAnnotation().label()) {
-                    @Override
-                    @SuppressWarnings("unchecked")
-                    public R perform(T target, C config, Consumer<? super Operation.Progress> progressConsumer) {
-                        return (R)InstanceActionInfo.this.invoke(target,
-                          InstanceActionInfo.this.typeAnalysis.buildParamArray(context, progressConsumer, config));
-                    }
-                };
-            }
-            return this.action;
+        public InstanceAction<T, C, R> getOperation(X context, OperationCache cache) {
+            return new AbstractInstanceAction<T, C, R>(
+              TypeToken.of(ActionMethodScanner.this.type), this.typeAnalysis.configType,
+              this.typeAnalysis.resultType, this.label) {
+                @Override
+                @SuppressWarnings("unchecked")
+                public R perform(T target, C config, Consumer<? super Operation.Progress> progressConsumer)
+                  throws InterruptedException {
+                    return (R)InstanceActionInfo.this.perform(target, context, progressConsumer, config, null);
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public CompletionStage<R> performAsync(T target, C config,
+                  Consumer<? super Operation.Progress> progressConsumer) {
+                    return (CompletionStage<R>)InstanceActionInfo.this.performAsync(
+                      target, context, progressConsumer, config, null);
+                }
+            };
         }
     }
 
@@ -135,6 +155,19 @@ public class ActionMethodScanner<T, X> extends AbstractMethodScanner<T, DataSkin
 
         ActionTypeAnalysis(Method method, TypeToken<R> resultType) {
             super(method, resultType);
+            this.checkNoPage(method);
+        }
+
+        ActionTypeAnalysis(Method method, RestoredMethod restored) {
+            super(method, restored);
+            this.checkNoPage(method);
+        }
+
+        private void checkNoPage(Method method) {
+            if (this.hasPage) {
+                throw new IllegalArgumentException(String.format("%s: actions may not have a %s parameter",
+                  ActionMethodScanner.this.getErrorPrefix(method), PageRequest.class.getSimpleName()));
+            }
         }
     }
 }
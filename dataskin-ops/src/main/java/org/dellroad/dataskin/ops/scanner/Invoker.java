@@ -0,0 +1,29 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops.scanner;
+
+/**
+ * Invokes a compiled operation method.
+ *
+ * <p>
+ * Parameter slots not used by the method are ignored.
+ *
+ * @see AbstractMethodScanner.OperationTypeAnalysis#compile
+ */
+interface Invoker {
+
+    /**
+     * Invoke the method.
+     *
+     * @param target target instance, or null for static methods
+     * @param context method context object
+     * @param progress progress consumer, or {@link org.dellroad.dataskin.ops.ProgressReporter} if the method takes one
+     * @param config operation configuration
+     * @param page page request
+     * @return method return value
+     * @throws Throwable if the method throws
+     */
+    Object invoke(Object target, Object context, Object progress, Object config, Object page) throws Throwable;
+}
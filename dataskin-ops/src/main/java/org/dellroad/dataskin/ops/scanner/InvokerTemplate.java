@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops.scanner;
+
+import java.lang.constant.ConstantDescs;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+
+/**
+ * Bytecode template for compiled {@link Invoker}s.
+ *
+ * <p>
+ * This class is never loaded as such. Instead, its bytecode is used to define a separate hidden class for each
+ * compiled method, with that method's {@link MethodHandle} as the hidden class' class data. Because {@link #HANDLE}
+ * is then a {@code static final} constant, the JIT can inline the target method into {@link #invoke invoke()}.
+ */
+final class InvokerTemplate implements Invoker {
+
+    private static final MethodHandle HANDLE;
+    static {
+        try {
+            HANDLE = MethodHandles.classData(MethodHandles.lookup(), ConstantDescs.DEFAULT_NAME, MethodHandle.class);
+        } catch (IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Override
+    public Object invoke(Object target, Object context, Object progress, Object config, Object page) throws Throwable {
+        return (Object)HANDLE.invokeExact(target, context, progress, config, page);
+    }
+}
@@ -5,17 +5,25 @@
 package org.dellroad.dataskin.ops.scanner;
 
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.cache.CacheStats;
 import com.google.common.reflect.TypeToken;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
+import org.dellroad.dataskin.ops.InstanceOperation;
 import org.dellroad.dataskin.ops.Operation;
+import org.dellroad.dataskin.ops.StaticOperation;
 import org.dellroad.dataskin.ops.StaticQuery;
 import org.dellroad.dataskin.ops.annotation.DataSkinAction;
 import org.dellroad.dataskin.ops.annotation.DataSkinQuery;
@@ -23,27 +31,59 @@ import org.dellroad.dataskin.ops.annotation.DataSkinQuery;
 /**
  * Caches the {@link Operation}s gleaned from scanning Java types for
  * {@link DataSkinAction @DataSkinAction} and {@link DataSkinQuery @DataSkinQuery} annotations.
+ *
+ * <p>
+ * If a type has a build-time generated {@link OperationRegistry} compatible with this instance's context object,
+ * the operations are taken from the registry; otherwise, the type is scanned via reflection.
+ *
+ * <p>
+ * Scanning results are independent of the context object and are shared by all instances (see {@link ScannedType}),
+ * so creating a new {@link OperationCache} for a different context object is cheap: only the binding of the
+ * scanned methods to the context object is performed per instance.
  */
 public class OperationCache {
 
+    // Instances shared by operations bound to the same context; see shared()
+    private static final Object NULL_CONTEXT = new Object();
+    private static final Cache<Object, OperationCache> SHARED = CacheBuilder.newBuilder()
+      .weakKeys()
+      .weakValues()
+      .build();
+
+    // Generated registries, if any, found via the scanned type's class loader; most types don't have one
+    private static final ClassValue<Optional<OperationRegistry>> REGISTRIES = new ClassValue<>() {
+        @Override
+        protected Optional<OperationRegistry> computeValue(Class<?> type) {
+            return Optional.ofNullable(OperationCache.loadRegistry(type));
+        }
+    };
+
     private final Object context;
-    private final LoadingCache<Class<?>, List<Operation<?, ?>>> cache;
+    private final OperationCacheStorage storage;
 
     /**
      * Constructor.
      *
+     * <p>
+     * Uses {@link OperationCacheStorage#soft soft} storage.
+     *
      * @param context operation method context object (may be null if not needed)
      */
     public OperationCache(Object context) {
+        this(context, OperationCacheStorage.soft());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param context operation method context object (may be null if not needed)
+     * @param storage storage strategy; must not be shared with any other instance
+     * @throws IllegalArgumentException if {@code storage} is null
+     */
+    public OperationCache(Object context, OperationCacheStorage storage) {
+        Preconditions.checkArgument(storage != null, "null storage");
         this.context = context;
-        this.cache = CacheBuilder.newBuilder()
-          .softValues()
-          .build(new CacheLoader<>() {
-            @Override
-            public List<Operation<?, ?>> load(Class<?> type) {
-                return OperationCache.this.findOperations(type);
-            }
-          });
+        this.storage = storage;
     }
 
     /**
@@ -55,6 +95,85 @@ public class OperationCache {
         return this.context;
     }
 
+    /**
+     * Scan the given types in parallel using the {@link ForkJoinPool#commonPool common pool}.
+     *
+     * <p>
+     * Equivalent to: {@link #warmUp(Collection, Executor, Consumer) warmUp}{@code (types, ForkJoinPool.commonPool(), null)}.
+     *
+     * @param types Java types to scan
+     * @return future that completes when all types have been scanned
+     * @throws IllegalArgumentException if {@code types} or any type therein is null
+     */
+    public CompletableFuture<Void> warmUp(Collection<? extends Class<?>> types) {
+        return this.warmUp(types, ForkJoinPool.commonPool(), null);
+    }
+
+    /**
+     * Scan the given types in parallel, so that subsequent lookups find them already cached.
+     *
+     * <p>
+     * Each type is scanned in a separate task submitted to {@code executor}. The returned future completes when
+     * every task has completed, or exceptionally if any scan failed. The progress consumer, if any, is notified
+     * from the executor's threads as each type finishes.
+     *
+     * <p>
+     * With {@link OperationCacheStorage#soft soft} or bounded storage, warmed-up entries may still be evicted later.
+     *
+     * @param types Java types to scan
+     * @param executor executes scan tasks
+     * @param progressConsumer receives progress updates, or null for none
+     * @return future that completes when all types have been scanned
+     * @throws IllegalArgumentException if {@code types}, {@code executor}, or any type is null
+     */
+    public CompletableFuture<Void> warmUp(Collection<? extends Class<?>> types, Executor executor,
+      Consumer<? super Operation.Progress> progressConsumer) {
+        Preconditions.checkArgument(types != null, "null types");
+        Preconditions.checkArgument(executor != null, "null executor");
+        final ArrayList<Class<?>> typeList = new ArrayList<>(types);
+        typeList.forEach(type -> Preconditions.checkArgument(type != null, "null type"));
+        final int total = typeList.size();
+        final AtomicInteger completed = new AtomicInteger();
+        final CompletableFuture<?>[] futures = new CompletableFuture<?>[total];
+        for (int i = 0; i < total; i++) {
+            final Class<?> type = typeList.get(i);
+            futures[i] = CompletableFuture.runAsync(() -> {
+                this.getIndex(type);
+                if (progressConsumer != null) {
+                    final double ratio = (double)completed.incrementAndGet() / total;
+                    progressConsumer.accept(new Operation.Progress(ratio, "Scanned " + type.getName()));
+                }
+            }, executor);
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    /**
+     * Get the hit, miss, load time, and eviction statistics for this instance.
+     *
+     * @return cache statistics
+     */
+    public CacheStats getStats() {
+        return this.storage.getStats();
+    }
+
+    /**
+     * Get the {@link OperationIndex} for the given type.
+     *
+     * <p>
+     * The index is computed once per type and then cached.
+     *
+     * @param type Java type
+     * @param <T> Java type
+     * @return operation index for {@code type}
+     * @throws IllegalArgumentException if {@code type} is null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> OperationIndex<T> getIndex(Class<T> type) {
+        Preconditions.checkArgument(type != null, "null type");
+        return (OperationIndex<T>)this.storage.get(type, t -> new OperationIndex<>(t, this.findOperations(t)));
+    }
+
     /**
      * Get the operations associated with the given type.
      *
@@ -63,34 +182,91 @@ public class OperationCache {
      * @throws IllegalArgumentException if {@code type} is null
      */
     public Stream<Operation<?, ?>> getOperations(Class<?> type) {
-        Preconditions.checkArgument(type != null, "null type");
-        return this.cache.getUnchecked(type).stream();
+        return this.getIndex(type).getOperations().stream();
+    }
+
+    /**
+     * Get the static operations associated with the given type.
+     *
+     * @param type Java type
+     * @return associated static operations
+     * @throws IllegalArgumentException if {@code type} is null
+     */
+    public Stream<StaticOperation<?, ?>> getStaticOperations(Class<?> type) {
+        return this.getIndex(type).getStaticOperations().stream();
+    }
+
+    /**
+     * Get the instance operations associated with the given type.
+     *
+     * @param type Java type
+     * @param <T> target type
+     * @return associated instance operations
+     * @throws IllegalArgumentException if {@code type} is null
+     */
+    public <T> Stream<InstanceOperation<? super T, ?, ?>> getInstanceOperations(Class<T> type) {
+        return this.getIndex(type).getInstanceOperations().stream();
     }
 
     /**
      * Find a default query, if any exists.
      *
      * @param type Java type
-     * @return default query, or null if none exists
+     * @return default query, if any
      * @throws IllegalArgumentException if {@code type} is null
+     * @see OperationIndex#getDefaultQuery
      */
     public Optional<StaticQuery<?, ?>> getDefaultQuery(Class<?> type) {
-        return this.getOperations(type)
-          .filter(StaticQuery.class::isInstance)
-          .<StaticQuery<?, ?>>map(op -> (StaticQuery<?, ?>)op)
-          .filter(query -> !query.requiresConfiguration())
-          .filter(query -> type == query.getResultType().getRawType())
-          .findFirst();
+        return this.getIndex(type).getDefaultQuery();
+    }
+
+    /**
+     * Get an instance for the given context object that is shared with other callers.
+     *
+     * <p>
+     * Entries are keyed by context object identity, and are discarded once the instance is no longer referenced.
+     *
+     * @param context operation method context object (may be null if not needed)
+     * @return shared instance for {@code context}
+     */
+    static OperationCache shared(Object context) {
+        return OperationCache.SHARED.asMap().computeIfAbsent(context != null ? context : OperationCache.NULL_CONTEXT,
+          key -> new OperationCache(context));
     }
 
-    @SuppressWarnings("unchecked")
     private List<Operation<?, ?>> findOperations(Class<?> type) {
         Preconditions.checkArgument(type != null, "null type");
+        final OperationRegistry registry = this.findRegistry(type);
+        if (registry != null)
+            return registry.getOperations(this);
         final TypeToken<?> contextType = this.context != null ? TypeToken.of(this.context.getClass()) : null;
-        return Stream.<AbstractMethodScanner<?, ?, ?>.OperationInfo<?, ?>>concat(
-            new QueryMethodScanner<>(type, contextType).queryInfos(),
-            new ActionMethodScanner<>(type, contextType).actionInfos())
-          .map(info -> ((AbstractMethodScanner<?, ?, Object>.OperationInfo<?, ?>)info).getOperation(this.context))
-          .collect(Collectors.toList());
+        return ScannedType.of(type, contextType).bind(this);
+    }
+
+    private OperationRegistry findRegistry(Class<?> type) {
+        final OperationRegistry registry = REGISTRIES.get(type).orElse(null);
+        if (registry == null)
+            return null;
+        final Class<?> contextType = this.context != null ? this.context.getClass() : null;
+        return registry.getContextType() == contextType ? registry : null;
+    }
+
+    // Find and instantiate the registry for the given type, if any; the result is cached in REGISTRIES
+    private static OperationRegistry loadRegistry(Class<?> type) {
+        final Class<?> registryClass;
+        try {
+            registryClass = Class.forName(OperationRegistry.getClassName(type.getName()), true, type.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+        if (!OperationRegistry.class.isAssignableFrom(registryClass))
+            return null;
+        final OperationRegistry registry;
+        try {
+            registry = (OperationRegistry)registryClass.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("can't instantiate " + registryClass, e);
+        }
+        return registry.getType() == type ? registry : null;
     }
 }
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops.scanner;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Storage strategy for the {@link OperationIndex}es held by an {@link OperationCache}.
+ *
+ * <p>
+ * Available strategies:
+ * <ul>
+ *  <li>{@link #soft}: values are softly referenced and may be reclaimed under memory pressure (the default)</li>
+ *  <li>{@link #strong}: values are strongly referenced, with least-recently-used eviction beyond a maximum size</li>
+ *  <li>{@link #weighted}: like {@link #strong}, but bounded by the total number of operations instead of types</li>
+ *  <li>{@link #unbounded}: values are strongly referenced and never evicted; lookups are lock-free</li>
+ * </ul>
+ *
+ * <p>
+ * In all cases, the underlying scan results are shared JVM-wide (attached via {@link ClassValue}), so a cache miss
+ * only needs to bind those results to the owning {@link OperationCache}'s context object.
+ *
+ * <p>
+ * Each storage instance must be used by at most one {@link OperationCache}.
+ *
+ * @see OperationCache#OperationCache(Object, OperationCacheStorage)
+ */
+public abstract class OperationCacheStorage {
+
+    OperationCacheStorage() {
+    }
+
+// Factory Methods
+
+    /**
+     * Create a storage that holds values via soft references.
+     *
+     * @return new storage
+     */
+    public static OperationCacheStorage soft() {
+        return new GuavaStorage(CacheBuilder.newBuilder().softValues());
+    }
+
+    /**
+     * Create a storage that holds values via strong references, up to the given number of types.
+     *
+     * @param maximumSize maximum number of types
+     * @return new storage
+     * @throws IllegalArgumentException if {@code maximumSize} is negative
+     */
+    public static OperationCacheStorage strong(long maximumSize) {
+        Preconditions.checkArgument(maximumSize >= 0, "negative maximumSize");
+        return new GuavaStorage(CacheBuilder.newBuilder().maximumSize(maximumSize));
+    }
+
+    /**
+     * Create a storage that holds values via strong references, up to the given total number of operations.
+     *
+     * <p>
+     * Each type counts as one plus its number of operations.
+     *
+     * @param maximumWeight maximum total number of operations
+     * @return new storage
+     * @throws IllegalArgumentException if {@code maximumWeight} is negative
+     */
+    public static OperationCacheStorage weighted(long maximumWeight) {
+        Preconditions.checkArgument(maximumWeight >= 0, "negative maximumWeight");
+        return new GuavaStorage(CacheBuilder.newBuilder()
+          .maximumWeight(maximumWeight)
+          .weigher((Class<?> type, OperationIndex<?> index) -> 1 + index.getOperations().size()));
+    }
+
+    /**
+     * Create a storage optimized for lookup speed that never evicts.
+     *
+     * <p>
+     * Values are held in a lock-free map owned by the storage, separately from the shared scan results attached
+     * to each class via {@link ClassValue}. Values therefore remain until the owning {@link OperationCache} is itself
+     * discarded, and the storage's {@linkplain #getStats statistics} always report zero evictions.
+     *
+     * <p>
+     * <b>Warning:</b> this storage strongly references every type it has seen, and so pins those types' class loaders
+     * for as long as the owning {@link OperationCache} is reachable. It should not be used with types from redeployable
+     * modules (web applications, plugins, etc.) whose class loaders are expected to be unloaded; use {@link #soft}
+     * for those instead.
+     *
+     * <p>
+     * A storage whose values are attached to each type via {@link ClassValue}, and so disappear when the type is
+     * unloaded, is not provided: values reference the owning cache, and therefore the {@link ClassValue} itself,
+     * which would prevent the entries from ever being cleared.
+     *
+     * @return new storage
+     */
+    public static OperationCacheStorage unbounded() {
+        return new MapStorage();
+    }
+
+// Storage API
+
+    /**
+     * Get the value for the given type, loading it if necessary.
+     *
+     * @param type Java type
+     * @param loader loads the value on a cache miss
+     * @return value for {@code type}
+     */
+    abstract OperationIndex<?> get(Class<?> type, Function<? super Class<?>, ? extends OperationIndex<?>> loader);
+
+    /**
+     * Get the statistics for this storage.
+     *
+     * @return cache statistics
+     */
+    public abstract CacheStats getStats();
+
+// GuavaStorage
+
+    private static final class GuavaStorage extends OperationCacheStorage {
+
+        private final Cache<Class<?>, OperationIndex<?>> cache;
+
+        @SuppressWarnings("unchecked")
+        GuavaStorage(CacheBuilder<?, ?> builder) {
+            this.cache = ((CacheBuilder<Class<?>, OperationIndex<?>>)builder).recordStats().build();
+        }
+
+        @Override
+        OperationIndex<?> get(Class<?> type, Function<? super Class<?>, ? extends OperationIndex<?>> loader) {
+            try {
+                return this.cache.get(type, () -> loader.apply(type));
+            } catch (ExecutionException e) {
+                throw new UncheckedExecutionException(e.getCause());
+            }
+        }
+
+        @Override
+        public CacheStats getStats() {
+            return this.cache.stats();
+        }
+    }
+
+// MapStorage
+
+    // Values can't be stored in a ClassValue here: they reference the owning cache, so a per-storage ClassValue
+    // entry would never be cleared from the class, and would keep the class's loader and the cache reachable forever
+    private static final class MapStorage extends OperationCacheStorage {
+
+        private final ConcurrentHashMap<Class<?>, OperationIndex<?>> indexes = new ConcurrentHashMap<>();
+        private final LongAdder hitCount = new LongAdder();
+        private final LongAdder missCount = new LongAdder();
+        private final LongAdder loadSuccessCount = new LongAdder();
+        private final LongAdder loadExceptionCount = new LongAdder();
+        private final LongAdder totalLoadTime = new LongAdder();
+
+        @Override
+        OperationIndex<?> get(Class<?> type, Function<? super Class<?>, ? extends OperationIndex<?>> loader) {
+            final OperationIndex<?> index = this.indexes.get(type);
+            if (index != null) {
+                this.hitCount.increment();
+                return index;
+            }
+
+            // Load outside of any lock; if another thread beats us, use its value
+            this.missCount.increment();
+            final long startTime = System.nanoTime();
+            final OperationIndex<?> newIndex;
+            try {
+                newIndex = loader.apply(type);
+            } catch (RuntimeException | Error e) {
+                this.loadExceptionCount.increment();
+                this.totalLoadTime.add(System.nanoTime() - startTime);
+                throw e;
+            }
+            this.loadSuccessCount.increment();
+            this.totalLoadTime.add(System.nanoTime() - startTime);
+            final OperationIndex<?> previous = this.indexes.putIfAbsent(type, newIndex);
+            return previous != null ? previous : newIndex;
+        }
+
+        @Override
+        public CacheStats getStats() {
+            return new CacheStats(this.hitCount.sum(), this.missCount.sum(), this.loadSuccessCount.sum(),
+              this.loadExceptionCount.sum(), this.totalLoadTime.sum(), 0);        // this storage never evicts
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops.scanner;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.dellroad.dataskin.ops.InstanceAction;
+import org.dellroad.dataskin.ops.InstanceOperation;
+import org.dellroad.dataskin.ops.InstanceQuery;
+import org.dellroad.dataskin.ops.Operation;
+import org.dellroad.dataskin.ops.StaticAction;
+import org.dellroad.dataskin.ops.StaticOperation;
+import org.dellroad.dataskin.ops.StaticQuery;
+
+/**
+ * An immutable index of the {@link Operation}s associated with a Java type, organized by kind.
+ *
+ * <p>
+ * Instances are built once per type by {@link OperationCache}. All accessors return precomputed immutable lists
+ * (or {@link Optional}s), so they are constant time and don't allocate.
+ *
+ * @param <T> associated Java type
+ * @see OperationCache#getIndex OperationCache.getIndex()
+ */
+public final class OperationIndex<T> {
+
+    private final Class<T> type;
+    private final ImmutableList<Operation<?, ?>> operations;
+    private final ImmutableList<StaticOperation<?, ?>> staticOperations;
+    private final ImmutableList<StaticQuery<?, ?>> staticQueries;
+    private final ImmutableList<StaticAction<?, ?>> staticActions;
+    private final ImmutableList<InstanceOperation<? super T, ?, ?>> instanceOperations;
+    private final ImmutableList<InstanceQuery<? super T, ?, ?>> instanceQueries;
+    private final ImmutableList<InstanceAction<? super T, ?, ?>> instanceActions;
+    private final Optional<StaticQuery<?, ?>> defaultQuery;
+
+    /**
+     * Constructor.
+     *
+     * @param type associated Java type
+     * @param operations operations associated with {@code type}
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    @SuppressWarnings("unchecked")
+    public OperationIndex(Class<T> type, List<? extends Operation<?, ?>> operations) {
+        Preconditions.checkArgument(type != null, "null type");
+        Preconditions.checkArgument(operations != null, "null operations");
+        this.type = type;
+        this.operations = ImmutableList.copyOf(operations);
+
+        // Sort operations by kind
+        final ImmutableList.Builder<StaticOperation<?, ?>> staticOperationsBuilder = ImmutableList.builder();
+        final ImmutableList.Builder<StaticQuery<?, ?>> staticQueriesBuilder = ImmutableList.builder();
+        final ImmutableList.Builder<StaticAction<?, ?>> staticActionsBuilder = ImmutableList.builder();
+        final ImmutableList.Builder<InstanceOperation<? super T, ?, ?>> instanceOperationsBuilder = ImmutableList.builder();
+        final ImmutableList.Builder<InstanceQuery<? super T, ?, ?>> instanceQueriesBuilder = ImmutableList.builder();
+        final ImmutableList.Builder<InstanceAction<? super T, ?, ?>> instanceActionsBuilder = ImmutableList.builder();
+        StaticQuery<?, ?> firstDefaultQuery = null;
+        for (Operation<?, ?> operation : this.operations) {
+            if (operation instanceof StaticOperation)
+                staticOperationsBuilder.add((StaticOperation<?, ?>)operation);
+            if (operation instanceof StaticQuery) {
+                final StaticQuery<?, ?> query = (StaticQuery<?, ?>)operation;
+                staticQueriesBuilder.add(query);
+                if (firstDefaultQuery == null
+                  && !query.requiresConfiguration()
+                  && query.getResultItemType().getRawType() == type)
+                    firstDefaultQuery = query;
+            }
+            if (operation instanceof StaticAction)
+                staticActionsBuilder.add((StaticAction<?, ?>)operation);
+            if (operation instanceof InstanceOperation)
+                instanceOperationsBuilder.add((InstanceOperation<? super T, ?, ?>)operation);
+            if (operation instanceof InstanceQuery)
+                instanceQueriesBuilder.add((InstanceQuery<? super T, ?, ?>)operation);
+            if (operation instanceof InstanceAction)
+                instanceActionsBuilder.add((InstanceAction<? super T, ?, ?>)operation);
+        }
+        this.staticOperations = staticOperationsBuilder.build();
+        this.staticQueries = staticQueriesBuilder.build();
+        this.staticActions = staticActionsBuilder.build();
+        this.instanceOperations = instanceOperationsBuilder.build();
+        this.instanceQueries = instanceQueriesBuilder.build();
+        this.instanceActions = instanceActionsBuilder.build();
+        this.defaultQuery = Optional.ofNullable(firstDefaultQuery);
+    }
+
+    /**
+     * Get the associated Java type.
+     *
+     * @return associated type
+     */
+    public Class<T> getType() {
+        return this.type;
+    }
+
+    /**
+     * Get all operations.
+     *
+     * @return all operations
+     */
+    public List<Operation<?, ?>> getOperations() {
+        return this.operations;
+    }
+
+    /**
+     * Get all static operations.
+     *
+     * @return static operations
+     */
+    public List<StaticOperation<?, ?>> getStaticOperations() {
+        return this.staticOperations;
+    }
+
+    /**
+     * Get all static queries.
+     *
+     * @return static queries
+     */
+    public List<StaticQuery<?, ?>> getStaticQueries() {
+        return this.staticQueries;
+    }
+
+    /**
+     * Get all static actions.
+     *
+     * @return static actions
+     */
+    public List<StaticAction<?, ?>> getStaticActions() {
+        return this.staticActions;
+    }
+
+    /**
+     * Get all instance operations.
+     *
+     * @return instance operations
+     */
+    public List<InstanceOperation<? super T, ?, ?>> getInstanceOperations() {
+        return this.instanceOperations;
+    }
+
+    /**
+     * Get all instance queries.
+     *
+     * @return instance queries
+     */
+    public List<InstanceQuery<? super T, ?, ?>> getInstanceQueries() {
+        return this.instanceQueries;
+    }
+
+    /**
+     * Get all instance actions.
+     *
+     * @return instance actions
+     */
+    public List<InstanceAction<? super T, ?, ?>> getInstanceActions() {
+        return this.instanceActions;
+    }
+
+    /**
+     * Get the default query, if any.
+     *
+     * <p>
+     * The default query is the first static query that requires no configuration and whose result item type
+     * is the associated type.
+     *
+     * @return default query
+     */
+    public Optional<StaticQuery<?, ?>> getDefaultQuery() {
+        return this.defaultQuery;
+    }
+}
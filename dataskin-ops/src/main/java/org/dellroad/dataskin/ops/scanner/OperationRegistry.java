@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops.scanner;
+
+import com.google.common.base.Preconditions;
+
+import java.util.List;
+
+import org.dellroad.dataskin.ops.Operation;
+import org.dellroad.dataskin.ops.annotation.DataSkinAction;
+import org.dellroad.dataskin.ops.annotation.DataSkinQuery;
+
+/**
+ * A build-time generated registry of the {@link Operation}s defined by the
+ * {@link DataSkinAction @DataSkinAction} and {@link DataSkinQuery @DataSkinQuery} methods of some Java type.
+ *
+ * <p>
+ * Implementations are normally generated by the {@code dataskin-processor} annotation processor. They invoke the
+ * annotated methods directly, so no reflection is required either to discover or to perform the operations.
+ *
+ * <p>
+ * A registry class for type {@code T} lives in the same package as {@code T} and has the name returned by
+ * {@link #getClassName getClassName()}. {@link OperationCache} uses a type's registry, if present and compatible,
+ * instead of scanning the type at runtime.
+ */
+public interface OperationRegistry {
+
+    /**
+     * Suffix appended to the type's name to form the registry class name.
+     */
+    String CLASS_NAME_SUFFIX = "_DataSkinRegistry";
+
+    /**
+     * Get the Java type whose operations this registry provides.
+     *
+     * @return associated type, never null
+     */
+    Class<?> getType();
+
+    /**
+     * Get the context parameter type that was assumed when this registry was generated.
+     *
+     * <p>
+     * The context parameter type determines how method parameters are interpreted, so this registry is only
+     * usable with an {@link OperationCache} whose context object has exactly this type.
+     *
+     * @return context parameter type, or null if none was assumed
+     */
+    Class<?> getContextType();
+
+    /**
+     * Create the operations for the associated type, bound to the context of the given {@link OperationCache}.
+     *
+     * <p>
+     * Queries returned by this method must resolve the operations available on their result items
+     * lazily via {@code cache}.
+     *
+     * @param cache owning cache
+     * @return list of operations
+     * @throws IllegalArgumentException if {@code cache} is null
+     */
+    List<Operation<?, ?>> getOperations(OperationCache cache);
+
+    /**
+     * Get the name of the registry class for the type having the given binary name.
+     *
+     * <p>
+     * Nested class names are flattened, e.g., {@code com.example.Outer$Inner} maps to
+     * {@code com.example.Outer_Inner_DataSkinRegistry}.
+     *
+     * @param binaryName binary name of some Java type
+     * @return fully qualified name of the corresponding registry class
+     * @throws IllegalArgumentException if {@code binaryName} is null
+     */
+    static String getClassName(String binaryName) {
+        Preconditions.checkArgument(binaryName != null, "null binaryName");
+        final int dot = binaryName.lastIndexOf('.');
+        return binaryName.substring(0, dot + 1) + binaryName.substring(dot + 1).replace('$', '_') + CLASS_NAME_SUFFIX;
+    }
+}
@@ -4,20 +4,34 @@
 
 package org.dellroad.dataskin.ops.scanner;
 
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.reflect.TypeToken;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.dellroad.dataskin.ops.AbstractInstanceQuery;
-import org.dellroad.dataskin.ops.AbstractQuery;
 import org.dellroad.dataskin.ops.AbstractStaticQuery;
+import org.dellroad.dataskin.ops.FilterableQuery;
 import org.dellroad.dataskin.ops.InstanceOperation;
 import org.dellroad.dataskin.ops.InstanceQuery;
 import org.dellroad.dataskin.ops.Operation;
+import org.dellroad.dataskin.ops.PageRequest;
+import org.dellroad.dataskin.ops.PageableQuery;
+import org.dellroad.dataskin.ops.ProgressReporter;
 import org.dellroad.dataskin.ops.Query;
+import org.dellroad.dataskin.ops.SortKey;
+import org.dellroad.dataskin.ops.SortableQuery;
 import org.dellroad.dataskin.ops.StaticOperation;
 import org.dellroad.dataskin.ops.StaticQuery;
 import org.dellroad.dataskin.ops.annotation.DataSkinQuery;
@@ -30,6 +44,9 @@ import org.dellroad.dataskin.ops.annotation.DataSkinQuery;
  */
 public class QueryMethodScanner<T, X> extends AbstractMethodScanner<T, DataSkinQuery, X> {
 
+    // Passed to count methods that take a progress parameter
+    private static final ProgressReporter IGNORE_PROGRESS = ProgressReporter.of(progress -> { });
+
     public QueryMethodScanner(Class<T> type, TypeToken<X> contextParameterType) {
         super(type, DataSkinQuery.class, contextParameterType);
     }
@@ -47,33 +64,97 @@ public class QueryMethodScanner<T, X> extends AbstractMethodScanner<T, DataSkinQ
 
     @Override
     protected QueryInfo<?, ?> createMethodInfo(Method method, DataSkinQuery annotation) {
-        return this.createQueryInfo(method, annotation, this.newQueryTypeAnalysis(method));
+        return this.createQueryInfo(method, annotation, null, this.newQueryTypeAnalysis(method));
+    }
+
+    @Override
+    String getLabel(DataSkinQuery annotation) {
+        return annotation.label();
+    }
+
+    @Override
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    QueryInfo<?, ?> restoreMethodInfo(Method method, DataSkinQuery annotation, RestoredMethod restored) {
+        Preconditions.checkArgument(restored.itemType != null, "null itemType");
+        return this.createQueryInfo(method, annotation, restored.label, new QueryTypeAnalysis(method, restored));
     }
 
     // This method exists solely to bind the generic types
     private <OT, C, R>  QueryInfo<C, R> createQueryInfo(Method method,
-      DataSkinQuery annotation, QueryTypeAnalysis<C, R> typeAnalysis) {
+      DataSkinQuery annotation, String label, QueryTypeAnalysis<C, R> typeAnalysis) {
         return typeAnalysis.isStatic() ?
-          new StaticQueryInfo<>(method, annotation, typeAnalysis) :
-          new InstanceQueryInfo<>(method, annotation, typeAnalysis);
+          new StaticQueryInfo<>(method, annotation, label, typeAnalysis) :
+          new InstanceQueryInfo<>(method, annotation, label, typeAnalysis);
     }
 
     @SuppressWarnings({ "unchecked", "rawtypes" })
     private QueryTypeAnalysis<?, ?> newQueryTypeAnalysis(Method method) {
-        final TypeToken<?> returnType = TypeToken.of(method.getGenericReturnType());
+        TypeToken<?> returnType = TypeToken.of(method.getGenericReturnType());
+        if (returnType.isSubtypeOf(CompletionStage.class))
+            returnType = returnType.resolveType(CompletionStage.class.getTypeParameters()[0]);
         if (!returnType.isSubtypeOf(Stream.class)) {
-            throw new IllegalArgumentException(String.format(
-              "%s: method is required to return %s", this.getErrorPrefix(method), Stream.class.getName()));
+            throw new IllegalArgumentException(String.format("%s: method is required to return %s or %s<%s>",
+              this.getErrorPrefix(method), Stream.class.getName(), CompletionStage.class.getName(), Stream.class.getName()));
         }
         return (QueryTypeAnalysis<?, ?>)new QueryTypeAnalysis(method, returnType);
     }
 
-// StaticQueryInfo
+// QueryInfo
 
     public abstract class QueryInfo<C, R> extends OperationInfo<C, Stream<R>> {
 
-        QueryInfo(Method method, DataSkinQuery annotation, QueryTypeAnalysis<C, R> typeAnalysis) {
-            super(method, annotation, typeAnalysis);
+        final ImmutableSet<String> sortProperties;
+        final ImmutableSet<String> filterProperties;
+        final Invoker countInvoker;
+
+        QueryInfo(Method method, DataSkinQuery annotation, String label, QueryTypeAnalysis<C, R> typeAnalysis) {
+            super(method, annotation, label, typeAnalysis);
+            this.sortProperties = ImmutableSet.copyOf(annotation.sortable());
+            this.filterProperties = ImmutableSet.copyOf(annotation.filterable());
+            this.checkConfigType(this.sortProperties, SortableQuery.Config.class, "sortable");
+            this.checkConfigType(this.filterProperties, FilterableQuery.Config.class, "filterable");
+            this.countInvoker = !annotation.count().isEmpty() ? this.compileCountMethod(annotation.count()) : null;
+        }
+
+        private Invoker compileCountMethod(String name) {
+            final Method method = this.getMethod();
+            final String errorPrefix = QueryMethodScanner.this.getErrorPrefix(method);
+            if (!this.typeAnalysis.hasPage)
+                throw new IllegalArgumentException(String.format("%s: count method requires a pageable query", errorPrefix));
+            final Class<?>[] paramTypes = method.getParameterTypes();
+            final Method countMethod;
+            try {
+                countMethod = method.getDeclaringClass().getDeclaredMethod(name,
+                  Arrays.copyOf(paramTypes, paramTypes.length - 1));
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException(String.format(
+                  "%s: count method \"%s\" with matching parameters not found", errorPrefix, name));
+            }
+            if (countMethod.getReturnType() != long.class && countMethod.getReturnType() != int.class) {
+                throw new IllegalArgumentException(String.format(
+                  "%s: count method \"%s\" must return long or int", errorPrefix, name));
+            }
+            if (Modifier.isStatic(countMethod.getModifiers()) != this.typeAnalysis.isStatic()) {
+                throw new IllegalArgumentException(String.format(
+                  "%s: count method \"%s\" must be %s", errorPrefix, name, this.typeAnalysis.isStatic() ? "static" : "non-static"));
+            }
+            if (!countMethod.trySetAccessible()) {
+                throw new IllegalArgumentException(String.format(
+                  "%s: count method \"%s\" is not accessible", errorPrefix, name));
+            }
+            final Invoker invoker = this.typeAnalysis.compile(countMethod, false);
+            if (invoker == null) {
+                throw new IllegalArgumentException(String.format(
+                  "%s: count method \"%s\" could not be compiled", errorPrefix, name));
+            }
+            return invoker;
+        }
+
+        private void checkConfigType(Set<String> properties, Class<?> requiredType, String description) {
+            if (!properties.isEmpty() && !this.typeAnalysis.configType.isSubtypeOf(requiredType)) {
+                throw new IllegalArgumentException(String.format("%s: %s query configuration type must implement %s",
+                  QueryMethodScanner.this.getErrorPrefix(this.getMethod()), description, requiredType.getName()));
+            }
         }
 
         @Override
@@ -82,44 +163,160 @@ public class QueryMethodScanner<T, X> extends AbstractMethodScanner<T, DataSkinQ
         }
 
         @Override
-        public abstract Query<C, R> getOperation(X context);
+        public abstract Query<C, R> getOperation(X context, OperationCache cache);
 
-        @SuppressWarnings("unchecked")
-        protected void addStaticOperations(AbstractQuery<C, R> query, X context) {
-            query.setStaticOperations(
-              QueryMethodScanner.this.findOperations(this.typeAnalysis.resultType.getRawType(), StaticOperation.class, context)
-              .map(op -> (StaticOperation<?, ?>)op)
-              .collect(Collectors.toList()));
-            query.setInstanceOperations(
-              QueryMethodScanner.this.findOperations(this.typeAnalysis.resultType.getRawType(), InstanceOperation.class, context)
-              .map(op -> (InstanceOperation<? super R, ?, ?>)op)
-              .collect(Collectors.toList()));
+        /**
+         * Get the static operations available on this query's result items.
+         *
+         * <p>
+         * These are resolved lazily via {@code cache}, so linked types are only scanned when actually needed,
+         * each at most once, and cyclic references between types are harmless.
+         */
+        Stream<? extends StaticOperation<?, ?>> getStaticOperations(OperationCache cache) {
+            return cache.getStaticOperations(this.getTypeAnalysis().itemType.getRawType());
+        }
+
+        /**
+         * Get the instance operations available on this query's result items.
+         *
+         * @see #getStaticOperations getStaticOperations()
+         */
+        Stream<? extends InstanceOperation<? super R, ?, ?>> getInstanceOperations(OperationCache cache) {
+            return cache.getInstanceOperations(this.getTypeAnalysis().itemType.getRawType());
+        }
+
+        /**
+         * Count the query's results using the count method, if any.
+         *
+         * @return number of results, or -1 if unknown
+         * @see Query.SizedHandle#count
+         */
+        long count(Object target, X context, Object config) throws InterruptedException {
+            if (this.countInvoker == null)
+                return -1;
+            final Object count;
+            try {
+                count = this.countInvoker.invoke(target, context, IGNORE_PROGRESS, config, null);
+            } catch (RuntimeException | Error | InterruptedException e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new RuntimeException(t);
+            }
+            return Math.max(((Number)count).longValue(), -1);
+        }
+
+        /**
+         * Apply sort keys to a configuration object.
+         *
+         * @see SortableQuery#applySort
+         */
+        void applySort(C config, List<SortKey> sortKeys) {
+            Preconditions.checkArgument(sortKeys != null, "null sortKeys");
+            for (SortKey sortKey : sortKeys) {
+                Preconditions.checkArgument(this.sortProperties.contains(sortKey.getProperty()),
+                  "unsupported sort property \"%s\"", sortKey.getProperty());
+            }
+            if (!this.sortProperties.isEmpty())
+                ((SortableQuery.Config)config).setSortKeys(ImmutableList.copyOf(sortKeys));
+        }
+
+        /**
+         * Apply filters to a configuration object.
+         *
+         * @see FilterableQuery#applyFilters
+         */
+        void applyFilters(C config, Map<String, String> filters) {
+            Preconditions.checkArgument(filters != null, "null filters");
+            for (String property : filters.keySet()) {
+                Preconditions.checkArgument(this.filterProperties.contains(property),
+                  "unsupported filter property \"%s\"", property);
+            }
+            if (!this.filterProperties.isEmpty())
+                ((FilterableQuery.Config)config).setFilters(ImmutableMap.copyOf(filters));
         }
     }
 
-    public class StaticQueryInfo<C, R> extends QueryInfo<C, R> {
+// StaticQueryInfo
 
-        private AbstractStaticQuery<C, R> query;
+    public class StaticQueryInfo<C, R> extends QueryInfo<C, R> {
 
-        StaticQueryInfo(Method method, DataSkinQuery annotation, QueryTypeAnalysis<C, R> typeAnalysis) {
-            super(method, annotation, typeAnalysis);
+        StaticQueryInfo(Method method, DataSkinQuery annotation, String label, QueryTypeAnalysis<C, R> typeAnalysis) {
+            super(method, annotation, label, typeAnalysis);
         }
 
         @Override
-        public StaticQuery<C, R> getOperation(X context) {
-            if (this.query != null) {
-                this.query = new AbstractStaticQuery<C, R>(
-                  this.typeAnalysis.configType, this.typeAnalysis.resultType, this.getAnnotation().label()) {
-                    @Override
-                    @SuppressWarnings("unchecked")
-                    public Stream<R> perform(C config, Consumer<? super Operation.Progress> progressConsumer) {
-                        return (Stream<R>)StaticQueryInfo.this.invoke(null,
-                          StaticQueryInfo.this.typeAnalysis.buildParamArray(context, progressConsumer, config));
-                    }
-                };
-                this.addStaticOperations(this.query, context);
-            }
-            return this.query;
+        public StaticQuery<C, R> getOperation(X context, OperationCache cache) {
+            Preconditions.checkArgument(cache != null, "null cache");
+            return this.typeAnalysis.hasPage ? new PageableScannedQuery(context, cache) : new ScannedQuery(context, cache);
+        }
+
+        private class ScannedQuery extends AbstractStaticQuery<C, R> implements SortableQuery<C, R>, FilterableQuery<C, R> {
+
+            protected final X context;
+            protected final OperationCache cache;
+
+            ScannedQuery(X context, OperationCache cache) {
+                super(StaticQueryInfo.this.typeAnalysis.configType, StaticQueryInfo.this.typeAnalysis.resultType,
+                  StaticQueryInfo.this.label);
+                this.context = context;
+                this.cache = cache;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Stream<R> perform(C config, Consumer<? super Operation.Progress> progressConsumer)
+              throws InterruptedException {
+                return (Stream<R>)StaticQueryInfo.this.perform(null, this.context, progressConsumer, config, null);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public CompletionStage<Stream<R>> performAsync(C config, Consumer<? super Operation.Progress> progressConsumer) {
+                return (CompletionStage<Stream<R>>)StaticQueryInfo.this.performAsync(
+                  null, this.context, progressConsumer, config, null);
+            }
+
+            @Override
+            public Stream<? extends StaticOperation<?, ?>> getStaticOperations(C config) {
+                return StaticQueryInfo.this.getStaticOperations(this.cache);
+            }
+
+            @Override
+            public Stream<? extends InstanceOperation<? super R, ?, ?>> getInstanceOperations(C config) {
+                return StaticQueryInfo.this.getInstanceOperations(this.cache);
+            }
+
+            @Override
+            public Set<String> getSortProperties() {
+                return StaticQueryInfo.this.sortProperties;
+            }
+
+            @Override
+            public void applySort(C config, List<SortKey> sortKeys) {
+                StaticQueryInfo.this.applySort(config, sortKeys);
+            }
+
+            @Override
+            public Set<String> getFilterProperties() {
+                return StaticQueryInfo.this.filterProperties;
+            }
+
+            @Override
+            public void applyFilters(C config, Map<String, String> filters) {
+                StaticQueryInfo.this.applyFilters(config, filters);
+            }
+        }
+
+        private class PageableScannedQuery extends ScannedQuery implements PageableQuery<C, R> {
+
+            PageableScannedQuery(X context, OperationCache cache) {
+                super(context, cache);
+            }
+
+            @Override
+            public PageableQuery.PageHandle<C, R> getHandle(Object target) {
+                return new ScannedPageHandle<>(StaticQueryInfo.this, null, this.context);
+            }
         }
     }
 
@@ -127,27 +324,127 @@ public class QueryMethodScanner<T, X> extends AbstractMethodScanner<T, DataSkinQ
 
     public class InstanceQueryInfo<C, R> extends QueryInfo<C, R> {
 
-        private AbstractInstanceQuery<T, C, R> query;
+        InstanceQueryInfo(Method method, DataSkinQuery annotation, String label, QueryTypeAnalysis<C, R> typeAnalysis) {
+            super(method, annotation, label, typeAnalysis);
+        }
+
+        @Override
+        public InstanceQuery<T, C, R> getOperation(X context, OperationCache cache) {
+            Preconditions.checkArgument(cache != null, "null cache");
+            return this.typeAnalysis.hasPage ? new PageableScannedQuery(context, cache) : new ScannedQuery(context, cache);
+        }
+
+        private class ScannedQuery extends AbstractInstanceQuery<T, C, R>
+          implements SortableQuery<C, R>, FilterableQuery<C, R> {
+
+            protected final X context;
+            protected final OperationCache cache;
+
+            ScannedQuery(X context, OperationCache cache) {
+                super(TypeToken.of(QueryMethodScanner.this.type), InstanceQueryInfo.this.typeAnalysis.configType,
+                  InstanceQueryInfo.this.typeAnalysis.resultType, InstanceQueryInfo.this.label);
+                this.context = context;
+                this.cache = cache;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Stream<R> perform(T target, C config, Consumer<? super Operation.Progress> progressConsumer)
+              throws InterruptedException {
+                return (Stream<R>)InstanceQueryInfo.this.perform(target, this.context, progressConsumer, config, null);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public CompletionStage<Stream<R>> performAsync(T target, C config,
+              Consumer<? super Operation.Progress> progressConsumer) {
+                return (CompletionStage<Stream<R>>)InstanceQueryInfo.this.performAsync(
+                  target, this.context, progressConsumer, config, null);
+            }
+
+            @Override
+            public Stream<? extends StaticOperation<?, ?>> getStaticOperations(C config) {
+                return InstanceQueryInfo.this.getStaticOperations(this.cache);
+            }
+
+            @Override
+            public Stream<? extends InstanceOperation<? super R, ?, ?>> getInstanceOperations(C config) {
+                return InstanceQueryInfo.this.getInstanceOperations(this.cache);
+            }
+
+            @Override
+            public Set<String> getSortProperties() {
+                return InstanceQueryInfo.this.sortProperties;
+            }
+
+            @Override
+            public void applySort(C config, List<SortKey> sortKeys) {
+                InstanceQueryInfo.this.applySort(config, sortKeys);
+            }
+
+            @Override
+            public Set<String> getFilterProperties() {
+                return InstanceQueryInfo.this.filterProperties;
+            }
+
+            @Override
+            public void applyFilters(C config, Map<String, String> filters) {
+                InstanceQueryInfo.this.applyFilters(config, filters);
+            }
+        }
+
+        private class PageableScannedQuery extends ScannedQuery implements PageableQuery<C, R> {
+
+            PageableScannedQuery(X context, OperationCache cache) {
+                super(context, cache);
+            }
 
-        InstanceQueryInfo(Method method, DataSkinQuery annotation, QueryTypeAnalysis<C, R> typeAnalysis) {
-            super(method, annotation, typeAnalysis);
+            @Override
+            @SuppressWarnings("unchecked")
+            public PageableQuery.PageHandle<C, R> getHandle(Object target) {
+                final Class<T> targetType = QueryMethodScanner.this.type;
+                final T target2;
+                try {
+                    target2 = targetType.cast(target);
+                } catch (ClassCastException e) {
+                    throw new IllegalArgumentException("target is not of type " + targetType.getName());
+                }
+                Preconditions.checkArgument(target2 != null, "null target");
+                return new ScannedPageHandle<>(InstanceQueryInfo.this, target2, this.context);
+            }
+        }
+    }
+
+// ScannedPageHandle
+
+    private final class ScannedPageHandle<C, R> implements PageableQuery.PageHandle<C, R> {
+
+        private final QueryInfo<C, R> info;
+        private final T target;
+        private final X context;
+
+        ScannedPageHandle(QueryInfo<C, R> info, T target, X context) {
+            this.info = info;
+            this.target = target;
+            this.context = context;
         }
 
         @Override
-        public InstanceQuery<T, C, R> getOperation(X context) {
-            if (this.query != null) {
-                this.query = new AbstractInstanceQuery<T, C, R>(TypeToken.of(QueryMethodScanner.this.type),
-                  this.typeAnalysis.configType, this.typeAnalysis.resultType, this.getAnnotation().label()) {
-                    @Override
-                    @SuppressWarnings("unchecked")
-                    public Stream<R> perform(T target, C config, Consumer<? super Operation.Progress> progressConsumer) {
-                        return (Stream<R>)InstanceQueryInfo.this.invoke(target,
-                          InstanceQueryInfo.this.typeAnalysis.buildParamArray(context, progressConsumer, config));
-                    }
-                };
-                this.addStaticOperations(this.query, context);
-            }
-            return this.query;
+        @SuppressWarnings("unchecked")
+        public Stream<R> fetch(C config, PageRequest page, Consumer<? super Operation.Progress> progressConsumer)
+          throws InterruptedException {
+            Preconditions.checkArgument(page != null, "null page");
+            return (Stream<R>)this.info.perform(this.target, this.context, progressConsumer, config, page);
+        }
+
+        @Override
+        public long count(C config) throws InterruptedException {
+            return this.info.count(this.target, this.context, config);
+        }
+
+        @Override
+        public boolean supportsCount() {
+            return this.info.countInvoker != null;
         }
     }
 
@@ -155,8 +452,18 @@ public class QueryMethodScanner<T, X> extends AbstractMethodScanner<T, DataSkinQ
 
     class QueryTypeAnalysis<C, R> extends OperationTypeAnalysis<C, Stream<R>> {
 
+        protected final TypeToken<R> itemType;
+
+        @SuppressWarnings("unchecked")
         QueryTypeAnalysis(Method method, TypeToken<Stream<R>> resultType) {
             super(method, resultType);
+            this.itemType = (TypeToken<R>)resultType.resolveType(Stream.class.getTypeParameters()[0]);
+        }
+
+        @SuppressWarnings("unchecked")
+        QueryTypeAnalysis(Method method, RestoredMethod restored) {
+            super(method, restored);
+            this.itemType = (TypeToken<R>)restored.itemType;
         }
     }
 }
@@ -0,0 +1,539 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops.scanner;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.reflect.TypeToken;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.dellroad.dataskin.ops.annotation.DataSkinAction;
+import org.dellroad.dataskin.ops.annotation.DataSkinQuery;
+
+/**
+ * A persistent index of previous type scan results, used to avoid rescanning unchanged types after a JVM restart.
+ *
+ * <p>
+ * For each scanned type and context parameter type, the index records the annotated methods found, their parameter
+ * layouts, labels, and fully resolved configuration, result, and query result item types, so restoring an entry
+ * requires no generic type resolution.
+ *
+ * <p>
+ * Each entry is keyed by a hash of stamps identifying the versions of the scanned type, its supertypes, and the context
+ * parameter type and its supertypes, so entries for classes that have since changed are detected and transparently
+ * replaced by a fresh scan. For a class loaded from a JAR file, the stamp is the file's size and modification time,
+ * computed once per JAR file; for a class loaded from a directory, it's the class file's size and modification time.
+ * Otherwise, the class file's content is hashed. Stamps are computed at most once per class.
+ * A missing or corrupt index file is treated as empty.
+ *
+ * <p>
+ * The index file is read via a memory mapping when {@linkplain #load loaded}, and written only when
+ * {@linkplain #save saved}. The {@linkplain #getDefault default index}, if any, is used by all {@link OperationCache}s.
+ * It is configured by setting the {@value #INDEX_FILE_PROPERTY} system property to the index file location, in which
+ * case the index is automatically saved on JVM shutdown.
+ */
+public final class ScanIndex {
+
+    /**
+     * System property specifying the location of the default index file.
+     */
+    public static final String INDEX_FILE_PROPERTY = "org.dellroad.dataskin.ops.scanner.indexFile";
+
+    private static final int MAGIC = 0x44534b49;                            // "DSKI"
+    private static final int VERSION = 4;
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final byte[] RUNTIME_VERSION = Runtime.version().toString().getBytes(StandardCharsets.UTF_8);
+    private static final String NO_STAMP = "";
+
+    // Per-class version stamps, or empty if unavailable
+    private static final ClassValue<String> STAMPS = new ClassValue<>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            return ScanIndex.computeStamp(type);
+        }
+    };
+
+    // Per-JAR file version stamps
+    private static final ConcurrentHashMap<Path, String> JAR_STAMPS = new ConcurrentHashMap<>();
+
+    private static volatile ScanIndex defaultIndex;
+    private static volatile boolean defaultIndexInitialized;
+
+    private final Path file;
+    private final ConcurrentHashMap<String, Entry> entries;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    private ScanIndex(Path file, Map<String, Entry> entries) {
+        this.file = file;
+        this.entries = new ConcurrentHashMap<>(entries);
+    }
+
+// Default Index
+
+    /**
+     * Get the default index.
+     *
+     * <p>
+     * On first invocation, if the {@value #INDEX_FILE_PROPERTY} system property is set, the index is loaded from the
+     * file it specifies and a shutdown hook is registered to save it. Subsequent invocations don't lock.
+     *
+     * @return default index, or null if none is configured
+     */
+    public static ScanIndex getDefault() {
+        if (ScanIndex.defaultIndexInitialized)
+            return ScanIndex.defaultIndex;
+        synchronized (ScanIndex.class) {
+            if (!ScanIndex.defaultIndexInitialized) {
+                final String path = System.getProperty(INDEX_FILE_PROPERTY);
+                if (path != null && !path.isEmpty()) {
+                    final ScanIndex index = ScanIndex.load(Paths.get(path));
+                    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                        try {
+                            index.save();
+                        } catch (IOException e) {
+                            // ignore - the index will be rebuilt next time
+                        }
+                    }, ScanIndex.class.getSimpleName() + " saver"));
+                    ScanIndex.defaultIndex = index;
+                }
+                ScanIndex.defaultIndexInitialized = true;
+            }
+            return ScanIndex.defaultIndex;
+        }
+    }
+
+    /**
+     * Configure the default index.
+     *
+     * <p>
+     * This overrides the {@value #INDEX_FILE_PROPERTY} system property. The caller is responsible for
+     * {@linkplain #save saving} the index.
+     *
+     * @param index default index, or null for none
+     */
+    public static synchronized void setDefault(ScanIndex index) {
+        ScanIndex.defaultIndex = index;
+        ScanIndex.defaultIndexInitialized = true;
+    }
+
+// Load & Save
+
+    /**
+     * Load an index from the given file.
+     *
+     * <p>
+     * If the file does not exist, cannot be read, or is corrupt, an empty index is returned.
+     *
+     * @param file index file
+     * @return index backed by {@code file}
+     * @throws IllegalArgumentException if {@code file} is null
+     */
+    public static ScanIndex load(Path file) {
+        Preconditions.checkArgument(file != null, "null file");
+        Map<String, Entry> entries;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            entries = ScanIndex.read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            entries = null;
+        }
+        final ScanIndex index = new ScanIndex(file, entries != null ? entries : Map.of());
+        if (entries == null)
+            index.dirty.set(true);
+        return index;
+    }
+
+    /**
+     * Get the file backing this index.
+     *
+     * @return index file
+     */
+    public Path getFile() {
+        return this.file;
+    }
+
+    /**
+     * Write this index to its file, if there have been any changes since it was loaded or last saved.
+     *
+     * <p>
+     * The file is replaced atomically if the filesystem supports it.
+     *
+     * @return true if the file was written, false if there were no changes
+     * @throws IOException if the index file has no parent directory or file name
+     * @throws IOException if an I/O error occurs
+     */
+    public boolean save() throws IOException {
+        final Path dir = this.file.toAbsolutePath().getParent();
+        final Path name = this.file.getFileName();
+        if (dir == null || name == null)
+            throw new IOException(String.format("invalid index file \"%s\"", this.file));
+        if (!this.dirty.getAndSet(false))
+            return false;
+        final Path temp = Files.createTempFile(dir, name.toString(), ".tmp");
+        boolean success = false;
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                this.write(output);
+            }
+            try {
+                Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            success = true;
+        } finally {
+            if (!success) {
+                this.dirty.set(true);
+                Files.deleteIfExists(temp);
+            }
+        }
+        return true;
+    }
+
+// Package Methods
+
+    /**
+     * Recreate the scan results for the given type from this index, if possible.
+     *
+     * @param type scanned type
+     * @param contextType method context parameter type, or null for none
+     * @return recreated method info, or null if there is no valid entry
+     */
+    @SuppressWarnings("unchecked")
+    List<AbstractMethodScanner<?, ?, Object>.OperationInfo<?, ?>> restore(Class<?> type, TypeToken<?> contextType) {
+        final Entry entry = this.entries.get(ScanIndex.key(type, contextType));
+        if (entry == null || !Arrays.equals(entry.hash, ScanIndex.hash(type, contextType)))
+            return null;
+        final QueryMethodScanner<?, ?> queryScanner = new QueryMethodScanner<>(type, contextType);
+        final ActionMethodScanner<?, ?> actionScanner = new ActionMethodScanner<>(type, contextType);
+        final ImmutableList.Builder<AbstractMethodScanner<?, ?, Object>.OperationInfo<?, ?>> infos = ImmutableList.builder();
+        try {
+            for (MethodRecord record : entry.methods) {
+                final Class<?> declaringClass = ScanIndex.findSupertype(type, record.declaringClass);
+                if (declaringClass == null)
+                    return null;
+                final ClassLoader loader = declaringClass.getClassLoader();
+                final MethodType methodType = MethodType.fromMethodDescriptorString(record.descriptor, loader);
+                final Method method = declaringClass.getDeclaredMethod(record.name, methodType.parameterArray());
+                final AbstractMethodScanner.RestoredMethod restored = new AbstractMethodScanner.RestoredMethod(record.layout,
+                  record.label, ScanIndex.decodeType(record.configType, loader), ScanIndex.decodeType(record.resultType, loader),
+                  !record.itemType.isEmpty() ? ScanIndex.decodeType(record.itemType, loader) : null);
+                final AbstractMethodScanner<?, ?, ?>.OperationInfo<?, ?> info;
+                if (record.query) {
+                    final DataSkinQuery annotation = method.getAnnotation(DataSkinQuery.class);
+                    info = annotation != null ? queryScanner.restoreMethodInfo(method, annotation, restored) : null;
+                } else {
+                    final DataSkinAction annotation = method.getAnnotation(DataSkinAction.class);
+                    info = annotation != null ? actionScanner.restoreMethodInfo(method, annotation, restored) : null;
+                }
+                if (info == null)
+                    return null;
+                infos.add((AbstractMethodScanner<?, ?, Object>.OperationInfo<?, ?>)info);
+            }
+        } catch (ReflectiveOperationException | TypeNotPresentException | IllegalArgumentException e) {
+            return null;
+        }
+        return infos.build();
+    }
+
+    /**
+     * Record the scan results for the given type in this index.
+     *
+     * <p>
+     * Does nothing if the versions of the classes in the type's hierarchy can't be determined, or if any of the
+     * method types can't be recorded (e.g., because they contain type variables).
+     *
+     * @param type scanned type
+     * @param contextType method context parameter type, or null for none
+     * @param infos scanned method info
+     */
+    void record(Class<?> type, TypeToken<?> contextType,
+      List<? extends AbstractMethodScanner<?, ?, ?>.OperationInfo<?, ?>> infos) {
+        final byte[] hash = ScanIndex.hash(type, contextType);
+        if (hash == null)
+            return;
+        final ArrayList<MethodRecord> methods = new ArrayList<>(infos.size());
+        try {
+            for (AbstractMethodScanner<?, ?, ?>.OperationInfo<?, ?> info : infos) {
+                final Method method = info.getMethod();
+                final String descriptor = MethodType.methodType(method.getReturnType(), method.getParameterTypes())
+                  .toMethodDescriptorString();
+                final AbstractMethodScanner<?, ?, ?>.OperationTypeAnalysis<?, ?> typeAnalysis = info.getTypeAnalysis();
+                final String itemType = typeAnalysis instanceof QueryMethodScanner.QueryTypeAnalysis ?
+                  TypeEncoding.encode(((QueryMethodScanner<?, ?>.QueryTypeAnalysis<?, ?>)typeAnalysis).itemType.getType()) : "";
+                methods.add(new MethodRecord(info.getAnnotation() instanceof DataSkinQuery, typeAnalysis.getLayout(),
+                  method.getDeclaringClass().getName(), method.getName(), descriptor, info.getLabel(),
+                  TypeEncoding.encode(typeAnalysis.configType.getType()), TypeEncoding.encode(typeAnalysis.resultType.getType()),
+                  itemType));
+            }
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        this.entries.put(ScanIndex.key(type, contextType), new Entry(hash, methods));
+        this.dirty.set(true);
+    }
+
+// Internal Methods
+
+    private static String key(Class<?> type, TypeToken<?> contextType) {
+        return type.getName() + " " + (contextType != null ? contextType : "-");
+    }
+
+    private static Class<?> findSupertype(Class<?> type, String name) {
+        if (type == null)
+            return null;
+        if (type.getName().equals(name))
+            return type;
+        final Class<?> found = ScanIndex.findSupertype(type.getSuperclass(), name);
+        if (found != null)
+            return found;
+        for (Class<?> iface : type.getInterfaces()) {
+            final Class<?> found2 = ScanIndex.findSupertype(iface, name);
+            if (found2 != null)
+                return found2;
+        }
+        return null;
+    }
+
+    private static TypeToken<?> decodeType(String string, ClassLoader loader) throws ClassNotFoundException {
+        return TypeToken.of(TypeEncoding.decode(string, loader));
+    }
+
+    // Returns null if the version of any non-JDK class is unavailable
+    private static byte[] hash(Class<?> type, TypeToken<?> contextType) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("unexpected exception", e);
+        }
+        digest.update(RUNTIME_VERSION);
+        final HashSet<Class<?>> visited = new HashSet<>();
+        if (!ScanIndex.hashHierarchy(digest, type, visited))
+            return null;
+        if (contextType != null && !ScanIndex.hashHierarchy(digest, contextType.getRawType(), visited))
+            return null;
+        return digest.digest();
+    }
+
+    private static boolean hashHierarchy(MessageDigest digest, Class<?> type, Set<Class<?>> visited) {
+        if (type == null || !visited.add(type))
+            return true;
+        if (type.getClassLoader() != null) {                            // JDK classes are covered by the runtime version
+            final String stamp = STAMPS.get(type);
+            if (stamp.isEmpty())
+                return false;
+            digest.update(type.getName().getBytes(StandardCharsets.UTF_8));
+            digest.update(stamp.getBytes(StandardCharsets.UTF_8));
+        }
+        if (!ScanIndex.hashHierarchy(digest, type.getSuperclass(), visited))
+            return false;
+        for (Class<?> iface : type.getInterfaces()) {
+            if (!ScanIndex.hashHierarchy(digest, iface, visited))
+                return false;
+        }
+        return true;
+    }
+
+    private static String computeStamp(Class<?> type) {
+        final String classFile = type.getName().replace('.', '/') + ".class";
+
+        // Find the class's code source
+        final CodeSource codeSource = type.getProtectionDomain().getCodeSource();
+        final URL location = codeSource != null ? codeSource.getLocation() : null;
+        if (location != null && location.getProtocol().equals("jrt"))       // covered by the runtime version
+            return "jrt";
+        if (location != null && location.getProtocol().equals("file")) {
+            try {
+                final Path path = Paths.get(location.toURI());
+                if (Files.isDirectory(path))
+                    return ScanIndex.fileStamp(path.resolve(classFile));
+                if (Files.isRegularFile(path)) {
+                    String stamp = JAR_STAMPS.get(path);
+                    if (stamp == null) {
+                        stamp = ScanIndex.fileStamp(path);
+                        JAR_STAMPS.putIfAbsent(path, stamp);
+                    }
+                    if (!stamp.isEmpty())
+                        return stamp;
+                }
+            } catch (URISyntaxException | IllegalArgumentException | SecurityException e) {
+                // fall through
+            }
+        }
+
+        // Fall back to hashing the class file
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("unexpected exception", e);
+        }
+        try (InputStream input = type.getResourceAsStream("/" + classFile)) {
+            if (input == null)
+                return NO_STAMP;
+            return Base64.getEncoder().encodeToString(digest.digest(input.readAllBytes()));
+        } catch (IOException e) {
+            return NO_STAMP;
+        }
+    }
+
+    private static String fileStamp(Path path) {
+        try {
+            final BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            return attrs.size() + "@" + attrs.lastModifiedTime().toMillis();
+        } catch (IOException | SecurityException e) {
+            return NO_STAMP;
+        }
+    }
+
+// File Format
+
+    private static Map<String, Entry> read(ByteBuffer buf) {
+        if (buf.getInt() != MAGIC || buf.getInt() != VERSION)
+            return null;
+        final int numEntries = buf.getInt();
+        Preconditions.checkArgument(numEntries >= 0, "invalid entry count");
+        final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>(numEntries);
+        for (int i = 0; i < numEntries; i++) {
+            final String key = ScanIndex.readString(buf);
+            final byte[] hash = ScanIndex.readBytes(buf);
+            final int numMethods = buf.getInt();
+            Preconditions.checkArgument(numMethods >= 0, "invalid method count");
+            final ArrayList<MethodRecord> methods = new ArrayList<>(numMethods);
+            for (int j = 0; j < numMethods; j++) {
+                final boolean query = buf.get() != 0;
+                final int layout = buf.get();
+                final String declaringClass = ScanIndex.readString(buf);
+                final String name = ScanIndex.readString(buf);
+                final String descriptor = ScanIndex.readString(buf);
+                final String label = ScanIndex.readString(buf);
+                final String configType = ScanIndex.readString(buf);
+                final String resultType = ScanIndex.readString(buf);
+                final String itemType = ScanIndex.readString(buf);
+                methods.add(new MethodRecord(query, layout, declaringClass, name, descriptor,
+                  label, configType, resultType, itemType));
+            }
+            entries.put(key, new Entry(hash, methods));
+        }
+        return entries;
+    }
+
+    private void write(DataOutputStream output) throws IOException {
+        final ArrayList<Map.Entry<String, Entry>> list = new ArrayList<>(this.entries.entrySet());
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(list.size());
+        for (Map.Entry<String, Entry> mapEntry : list) {
+            final Entry entry = mapEntry.getValue();
+            ScanIndex.writeString(output, mapEntry.getKey());
+            ScanIndex.writeBytes(output, entry.hash);
+            output.writeInt(entry.methods.size());
+            for (MethodRecord record : entry.methods) {
+                output.writeByte(record.query ? 1 : 0);
+                output.writeByte(record.layout);
+                ScanIndex.writeString(output, record.declaringClass);
+                ScanIndex.writeString(output, record.name);
+                ScanIndex.writeString(output, record.descriptor);
+                ScanIndex.writeString(output, record.label);
+                ScanIndex.writeString(output, record.configType);
+                ScanIndex.writeString(output, record.resultType);
+                ScanIndex.writeString(output, record.itemType);
+            }
+        }
+    }
+
+    private static byte[] readBytes(ByteBuffer buf) {
+        final int length = buf.getInt();
+        Preconditions.checkArgument(length >= 0 && length <= buf.remaining(), "invalid length");
+        final byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return bytes;
+    }
+
+    private static String readString(ByteBuffer buf) {
+        return new String(ScanIndex.readBytes(buf), StandardCharsets.UTF_8);
+    }
+
+    private static void writeBytes(DataOutputStream output, byte[] bytes) throws IOException {
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        ScanIndex.writeBytes(output, string.getBytes(StandardCharsets.UTF_8));
+    }
+
+// Entry
+
+    private static final class Entry {
+
+        final byte[] hash;
+        final List<MethodRecord> methods;
+
+        Entry(byte[] hash, List<MethodRecord> methods) {
+            this.hash = hash;
+            this.methods = methods;
+        }
+    }
+
+// MethodRecord
+
+    private static final class MethodRecord {
+
+        final boolean query;
+        final int layout;
+        final String declaringClass;
+        final String name;
+        final String descriptor;
+        final String label;
+        final String configType;                                // encoded via TypeEncoding
+        final String resultType;                                // encoded via TypeEncoding
+        final String itemType;                                  // encoded via TypeEncoding, or empty for actions
+
+        MethodRecord(boolean query, int layout, String declaringClass, String name, String descriptor,
+          String label, String configType, String resultType, String itemType) {
+            this.query = query;
+            this.layout = layout;
+            this.declaringClass = declaringClass;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.label = label;
+            this.configType = configType;
+            this.resultType = resultType;
+            this.itemType = itemType;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops.scanner;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.reflect.TypeToken;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import org.dellroad.dataskin.ops.Operation;
+import org.dellroad.dataskin.ops.Util;
+import org.dellroad.dataskin.ops.annotation.DataSkinAction;
+import org.dellroad.dataskin.ops.annotation.DataSkinQuery;
+
+/**
+ * The context-independent results of scanning a Java type for {@link DataSkinQuery @DataSkinQuery}
+ * and {@link DataSkinAction @DataSkinAction} methods.
+ *
+ * <p>
+ * Each type is scanned at most once per JVM for any given context parameter type, and the results are shared
+ * by all {@link OperationCache}s. Results are attached via {@link ClassValue} to either the scanned type or the
+ * context parameter type, whichever has a class loader that already keeps the other's loader reachable, so they
+ * never prevent a class loader from being unloaded. If neither class loader is an ancestor of the other, the results
+ * are not shared.
+ *
+ * <p>
+ * If a {@linkplain ScanIndex#getDefault default} {@link ScanIndex} is configured, results for unchanged types are
+ * recreated from the index instead of rescanning, and fresh scan results are recorded in it.
+ *
+ * <p>
+ * Instances are immutable; binding to an {@link OperationCache} via {@link #bind bind()} just wraps the shared method
+ * information in new {@link Operation} instances.
+ */
+final class ScannedType {
+
+    // Keyed by [ scanned type, context parameter type ]
+    private static final ClassValue<ConcurrentHashMap<List<Object>, ScannedType>> SCANS = new ClassValue<>() {
+        @Override
+        protected ConcurrentHashMap<List<Object>, ScannedType> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>(2);
+        }
+    };
+
+    private final Class<?> type;
+    private final List<AbstractMethodScanner<?, ?, Object>.OperationInfo<?, ?>> infos;
+
+    @SuppressWarnings("unchecked")
+    private ScannedType(Class<?> type, TypeToken<?> contextType, ScanIndex index) {
+        this.type = type;
+
+        // Try the persistent index first
+        final List<AbstractMethodScanner<?, ?, Object>.OperationInfo<?, ?>> restored
+          = index != null ? index.restore(type, contextType) : null;
+        if (restored != null) {
+            this.infos = restored;
+            return;
+        }
+
+        // Scan the type
+        this.infos = Stream.<AbstractMethodScanner<?, ?, ?>.OperationInfo<?, ?>>concat(
+            new QueryMethodScanner<>(type, contextType).queryInfos(),
+            new ActionMethodScanner<>(type, contextType).actionInfos())
+          .map(info -> (AbstractMethodScanner<?, ?, Object>.OperationInfo<?, ?>)info)
+          .collect(ImmutableList.toImmutableList());
+        if (index != null)
+            index.record(type, contextType, this.infos);
+    }
+
+    /**
+     * Get the scan results for the given type and context parameter type, scanning the type if necessary.
+     *
+     * @param type Java type to scan
+     * @param contextType method context parameter type, or null for none
+     * @return scan results
+     * @throws IllegalArgumentException if {@code type} is null
+     * @throws IllegalArgumentException if {@code type} has an invalid annotated method
+     */
+    static ScannedType of(Class<?> type, TypeToken<?> contextType) {
+        Preconditions.checkArgument(type != null, "null type");
+
+        // Find a class to attach the results to; the results reference both classes
+        final Class<?> contextClass = contextType != null ? contextType.getRawType() : null;
+        final Class<?> owner;
+        if (contextClass == null || Util.isAncestorLoader(contextClass, type))
+            owner = type;
+        else if (Util.isAncestorLoader(type, contextClass))
+            owner = contextClass;
+        else
+            return new ScannedType(type, contextType, ScanIndex.getDefault());
+
+        // Scan outside of any lock, because scanning may be slow; if another thread beats us, use its results
+        final ConcurrentHashMap<List<Object>, ScannedType> scans = SCANS.get(owner);
+        final List<Object> key = Arrays.asList(type, contextType);
+        final ScannedType scannedType = scans.get(key);
+        if (scannedType != null)
+            return scannedType;
+        final ScannedType newScannedType = new ScannedType(type, contextType, ScanIndex.getDefault());
+        final ScannedType previous = scans.putIfAbsent(key, newScannedType);
+        return previous != null ? previous : newScannedType;
+    }
+
+    /**
+     * Get the scanned type.
+     *
+     * @return scanned type
+     */
+    Class<?> getType() {
+        return this.type;
+    }
+
+    /**
+     * Get the information about each annotated method found.
+     *
+     * @return annotated method info
+     */
+    List<AbstractMethodScanner<?, ?, Object>.OperationInfo<?, ?>> getOperationInfos() {
+        return this.infos;
+    }
+
+    /**
+     * Create the operations defined by the scanned type, bound to the given cache's context object.
+     *
+     * @param cache owning cache
+     * @return bound operations
+     */
+    List<Operation<?, ?>> bind(OperationCache cache) {
+        final Object context = cache.getContext();
+        return this.infos.stream()
+          .<Operation<?, ?>>map(info -> info.getOperation(context, cache))
+          .collect(ImmutableList.toImmutableList());
+    }
+}
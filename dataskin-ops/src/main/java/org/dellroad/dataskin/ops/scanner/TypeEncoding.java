@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops.scanner;
+
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Primitives;
+
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Encodes fully resolved generic {@link Type}s as strings, and decodes them again without any type resolution.
+ *
+ * <p>
+ * Used by {@link ScanIndex} to persist the types found by scanning. Type variables are not supported, except that
+ * a wildcard captured by {@link com.google.common.reflect.TypeToken#resolveType TypeToken.resolveType()} is encoded
+ * as a wildcard having the same upper bounds.
+ *
+ * <p>
+ * Encoding:
+ * <ul>
+ *  <li>Non-array class: {@code L} <i>name</i> {@code ;}</li>
+ *  <li>Array: {@code [} <i>component</i></li>
+ *  <li>Parameterized type: {@code P} (<i>owner</i> | {@code -}) <i>raw-type</i> <i>argument</i>* {@code >}</li>
+ *  <li>Wildcard: {@code +} <i>upper-bound</i> | {@code -} <i>lower-bound</i></li>
+ *  <li>Captured wildcard: {@code C} <i>upper-bound</i>* {@code >}</li>
+ * </ul>
+ */
+final class TypeEncoding {
+
+    private static final String CAPTURE_PREFIX = "capture#";                  // see Guava's TypeResolver
+    private static final HashMap<String, Class<?>> PRIMITIVES = new HashMap<>();
+    static {
+        for (Class<?> type : Primitives.allPrimitiveTypes())
+            PRIMITIVES.put(type.getName(), type);
+    }
+
+    private final String string;
+    private final ClassLoader loader;
+    private int pos;
+
+    private TypeEncoding(String string, ClassLoader loader) {
+        this.string = string;
+        this.loader = loader;
+    }
+
+    /**
+     * Encode the given type.
+     *
+     * @param type type to encode
+     * @return encoded type
+     * @throws IllegalArgumentException if {@code type} is null or contains a (non-capture) type variable
+     */
+    static String encode(Type type) {
+        Preconditions.checkArgument(type != null, "null type");
+        final StringBuilder buf = new StringBuilder();
+        TypeEncoding.encode(buf, type);
+        return buf.toString();
+    }
+
+    /**
+     * Decode a type previously encoded by {@link #encode encode()}.
+     *
+     * @param string encoded type
+     * @param loader class loader used to load the classes referenced by the type
+     * @return decoded type
+     * @throws ClassNotFoundException if a referenced class can't be loaded
+     * @throws IllegalArgumentException if {@code string} is invalid
+     */
+    static Type decode(String string, ClassLoader loader) throws ClassNotFoundException {
+        Preconditions.checkArgument(string != null, "null string");
+        final TypeEncoding decoder = new TypeEncoding(string, loader);
+        final Type type = decoder.decode();
+        Preconditions.checkArgument(decoder.pos == string.length(), "invalid encoded type");
+        return type;
+    }
+
+// Internal Methods
+
+    private static void encode(StringBuilder buf, Type type) {
+        if (type instanceof Class) {
+            final Class<?> cl = (Class<?>)type;
+            if (cl.isArray())
+                TypeEncoding.encode(buf.append('['), cl.getComponentType());
+            else
+                buf.append('L').append(cl.getName()).append(';');
+        } else if (type instanceof GenericArrayType)
+            TypeEncoding.encode(buf.append('['), ((GenericArrayType)type).getGenericComponentType());
+        else if (type instanceof ParameterizedType) {
+            final ParameterizedType ptype = (ParameterizedType)type;
+            buf.append('P');
+            if (ptype.getOwnerType() != null)
+                TypeEncoding.encode(buf, ptype.getOwnerType());
+            else
+                buf.append('-');
+            TypeEncoding.encode(buf, ptype.getRawType());
+            for (Type arg : ptype.getActualTypeArguments())
+                TypeEncoding.encode(buf, arg);
+            buf.append('>');
+        } else if (type instanceof WildcardType) {
+            final WildcardType wtype = (WildcardType)type;
+            if (wtype.getLowerBounds().length > 0)
+                TypeEncoding.encode(buf.append('-'), wtype.getLowerBounds()[0]);
+            else
+                TypeEncoding.encode(buf.append('+'), wtype.getUpperBounds()[0]);
+        } else if (type instanceof TypeVariable && ((TypeVariable<?>)type).getName().startsWith(CAPTURE_PREFIX)) {
+            buf.append('C');
+            for (Type bound : ((TypeVariable<?>)type).getBounds())
+                TypeEncoding.encode(buf, bound);
+            buf.append('>');
+        } else
+            throw new IllegalArgumentException("unsupported type " + type);
+    }
+
+    private Type decode() throws ClassNotFoundException {
+        Preconditions.checkArgument(this.pos < this.string.length(), "invalid encoded type");
+        switch (this.string.charAt(this.pos++)) {
+        case 'L': {
+            final int end = this.string.indexOf(';', this.pos);
+            Preconditions.checkArgument(end > this.pos, "invalid encoded type");
+            final String name = this.string.substring(this.pos, end);
+            this.pos = end + 1;
+            final Class<?> primitive = PRIMITIVES.get(name);
+            return primitive != null ? primitive : Class.forName(name, false, this.loader);
+        }
+        case '[': {
+            final Type component = this.decode();
+            return component instanceof Class ? ((Class<?>)component).arrayType() : new GenericArrayTypeImpl(component);
+        }
+        case 'P': {
+            final Type owner;
+            if (this.string.startsWith("-", this.pos)) {
+                this.pos++;
+                owner = null;
+            } else
+                owner = this.decode();
+            final Type raw = this.decode();
+            Preconditions.checkArgument(raw instanceof Class, "invalid encoded type");
+            return new ParameterizedTypeImpl(owner, (Class<?>)raw, this.decodeList());
+        }
+        case 'C':
+            return new WildcardTypeImpl(this.decodeList(), new Type[0]);
+        case '+':
+            return new WildcardTypeImpl(new Type[] { this.decode() }, new Type[0]);
+        case '-':
+            return new WildcardTypeImpl(new Type[] { Object.class }, new Type[] { this.decode() });
+        default:
+            throw new IllegalArgumentException("invalid encoded type");
+        }
+    }
+
+    // Decode types up to and including the terminating '>'
+    private Type[] decodeList() throws ClassNotFoundException {
+        final ArrayList<Type> list = new ArrayList<>(2);
+        while (true) {
+            Preconditions.checkArgument(this.pos < this.string.length(), "invalid encoded type");
+            if (this.string.charAt(this.pos) == '>')
+                break;
+            list.add(this.decode());
+        }
+        this.pos++;
+        return list.toArray(new Type[list.size()]);
+    }
+
+// Type Implementations - equals() and hashCode() are compatible with the JDK's implementations
+
+    private static final class ParameterizedTypeImpl implements ParameterizedType {
+
+        private final Type owner;
+        private final Class<?> raw;
+        private final Type[] args;
+
+        ParameterizedTypeImpl(Type owner, Class<?> raw, Type[] args) {
+            this.owner = owner;
+            this.raw = raw;
+            this.args = args;
+        }
+
+        @Override
+        public Type getOwnerType() {
+            return this.owner;
+        }
+
+        @Override
+        public Type getRawType() {
+            return this.raw;
+        }
+
+        @Override
+        public Type[] getActualTypeArguments() {
+            return this.args.clone();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ParameterizedType))
+                return false;
+            final ParameterizedType that = (ParameterizedType)obj;
+            return Objects.equals(this.owner, that.getOwnerType())
+              && this.raw.equals(that.getRawType())
+              && Arrays.equals(this.args, that.getActualTypeArguments());
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(this.args) ^ Objects.hashCode(this.owner) ^ this.raw.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return this.raw.getName() + Arrays.stream(this.args)
+              .map(Type::getTypeName)
+              .collect(Collectors.joining(", ", "<", ">"));
+        }
+    }
+
+    private static final class GenericArrayTypeImpl implements GenericArrayType {
+
+        private final Type component;
+
+        GenericArrayTypeImpl(Type component) {
+            this.component = component;
+        }
+
+        @Override
+        public Type getGenericComponentType() {
+            return this.component;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof GenericArrayType && this.component.equals(((GenericArrayType)obj).getGenericComponentType());
+        }
+
+        @Override
+        public int hashCode() {
+            return this.component.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return this.component.getTypeName() + "[]";
+        }
+    }
+
+    private static final class WildcardTypeImpl implements WildcardType {
+
+        private final Type[] upperBounds;
+        private final Type[] lowerBounds;
+
+        WildcardTypeImpl(Type[] upperBounds, Type[] lowerBounds) {
+            this.upperBounds = upperBounds;
+            this.lowerBounds = lowerBounds;
+        }
+
+        @Override
+        public Type[] getUpperBounds() {
+            return this.upperBounds.clone();
+        }
+
+        @Override
+        public Type[] getLowerBounds() {
+            return this.lowerBounds.clone();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof WildcardType))
+                return false;
+            final WildcardType that = (WildcardType)obj;
+            return Arrays.equals(this.upperBounds, that.getUpperBounds()) && Arrays.equals(this.lowerBounds, that.getLowerBounds());
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(this.lowerBounds) ^ Arrays.hashCode(this.upperBounds);
+        }
+
+        @Override
+        public String toString() {
+            if (this.lowerBounds.length > 0)
+                return "? super " + this.lowerBounds[0].getTypeName();
+            if (this.upperBounds[0] == Object.class)
+                return "?";
+            return "? extends " + this.upperBounds[0].getTypeName();
+        }
+    }
+}
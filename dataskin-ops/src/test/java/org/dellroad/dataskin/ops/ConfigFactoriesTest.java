@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ConfigFactoriesTest {
+
+    @Test
+    public void testResolve() {
+
+        // Void
+        Assert.assertNull(ConfigFactories.get(Void.class, null).newConfig(null));
+        Assert.assertNull(ConfigFactories.get(Void.class, String.class).newConfig("foo"));
+
+        // Most specific single-argument constructor
+        Assert.assertEquals(ConfigFactories.get(Config.class, String.class).newConfig("foo").source, "String");
+        Assert.assertEquals(ConfigFactories.get(Config.class, Integer.class).newConfig(123).source, "Object");
+
+        // No target uses the default constructor
+        Assert.assertEquals(ConfigFactories.get(Config.class, null).newConfig(null).source, "default");
+
+        // Resolved factories are cached
+        Assert.assertSame(ConfigFactories.get(Config.class, String.class), ConfigFactories.get(Config.class, String.class));
+        Assert.assertSame(ConfigFactories.get(Config.class, null), ConfigFactories.get(Config.class, null));
+
+        // No suitable constructor
+        final ConfigFactory<NoDefault> factory = ConfigFactories.get(NoDefault.class, null);
+        Assert.assertThrows(RuntimeException.class, () -> factory.newConfig(null));
+    }
+
+    @Test
+    public void testRegister() {
+        ConfigFactories.register(Registered.class, target -> new Registered("custom"));
+        try {
+            Assert.assertEquals(ConfigFactories.get(Registered.class, String.class).newConfig("foo").source, "custom");
+            Assert.assertEquals(ConfigFactories.get(Registered.class, null).newConfig(null).source, "custom");
+        } finally {
+            ConfigFactories.register(Registered.class, null);
+        }
+        Assert.assertEquals(ConfigFactories.get(Registered.class, null).newConfig(null).source, "default");
+    }
+
+    @Test
+    public void testAncestorLoader() {
+        Assert.assertTrue(Util.isAncestorLoader(String.class, ConfigFactoriesTest.class));
+        Assert.assertFalse(Util.isAncestorLoader(ConfigFactoriesTest.class, String.class));
+        Assert.assertTrue(Util.isAncestorLoader(ConfigFactoriesTest.class, Config.class));
+    }
+
+// Config
+
+    public static class Config {
+
+        final String source;
+
+        public Config() {
+            this.source = "default";
+        }
+
+        public Config(Object target) {
+            this.source = "Object";
+        }
+
+        public Config(CharSequence target) {
+            this.source = "CharSequence";
+        }
+
+        public Config(String target) {
+            this.source = "String";
+        }
+    }
+
+// Registered
+
+    public static class Registered {
+
+        final String source;
+
+        public Registered() {
+            this("default");
+        }
+
+        public Registered(String source) {
+            this.source = source;
+        }
+    }
+
+// NoDefault
+
+    public static class NoDefault {
+
+        public NoDefault(String target) {
+        }
+    }
+}
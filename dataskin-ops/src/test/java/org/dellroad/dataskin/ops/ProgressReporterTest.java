@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ProgressReporterTest {
+
+    @Test
+    public void testOf() {
+        final List<Operation.Progress> updates = new ArrayList<>();
+        final ProgressReporter reporter = ProgressReporter.of(updates::add);
+        Assert.assertSame(ProgressReporter.of(reporter), reporter);
+        Assert.assertThrows(IllegalArgumentException.class, () -> ProgressReporter.of(null));
+    }
+
+    @Test
+    public void testRatioThrottling() {
+        final List<Operation.Progress> updates = new ArrayList<>();
+        final ProgressReporter reporter = ProgressReporter.of(updates::add);
+
+        // Small ratio changes are dropped, but they don't accumulate against the last delivered ratio
+        for (int i = 0; i <= 100000; i++)
+            reporter.update(i, 100000);
+        Assert.assertTrue(updates.size() > 500 && updates.size() <= 1001, "delivered " + updates.size());
+        Assert.assertEquals(updates.get(0).getRatio(), 0.0);
+        Assert.assertEquals(updates.get(updates.size() - 1).getRatio(), 1.0);
+        for (int i = 1; i < updates.size() - 1; i++) {              // completion is always delivered
+            final double delta = updates.get(i).getRatio() - updates.get(i - 1).getRatio();
+            Assert.assertTrue(delta >= ConsumerProgressReporter.RATIO_GRANULARITY, "delta " + delta);
+        }
+    }
+
+    @Test
+    public void testCompletionAndIndeterminate() {
+        final List<Operation.Progress> updates = new ArrayList<>();
+        final ProgressReporter reporter = ProgressReporter.of(updates::add);
+        reporter.update(0.9999);
+        reporter.update(1.0);                                  // completion is always delivered
+        reporter.update(1.0);
+        Assert.assertEquals(updates.size(), 2);
+        reporter.update(Double.NaN);                           // switching to and from indeterminate is delivered
+        reporter.update(Double.POSITIVE_INFINITY);
+        reporter.update(0.5);
+        Assert.assertEquals(updates.size(), 4);
+        Assert.assertTrue(Double.isNaN(updates.get(2).getRatio()));
+        Assert.assertEquals(updates.get(3).getRatio(), 0.5);
+        reporter.update(7, -1);                                // unknown total
+        Assert.assertEquals(updates.size(), 5);
+        Assert.assertTrue(Double.isNaN(updates.get(4).getRatio()));
+    }
+
+    @Test
+    public void testMessageThrottling() throws Exception {
+        final List<Operation.Progress> updates = new ArrayList<>();
+        final ProgressReporter reporter = ProgressReporter.of(updates::add);
+        final AtomicInteger computed = new AtomicInteger();
+        final Supplier<String> message1 = () -> "one " + computed.incrementAndGet();
+        final Supplier<String> message2 = () -> "two " + computed.incrementAndGet();
+
+        // Messages are only computed when delivered
+        reporter.update(0.5, message1);
+        for (int i = 0; i < 1000; i++)
+            reporter.update(0.5, message1);
+        Assert.assertEquals(updates.size(), 1);
+        Assert.assertEquals(updates.get(0).getMessage(), "one 1");
+        Assert.assertEquals(computed.get(), 1);
+
+        // A new message with an unchanged ratio is delivered only after the interval has elapsed
+        final long start = System.nanoTime();
+        reporter.update(0.5, message2);
+        if (System.nanoTime() - start < ConsumerProgressReporter.MESSAGE_INTERVAL_NANOS)
+            Assert.assertEquals(updates.size(), 1);
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(ConsumerProgressReporter.MESSAGE_INTERVAL_NANOS) + 50);
+        reporter.update(0.5, message1);
+        reporter.update(0.5, message1);
+        Assert.assertEquals(updates.get(updates.size() - 1).getMessage(), "one " + computed.get());
+        Assert.assertEquals(computed.get(), updates.size());
+
+        // A ratio change delivers the message immediately
+        reporter.update(0.6, message2);
+        Assert.assertEquals(updates.get(updates.size() - 1).getMessage(), "two " + computed.get());
+        Assert.assertEquals(updates.get(updates.size() - 1).getRatio(), 0.6);
+    }
+
+    @Test
+    public void testAccept() {
+        final List<Operation.Progress> updates = new ArrayList<>();
+        final ProgressReporter reporter = ProgressReporter.of(updates::add);
+        reporter.accept(new Operation.Progress(0.25, "quarter"));
+        Assert.assertEquals(updates.size(), 1);
+        Assert.assertEquals(updates.get(0).getRatio(), 0.25);
+        Assert.assertEquals(updates.get(0).getMessage(), "quarter");
+        Assert.assertThrows(IllegalArgumentException.class, () -> reporter.accept(null));
+    }
+
+    @Test
+    public void testChildren() {
+        final List<Operation.Progress> updates = new ArrayList<>();
+        final ProgressReporter reporter = ProgressReporter.of(updates::add);
+        final ProgressReporter child1 = reporter.child(0.25);
+        final ProgressReporter child2 = reporter.child(0.75);
+        child1.update(0.5);
+        Assert.assertEquals(updates.get(updates.size() - 1).getRatio(), 0.125);
+        child1.update(Double.NaN);
+        Assert.assertEquals(updates.get(updates.size() - 1).getRatio(), 0.0);
+        child2.update(1.0);
+        Assert.assertEquals(updates.get(updates.size() - 1).getRatio(), 1.0);
+        final ProgressReporter grandchild = child2.child(0.5);
+        grandchild.update(1.0);
+        Assert.assertEquals(updates.get(updates.size() - 1).getRatio(), 0.625);
+        Assert.assertThrows(IllegalArgumentException.class, () -> reporter.child(1.5));
+    }
+}
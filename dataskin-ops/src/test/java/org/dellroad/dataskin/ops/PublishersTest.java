@@ -0,0 +1,317 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class PublishersTest {
+
+    private static final long TIMEOUT = 10;                     // seconds
+
+    private ExecutorService executor;
+
+    @BeforeClass
+    public void startExecutor() {
+        this.executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterClass
+    public void stopExecutor() {
+        if (this.executor != null)
+            this.executor.shutdownNow();
+    }
+
+// toStream()
+
+    @Test
+    public void testToStreamDemand() {
+        final int batchSize = 10;
+        final AtomicInteger consumed = new AtomicInteger();
+        final RangePublisher publisher = new RangePublisher(95) {
+            @Override
+            protected void requested(long requested) {
+
+                // The item being handed to the stream has already left the buffer
+                Assert.assertTrue(requested <= consumed.get() + 1 + batchSize,
+                  "requested " + requested + " after consuming " + consumed.get());
+            }
+        };
+        final List<Integer> items;
+        try (Stream<Integer> stream = Publishers.toStream(publisher, batchSize)) {
+            Assert.assertEquals(publisher.requested, batchSize);
+            items = stream.peek(item -> consumed.incrementAndGet()).collect(Collectors.toList());
+        }
+        Assert.assertEquals(items, IntStream.range(0, 95).boxed().collect(Collectors.toList()));
+        Assert.assertFalse(publisher.cancelled);
+    }
+
+    @Test
+    public void testToStreamError() {
+        final RangePublisher publisher1 = new RangePublisher(3, new IllegalStateException("unchecked"));
+        try (Stream<Integer> stream = Publishers.toStream(publisher1, 2)) {
+            final ArrayList<Integer> items = new ArrayList<>();
+            final IllegalStateException e = Assert.expectThrows(IllegalStateException.class, () -> stream.forEach(items::add));
+            Assert.assertEquals(e.getMessage(), "unchecked");
+            Assert.assertEquals(items, List.of(0, 1, 2));
+        }
+        final RangePublisher publisher2 = new RangePublisher(0, new IOException("checked"));
+        try (Stream<Integer> stream = Publishers.toStream(publisher2, 2)) {
+            final RuntimeException e = Assert.expectThrows(RuntimeException.class, stream::count);
+            Assert.assertTrue(e.getCause() instanceof IOException, "cause " + e.getCause());
+        }
+    }
+
+    @Test
+    public void testToStreamClose() {
+        final RangePublisher publisher = new RangePublisher(1000);
+        final Stream<Integer> stream = Publishers.toStream(publisher, 8);
+        Assert.assertEquals(stream.limit(5).collect(Collectors.toList()), List.of(0, 1, 2, 3, 4));
+        Assert.assertFalse(publisher.cancelled);
+        stream.close();
+        Assert.assertTrue(publisher.cancelled);
+        Assert.assertTrue(publisher.requested < 1000);
+    }
+
+    @Test
+    public void testToStreamInterrupt() {
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        final Flow.Publisher<Integer> publisher = subscriber -> subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long amount) {
+            }
+
+            @Override
+            public void cancel() {
+                cancelled.set(true);
+            }
+        });
+        try (Stream<Integer> stream = Publishers.toStream(publisher, 4)) {
+            Thread.currentThread().interrupt();
+            Assert.assertThrows(CancellationException.class, () -> stream.iterator().hasNext());
+            Assert.assertTrue(Thread.interrupted(), "interrupt status not restored");
+            Assert.assertTrue(cancelled.get());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+// fromStream()
+
+    @Test
+    public void testFromStreamDemand() throws Exception {
+        final AtomicInteger read = new AtomicInteger();
+        final Flow.Publisher<Integer> publisher = Publishers.fromStream(
+          () -> IntStream.range(0, 100).boxed().peek(item -> read.incrementAndGet()), this.executor);
+        final TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+        Assert.assertEquals(read.get(), 0);                    // nothing is read until requested
+
+        // Items are read only as requested
+        subscriber.subscription.request(10);
+        subscriber.awaitItems(10);
+        Thread.sleep(100);
+        Assert.assertEquals(subscriber.items(), IntStream.range(0, 10).boxed().collect(Collectors.toList()));
+        Assert.assertEquals(read.get(), 10);
+        subscriber.subscription.request(5);
+        subscriber.awaitItems(15);
+        Thread.sleep(100);
+        Assert.assertEquals(read.get(), 15);
+
+        // Unbounded demand reads everything
+        subscriber.subscription.request(Long.MAX_VALUE);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        subscriber.awaitCompletion();
+        Assert.assertNull(subscriber.error);
+        Assert.assertEquals(subscriber.items(), IntStream.range(0, 100).boxed().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testFromStreamCancel() throws Exception {
+        final CountDownLatch closed = new CountDownLatch(1);
+        final Flow.Publisher<Integer> publisher = Publishers.fromStream(
+          () -> Stream.iterate(0, i -> i + 1).onClose(closed::countDown), this.executor);
+        final TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(5);
+        subscriber.awaitItems(5);
+        subscriber.subscription.cancel();
+        Assert.assertTrue(closed.await(TIMEOUT, TimeUnit.SECONDS), "stream not closed");
+        subscriber.subscription.request(5);
+        Thread.sleep(100);
+        Assert.assertEquals(subscriber.items().size(), 5);
+        Assert.assertEquals(subscriber.completion.getCount(), 1);
+    }
+
+    @Test
+    public void testFromStreamInvalidRequest() throws Exception {
+        final Flow.Publisher<Integer> publisher = Publishers.fromStream(() -> Stream.of(1, 2, 3), this.executor);
+        final TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(0);
+        subscriber.awaitCompletion();
+        Assert.assertTrue(subscriber.error instanceof IllegalArgumentException, "error " + subscriber.error);
+    }
+
+    @Test
+    public void testFromStreamError() throws Exception {
+        final Flow.Publisher<Integer> publisher = Publishers.fromStream(() -> {
+            throw new IOException("source failed");
+        }, this.executor);
+        final TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(1);
+        subscriber.awaitCompletion();
+        Assert.assertTrue(subscriber.error instanceof IOException, "error " + subscriber.error);
+    }
+
+// Round trip
+
+    @Test
+    public void testRoundTrip() {
+        final AtomicInteger read = new AtomicInteger();
+        final AtomicInteger consumed = new AtomicInteger();
+        final int batchSize = 16;
+        final Flow.Publisher<Integer> publisher = Publishers.fromStream(
+          () -> IntStream.range(0, 10000).boxed().peek(item -> read.incrementAndGet()), this.executor);
+        final List<Integer> items;
+        try (Stream<Integer> stream = Publishers.toStream(publisher, batchSize)) {
+            items = stream.peek(item -> {
+                Assert.assertTrue(read.get() <= consumed.incrementAndGet() + batchSize,
+                  "read " + read.get() + " after consuming " + consumed.get());
+            }).collect(Collectors.toList());
+        }
+        Assert.assertEquals(items, IntStream.range(0, 10000).boxed().collect(Collectors.toList()));
+    }
+
+// RangePublisher
+
+    // Synchronously publishes 0, 1, 2, ... as requested, then completes or fails
+    private static class RangePublisher implements Flow.Publisher<Integer>, Flow.Subscription {
+
+        private final int count;
+        private final Throwable error;
+
+        private Flow.Subscriber<? super Integer> subscriber;
+        private long requested;
+        private int next;
+        private boolean cancelled;
+        private boolean publishing;
+
+        RangePublisher(int count) {
+            this(count, null);
+        }
+
+        RangePublisher(int count, Throwable error) {
+            this.count = count;
+            this.error = error;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super Integer> subscriber) {
+            this.subscriber = subscriber;
+            subscriber.onSubscribe(this);
+        }
+
+        @Override
+        public void request(long amount) {
+            Assert.assertTrue(amount > 0, "invalid request " + amount);
+            Assert.assertFalse(this.cancelled, "request after cancel");
+            this.requested += amount;
+            this.requested(this.requested);
+            if (this.publishing)
+                return;
+            this.publishing = true;
+            try {
+                while (!this.cancelled && this.next < this.requested && this.next != this.count)
+                    this.subscriber.onNext(this.next++);
+                if (!this.cancelled && this.next == this.count) {
+                    if (this.error != null)
+                        this.subscriber.onError(this.error);
+                    else
+                        this.subscriber.onComplete();
+                }
+            } finally {
+                this.publishing = false;
+            }
+        }
+
+        @Override
+        public void cancel() {
+            this.cancelled = true;
+        }
+
+        protected void requested(long requested) {
+        }
+    }
+
+// TestSubscriber
+
+    private static class TestSubscriber implements Flow.Subscriber<Integer> {
+
+        final CountDownLatch completion = new CountDownLatch(1);
+
+        volatile Flow.Subscription subscription;
+        volatile Throwable error;
+
+        private final List<Integer> items = new ArrayList<>();
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public synchronized void onNext(Integer item) {
+            this.items.add(item);
+            this.notifyAll();
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error = error;
+            this.completion.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            this.completion.countDown();
+        }
+
+        synchronized List<Integer> items() {
+            return new ArrayList<>(this.items);
+        }
+
+        synchronized void awaitItems(int count) throws InterruptedException {
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+            while (this.items.size() < count) {
+                final long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                Assert.assertTrue(remaining > 0, "timed out waiting for " + count + " items");
+                this.wait(remaining);
+            }
+        }
+
+        void awaitCompletion() throws InterruptedException {
+            Assert.assertTrue(this.completion.await(TIMEOUT, TimeUnit.SECONDS), "timed out waiting for completion");
+        }
+    }
+}
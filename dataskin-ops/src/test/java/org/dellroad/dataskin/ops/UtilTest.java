@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class UtilTest {
+
+    @Test
+    public void testAwait() throws Exception {
+        Assert.assertEquals(Util.await(CompletableFuture.completedFuture("foo")), "foo");
+
+        // Unchecked exceptions are rethrown unwrapped, checked exceptions are wrapped
+        Assert.assertThrows(IllegalStateException.class,
+          () -> Util.await(CompletableFuture.failedFuture(new IllegalStateException())));
+        final RuntimeException e = Assert.expectThrows(RuntimeException.class,
+          () -> Util.await(CompletableFuture.failedFuture(new Exception("checked"))));
+        Assert.assertEquals(e.getCause().getMessage(), "checked");
+
+        // A cancelled stage is reported as cancellation
+        final CompletableFuture<String> cancelled = new CompletableFuture<>();
+        cancelled.cancel(false);
+        Assert.assertThrows(CancellationException.class, () -> Util.await(cancelled));
+    }
+
+    @Test
+    public void testAwaitInterrupted() {
+
+        // Interrupting the waiting thread cancels the stage
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        Thread.currentThread().interrupt();
+        Assert.assertThrows(InterruptedException.class, () -> Util.await(future));
+        Assert.assertTrue(future.isCancelled());
+        Assert.assertFalse(Thread.interrupted());
+    }
+
+    @Test
+    public void testPerformNow() throws Exception {
+        Assert.assertEquals(Util.performNow(() -> "foo").get(), "foo");
+        Assert.assertTrue(Util.performNow(() -> {
+            throw new IllegalStateException();
+        }).isCompletedExceptionally());
+
+        // An interrupted operation gives a cancelled stage and restores the interrupt
+        final CompletableFuture<String> future = Util.performNow(() -> {
+            throw new InterruptedException();
+        });
+        Assert.assertTrue(future.isCancelled());
+        Assert.assertTrue(Thread.interrupted());
+        Assert.assertThrows(IllegalArgumentException.class, () -> Util.performNow(null));
+    }
+
+    @Test
+    public void testStartNow() {
+
+        // The operation's own stage is returned
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        Assert.assertSame(Util.startNow(() -> future), future);
+
+        // Startup failures and null stages give failed stages
+        final CompletionStage<String> failed = Util.startNow(() -> {
+            throw new IllegalStateException();
+        });
+        Assert.assertTrue(failed.toCompletableFuture().isCompletedExceptionally());
+        Assert.assertTrue(Util.<String>startNow(() -> null).toCompletableFuture().isCompletedExceptionally());
+
+        // An interrupted startup gives a cancelled stage and restores the interrupt
+        final CompletionStage<String> interrupted = Util.startNow(() -> {
+            throw new InterruptedException();
+        });
+        Assert.assertTrue(interrupted.toCompletableFuture().isCancelled());
+        Assert.assertTrue(Thread.interrupted());
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops.scanner;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.dellroad.dataskin.ops.InstanceAction;
+import org.dellroad.dataskin.ops.StaticQuery;
+import org.dellroad.dataskin.ops.annotation.DataSkinAction;
+import org.dellroad.dataskin.ops.annotation.DataSkinQuery;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class AsyncOperationTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testAsyncMethods() throws Exception {
+        final OperationIndex<Model> index = new OperationCache("").getIndex(Model.class);
+        final InstanceAction<Model, Void, Integer> start = (InstanceAction<Model, Void, Integer>)this.find(index, "Start");
+        final StaticQuery<Void, String> names = (StaticQuery<Void, String>)this.find(index, "Names");
+
+        // Result types are the stage's value type
+        Assert.assertEquals(start.getResultType().getRawType(), Integer.class);
+        Assert.assertEquals(names.getResultItemType().getRawType(), String.class);
+
+        // performAsync() returns the method's own stage, so cancellation reaches the backend
+        final Model model = new Model();
+        final CompletionStage<Integer> stage = start.performAsync(model, null, progress -> { });
+        Assert.assertSame(stage, model.future);
+        stage.toCompletableFuture().cancel(true);
+        Assert.assertTrue(model.future.isCancelled());
+
+        // perform() waits for the stage
+        final Model model2 = new Model();
+        model2.future.complete(42);
+        Assert.assertEquals(start.perform(model2, null, progress -> { }), (Integer)42);
+        Assert.assertEquals(names.perform(null, progress -> { }).collect(Collectors.toList()), List.of("a", "b"));
+
+        // A null stage is a failure
+        final Model model3 = new Model();
+        model3.future = null;
+        Assert.assertThrows(IllegalStateException.class, () -> start.perform(model3, null, progress -> { }));
+        this.assertFailed(start.performAsync(model3, null, progress -> { }), IllegalStateException.class);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSyncMethods() throws Exception {
+        final OperationIndex<Model> index = new OperationCache("").getIndex(Model.class);
+        final InstanceAction<Model, Void, Integer> sync = (InstanceAction<Model, Void, Integer>)this.find(index, "Sync");
+        final InstanceAction<Model, Void, Void> fail = (InstanceAction<Model, Void, Void>)this.find(index, "Fail");
+
+        // Synchronous methods complete before performAsync() returns
+        final CompletableFuture<Integer> future = sync.performAsync(new Model(), null, progress -> { }).toCompletableFuture();
+        Assert.assertTrue(future.isDone());
+        Assert.assertEquals(future.get(), (Integer)7);
+
+        // Exceptions are reported through the stage rather than thrown
+        this.assertFailed(fail.performAsync(new Model(), null, progress -> { }), UnsupportedOperationException.class);
+    }
+
+    private Object find(OperationIndex<Model> index, String label) {
+        return index.getOperations().stream()
+          .filter(operation -> operation.getLabel().equals(label))
+          .findFirst()
+          .get();
+    }
+
+    private void assertFailed(CompletionStage<?> stage, Class<? extends Throwable> type) {
+        final CompletableFuture<?> future = stage.toCompletableFuture();
+        Assert.assertTrue(future.isCompletedExceptionally());
+        try {
+            future.get();
+            Assert.fail("expected exception");
+        } catch (ExecutionException e) {
+            Assert.assertEquals(e.getCause().getClass(), type);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+// Model
+
+    public static class Model {
+
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+
+        @DataSkinAction(label = "Start")
+        public CompletionStage<Integer> start() {
+            return this.future;
+        }
+
+        @DataSkinAction(label = "Sync")
+        public int sync() {
+            return 7;
+        }
+
+        @DataSkinAction(label = "Fail")
+        public void fail() {
+            throw new UnsupportedOperationException();
+        }
+
+        @DataSkinQuery(label = "Names")
+        public static CompletionStage<Stream<String>> names() {
+            return CompletableFuture.completedFuture(Stream.of("a", "b"));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops.scanner;
+
+import com.google.common.reflect.TypeToken;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import org.dellroad.dataskin.ops.InstanceAction;
+import org.dellroad.dataskin.ops.Operation;
+import org.dellroad.dataskin.ops.PageRequest;
+import org.dellroad.dataskin.ops.PageableQuery;
+import org.dellroad.dataskin.ops.ProgressReporter;
+import org.dellroad.dataskin.ops.StaticAction;
+import org.dellroad.dataskin.ops.annotation.DataSkinAction;
+import org.dellroad.dataskin.ops.annotation.DataSkinQuery;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class InvokerTest {
+
+    @Test(dataProvider = "modes")
+    @SuppressWarnings("unchecked")
+    public void testInvoke(boolean reflection) throws Exception {
+        final Map<String, ActionMethodScanner<Model, String>.ActionInfo<?, ?>> actions;
+        final Map<String, QueryMethodScanner<Model, String>.QueryInfo<?, ?>> queries;
+        final String previous = System.setProperty(AbstractMethodScanner.USE_REFLECTION_PROPERTY, "" + reflection);
+        try {
+            actions = new ActionMethodScanner<>(Model.class, TypeToken.of(String.class)).actionInfos()
+              .map(info -> (ActionMethodScanner<Model, String>.ActionInfo<?, ?>)info)
+              .collect(Collectors.toMap(info -> info.getLabel(), Function.identity()));
+            queries = new QueryMethodScanner<>(Model.class, TypeToken.of(String.class)).queryInfos()
+              .map(info -> (QueryMethodScanner<Model, String>.QueryInfo<?, ?>)info)
+              .collect(Collectors.toMap(info -> info.getLabel(), Function.identity()));
+        } finally {
+            if (previous != null)
+                System.setProperty(AbstractMethodScanner.USE_REFLECTION_PROPERTY, previous);
+            else
+                System.clearProperty(AbstractMethodScanner.USE_REFLECTION_PROPERTY);
+        }
+        for (AbstractMethodScanner<?, ?, ?>.OperationInfo<?, ?> info : actions.values())
+            Assert.assertEquals(info.invoker == null, reflection, info.getLabel());
+        for (AbstractMethodScanner<?, ?, ?>.OperationInfo<?, ?> info : queries.values())
+            Assert.assertEquals(info.invoker == null, reflection, info.getLabel());
+
+        // Static method with context and config
+        final StaticAction<Integer, Integer> add = (StaticAction<Integer, Integer>)actions.get("Add").getOperation("abc");
+        Assert.assertEquals(add.perform(4, progress -> { }), (Integer)7);
+
+        // Instance method with a progress reporter, config, and primitive return
+        final List<Operation.Progress> updates = new ArrayList<>();
+        final InstanceAction<Model, Long, Long> scale = (InstanceAction<Model, Long, Long>)actions.get("Scale").getOperation("");
+        Assert.assertEquals(scale.perform(new Model(6), 7L, updates::add), (Long)42L);
+        Assert.assertEquals(updates.size(), 1);
+        Assert.assertEquals(updates.get(0).getRatio(), 0.5);
+
+        // Void method, exceptions are rethrown unwrapped
+        final InstanceAction<Model, Void, Void> fail = (InstanceAction<Model, Void, Void>)actions.get("Fail").getOperation("");
+        Assert.assertThrows(IllegalStateException.class, () -> fail.perform(new Model(0), null, progress -> { }));
+
+        // Pageable query with count method
+        final PageableQuery<Void, Integer> numbers = (PageableQuery<Void, Integer>)queries.get("Numbers")
+          .getOperation("", OperationCache.shared(""));
+        final PageableQuery.PageHandle<Void, Integer> handle = numbers.getHandle(null);
+        Assert.assertEquals(handle.fetch(null, new PageRequest(3, 2), progress -> { }).collect(Collectors.toList()), List.of(3, 4));
+        Assert.assertEquals(handle.count(null), 10);
+
+        // Instance pageable query with context, progress reporter, and config, and a count method taking the same
+        final PageableQuery<Integer, Long> multiples = (PageableQuery<Integer, Long>)queries.get("Multiples")
+          .getOperation("", OperationCache.shared(""));
+        final PageableQuery.PageHandle<Integer, Long> handle2 = multiples.getHandle(new Model(3));
+        Assert.assertEquals(handle2.fetch(4, new PageRequest(1, 2), progress -> { }).collect(Collectors.toList()), List.of(3L, 6L));
+        Assert.assertEquals(handle2.count(4), 4);
+    }
+
+    @DataProvider(name = "modes")
+    public Object[][] genModes() {
+        return new Object[][] {
+            { false },
+            { true },
+        };
+    }
+
+// Model
+
+    public static class Model {
+
+        private final long value;
+
+        public Model(long value) {
+            this.value = value;
+        }
+
+        @DataSkinAction(label = "Add")
+        public static int add(String context, Integer amount) {
+            return context.length() + amount;
+        }
+
+        @DataSkinAction(label = "Scale")
+        public long scale(ProgressReporter reporter, Long factor) {
+            reporter.update(0.5);
+            return this.value * factor;
+        }
+
+        @DataSkinAction(label = "Fail")
+        public void fail() {
+            throw new IllegalStateException("failed");
+        }
+
+        @DataSkinQuery(label = "Numbers", count = "countNumbers")
+        public static Stream<Integer> numbers(PageRequest page) {
+            return IntStream.range(0, 10).boxed().skip(page.getOffset()).limit(page.getLimit());
+        }
+
+        public static long countNumbers() {
+            return 10;
+        }
+
+        @DataSkinQuery(label = "Multiples", count = "countMultiples")
+        public Stream<Long> multiples(String context, ProgressReporter reporter, Integer count, PageRequest page) {
+            return LongStream.range(0, count).map(i -> i * this.value).boxed().skip(page.getOffset()).limit(page.getLimit());
+        }
+
+        public int countMultiples(String context, ProgressReporter reporter, Integer count) {
+            reporter.update(0.5);
+            return count;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops.scanner;
+
+import com.google.common.cache.CacheStats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.dellroad.dataskin.ops.InstanceOperation;
+import org.dellroad.dataskin.ops.Operation;
+import org.dellroad.dataskin.ops.Query;
+import org.dellroad.dataskin.ops.StaticOperation;
+import org.dellroad.dataskin.ops.StaticQuery;
+import org.dellroad.dataskin.ops.annotation.DataSkinAction;
+import org.dellroad.dataskin.ops.annotation.DataSkinQuery;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class OperationCacheTest {
+
+    @Test(dataProvider = "storages")
+    public void testStats(String name, Supplier<OperationCacheStorage> storageSupplier) {
+        final OperationCache cache = new OperationCache(null, storageSupplier.get());
+        Assert.assertEquals(cache.getStats(), new CacheStats(0, 0, 0, 0, 0, 0));
+
+        final OperationIndex<Model1> index = cache.getIndex(Model1.class);
+        Assert.assertEquals(index.getType(), Model1.class);
+        Assert.assertEquals(index.getOperations().size(), 3);
+        Assert.assertEquals(index.getStaticQueries().size(), 1);
+        Assert.assertEquals(index.getInstanceQueries().size(), 1);
+        Assert.assertEquals(index.getInstanceActions().size(), 1);
+        Assert.assertSame(cache.getIndex(Model1.class), index);
+        Assert.assertSame(cache.getIndex(Model1.class), index);
+        cache.getIndex(Model2.class);
+
+        final CacheStats stats = cache.getStats();
+        Assert.assertEquals(stats.hitCount(), 2, name);
+        Assert.assertEquals(stats.missCount(), 2, name);
+        Assert.assertEquals(stats.loadSuccessCount(), 2, name);
+        Assert.assertEquals(stats.loadExceptionCount(), 0, name);
+        Assert.assertEquals(stats.evictionCount(), 0, name);
+    }
+
+    @DataProvider(name = "storages")
+    public Object[][] genStorages() {
+        return new Object[][] {
+            { "soft",           (Supplier<OperationCacheStorage>)OperationCacheStorage::soft },
+            { "strong",         (Supplier<OperationCacheStorage>)() -> OperationCacheStorage.strong(100) },
+            { "weighted",       (Supplier<OperationCacheStorage>)() -> OperationCacheStorage.weighted(100) },
+            { "unbounded",      (Supplier<OperationCacheStorage>)OperationCacheStorage::unbounded },
+        };
+    }
+
+    @Test
+    public void testStrongEviction() {
+        final OperationCache cache = new OperationCache(null, OperationCacheStorage.strong(1));
+        final OperationIndex<Model1> index = cache.getIndex(Model1.class);
+        cache.getIndex(Model2.class);
+        Assert.assertEquals(cache.getStats().evictionCount(), 1);
+
+        // A reload binds the shared scan results again, giving equivalent operations
+        final OperationIndex<Model1> reloaded = cache.getIndex(Model1.class);
+        Assert.assertNotSame(reloaded, index);
+        Assert.assertEquals(reloaded.getOperations().size(), index.getOperations().size());
+        Assert.assertEquals(cache.getStats().missCount(), 3);
+    }
+
+    @Test
+    public void testWeightedEviction() {
+
+        // Model1 weighs 4 and Model2 weighs 2
+        final OperationCache cache = new OperationCache(null, OperationCacheStorage.weighted(5));
+        cache.getIndex(Model1.class);
+        cache.getIndex(Model2.class);
+        Assert.assertEquals(cache.getStats().evictionCount(), 1);
+        cache.getIndex(Model2.class);
+        Assert.assertEquals(cache.getStats().hitCount(), 1);
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        Assert.assertThrows(IllegalArgumentException.class, () -> OperationCacheStorage.strong(-1));
+        Assert.assertThrows(IllegalArgumentException.class, () -> OperationCacheStorage.weighted(-1));
+        Assert.assertThrows(IllegalArgumentException.class, () -> new OperationCache(null, null));
+        Assert.assertThrows(IllegalArgumentException.class, () -> new OperationCache(null).getIndex(null));
+    }
+
+    @Test
+    public void testWarmUp() throws Exception {
+        final OperationCache cache = new OperationCache(null, OperationCacheStorage.unbounded());
+        final List<Operation.Progress> updates = Collections.synchronizedList(new ArrayList<>());
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            cache.warmUp(List.of(Model1.class, Model2.class), executor, updates::add).get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(updates.size(), 2);
+        Assert.assertEquals(updates.stream().mapToDouble(Operation.Progress::getRatio).max().getAsDouble(), 1.0);
+        Assert.assertEquals(cache.getStats().missCount(), 2);
+        cache.getIndex(Model1.class);
+        cache.getIndex(Model2.class);
+        Assert.assertEquals(cache.getStats().hitCount(), 2);
+        Assert.assertEquals(cache.getStats().missCount(), 2);
+    }
+
+    @Test
+    public void testCycle() {
+        final OperationCache cache = new OperationCache(null, OperationCacheStorage.unbounded());
+
+        // Scanning CycleA must not scan CycleB
+        final OperationIndex<CycleA> indexA = cache.getIndex(CycleA.class);
+        Assert.assertEquals(indexA.getStaticQueries().size(), 1);
+        Assert.assertEquals(cache.getStats().missCount(), 1);
+
+        // CycleA's query links to CycleB's operations, which are scanned on demand
+        final StaticQuery<?, ?> bs = indexA.getStaticQueries().get(0);
+        Assert.assertEquals(bs.getLabel(), "Bs");
+        final List<? extends InstanceOperation<?, ?, ?>> bOps = bs.getInstanceOperations(null).collect(Collectors.toList());
+        Assert.assertEquals(bOps.size(), 1);
+        Assert.assertEquals(bOps.get(0).getLabel(), "As");
+        Assert.assertEquals(cache.getStats().missCount(), 2);
+
+        // CycleB's query links back to CycleA's operations, which come from the cache
+        final Query<?, ?> as = (Query<?, ?>)bOps.get(0);
+        final List<? extends StaticOperation<?, ?>> aOps = as.getStaticOperations(null).collect(Collectors.toList());
+        Assert.assertEquals(aOps.size(), 1);
+        Assert.assertSame(aOps.get(0), bs);
+        Assert.assertEquals(cache.getStats().missCount(), 2);
+
+        // Following the cycle again doesn't rescan anything
+        Assert.assertEquals(bs.getInstanceOperations(null).count(), 1);
+        Assert.assertEquals(as.getStaticOperations(null).count(), 1);
+        Assert.assertEquals(cache.getStats().missCount(), 2);
+        Assert.assertEquals(cache.getStats().loadSuccessCount(), 2);
+    }
+
+// Model1
+
+    public static class Model1 {
+
+        @DataSkinQuery(label = "Names")
+        public static Stream<String> names() {
+            return Stream.empty();
+        }
+
+        @DataSkinQuery(label = "Children")
+        public Stream<String> children() {
+            return Stream.empty();
+        }
+
+        @DataSkinAction(label = "Touch")
+        public long touch() {
+            return 0;
+        }
+    }
+
+// Model2
+
+    public static class Model2 {
+
+        @DataSkinQuery(label = "Values")
+        public static Stream<Integer> values() {
+            return Stream.empty();
+        }
+    }
+
+// CycleA
+
+    public static class CycleA {
+
+        @DataSkinQuery(label = "Bs")
+        public static Stream<CycleB> bs() {
+            return Stream.empty();
+        }
+    }
+
+// CycleB
+
+    public static class CycleB {
+
+        @DataSkinQuery(label = "As")
+        public Stream<CycleA> as() {
+            return Stream.empty();
+        }
+    }
+}
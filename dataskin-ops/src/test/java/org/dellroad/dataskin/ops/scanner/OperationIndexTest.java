@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops.scanner;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.dellroad.dataskin.ops.Operation;
+import org.dellroad.dataskin.ops.annotation.DataSkinAction;
+import org.dellroad.dataskin.ops.annotation.DataSkinQuery;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class OperationIndexTest {
+
+    @Test
+    public void testIndex() {
+        final OperationIndex<Model> index = new OperationCache("").getIndex(Model.class);
+        Assert.assertEquals(index.getType(), Model.class);
+        Assert.assertEquals(index.getOperations().size(), 6);
+
+        // Operations are sorted by kind; order within each kind follows the scan
+        Assert.assertEquals(this.labels(index.getStaticOperations()), Set.of("Names", "Configured", "All", "Reset"));
+        Assert.assertEquals(this.labels(index.getStaticQueries()), Set.of("Names", "Configured", "All"));
+        Assert.assertEquals(this.labels(index.getStaticActions()), Set.of("Reset"));
+        Assert.assertEquals(this.labels(index.getInstanceOperations()), Set.of("Siblings", "Touch"));
+        Assert.assertEquals(this.labels(index.getInstanceQueries()), Set.of("Siblings"));
+        Assert.assertEquals(this.labels(index.getInstanceActions()), Set.of("Touch"));
+
+        // The default query must return the type itself and require no configuration
+        Assert.assertEquals(index.getDefaultQuery().get().getLabel(), "All");
+
+        // Lists are immutable
+        Assert.assertThrows(UnsupportedOperationException.class, () -> index.getOperations().clear());
+        Assert.assertThrows(UnsupportedOperationException.class, () -> index.getStaticQueries().clear());
+    }
+
+    @Test
+    public void testNoDefaultQuery() {
+        final OperationIndex<Model2> index = new OperationIndex<>(Model2.class, List.of());
+        Assert.assertTrue(index.getOperations().isEmpty());
+        Assert.assertFalse(index.getDefaultQuery().isPresent());
+        Assert.assertFalse(new OperationCache(null).getIndex(Model2.class).getDefaultQuery().isPresent());
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        Assert.assertThrows(IllegalArgumentException.class, () -> new OperationIndex<>(null, List.of()));
+        Assert.assertThrows(IllegalArgumentException.class, () -> new OperationIndex<>(Model.class, null));
+    }
+
+    private Set<String> labels(List<? extends Operation<?, ?>> operations) {
+        return operations.stream()
+          .map(Operation::getLabel)
+          .collect(Collectors.toSet());
+    }
+
+// Model
+
+    public static class Model {
+
+        @DataSkinQuery(label = "Names")
+        public static Stream<String> names() {
+            return Stream.empty();
+        }
+
+        @DataSkinQuery(label = "Configured")
+        public static Stream<Model> configured(Integer limit) {
+            return Stream.empty();
+        }
+
+        @DataSkinQuery(label = "All")
+        public static Stream<Model> all() {
+            return Stream.empty();
+        }
+
+        @DataSkinQuery(label = "Siblings")
+        public Stream<Model> siblings() {
+            return Stream.empty();
+        }
+
+        @DataSkinAction(label = "Reset")
+        public static void reset() {
+        }
+
+        @DataSkinAction(label = "Touch")
+        public void touch() {
+        }
+    }
+
+// Model2
+
+    public static class Model2 {
+
+        @DataSkinQuery(label = "Others")
+        public static Stream<Model> others() {
+            return Stream.empty();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops.scanner;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.reflect.TypeToken;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.dellroad.dataskin.ops.annotation.DataSkinQuery;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class ScanIndexTest {
+
+    // Compiled at runtime so each test can load fresh copies of the classes and modify their class files
+    private static final String BASE_SOURCE = String.join("\n",
+      "package scanindex;",
+      "import java.util.List;",
+      "import java.util.stream.Stream;",
+      "import org.dellroad.dataskin.ops.annotation.DataSkinQuery;",
+      "public class Base {",
+      "    @DataSkinQuery(label = \"Items\")",
+      "    public Stream<Integer> items() { return Stream.empty(); }",
+      "    @DataSkinQuery(label = \"Lists\")",
+      "    public Stream<List<Integer>> lists(Object context, String config) { return Stream.empty(); }",
+      "}");
+    private static final String MODEL_SOURCE = String.join("\n",
+      "package scanindex;",
+      "import java.util.Map;",
+      "import java.util.function.Consumer;",
+      "import java.util.stream.Stream;",
+      "import org.dellroad.dataskin.ops.Operation;",
+      "import org.dellroad.dataskin.ops.PageRequest;",
+      "import org.dellroad.dataskin.ops.annotation.DataSkinAction;",
+      "import org.dellroad.dataskin.ops.annotation.DataSkinQuery;",
+      "public class Model extends Base {",
+      "    @DataSkinQuery(label = \"Names\")",
+      "    public static Stream<String> names(Consumer<? super Operation.Progress> progress, PageRequest page) {",
+      "        return Stream.empty();",
+      "    }",
+      "    @DataSkinQuery(label = \"Maps\")",
+      "    public static Stream<Map<String, int[]>> maps(Object context, Map<String, Integer> config) {",
+      "        return Stream.empty();",
+      "    }",
+      "    @DataSkinAction(label = \"Touch\")",
+      "    public long touch() { return 0; }",
+      "}");
+
+    private Path dir;
+    private Path classes;
+
+    @BeforeClass
+    public void compileModel() throws Exception {
+        this.dir = Files.createTempDirectory(this.getClass().getSimpleName());
+        this.classes = Files.createDirectory(this.dir.resolve("classes"));
+        final Path sources = Files.createDirectories(this.dir.resolve("src/scanindex"));
+        Files.writeString(sources.resolve("Base.java"), BASE_SOURCE);
+        Files.writeString(sources.resolve("Model.java"), MODEL_SOURCE);
+        final String classpath = Path.of(DataSkinQuery.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+          .toString();
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final int result = compiler.run(null, null, null, "-classpath", classpath, "-d", this.classes.toString(),
+          sources.resolve("Base.java").toString(), sources.resolve("Model.java").toString());
+        Assert.assertEquals(result, 0, "compilation failed");
+    }
+
+    @AfterClass
+    public void deleteModel() throws IOException {
+        if (this.dir == null)
+            return;
+        try (Stream<Path> paths = Files.walk(this.dir)) {
+            paths.sorted(Comparator.reverseOrder())
+              .map(Path::toFile)
+              .forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        final Path file = this.dir.resolve("roundtrip.idx");
+
+        // Scan and record
+        final Class<?> type1 = this.loadModel();
+        final List<AbstractMethodScanner<?, ?, ?>.OperationInfo<?, ?>> scanned = ScanIndexTest.scan(type1);
+        Assert.assertEquals(scanned.size(), 5);
+        final ScanIndex index1 = ScanIndex.load(file);
+        Assert.assertNull(index1.restore(type1, null));
+        index1.record(type1, null, scanned);
+        Assert.assertTrue(index1.save());
+        Assert.assertFalse(index1.save());
+
+        // Restore in a fresh class loader, as after a restart
+        final Class<?> type2 = this.loadModel();
+        final ScanIndex index2 = ScanIndex.load(file);
+        final List<AbstractMethodScanner<?, ?, Object>.OperationInfo<?, ?>> restored = index2.restore(type2, null);
+        Assert.assertNotNull(restored);
+        Assert.assertEquals(restored.size(), scanned.size());
+        final HashMap<String, AbstractMethodScanner<?, ?, ?>.OperationInfo<?, ?>> expected = new HashMap<>();
+        for (AbstractMethodScanner<?, ?, ?>.OperationInfo<?, ?> info : ScanIndexTest.scan(type2))
+            expected.put(ScanIndexTest.describe(info.getMethod()), info);
+        for (AbstractMethodScanner<?, ?, Object>.OperationInfo<?, ?> info : restored) {
+            final AbstractMethodScanner<?, ?, ?>.OperationInfo<?, ?> scannedInfo
+              = expected.get(ScanIndexTest.describe(info.getMethod()));
+            Assert.assertNotNull(scannedInfo, "unexpected method " + info.getMethod());
+            Assert.assertEquals(info.getMethod(), scannedInfo.getMethod());
+            Assert.assertEquals(info.getLabel(), scannedInfo.getLabel());
+            final AbstractMethodScanner<?, ?, ?>.OperationTypeAnalysis<?, ?> analysis = info.getTypeAnalysis();
+            final AbstractMethodScanner<?, ?, ?>.OperationTypeAnalysis<?, ?> scannedAnalysis = scannedInfo.getTypeAnalysis();
+            Assert.assertEquals(analysis.getLayout(), scannedAnalysis.getLayout());
+            Assert.assertEquals(analysis.configType, scannedAnalysis.configType);
+            Assert.assertEquals(analysis.resultType, scannedAnalysis.resultType);
+            if (scannedAnalysis instanceof QueryMethodScanner.QueryTypeAnalysis) {
+                Assert.assertEquals(((QueryMethodScanner<?, ?>.QueryTypeAnalysis<?, ?>)analysis).itemType,
+                  ((QueryMethodScanner<?, ?>.QueryTypeAnalysis<?, ?>)scannedAnalysis).itemType);
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        final Path file = this.dir.resolve("invalidation.idx");
+        final Class<?> type1 = this.loadModel();
+        final ScanIndex index = ScanIndex.load(file);
+        index.record(type1, null, ScanIndexTest.scan(type1));
+        Assert.assertNotNull(index.restore(this.loadModel(), null));
+
+        // Entries are specific to the context parameter type
+        Assert.assertNull(index.restore(this.loadModel(), TypeToken.of(String.class)));
+
+        // Changing a superclass invalidates the entry
+        final Path baseFile = this.classes.resolve("scanindex/Base.class");
+        Files.setLastModifiedTime(baseFile,
+          FileTime.fromMillis(Files.getLastModifiedTime(baseFile).toMillis() + 10000));
+        Assert.assertNull(index.restore(this.loadModel(), null));
+
+        // Rescanning replaces the entry
+        final Class<?> type2 = this.loadModel();
+        index.record(type2, null, ScanIndexTest.scan(type2));
+        Assert.assertNotNull(index.restore(this.loadModel(), null));
+    }
+
+    @Test
+    public void testCorruptFile() throws Exception {
+        final Path file = this.dir.resolve("corrupt.idx");
+        Files.write(file, new byte[] { 0x44, 0x53, 0x4b, 0x49, 0x00, 0x00, 0x00, 0x04, 0x7f });
+        final ScanIndex index = ScanIndex.load(file);
+        Assert.assertNull(index.restore(this.loadModel(), null));
+        Assert.assertTrue(index.save());                                // a corrupt file is rewritten
+        Assert.assertNull(ScanIndex.load(file).restore(this.loadModel(), null));
+        Assert.assertFalse(ScanIndex.load(file).save());
+    }
+
+    @Test
+    public void testUnrecordable() throws Exception {
+        final ScanIndex index = ScanIndex.load(this.dir.resolve("unrecordable.idx"));
+        index.record(GenericModel.class, null, ScanIndexTest.scan(GenericModel.class));
+        Assert.assertNull(index.restore(GenericModel.class, null));            // type variables can't be recorded
+    }
+
+    // Load the model classes in a new class loader
+    private Class<?> loadModel() throws Exception {
+        final URLClassLoader loader = new URLClassLoader(new URL[] { this.classes.toUri().toURL() },
+          this.getClass().getClassLoader());
+        return Class.forName("scanindex.Model", true, loader);
+    }
+
+    private static List<AbstractMethodScanner<?, ?, ?>.OperationInfo<?, ?>> scan(Class<?> type) {
+        return Stream.<AbstractMethodScanner<?, ?, ?>.OperationInfo<?, ?>>concat(
+            new QueryMethodScanner<>(type, null).queryInfos(),
+            new ActionMethodScanner<>(type, null).actionInfos())
+          .collect(ImmutableList.toImmutableList());
+    }
+
+    private static String describe(Method method) {
+        return method.getDeclaringClass().getName() + "." + method.getName() + Stream.of(method.getParameterTypes())
+          .map(Class::getName)
+          .collect(Collectors.joining(",", "(", ")"));
+    }
+
+// GenericModel
+
+    public static class GenericModel<E> {
+
+        @DataSkinQuery(label = "Items")
+        public Stream<E> items() {
+            return Stream.empty();
+        }
+    }
+}
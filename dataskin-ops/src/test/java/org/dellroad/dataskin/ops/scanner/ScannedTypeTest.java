@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops.scanner;
+
+import com.google.common.reflect.TypeToken;
+
+import org.dellroad.dataskin.ops.StaticAction;
+import org.dellroad.dataskin.ops.annotation.DataSkinAction;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ScannedTypeTest {
+
+    @Test
+    public void testShared() {
+
+        // Scans are shared per (type, context type)
+        final ScannedType scan = ScannedType.of(Model.class, TypeToken.of(String.class));
+        Assert.assertSame(ScannedType.of(Model.class, TypeToken.of(String.class)), scan);
+        Assert.assertNotSame(ScannedType.of(Model.class, null), scan);
+        Assert.assertSame(ScannedType.of(Model.class, null), ScannedType.of(Model.class, null));
+        Assert.assertEquals(scan.getType(), Model.class);
+        Assert.assertEquals(scan.getOperationInfos().size(), 1);
+        Assert.assertThrows(IllegalArgumentException.class, () -> ScannedType.of(null, null));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBind() throws Exception {
+
+        // Caches with different context objects share the scan but bind their own context
+        final OperationCache cache1 = new OperationCache("abc");
+        final OperationCache cache2 = new OperationCache("defgh");
+        final StaticAction<Void, Integer> length1
+          = (StaticAction<Void, Integer>)cache1.getIndex(Model.class).getStaticActions().get(0);
+        final StaticAction<Void, Integer> length2
+          = (StaticAction<Void, Integer>)cache2.getIndex(Model.class).getStaticActions().get(0);
+        Assert.assertNotSame(length1, length2);
+        Assert.assertEquals(length1.perform(null, progress -> { }), (Integer)3);
+        Assert.assertEquals(length2.perform(null, progress -> { }), (Integer)5);
+
+        // Binding creates new operations from the same scan results
+        final ScannedType scan = ScannedType.of(Model.class, TypeToken.of(String.class));
+        Assert.assertNotSame(scan.bind(cache1).get(0), scan.bind(cache1).get(0));
+        Assert.assertEquals(((StaticAction<Void, Integer>)scan.bind(cache2).get(0)).perform(null, progress -> { }), (Integer)5);
+    }
+
+// Model
+
+    public static class Model {
+
+        @DataSkinAction(label = "Length")
+        public static int length(String context) {
+            return context.length();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.ops.scanner;
+
+import com.google.common.reflect.TypeToken;
+
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class TypeEncodingTest {
+
+    @Test(dataProvider = "types")
+    public void testRoundTrip(Type type) throws Exception {
+        final String encoded = TypeEncoding.encode(type);
+        final Type decoded = TypeEncoding.decode(encoded, this.getClass().getClassLoader());
+        Assert.assertEquals(decoded, type);
+        Assert.assertEquals(type, decoded);
+        Assert.assertEquals(decoded.hashCode(), type.hashCode());
+        Assert.assertEquals(TypeEncoding.encode(decoded), encoded);
+    }
+
+    @DataProvider(name = "types")
+    public Object[][] genTypes() {
+        return new Object[][] {
+            { int.class },
+            { String.class },
+            { byte[][].class },
+            { Map.Entry.class },
+            { new TypeToken<List<String>>() { }.getType() },
+            { new TypeToken<Map<String, List<Integer>>>() { }.getType() },
+            { new TypeToken<List<? extends Number>>() { }.getType() },
+            { new TypeToken<List<? super Integer>>() { }.getType() },
+            { new TypeToken<List<?>>() { }.getType() },
+            { new TypeToken<List<String>[]>() { }.getType() },
+            { new TypeToken<Map.Entry<String, int[]>>() { }.getType() },
+        };
+    }
+
+    @Test
+    public void testCapturedWildcard() throws Exception {
+        final Type captured = new TypeToken<Stream<List<? extends Number>>>() { }
+          .resolveType(Stream.class.getTypeParameters()[0])
+          .resolveType(List.class.getTypeParameters()[0])
+          .getType();
+        final Type decoded = TypeEncoding.decode(TypeEncoding.encode(captured), this.getClass().getClassLoader());
+        if (captured instanceof TypeVariable) {
+            Assert.assertTrue(decoded instanceof WildcardType, "decoded " + decoded);
+            Assert.assertEquals(((WildcardType)decoded).getUpperBounds(), ((TypeVariable<?>)captured).getBounds());
+        } else
+            Assert.assertEquals(decoded, captured);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testTypeVariable() {
+        TypeEncoding.encode(List.class.getTypeParameters()[0]);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalid() throws Exception {
+        TypeEncoding.decode("PLjava.util.List;Ljava.lang.String;", this.getClass().getClassLoader());
+    }
+}
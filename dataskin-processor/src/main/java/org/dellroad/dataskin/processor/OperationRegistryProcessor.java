@@ -0,0 +1,509 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+import org.dellroad.dataskin.ops.Operation;
+import org.dellroad.dataskin.ops.PageRequest;
+import org.dellroad.dataskin.ops.ProgressReporter;
+import org.dellroad.dataskin.ops.annotation.DataSkinAction;
+import org.dellroad.dataskin.ops.annotation.DataSkinQuery;
+import org.dellroad.dataskin.ops.scanner.ActionMethodScanner;
+import org.dellroad.dataskin.ops.scanner.OperationCache;
+import org.dellroad.dataskin.ops.scanner.OperationRegistry;
+import org.dellroad.dataskin.ops.scanner.QueryMethodScanner;
+
+/**
+ * Annotation processor that generates an {@link OperationRegistry} for each type declaring
+ * {@link DataSkinQuery @DataSkinQuery} or {@link DataSkinAction @DataSkinAction} methods.
+ *
+ * <p>
+ * The generated registries invoke the annotated methods directly, allowing {@link OperationCache}
+ * to avoid reflective scanning and invocation for those types.
+ *
+ * <p>
+ * Method parameters are interpreted the same way as {@link QueryMethodScanner} and {@link ActionMethodScanner}
+ * interpret them, which depends on the context parameter type. Specify the context type with the
+ * {@value #CONTEXT_TYPE_OPTION} option, e.g., {@code -Adataskin.contextType=com.example.MyContext}; the resulting
+ * registries will only be used by {@link OperationCache}s whose context object has exactly that type.
+ * If the option is omitted, the registries will only be used by {@link OperationCache}s having no context object.
+ *
+ * <p>
+ * Types that can't be handled statically (e.g., generic types, or types having private annotated methods)
+ * are skipped with a note; they will continue to be scanned at runtime.
+ */
+@SupportedAnnotationTypes({ OperationRegistryProcessor.QUERY_ANNOTATION, OperationRegistryProcessor.ACTION_ANNOTATION })
+@SupportedOptions(OperationRegistryProcessor.CONTEXT_TYPE_OPTION)
+public class OperationRegistryProcessor extends AbstractProcessor {
+
+    /**
+     * Processor option specifying the fully qualified name of the operation method context parameter type.
+     */
+    public static final String CONTEXT_TYPE_OPTION = "dataskin.contextType";
+
+    static final String QUERY_ANNOTATION = "org.dellroad.dataskin.ops.annotation.DataSkinQuery";
+    static final String ACTION_ANNOTATION = "org.dellroad.dataskin.ops.annotation.DataSkinAction";
+
+    private static final String OPS_PACKAGE = Operation.class.getPackageName();
+    private static final String SCANNER_PACKAGE = OperationCache.class.getPackageName();
+    private static final String TYPE_TOKEN = "com.google.common.reflect.TypeToken";
+    private static final String STREAM = Stream.class.getName();
+    private static final String COMPLETION_STAGE = CompletionStage.class.getName();
+    private static final String PROGRESS_CONSUMER = Consumer.class.getName() + "<? super " + OPS_PACKAGE + ".Operation.Progress>";
+
+    private Elements elements;
+    private Types types;
+    private Filer filer;
+    private Messager messager;
+
+    private TypeMirror contextType;
+    private TypeMirror progressType;
+    private TypeMirror reporterType;
+    private TypeMirror streamType;
+    private TypeMirror completionStageType;
+    private TypeMirror pageRequestType;
+    private TypeMirror runtimeExceptionType;
+    private TypeMirror errorType;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        this.elements = processingEnv.getElementUtils();
+        this.types = processingEnv.getTypeUtils();
+        this.filer = processingEnv.getFiler();
+        this.messager = processingEnv.getMessager();
+
+        // Resolve well-known types
+        this.progressType = this.types.getDeclaredType(this.elements.getTypeElement(Consumer.class.getName()),
+          this.types.getWildcardType(null, this.elements.getTypeElement(Operation.Progress.class.getCanonicalName()).asType()));
+        this.reporterType = this.elements.getTypeElement(ProgressReporter.class.getName()).asType();
+        this.streamType = this.types.erasure(this.elements.getTypeElement(STREAM).asType());
+        this.completionStageType = this.types.erasure(this.elements.getTypeElement(COMPLETION_STAGE).asType());
+        this.pageRequestType = this.elements.getTypeElement(PageRequest.class.getName()).asType();
+        this.runtimeExceptionType = this.elements.getTypeElement(RuntimeException.class.getName()).asType();
+        this.errorType = this.elements.getTypeElement(Error.class.getName()).asType();
+
+        // Resolve context type, if any
+        final String contextTypeName = processingEnv.getOptions().get(CONTEXT_TYPE_OPTION);
+        if (contextTypeName != null) {
+            final TypeElement contextElement = this.elements.getTypeElement(contextTypeName);
+            if (contextElement == null) {
+                this.messager.printMessage(Diagnostic.Kind.ERROR,
+                  String.format("%s: context type \"%s\" not found", CONTEXT_TYPE_OPTION, contextTypeName));
+            } else
+                this.contextType = this.types.erasure(contextElement.asType());
+        }
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+
+        // Find types declaring annotated methods
+        final LinkedHashSet<TypeElement> typeElements = new LinkedHashSet<>();
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.METHOD)
+                    typeElements.add((TypeElement)element.getEnclosingElement());
+            }
+        }
+
+        // Generate a registry for each one
+        for (TypeElement typeElement : typeElements) {
+            try {
+                this.generate(typeElement);
+            } catch (SkipException e) {
+                this.messager.printMessage(Diagnostic.Kind.NOTE,
+                  String.format("not generating %s for %s: %s",
+                    OperationRegistry.class.getSimpleName(), typeElement.getQualifiedName(), e.getMessage()),
+                  e.element != null ? e.element : typeElement);
+            } catch (IOException e) {
+                this.messager.printMessage(Diagnostic.Kind.ERROR,
+                  String.format("error generating %s for %s: %s",
+                    OperationRegistry.class.getSimpleName(), typeElement.getQualifiedName(), e), typeElement);
+            }
+        }
+        return false;
+    }
+
+// Analysis
+
+    private void generate(TypeElement typeElement) throws IOException {
+
+        // Check type
+        final PackageElement packageElement = this.elements.getPackageOf(typeElement);
+        if (typeElement.getNestingKind() == NestingKind.LOCAL || typeElement.getNestingKind() == NestingKind.ANONYMOUS)
+            throw new SkipException(null, "local and anonymous types are not supported");
+        if (!typeElement.getTypeParameters().isEmpty())
+            throw new SkipException(null, "generic types are not supported");
+        for (Element element = typeElement; element instanceof TypeElement; element = element.getEnclosingElement()) {
+            if (element.getModifiers().contains(Modifier.PRIVATE))
+                throw new SkipException(null, "private types are not supported");
+        }
+        if (this.contextType != null && !this.isAccessible(this.contextType, packageElement))
+            throw new SkipException(null, "the context type is not accessible from package " + packageElement);
+
+        // Analyze annotated methods
+        final DeclaredType declaredType = (DeclaredType)typeElement.asType();
+        final ArrayList<MethodModel> models = new ArrayList<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(this.elements.getAllMembers(typeElement))) {
+            final DataSkinQuery queryAnnotation = method.getAnnotation(DataSkinQuery.class);
+            final DataSkinAction actionAnnotation = method.getAnnotation(DataSkinAction.class);
+            if (queryAnnotation != null && (queryAnnotation.sortable().length > 0 || queryAnnotation.filterable().length > 0))
+                throw new SkipException(method, "sortable and filterable queries are not supported");
+            if (queryAnnotation != null)
+                models.add(this.analyze(declaredType, packageElement, method, true, queryAnnotation.label()));
+            if (actionAnnotation != null)
+                models.add(this.analyze(declaredType, packageElement, method, false, actionAnnotation.label()));
+        }
+
+        // Generate source
+        final String registryName = OperationRegistry.getClassName(this.elements.getBinaryName(typeElement).toString());
+        try (PrintWriter writer = new PrintWriter(this.filer.createSourceFile(registryName, typeElement).openWriter())) {
+            new SourceGenerator(writer, typeElement, registryName, models).generate();
+        }
+    }
+
+    private MethodModel analyze(DeclaredType declaredType, PackageElement packageElement,
+      ExecutableElement method, boolean isQuery, String label) {
+
+        // Check method
+        final Set<Modifier> modifiers = method.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE))
+            throw new SkipException(method, "private methods are not supported");
+        if (!modifiers.contains(Modifier.PUBLIC)
+          && !this.elements.getPackageOf(method).equals(packageElement))
+            throw new SkipException(method, "method is not accessible from package " + packageElement);
+        if (!method.getTypeParameters().isEmpty())
+            throw new SkipException(method, "generic methods are not supported");
+        final MethodModel model = new MethodModel();
+        model.name = method.getSimpleName().toString();
+        model.isQuery = isQuery;
+        model.isStatic = modifiers.contains(Modifier.STATIC);
+        model.label = label;
+
+        // Analyze parameters the same way OperationTypeAnalysis does
+        final ExecutableType methodType = (ExecutableType)this.types.asMemberOf(declaredType, method);
+        List<? extends TypeMirror> paramTypes = methodType.getParameterTypes();
+        if (paramTypes.stream().anyMatch(ptype -> this.types.isSameType(ptype, this.pageRequestType)))
+            throw new SkipException(method, "pageable queries are not supported");
+        model.contextParamType = !paramTypes.isEmpty()
+          && (this.contextType == null || this.types.isAssignable(this.contextType, paramTypes.get(0))) ?
+            this.sourceType(method, paramTypes.get(0), packageElement) : null;
+        if (model.contextParamType != null)
+            paramTypes = paramTypes.subList(1, paramTypes.size());
+        model.hasReporter = !paramTypes.isEmpty() && this.types.isSameType(paramTypes.get(0), this.reporterType);
+        model.hasProgress = model.hasReporter
+          || (!paramTypes.isEmpty() && this.types.isAssignable(this.progressType, paramTypes.get(0)));
+        if (model.hasProgress)
+            paramTypes = paramTypes.subList(1, paramTypes.size());
+        model.hasConfig = !paramTypes.isEmpty();
+        if (model.hasConfig) {
+            if (paramTypes.get(0).getKind().isPrimitive())
+                throw new SkipException(method, "primitive configuration types are not supported");
+            model.configType = this.sourceType(method, paramTypes.get(0), packageElement);
+            paramTypes = paramTypes.subList(1, paramTypes.size());
+        } else
+            model.configType = Void.class.getName();
+        if (!paramTypes.isEmpty())
+            throw new SkipException(method, "invalid parameters for method");
+
+        // Analyze return type, unwrapping any CompletionStage
+        TypeMirror returnType = methodType.getReturnType();
+        final DeclaredType stageType = this.asCompletionStage(returnType);
+        model.isAsync = stageType != null;
+        if (model.isAsync) {
+            final List<? extends TypeMirror> stageArgs = stageType.getTypeArguments();
+            if (stageArgs.size() != 1 || stageArgs.get(0).getKind() != TypeKind.DECLARED)
+                throw new SkipException(method, "asynchronous result type must be a class or interface");
+            returnType = stageArgs.get(0);
+        }
+        if (isQuery) {
+            if (returnType.getKind() != TypeKind.DECLARED
+              || !this.types.isSameType(this.types.erasure(returnType), this.streamType))
+                throw new SkipException(method, String.format(
+                  "method is required to return %s or %s<%s>", STREAM, COMPLETION_STAGE, STREAM));
+            final List<? extends TypeMirror> typeArgs = ((DeclaredType)returnType).getTypeArguments();
+            if (typeArgs.size() != 1
+              || typeArgs.get(0).getKind() != TypeKind.DECLARED
+              || !((DeclaredType)typeArgs.get(0)).getTypeArguments().isEmpty())
+                throw new SkipException(method, "query result item type must be a non-generic class or interface");
+            model.resultType = this.sourceType(method, typeArgs.get(0), packageElement);
+        } else {
+            model.isVoid = returnType.getKind() == TypeKind.VOID;
+            if (model.isVoid)
+                model.resultType = Void.class.getName();
+            else if (returnType.getKind().isPrimitive())
+                model.resultType = this.types.boxedClass((PrimitiveType)returnType).getQualifiedName().toString();
+            else
+                model.resultType = this.sourceType(method, returnType, packageElement);
+        }
+
+        // Any checked exceptions?
+        model.throwsChecked = method.getThrownTypes().stream()
+          .anyMatch(type -> !this.types.isSubtype(type, this.runtimeExceptionType) && !this.types.isSubtype(type, this.errorType));
+        return model;
+    }
+
+    // Find the CompletionStage supertype of the given type, if any
+    private DeclaredType asCompletionStage(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED)
+            return null;
+        if (this.types.isSameType(this.types.erasure(type), this.completionStageType))
+            return (DeclaredType)type;
+        return this.types.directSupertypes(type).stream()
+          .map(this::asCompletionStage)
+          .filter(stageType -> stageType != null)
+          .findFirst()
+          .orElse(null);
+    }
+
+    private String sourceType(ExecutableElement method, TypeMirror type, PackageElement packageElement) {
+        if (!this.isAccessible(type, packageElement))
+            throw new SkipException(method, "type " + type + " is not accessible from package " + packageElement);
+        return type.toString();
+    }
+
+    private boolean isAccessible(TypeMirror type, PackageElement packageElement) {
+        switch (type.getKind()) {
+        case ARRAY:
+            return this.isAccessible(((ArrayType)type).getComponentType(), packageElement);
+        case DECLARED:
+            for (Element element = ((DeclaredType)type).asElement();
+              element instanceof TypeElement;
+              element = element.getEnclosingElement()) {
+                final Set<Modifier> modifiers = element.getModifiers();
+                if (modifiers.contains(Modifier.PRIVATE))
+                    return false;
+                if (!modifiers.contains(Modifier.PUBLIC) && !this.elements.getPackageOf(element).equals(packageElement))
+                    return false;
+            }
+            return ((DeclaredType)type).getTypeArguments().stream()
+              .allMatch(arg -> this.isAccessible(arg, packageElement));
+        case WILDCARD:
+            final WildcardType wildcard = (WildcardType)type;
+            return Stream.of(wildcard.getExtendsBound(), wildcard.getSuperBound())
+              .allMatch(bound -> bound == null || this.isAccessible(bound, packageElement));
+        case TYPEVAR:
+        case INTERSECTION:
+        case UNION:
+        case ERROR:
+            return false;
+        default:
+            return true;
+        }
+    }
+
+// MethodModel
+
+    private static class MethodModel {
+        String name;
+        String label;
+        boolean isQuery;
+        boolean isStatic;
+        String contextParamType;
+        boolean hasProgress;
+        boolean hasReporter;
+        boolean hasConfig;
+        String configType;
+        String resultType;
+        boolean isVoid;
+        boolean isAsync;
+        boolean throwsChecked;
+    }
+
+// SourceGenerator
+
+    private final class SourceGenerator {
+
+        private final PrintWriter writer;
+        private final TypeElement typeElement;
+        private final String registryName;
+        private final List<MethodModel> models;
+
+        SourceGenerator(PrintWriter writer, TypeElement typeElement, String registryName, List<MethodModel> models) {
+            this.writer = writer;
+            this.typeElement = typeElement;
+            this.registryName = registryName;
+            this.models = models;
+        }
+
+        void generate() {
+            final String typeName = this.typeElement.getQualifiedName().toString();
+            final int dot = this.registryName.lastIndexOf('.');
+            if (dot != -1) {
+                this.line(0, "package %s;", this.registryName.substring(0, dot));
+                this.line(0, "");
+            }
+            this.line(0, "@javax.annotation.processing.Generated(\"%s\")", OperationRegistryProcessor.class.getName());
+            this.line(0, "public final class %s implements %s.OperationRegistry {",
+              this.registryName.substring(dot + 1), SCANNER_PACKAGE);
+            this.line(0, "");
+            this.line(1, "@Override");
+            this.line(1, "public Class<?> getType() {");
+            this.line(2, "return %s.class;", typeName);
+            this.line(1, "}");
+            this.line(0, "");
+            this.line(1, "@Override");
+            this.line(1, "public Class<?> getContextType() {");
+            this.line(2, "return %s;", OperationRegistryProcessor.this.contextType != null ?
+              OperationRegistryProcessor.this.contextType + ".class" : "null");
+            this.line(1, "}");
+            this.line(0, "");
+            this.line(1, "@Override");
+            this.line(1, "@SuppressWarnings(\"unchecked\")");
+            this.line(1, "public java.util.List<%s.Operation<?, ?>> getOperations(final %s.OperationCache cache) {",
+              OPS_PACKAGE, SCANNER_PACKAGE);
+            this.line(2, "if (cache == null)");
+            this.line(3, "throw new IllegalArgumentException(\"null cache\");");
+            this.line(2, "final Object context = cache.getContext();");
+            this.line(2, "final java.util.ArrayList<%s.Operation<?, ?>> list = new java.util.ArrayList<>(%d);",
+              OPS_PACKAGE, this.models.size());
+            this.models.forEach(model -> this.generateOperation(typeName, model));
+            this.line(2, "return list;");
+            this.line(1, "}");
+            this.line(0, "}");
+        }
+
+        private void generateOperation(String typeName, MethodModel model) {
+
+            // Determine types
+            final String kind = (model.isStatic ? "Static" : "Instance") + (model.isQuery ? "Query" : "Action");
+            final String resultType = model.isQuery ? STREAM + "<" + model.resultType + ">" : model.resultType;
+            final String typeArgs = (model.isStatic ? "" : typeName + ", ") + model.configType + ", " + model.resultType;
+
+            // Constructor
+            this.line(2, "list.add(new %s.Abstract%s<%s>(", OPS_PACKAGE, kind, typeArgs);
+            if (!model.isStatic)
+                this.line(2, "  %s.of(%s.class),", TYPE_TOKEN, typeName);
+            this.line(2, "  new %s<%s>() { },", TYPE_TOKEN, model.configType);
+            this.line(2, "  new %s<%s>() { },", TYPE_TOKEN, resultType);
+            this.line(2, "  %s) {", OperationRegistryProcessor.this.elements.getConstantExpression(model.label));
+
+            // perform()
+            this.line(3, "@Override");
+            this.line(3, "public %s perform(%s%s config, %s progressUpdater) throws InterruptedException {",
+              resultType, model.isStatic ? "" : typeName + " target, ", model.configType, PROGRESS_CONSUMER);
+            final ArrayList<String> params = new ArrayList<>(3);
+            if (model.contextParamType != null)
+                params.add("(" + model.contextParamType + ")context");
+            if (model.hasReporter)
+                params.add(ProgressReporter.class.getName() + ".of(progressUpdater)");
+            else if (model.hasProgress)
+                params.add("progressUpdater");
+            if (model.hasConfig)
+                params.add("config");
+            final String invocation = String.format("%s.%s(%s)", model.isStatic ? typeName : "target", model.name,
+              params.stream().collect(Collectors.joining(", ")));
+            final String result = model.isAsync ? String.format("%s.Util.await(%s)", OPS_PACKAGE, invocation) : invocation;
+            int depth = 4;
+            if (model.throwsChecked) {
+                this.line(depth++, "try {");
+            }
+            if (model.isVoid) {
+                this.line(depth, "%s;", invocation);
+                this.line(depth, "return null;");
+            } else
+                this.line(depth, "return %s;", result);
+            if (model.throwsChecked) {
+                this.line(--depth, "} catch (RuntimeException e) {");
+                this.line(depth + 1, "throw e;");
+                this.line(depth, "} catch (Exception e) {");
+                this.line(depth + 1, "if (e instanceof InterruptedException)");
+                this.line(depth + 2, "throw (InterruptedException)e;");
+                this.line(depth + 1, "throw new RuntimeException(e);");
+                this.line(depth, "}");
+            }
+            this.line(3, "}");
+
+            // performAsync(), for methods returning CompletionStage
+            if (model.isAsync) {
+                this.line(0, "");
+                this.line(3, "@Override");
+                this.line(3, "public %s<%s> performAsync(%s%s config, %s progressUpdater) {", COMPLETION_STAGE,
+                  resultType, model.isStatic ? "" : typeName + " target, ", model.configType, PROGRESS_CONSUMER);
+                this.line(4, "return %s.Util.startNow(() -> %s);", OPS_PACKAGE, invocation);
+                this.line(3, "}");
+            }
+
+            // Result item operations are resolved lazily through the cache
+            if (model.isQuery) {
+                this.line(0, "");
+                this.line(3, "@Override");
+                this.line(3, "public %s<? extends %s.StaticOperation<?, ?>> getStaticOperations(%s config) {",
+                  STREAM, OPS_PACKAGE, model.configType);
+                this.line(4, "return cache.getStaticOperations(%s.class);", model.resultType);
+                this.line(3, "}");
+                this.line(0, "");
+                this.line(3, "@Override");
+                this.line(3, "public %s<? extends %s.InstanceOperation<? super %s, ?, ?>> getInstanceOperations(%s config) {",
+                  STREAM, OPS_PACKAGE, model.resultType, model.configType);
+                this.line(4, "return cache.getInstanceOperations(%s.class);", model.resultType);
+                this.line(3, "}");
+            }
+            this.line(2, "});");
+        }
+
+        private void line(int depth, String format, Object... args) {
+            for (int i = 0; i < depth; i++)
+                this.writer.print("    ");
+            this.writer.println(String.format(format, args));
+        }
+    }
+
+// SkipException
+
+    @SuppressWarnings("serial")
+    private static class SkipException extends RuntimeException {
+
+        final transient Element element;
+
+        SkipException(Element element, String message) {
+            super(message);
+            this.element = element;
+        }
+    }
+}
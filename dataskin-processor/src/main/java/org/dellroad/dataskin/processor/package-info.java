@@ -0,0 +1,10 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+/**
+ * Annotation processor that generates {@link org.dellroad.dataskin.ops.scanner.OperationRegistry} classes at build time.
+ *
+ * @see OperationRegistryProcessor
+ */
+package org.dellroad.dataskin.processor;
@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.processor;
+
+import com.google.common.reflect.TypeToken;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.dellroad.dataskin.ops.InstanceOperation;
+import org.dellroad.dataskin.ops.Operation;
+import org.dellroad.dataskin.ops.Query;
+import org.dellroad.dataskin.ops.StaticOperation;
+import org.dellroad.dataskin.ops.scanner.ActionMethodScanner;
+import org.dellroad.dataskin.ops.scanner.OperationCache;
+import org.dellroad.dataskin.ops.scanner.OperationRegistry;
+import org.dellroad.dataskin.ops.scanner.QueryMethodScanner;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class OperationRegistryProcessorTest {
+
+    private static final String MODEL_SOURCE = String.join("\n",
+      "package registry;",
+      "import java.io.IOException;",
+      "import java.util.concurrent.CompletableFuture;",
+      "import java.util.function.Consumer;",
+      "import java.util.stream.Stream;",
+      "import org.dellroad.dataskin.ops.Operation;",
+      "import org.dellroad.dataskin.ops.ProgressReporter;",
+      "import org.dellroad.dataskin.ops.annotation.DataSkinAction;",
+      "import org.dellroad.dataskin.ops.annotation.DataSkinQuery;",
+      "public class Model {",
+      "    @DataSkinQuery(label = \"Names\")",
+      "    public static Stream<String> names() { return Stream.of(\"a\", \"b\"); }",
+      "    @DataSkinQuery(label = \"Multiples\")",
+      "    public static Stream<Integer> multiples(Object context, Consumer<? super Operation.Progress> progress,",
+      "      Integer config) {",
+      "        progress.accept(new Operation.Progress(1.0));",
+      "        return Stream.of(config, config * 2);",
+      "    }",
+      "    @DataSkinQuery(label = \"Later\")",
+      "    public static CompletableFuture<Stream<String>> later(Object context, String config) {",
+      "        return CompletableFuture.completedFuture(Stream.of(config));",
+      "    }",
+      "    @DataSkinQuery(label = \"Children\")",
+      "    public Stream<Model> children() { return Stream.of(this); }",
+      "    @DataSkinAction(label = \"Length\")",
+      "    public int length(Object context, ProgressReporter reporter, String config) throws IOException {",
+      "        reporter.update(1.0);",
+      "        if (config.isEmpty())",
+      "            throw new IOException(\"empty\");",
+      "        return config.length();",
+      "    }",
+      "    @DataSkinAction(label = \"Touch\")",
+      "    public static void touch() { }",
+      "    public static class Inner {",
+      "        @DataSkinQuery(label = \"Inner\")",
+      "        public static Stream<String> inner() { return Stream.empty(); }",
+      "    }",
+      "}");
+    private static final String GENERIC_MODEL_SOURCE = String.join("\n",
+      "package registry;",
+      "import java.util.stream.Stream;",
+      "import org.dellroad.dataskin.ops.annotation.DataSkinQuery;",
+      "public class GenericModel<E> {",
+      "    @DataSkinQuery(label = \"Items\")",
+      "    public Stream<E> items() { return Stream.empty(); }",
+      "}");
+
+    private Path dir;
+    private Path classes;
+    private Path generated;
+    private List<Diagnostic<? extends JavaFileObject>> diagnostics;
+
+    @BeforeClass
+    public void compileModel() throws Exception {
+        this.dir = Files.createTempDirectory(this.getClass().getSimpleName());
+        this.classes = Files.createDirectory(this.dir.resolve("classes"));
+        this.generated = Files.createDirectory(this.dir.resolve("generated"));
+        final Path sources = Files.createDirectories(this.dir.resolve("src/registry"));
+        Files.writeString(sources.resolve("Model.java"), MODEL_SOURCE);
+        Files.writeString(sources.resolve("GenericModel.java"), GENERIC_MODEL_SOURCE);
+        final String classpath = Stream.of(Operation.class, TypeToken.class)
+          .map(OperationRegistryProcessorTest::location)
+          .collect(Collectors.joining(File.pathSeparator));
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<>();
+        final boolean success;
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(collector, Locale.ROOT, null)) {
+            final JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, collector,
+              List.of("-classpath", classpath, "-d", this.classes.toString(), "-s", this.generated.toString()), null,
+              fileManager.getJavaFileObjects(sources.resolve("Model.java"), sources.resolve("GenericModel.java")));
+            task.setProcessors(List.of(new OperationRegistryProcessor()));
+            success = task.call();
+        }
+        this.diagnostics = collector.getDiagnostics();
+        Assert.assertTrue(success, "compilation failed: " + this.diagnostics);
+    }
+
+    @AfterClass
+    public void deleteModel() throws IOException {
+        if (this.dir == null)
+            return;
+        try (Stream<Path> paths = Files.walk(this.dir)) {
+            paths.sorted(Comparator.reverseOrder())
+              .map(Path::toFile)
+              .forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void testGenerated() {
+        final String suffix = OperationRegistry.CLASS_NAME_SUFFIX + ".java";
+        Assert.assertTrue(Files.exists(this.generated.resolve("registry/Model" + suffix)));
+        Assert.assertTrue(Files.exists(this.generated.resolve("registry/Model_Inner" + suffix)));
+
+        // Generic types are skipped with a note
+        Assert.assertFalse(Files.exists(this.generated.resolve("registry/GenericModel" + suffix)));
+        Assert.assertTrue(this.diagnostics.stream()
+          .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.NOTE)
+          .map(diagnostic -> diagnostic.getMessage(Locale.ROOT))
+          .anyMatch(message -> message.contains("registry.GenericModel") && message.contains("generic types")),
+          "missing note: " + this.diagnostics);
+    }
+
+    @Test
+    public void testSameAsScanned() throws Exception {
+        final Class<?> type = this.loadModel("registry.Model");
+        final OperationCache cache = new OperationCache(null);
+        final List<Operation<?, ?>> operations = cache.getIndex(type).getOperations();
+        for (Operation<?, ?> operation : operations) {
+            Assert.assertEquals(operation.getClass().getEnclosingClass().getName(),
+              OperationRegistry.getClassName(type.getName()), "not from registry: " + operation.getLabel());
+        }
+        final List<Operation<?, ?>> scanned = Stream.<Operation<?, ?>>concat(
+            new QueryMethodScanner<>(type, null).queryInfos().map(info -> info.getOperation(null, cache)),
+            new ActionMethodScanner<>(type, null).actionInfos().map(info -> info.getOperation(null, cache)))
+          .collect(Collectors.toList());
+        Assert.assertEquals(OperationRegistryProcessorTest.describe(operations),
+          OperationRegistryProcessorTest.describe(scanned));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPerform() throws Exception {
+        final Class<?> type = this.loadModel("registry.Model");
+        final OperationCache cache = new OperationCache(null);
+        final List<Operation.Progress> updates = new ArrayList<>();
+        final Object target = type.getConstructor().newInstance();
+
+        Assert.assertEquals(this.<Stream<String>>performStatic(cache, type, "Names", null, updates)
+          .collect(Collectors.toList()), List.of("a", "b"));
+        Assert.assertEquals(this.<Stream<Integer>>performStatic(cache, type, "Multiples", 3, updates)
+          .collect(Collectors.toList()), List.of(3, 6));
+        Assert.assertEquals(updates.size(), 1);
+        Assert.assertEquals(this.<Stream<String>>performStatic(cache, type, "Later", "x", updates)
+          .collect(Collectors.toList()), List.of("x"));
+        Assert.assertNull(this.performStatic(cache, type, "Touch", null, updates));
+
+        final InstanceOperation<Object, String, Integer> length
+          = (InstanceOperation<Object, String, Integer>)this.find(cache, type, "Length");
+        Assert.assertEquals(length.perform(target, "four", updates::add), (Integer)4);
+        Assert.assertEquals(updates.size(), 2);
+        final RuntimeException e = Assert.expectThrows(RuntimeException.class, () -> length.perform(target, "", updates::add));
+        Assert.assertTrue(e.getCause() instanceof IOException, "cause " + e.getCause());
+
+        // Result item operations are found through the cache
+        final Query<Object, ?> children = (Query<Object, ?>)this.find(cache, type, "Children");
+        Assert.assertEquals(((InstanceOperation<?, ?, ?>)children).getTargetType().getRawType(), type);
+        Assert.assertEquals(children.getInstanceOperations(null).count(), 2);
+        Assert.assertEquals(children.getStaticOperations(null).count(), 4);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> R performStatic(OperationCache cache, Class<?> type, String label, Object config,
+      List<Operation.Progress> updates) throws InterruptedException {
+        return ((StaticOperation<Object, R>)this.find(cache, type, label)).perform(config, updates::add);
+    }
+
+    private Operation<?, ?> find(OperationCache cache, Class<?> type, String label) {
+        return cache.getIndex(type).getOperations().stream()
+          .filter(operation -> operation.getLabel().equals(label))
+          .findFirst()
+          .orElseThrow(() -> new AssertionError("no operation labeled \"" + label + "\""));
+    }
+
+    // Load the model classes in a new class loader
+    private Class<?> loadModel(String name) throws Exception {
+        final URLClassLoader loader = new URLClassLoader(new URL[] { this.classes.toUri().toURL() },
+          this.getClass().getClassLoader());
+        return Class.forName(name, true, loader);
+    }
+
+    private static Set<String> describe(List<Operation<?, ?>> operations) {
+        return operations.stream()
+          .map(operation -> String.format("%s %s %s %s", operation instanceof StaticOperation ? "static" : "instance",
+            operation.getLabel(), operation.getConfigType(), operation.getResultType()))
+          .collect(Collectors.toSet());
+    }
+
+    private static String location(Class<?> type) {
+        try {
+            return Path.of(type.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
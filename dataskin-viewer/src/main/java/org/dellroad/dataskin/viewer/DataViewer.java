@@ -5,8 +5,11 @@
 package org.dellroad.dataskin.viewer;
 
 import com.google.common.base.Preconditions;
+import com.vaadin.flow.component.AttachEvent;
 import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.DetachEvent;
 import com.vaadin.flow.component.Text;
+import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.applayout.AppLayout;
 import com.vaadin.flow.component.applayout.DrawerToggle;
 import com.vaadin.flow.component.button.Button;
@@ -23,9 +26,13 @@ import com.vaadin.flow.component.treegrid.TreeGrid;
 import com.vaadin.flow.data.provider.hierarchy.HierarchicalDataProvider;
 import com.vaadin.flow.data.provider.hierarchy.TreeDataProvider;
 import com.vaadin.flow.dom.ElementConstants;
+import com.vaadin.flow.shared.Registration;
 import com.vaadin.flow.theme.lumo.LumoUtility;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.concurrent.Future;
 import java.util.function.Function;
 import java.util.stream.Stream;
@@ -33,6 +40,7 @@ import java.util.stream.Stream;
 import org.dellroad.dataskin.ops.Action;
 import org.dellroad.dataskin.ops.InstanceOperation;
 import org.dellroad.dataskin.ops.Operation;
+import org.dellroad.dataskin.ops.PageableQuery;
 import org.dellroad.dataskin.ops.Query;
 import org.dellroad.dataskin.ops.StaticOperation;
 import org.dellroad.dataskin.ops.annotation.DataSkinAction;
@@ -41,6 +49,7 @@ import org.dellroad.dataskin.viewer.basic.BasicDisplayHooks;
 import org.dellroad.dataskin.viewer.basic.BasicNavTree;
 import org.dellroad.dataskin.viewer.display.DisplayHooks;
 import org.dellroad.dataskin.viewer.navtree.NavTreeNode;
+import org.dellroad.stuff.vaadin24.util.AsyncTaskStatusChangeEvent;
 
 /**
  * General purpose data viewer component.
@@ -59,17 +68,49 @@ import org.dellroad.dataskin.viewer.navtree.NavTreeNode;
 @SuppressWarnings("serial")
 public class DataViewer extends AppLayout {
 
+    /**
+     * Default value for the {@linkplain #setLargeResultThreshold large result threshold}.
+     */
+    public static final long DEFAULT_LARGE_RESULT_THRESHOLD = 100000;
+
+    /**
+     * Default value for the {@linkplain #setProgressUpdateInterval progress update interval} in milliseconds.
+     */
+    public static final long DEFAULT_PROGRESS_UPDATE_INTERVAL = 100;
+
     protected final HierarchicalDataProvider<NavTreeNode, ?> navTree;
     protected final DisplayHooks displayHooks;
     protected final Function<? super Runnable, ? extends Future<?>> executor;
+    protected final OperationExecutor.Scope executorScope;
     protected final ArrayList<ResultTab<?, ?>> resultTabs = new ArrayList<>();
     protected final TabSheet tabSheet = new TabSheet();
 
+    private boolean streamingResults;
+    private volatile long largeResultThreshold = DEFAULT_LARGE_RESULT_THRESHOLD;     // read by background tasks
+    private volatile int spillThreshold;                                            // read by background tasks
+    private long progressUpdateInterval = DEFAULT_PROGRESS_UPDATE_INTERVAL;
+
+    // Memory budget
+    private long rowBudget;
+    private ResultMemoryBudget sharedBudget;
+    private long accountedRows;                                 // our contribution to sharedBudget
+    private long viewCounter;
+
+    // Operation cancellation
+    private UI cancelUI;                                        // the UI whose detachment cancels our operations
+    private Registration cancelRegistration;
+
 // Constructor
 
     /**
      * Constructor.
      *
+     * <p>
+     * If {@code executor} is an {@link OperationExecutor.Scope}, each operation runs in the thread pool the scope
+     * selects for it, and operations still in progress are cancelled when the UI this instance is attached to is
+     * detached, e.g., when the UI is closed or its session is destroyed. Merely moving this instance within its UI
+     * does not cancel anything.
+     *
      * @param navTree navigation tree
      * @param displayHooks data display hooks
      * @param executor executor for background operations
@@ -88,11 +129,37 @@ public class DataViewer extends AppLayout {
         this.navTree = navTree;
         this.displayHooks = displayHooks;
         this.executor = executor;
+        this.executorScope = executor instanceof OperationExecutor.Scope ? (OperationExecutor.Scope)executor : null;
 
         // Build layout
         this.buildNavbar();
         this.buildDrawer();
         this.buildMain();
+
+        // Track tab usage
+        this.tabSheet.addSelectedChangeListener(e -> this.resultTabSelected());
+    }
+
+    /**
+     * Constructor taking an {@link OperationExecutor}.
+     *
+     * <p>
+     * Operations run in a new {@linkplain OperationExecutor#newScope scope} of {@code operationExecutor},
+     * so they are cancelled if still in progress when this instance's UI is detached.
+     *
+     * @param navTree navigation tree
+     * @param displayHooks data display hooks
+     * @param operationExecutor executor for background operations
+     * @throws IllegalArgumentException if any parameter is null
+     */
+    public DataViewer(HierarchicalDataProvider<NavTreeNode, ?> navTree,
+      DisplayHooks displayHooks, OperationExecutor operationExecutor) {
+        this(navTree, displayHooks, DataViewer.newScope(operationExecutor));
+    }
+
+    private static OperationExecutor.Scope newScope(OperationExecutor operationExecutor) {
+        Preconditions.checkArgument(operationExecutor != null, "null operationExecutor");
+        return operationExecutor.newScope();
     }
 
 // Top Navigation Bar
@@ -168,30 +235,205 @@ public class DataViewer extends AppLayout {
 
     @SuppressWarnings({ "rawtypes", "unchecked" })
     protected void executeOperation(Operation operation, Operation.Handle handle, Object config) {
-        if (operation instanceof Query)
-            this.newExecutingQuery((Query)operation, handle, config);
-        else
-            this.newExecutingAction((Action)operation, handle, config);
+        if (operation instanceof Query && handle instanceof PageableQuery.PageHandle) {
+            this.openPagedQueryResult((Query)operation, (PageableQuery.PageHandle)handle, config);
+            return;
+        }
+        this.buildExecutingOperation(operation, handle, config).start();
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private ExecutingOperation<?, ?, ?, ?> buildExecutingOperation(Operation operation, Operation.Handle handle, Object config) {
+        if (!(operation instanceof Query))
+            return this.newExecutingAction((Action)operation, handle, config);
+        if (this.streamingResults)
+            return this.newStreamingExecutingQuery((Query)operation, handle, config);
+        return this.newExecutingQuery((Query)operation, handle, config);
+    }
+
+    /**
+     * Get the executor for the background task that performs the given operation.
+     *
+     * <p>
+     * The implementation in {@link DataViewer} delegates to {@link OperationExecutor.Scope#forOperation} if this
+     * instance was constructed with an {@link OperationExecutor} or one of its scopes, otherwise it returns the
+     * executor given to the constructor.
+     *
+     * @param operation the operation to be performed
+     * @return executor for {@code operation}
+     */
+    protected Function<? super Runnable, ? extends Future<?>> getExecutor(Operation<?, ?> operation) {
+        return this.executorScope != null ? this.executorScope.forOperation(operation) : this.executor;
     }
 
     protected <C, R> ExecutingQuery<C, R>  newExecutingQuery(Query<C, R> query, Operation.Handle<C, Stream<R>> handle, C config) {
         return new ExecutingQuery<C, R>(this, query, handle, config);
     }
 
+    protected <C, R> StreamingExecutingQuery<C, R> newStreamingExecutingQuery(Query<C, R> query,
+      Operation.Handle<C, Stream<R>> handle, C config) {
+        return new StreamingExecutingQuery<C, R>(this, query, handle, config);
+    }
+
     protected <C, R> ExecutingAction<C, R>  newExecutingAction(Action<C, R> action, Operation.Handle<C, R> handle, C config) {
         return new ExecutingAction<C, R>(this, action, handle, config);
     }
 
+    /**
+     * Determine whether query results are streamed into their result tab as they arrive.
+     *
+     * @return true if streaming is enabled
+     * @see StreamingExecutingQuery
+     */
+    public boolean isStreamingResults() {
+        return this.streamingResults;
+    }
+
+    /**
+     * Configure whether query results are streamed into their result tab as they arrive.
+     *
+     * <p>
+     * Default is false, meaning a modal progress dialog is displayed until all rows have been read.
+     * Streaming requires Vaadin server push to be enabled.
+     *
+     * @param streamingResults true to enable streaming
+     * @see StreamingExecutingQuery
+     */
+    public void setStreamingResults(boolean streamingResults) {
+        this.streamingResults = streamingResults;
+    }
+
+    /**
+     * Get the number of rows above which the user must confirm before a query result is loaded.
+     *
+     * @return large result threshold, or zero if disabled
+     * @see #setLargeResultThreshold
+     */
+    public long getLargeResultThreshold() {
+        return this.largeResultThreshold;
+    }
+
+    /**
+     * Configure the number of rows above which the user must confirm before a query result is loaded.
+     *
+     * <p>
+     * The number of rows is known in advance only if the query's handle is a {@link Query.SizedHandle}
+     * or its result stream reports its size; otherwise, no confirmation is requested.
+     * Default is {@link #DEFAULT_LARGE_RESULT_THRESHOLD}.
+     *
+     * @param largeResultThreshold large result threshold, or zero to disable
+     * @throws IllegalArgumentException if {@code largeResultThreshold} is negative
+     */
+    public void setLargeResultThreshold(long largeResultThreshold) {
+        Preconditions.checkArgument(largeResultThreshold >= 0, "negative largeResultThreshold");
+        this.largeResultThreshold = largeResultThreshold;
+    }
+
+    /**
+     * Get the number of rows above which query results are stored on disk instead of on the heap.
+     *
+     * @return spill threshold, or zero if disabled
+     * @see #setSpillThreshold
+     */
+    public int getSpillThreshold() {
+        return this.spillThreshold;
+    }
+
+    /**
+     * Configure the number of rows above which query results are stored on disk instead of on the heap.
+     *
+     * <p>
+     * Results are only spilled if the query's result item type is {@link java.io.Serializable}. Spilled results are
+     * stored in a {@link SpillList}, which is deleted when the result tab is closed or the session ends.
+     * Sorting on columns that are not {@linkplain org.dellroad.dataskin.ops.SortableQuery pushed down} into the
+     * query is not available for spilled results. Streamed and pageable results are never spilled.
+     * Default is zero.
+     *
+     * @param spillThreshold spill threshold, or zero to disable
+     * @throws IllegalArgumentException if {@code spillThreshold} is negative
+     */
+    public void setSpillThreshold(int spillThreshold) {
+        Preconditions.checkArgument(spillThreshold >= 0, "negative spillThreshold");
+        this.spillThreshold = spillThreshold;
+    }
+
+    /**
+     * Get the minimum time between deliveries of an operation's progress updates to the display.
+     *
+     * @return progress update interval in milliseconds
+     * @see #setProgressUpdateInterval
+     */
+    public long getProgressUpdateInterval() {
+        return this.progressUpdateInterval;
+    }
+
+    /**
+     * Configure the minimum time between deliveries of an operation's progress updates to the display.
+     *
+     * <p>
+     * Operations may report progress much more often than it can usefully be displayed; only the most recent update
+     * is delivered, at most once per interval. Zero means deliver updates as fast as the session can process them.
+     * Changes apply to operations started afterward. Default is {@link #DEFAULT_PROGRESS_UPDATE_INTERVAL}, i.e., 10 Hz.
+     *
+     * @param progressUpdateInterval progress update interval in milliseconds, or zero for no limit
+     * @throws IllegalArgumentException if {@code progressUpdateInterval} is negative
+     */
+    public void setProgressUpdateInterval(long progressUpdateInterval) {
+        Preconditions.checkArgument(progressUpdateInterval >= 0, "negative progressUpdateInterval");
+        this.progressUpdateInterval = progressUpdateInterval;
+    }
+
 // ResultTabs
 
+    public <C, R> void addQueryResult(Query<C, R> query, Operation.Handle<C, Stream<R>> handle, C config, List<R> result) {
+        this.findOrCreateResultTab(query, handle, config, result);
+    }
+
+    /**
+     * Find or create the result tab for the given query, clear it, and select it.
+     *
+     * <p>
+     * Used to display query results that are delivered incrementally.
+     *
+     * @param query the query
+     * @param handle query handle
+     * @param config query configuration
+     * @return selected result tab, initially empty
+     */
+    public <C, R> ResultTab<C, R> openQueryResult(Query<C, R> query, Operation.Handle<C, Stream<R>> handle, C config) {
+        final ResultTab<C, R> resultTab = this.findOrCreateResultTab(query, handle, config, Collections.emptyList());
+        this.tabSheet.setSelectedIndex(this.resultTabs.indexOf(resultTab));
+        return resultTab;
+    }
+
+    /**
+     * Find or create the result tab for the given pageable query, refresh it, and select it.
+     *
+     * <p>
+     * Rows are fetched lazily by the result tab as they are displayed, so no background task is required.
+     *
+     * @param query the query
+     * @param handle query handle
+     * @param config query configuration
+     * @return selected result tab
+     */
+    public <C, R> ResultTab<C, R> openPagedQueryResult(Query<C, R> query, PageableQuery.PageHandle<C, R> handle, C config) {
+        return this.openQueryResult(query, handle, config);
+    }
+
     @SuppressWarnings("unchecked")
-    public <C, R> void addQueryResult(Query<C, R> query, Operation.Handle<C, Stream<R>> handle, C config, Stream<R> result) {
+    private <C, R> ResultTab<C, R> findOrCreateResultTab(Query<C, R> query,
+      Operation.Handle<C, Stream<R>> handle, C config, List<R> result) {
 
         // See if query matches an existing tab
         for (ResultTab<?, ?> resultTab : this.resultTabs) {
             if (resultTab.matches(query, handle, config)) {
-                ((ResultTab<C, R>)resultTab).reload(result);
-                return;
+                if (resultTab.isPageable())
+                    resultTab.refresh();
+                else
+                    ((ResultTab<C, R>)resultTab).reload(result);
+                this.updateMemoryUsage(resultTab);
+                return (ResultTab<C, R>)resultTab;
             }
         }
 
@@ -206,6 +448,136 @@ public class DataViewer extends AppLayout {
         // Add new tab to tab sheet
         this.tabSheet.add(tabLabel, resultTab);
         this.resultTabs.add(resultTab);
+        resultTab.setLastViewed(++this.viewCounter);
+        this.updateMemoryUsage(resultTab);
+        return resultTab;
+    }
+
+    private void resultTabSelected() {
+
+        // Ignore selection changes while a tab is being added or removed
+        final int tabIndex = this.tabSheet.getSelectedIndex();
+        if (tabIndex < 0 || tabIndex >= this.resultTabs.size())
+            return;
+        final ResultTab<?, ?> resultTab = this.resultTabs.get(tabIndex);
+        resultTab.setLastViewed(++this.viewCounter);
+
+        // Reload the tab if its rows were unloaded, unless a reload is already under way
+        if (resultTab.isUnloaded() && !resultTab.isReloading()) {
+            final ExecutingOperation<?, ?, ?, ?> reload = this.buildExecutingOperation(
+              resultTab.getQuery(), resultTab.getHandle(), resultTab.getConfig());
+            reload.taskManager.addAsyncTaskStatusChangeListener(e -> {
+                if (e.getStatus() != AsyncTaskStatusChangeEvent.STARTED)
+                    resultTab.setReloading(false);
+            });
+            resultTab.setReloading(true);
+            reload.start();
+        }
+    }
+
+// Memory Budget
+
+    /**
+     * Get the maximum number of query result rows held on the heap by this instance's result tabs.
+     *
+     * @return row budget, or zero if unlimited
+     * @see #setRowBudget
+     */
+    public long getRowBudget() {
+        return this.rowBudget;
+    }
+
+    /**
+     * Configure the maximum number of query result rows held on the heap by this instance's result tabs.
+     *
+     * <p>
+     * When new rows are loaded and this limit, or the {@linkplain #setSharedBudget shared budget}, is exceeded,
+     * the least recently viewed result tabs are {@linkplain ResultTab#unload unloaded} until the total is back
+     * within the limit. The selected tab and the tab just loaded are never unloaded. An unloaded tab keeps its query,
+     * handle, and configuration, and re-executes its query when next selected. Rows that are pageable or spilled to
+     * disk do not count toward the limit. Default is zero.
+     *
+     * @param rowBudget row budget, or zero for unlimited
+     * @throws IllegalArgumentException if {@code rowBudget} is negative
+     */
+    public void setRowBudget(long rowBudget) {
+        Preconditions.checkArgument(rowBudget >= 0, "negative rowBudget");
+        this.rowBudget = rowBudget;
+        this.updateMemoryUsage(null);
+    }
+
+    /**
+     * Get the budget shared with other instances, if any.
+     *
+     * @return shared budget, or null if none
+     * @see #setSharedBudget
+     */
+    public ResultMemoryBudget getSharedBudget() {
+        return this.sharedBudget;
+    }
+
+    /**
+     * Configure a budget shared with other instances, e.g., to impose a global limit across all sessions.
+     *
+     * @param sharedBudget shared budget, or null for none
+     * @see #setRowBudget
+     */
+    public void setSharedBudget(ResultMemoryBudget sharedBudget) {
+        this.account(0);
+        this.sharedBudget = sharedBudget;
+        this.updateMemoryUsage(null);
+    }
+
+    /**
+     * Recalculate the number of rows held on the heap, and unload inactive tabs if over budget.
+     *
+     * @param loadedTab tab that was just loaded, which will not be unloaded, or null
+     */
+    void updateMemoryUsage(ResultTab<?, ?> loadedTab) {
+        long rows = this.resultTabs.stream().mapToLong(ResultTab::getLoadedRowCount).sum();
+        this.account(rows);
+        final int selectedIndex = this.tabSheet.getSelectedIndex();
+        final ResultTab<?, ?> selectedTab = selectedIndex >= 0 && selectedIndex < this.resultTabs.size() ?
+          this.resultTabs.get(selectedIndex) : null;
+        while ((this.rowBudget > 0 && rows > this.rowBudget) || (this.sharedBudget != null && this.sharedBudget.isExceeded())) {
+            final ResultTab<?, ?> victim = this.resultTabs.stream()
+              .filter(tab -> tab != selectedTab && tab != loadedTab)
+              .filter(tab -> tab.getLoadedRowCount() > 0 && !tab.isStreaming())
+              .min(Comparator.comparingLong(ResultTab::getLastViewed))
+              .orElse(null);
+            if (victim == null)
+                break;
+            rows -= victim.getLoadedRowCount();
+            victim.unload();
+            this.account(rows);
+        }
+    }
+
+    private void account(long rows) {
+        if (this.sharedBudget != null)
+            this.sharedBudget.adjust(rows - this.accountedRows);
+        this.accountedRows = rows;
+    }
+
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        super.onAttach(attachEvent);
+        this.updateMemoryUsage(null);
+
+        // Cancel operations when the UI goes away, not when we're merely moved around within it
+        final UI ui = attachEvent.getUI();
+        if (this.executorScope != null && ui != this.cancelUI) {
+            if (this.cancelRegistration != null)
+                this.cancelRegistration.remove();
+            this.cancelRegistration = ui.addDetachListener(e -> this.executorScope.cancelAll());
+            this.cancelUI = ui;
+        }
+    }
+
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        this.account(0);
+        super.onDetach(detachEvent);
     }
 
 // Main Content Area
@@ -224,6 +596,9 @@ public class DataViewer extends AppLayout {
         final int tabIndex = this.resultTabs.indexOf(resultTab);
         Preconditions.checkState(tabIndex >= 0, "tab not found");
 
+        // Release resources held by the tab
+        resultTab.close();
+
         // Remove tab from tab sheet
         this.tabSheet.remove(tabIndex);
         this.resultTabs.remove(tabIndex);
@@ -231,6 +606,9 @@ public class DataViewer extends AppLayout {
         // If zero tabs are left, display the empty content panel
         if (this.resultTabs.isEmpty())
             this.setContent(this.buildEmptyDisplayComponent());
+
+        // Update memory usage
+        this.updateMemoryUsage(null);
     }
 
     protected <C, R> Tab buildTabLabel(ResultTab<C, R> resultTab) {
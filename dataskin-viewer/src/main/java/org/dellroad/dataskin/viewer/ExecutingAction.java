@@ -4,19 +4,27 @@
 
 package org.dellroad.dataskin.viewer;
 
+import java.util.function.Consumer;
+
 import org.dellroad.dataskin.ops.Action;
 import org.dellroad.dataskin.ops.Operation;
+import org.dellroad.dataskin.ops.Util;
 import org.dellroad.stuff.vaadin24.util.VaadinUtil;
 
 /**
  * Represents an action in progress.
  */
-public class ExecutingAction<C, R> extends ExecutingOperation<C, R, Action<C, R>> {
+public class ExecutingAction<C, R> extends ExecutingOperation<C, R, Action<C, R>, R> {
 
     public ExecutingAction(DataViewer dataViewer, Action<C, R> action, Operation.Handle<C, R> handle, C config) {
         super(dataViewer, action, handle, config);
     }
 
+    @Override
+    protected R performOperation(Consumer<? super Operation.Progress> progressUpdater) throws InterruptedException {
+        return Util.await(this.handle.performAsync(this.config, progressUpdater));
+    }
+
     @Override
     protected void handleOperationCompleted(R result) {
         this.dialog.getUI().ifPresent(ui -> VaadinUtil.accessUI(ui,
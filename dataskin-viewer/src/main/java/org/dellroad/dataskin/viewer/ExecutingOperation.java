@@ -5,6 +5,7 @@
 package org.dellroad.dataskin.viewer;
 
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.vaadin.flow.component.Text;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.dialog.Dialog;
@@ -15,9 +16,19 @@ import com.vaadin.flow.server.VaadinSession;
 import com.vaadin.flow.shared.Registration;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+import org.dellroad.dataskin.ops.AbstractProgressReporter;
 import org.dellroad.dataskin.ops.Operation;
+import org.dellroad.dataskin.ops.ProgressReporter;
 import org.dellroad.dataskin.ops.Query;
 import org.dellroad.stuff.vaadin24.util.AsyncTaskManager;
 import org.dellroad.stuff.vaadin24.util.AsyncTaskStatusChangeEvent;
@@ -25,17 +36,44 @@ import org.dellroad.stuff.vaadin24.util.VaadinUtil;
 
 /**
  * Represents an operation in progress.
+ *
+ * <p>
+ * The operation is performed by a background task, which produces a value of type {@code V}; this value is
+ * then handed to {@link #handleOperationCompleted handleOperationCompleted()} while holding the session lock.
+ * If the value is produced but never handed over, e.g., because the task was cancelled after the value was ready,
+ * it is passed to {@link #discardResult discardResult()} instead. The task is not started until {@link #start}
+ * is invoked.
+ *
+ * <p>
+ * Progress updates from the operation are coalesced: only the most recent update is kept, and it is delivered to the
+ * display at most once per {@linkplain DataViewer#setProgressUpdateInterval progress update interval}, plus once more
+ * when the task finishes. The operation's progress consumer is a {@link ProgressReporter}; when progress is reported
+ * through its {@code update()} methods, the background thread never blocks or touches the session; it only hands
+ * each delivery to a shared scheduler thread, which is the only allocation it makes. Lazy messages are computed only
+ * when delivered.
+ *
+ * @param <C> operation configuration type
+ * @param <R> operation result type
+ * @param <O> operation type
+ * @param <V> background task value type
  */
-public abstract class ExecutingOperation<C, R, O extends Operation<C, R>> {
+public abstract class ExecutingOperation<C, R, O extends Operation<C, R>, V> {
+
+    // Schedules progress deliveries for all instances
+    private static final ScheduledExecutorService PROGRESS_SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder()
+        .setNameFormat("DataSkin-Progress")
+        .setDaemon(true)
+        .build());
 
     // Context
     protected final DataViewer dataViewer;
     protected final VaadinSession session;
 
     // Task management
-    protected final AsyncTaskManager<R> taskManager;
+    protected final AsyncTaskManager<V> taskManager;
     protected final Registration listenerRegistration;
-    protected final long taskId;
+    protected long taskId;
 
     // Operation
     protected final O operation;
@@ -48,6 +86,23 @@ public abstract class ExecutingOperation<C, R, O extends Operation<C, R>> {
     protected final ProgressBar progressBar;
     protected final Button cancelButton;
 
+    // Progress delivery
+    private final ProgressReporter progressReporter = new AbstractProgressReporter() {
+        @Override
+        public void update(double ratio, Supplier<String> message) {
+            ExecutingOperation.this.reportProgress(ratio, message);
+        }
+    };
+    private final AtomicBoolean progressPending = new AtomicBoolean();     // set when an update is pending delivery
+    private volatile double pendingRatio;
+    private volatile Supplier<String> pendingMessage;
+    private final Runnable progressFlusher;
+    private long progressUpdateInterval;                                // in nanoseconds
+    private volatile long lastProgressFlushTime;
+
+    // Task value not yet delivered; see discardResult()
+    private final AtomicReference<V> undeliveredResult = new AtomicReference<>();
+
 // Constructor
 
     protected ExecutingOperation(DataViewer dataViewer, O operation, Operation.Handle<C, R> handle, C config) {
@@ -55,13 +110,14 @@ public abstract class ExecutingOperation<C, R, O extends Operation<C, R>> {
         // Sanity check
         Preconditions.checkArgument(dataViewer != null, "null dataViewer");
         Preconditions.checkArgument(operation != null, "null operation");
-        Preconditions.checkArgument(config != null, "null config");
+        Preconditions.checkArgument(config != null || !operation.requiresConfiguration(), "null config");
 
         // Initialize
         this.dataViewer = dataViewer;
-        this.taskManager = new AsyncTaskManager<R>(this.dataViewer.executor);
+        this.taskManager = new AsyncTaskManager<V>(this.dataViewer.getExecutor(operation));
         this.listenerRegistration = this.taskManager.addAsyncTaskStatusChangeListener(this::asynTaskStatusChange);
         this.session = this.taskManager.getVaadinSession();
+        this.progressFlusher = () -> VaadinUtil.accessSession(this.session, this::flushProgress);
         this.operation = operation;
         this.handle = handle;
         this.config = config;
@@ -80,16 +136,44 @@ public abstract class ExecutingOperation<C, R, O extends Operation<C, R>> {
         this.dialog.add(layout);
         this.cancelButton = new Button("Cancel", e -> this.cancel());
         this.dialog.getFooter().add(this.cancelButton);
+    }
+
+    /**
+     * Open the display and start the background task.
+     *
+     * @throws IllegalStateException if already started
+     */
+    public void start() {
+
+        // Sanity check
+        VaadinUtil.assertCurrentSession(this.session);
+        Preconditions.checkState(this.taskId == 0, "already started");
 
         // Create progress updater
-        final Consumer<Operation.Progress> progressUpdater =
-          progress -> VaadinUtil.accessSession(this.session, () -> this.updateProgress(progress));
+        this.progressUpdateInterval = TimeUnit.MILLISECONDS.toNanos(this.dataViewer.getProgressUpdateInterval());
+        this.lastProgressFlushTime = System.nanoTime() - this.progressUpdateInterval;
+
+        // Open display
+        this.openDisplay();
 
         // Start task
-        this.taskId = this.taskManager.startTask(id -> this.handle.perform(this.config, progressUpdater));
+        this.taskId = this.taskManager.startTask(id -> this.performAndHold());
+    }
 
-        // Open dialog
-        this.dialog.open();
+    // Invoked from the background thread
+    private V performAndHold() throws InterruptedException {
+        final V result = this.performOperation(this.progressReporter);
+        this.undeliveredResult.set(result);
+        if (Thread.currentThread().isInterrupted())                 // cancelled after the result was ready
+            this.discardUndeliveredResult();
+        return result;
+    }
+
+    // Invoked from either thread; whoever gets the result first discards it
+    private void discardUndeliveredResult() {
+        final V result = this.undeliveredResult.getAndSet(null);
+        if (result != null)
+            this.discardResult(result);
     }
 
     public boolean cancel() {
@@ -106,6 +190,110 @@ public abstract class ExecutingOperation<C, R, O extends Operation<C, R>> {
         return true;
     }
 
+    /**
+     * Perform the operation.
+     *
+     * <p>
+     * This method is invoked in a background thread without holding the session lock.
+     * It should return promptly with {@link InterruptedException} if the current thread is interrupted.
+     *
+     * <p>
+     * Subclasses start the operation via {@link Operation.Handle#performAsync performAsync()} and wait for it using
+     * {@link org.dellroad.dataskin.ops.Util#await Util.await()}, so that {@linkplain #cancel cancelling} the task,
+     * which interrupts this thread, also cancels an asynchronous operation's {@link CompletableFuture}.
+     *
+     * @param progressUpdater receives progress updates; this is always a {@link ProgressReporter}
+     * @return background task value
+     * @throws InterruptedException if the operation is cancelled
+     */
+    protected abstract V performOperation(Consumer<? super Operation.Progress> progressUpdater) throws InterruptedException;
+
+    /**
+     * Display this operation's progress.
+     *
+     * <p>
+     * The implementation in {@link ExecutingOperation} opens the modal progress dialog.
+     */
+    protected void openDisplay() {
+        this.dialog.open();
+    }
+
+    /**
+     * Remove this operation's progress display.
+     *
+     * <p>
+     * Invoked when the task completes, fails, or is canceled.
+     * The implementation in {@link ExecutingOperation} closes the modal progress dialog.
+     */
+    protected void closeDisplay() {
+        this.dialog.close();
+    }
+
+    /**
+     * Ask the user whether to continue the operation, and wait for the answer.
+     *
+     * <p>
+     * This method is invoked from the background thread. The message is displayed in the progress dialog
+     * (which is opened if necessary) along with a continue button; canceling the operation interrupts the
+     * background thread, causing this method to throw {@link InterruptedException}.
+     *
+     * @param message question for the user
+     * @throws InterruptedException if the operation is cancelled
+     */
+    protected void confirmContinue(String message) throws InterruptedException {
+        final CompletableFuture<Void> answer = new CompletableFuture<>();
+        VaadinUtil.accessSession(this.session, () -> {
+            this.progressPending.set(false);                        // don't let a delayed update replace the message
+            final boolean wasOpen = this.dialog.isOpened();
+            this.statusField.setText(message);
+            this.progressBar.setVisible(false);
+            final Button continueButton = new Button("Continue");
+            continueButton.addClickListener(e -> {
+                this.dialog.getFooter().remove(continueButton);
+                this.progressBar.setVisible(true);
+                if (!wasOpen)
+                    this.dialog.close();
+                answer.complete(null);
+            });
+            this.dialog.getFooter().add(continueButton);
+            this.dialog.open();
+        });
+        try {
+            answer.get();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("internal error", e);
+        }
+    }
+
+    // Invoked from the background thread; keeps only the latest update and schedules at most one flush at a time
+    private void reportProgress(double ratio, Supplier<String> message) {
+        this.pendingRatio = ratio;
+        this.pendingMessage = message;
+        if (this.progressPending.get() || !this.progressPending.compareAndSet(false, true))
+            return;
+        final long delay = this.lastProgressFlushTime + this.progressUpdateInterval - System.nanoTime();
+        PROGRESS_SCHEDULER.schedule(this.progressFlusher, Math.max(delay, 0), TimeUnit.NANOSECONDS);
+    }
+
+    // Invoked with the session locked
+    private void flushProgress() {
+        VaadinUtil.assertCurrentSession(this.session);
+        this.lastProgressFlushTime = System.nanoTime();
+        if (!this.progressPending.getAndSet(false))
+            return;
+        final Supplier<String> message = this.pendingMessage;      // if updates are concurrent, may not match the ratio
+        this.updateProgress(new Operation.Progress(this.pendingRatio, message != null ? message.get() : null));
+    }
+
+    /**
+     * Display a progress update.
+     *
+     * <p>
+     * Invoked with the session locked, at most once per {@linkplain DataViewer#setProgressUpdateInterval progress
+     * update interval}, with the most recent update reported by the operation.
+     *
+     * @param progress progress update
+     */
     protected void updateProgress(Operation.Progress progress) {
         VaadinUtil.assertCurrentSession(this.session);
         this.statusField.setText(Optional.ofNullable(progress.getMessage()).orElse(""));
@@ -113,21 +301,25 @@ public abstract class ExecutingOperation<C, R, O extends Operation<C, R>> {
         this.progressBar.setIndeterminate(progress.isIndeterminate());
     }
 
-    protected void asynTaskStatusChange(AsyncTaskStatusChangeEvent<R> event) {
+    protected void asynTaskStatusChange(AsyncTaskStatusChangeEvent<V> event) {
+        this.flushProgress();                                       // deliver the final update, if any
         switch (event.getStatus()) {
         case AsyncTaskStatusChangeEvent.STARTED:
             this.statusField.setText(String.format("Performing %s...", this.operation instanceof Query ? "query" : "action"));
             break;
         case AsyncTaskStatusChangeEvent.CANCELED:       // assume they know already, so don't notify
-            this.dialog.close();
+            this.discardUndeliveredResult();
+            this.closeDisplay();
             break;
         case AsyncTaskStatusChangeEvent.FAILED:
+            this.discardUndeliveredResult();
             this.handleOperationError(event.getException());
-            this.dialog.close();
+            this.closeDisplay();
             break;
         case AsyncTaskStatusChangeEvent.COMPLETED:
+            this.undeliveredResult.set(null);
             this.handleOperationCompleted(event.getResult());
-            this.dialog.close();
+            this.closeDisplay();
             break;
         default:
             throw new RuntimeException("internal error");
@@ -139,5 +331,18 @@ public abstract class ExecutingOperation<C, R, O extends Operation<C, R>> {
           () -> this.dataViewer.displayHooks.displayOperationError(ui, this.operation, this.config, error)));
     }
 
-    protected abstract void handleOperationCompleted(R result);
+    protected abstract void handleOperationCompleted(V result);
+
+    /**
+     * Release a background task value that will not be handed to {@link #handleOperationCompleted
+     * handleOperationCompleted()}.
+     *
+     * <p>
+     * Invoked at most once, from either the background thread or with the session locked, e.g., when the task
+     * is cancelled after its value was ready. The implementation in {@link ExecutingOperation} does nothing.
+     *
+     * @param result undelivered value, never null
+     */
+    protected void discardResult(V result) {
+    }
 }
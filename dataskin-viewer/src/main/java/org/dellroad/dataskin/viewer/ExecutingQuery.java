@@ -4,22 +4,171 @@
 
 package org.dellroad.dataskin.viewer;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 import org.dellroad.dataskin.ops.Operation;
+import org.dellroad.dataskin.ops.ProgressReporter;
 import org.dellroad.dataskin.ops.Query;
+import org.dellroad.dataskin.ops.Util;
 
 /**
  * Represents a query in progress.
+ *
+ * <p>
+ * The query's result stream is consumed in the background task, so that lazy streams don't perform their work
+ * while holding the session lock. Rows are read in chunks of {@link #CHUNK_SIZE}; after each chunk, the row count
+ * is reported as progress and the task checks for cancellation. Progress is reported through a {@link ProgressReporter}
+ * with a lazily formatted message, so reporting allocates nothing per chunk. The query's own progress and the progress
+ * of reading its rows are reported through separate {@linkplain ProgressReporter#child child} reporters, taking
+ * {@link #QUERY_PROGRESS_WEIGHT} and the remainder of the progress range, respectively.
+ *
+ * <p>
+ * If the number of rows is known in advance, either from a {@link Query.SizedHandle} or because the result stream
+ * is {@link Spliterator#SIZED}, progress is reported as a ratio, and the user is asked to confirm results larger
+ * than the {@linkplain DataViewer#getLargeResultThreshold large result threshold}.
+ *
+ * <p>
+ * Results with more rows than the {@linkplain DataViewer#getSpillThreshold spill threshold} are stored in a
+ * {@link SpillList} on disk instead of on the heap, if the query's result item type is {@link java.io.Serializable}.
  */
-public class ExecutingQuery<C, R> extends ExecutingOperation<C, Stream<R>, Query<C, R>> {
+public class ExecutingQuery<C, R> extends ExecutingOperation<C, Stream<R>, Query<C, R>, List<R>> {
+
+    /**
+     * The number of rows read between progress updates and cancellation checks.
+     */
+    public static final int CHUNK_SIZE = 1000;
+
+    /**
+     * The fraction of the progress range allocated to the query's own progress updates.
+     */
+    public static final double QUERY_PROGRESS_WEIGHT = 0.25;
+
+    // Maximum expected size for which the result list is pre-allocated
+    private static final long MAX_PRESIZE = 1 << 20;
 
     public ExecutingQuery(DataViewer dataViewer, Query<C, R> query, Operation.Handle<C, Stream<R>> handle, C config) {
         super(dataViewer, query, handle, config);
     }
 
     @Override
-    protected void handleOperationCompleted(Stream<R> result) {
+    @SuppressWarnings("unchecked")
+    protected List<R> performOperation(Consumer<? super Operation.Progress> progressUpdater) throws InterruptedException {
+        final long estimate = Query.estimateSize(this.handle, this.config);
+        final int spillThreshold = this.dataViewer.getSpillThreshold();
+        final Class<R> rowType = (Class<R>)this.operation.getResultItemType().getRawType();
+        final boolean spillable = spillThreshold > 0 && SpillList.canSpill(rowType);
+        final ProgressReporter reporter = ProgressReporter.of(progressUpdater);
+        final ProgressReporter queryReporter = reporter.child(QUERY_PROGRESS_WEIGHT);
+        final ProgressReporter readReporter = reporter.child(1.0 - QUERY_PROGRESS_WEIGHT);
+        final AtomicLong rowsRead = new AtomicLong();               // read by the lazy progress message
+        SpillList<R> spillList = null;
+        boolean success = false;
+        try (Stream<R> stream = QueryStreamTracker.track(
+          Util.await(this.handle.performAsync(this.config, queryReporter)), this.operation)) {
+            final Spliterator<R> spliterator = stream.spliterator();
+            final long size = ExecutingQuery.checkSize(this, spliterator, estimate);
+            final Supplier<String> message = () -> ExecutingQuery.readMessage(rowsRead.get(), size);
+            List<R> list = size > 0 && size <= MAX_PRESIZE && !(spillable && size > spillThreshold) ?
+              new ArrayList<>((int)size) : new ArrayList<>();
+            final ArrayList<R> chunk = new ArrayList<>(CHUNK_SIZE);
+            final Consumer<R> addToChunk = chunk::add;
+            boolean more;
+            do {
+                do {
+                    more = spliterator.tryAdvance(addToChunk);
+                } while (more && chunk.size() < CHUNK_SIZE);
+
+                // Switch to spilling to disk once the threshold is exceeded
+                if (spillable && spillList == null && list.size() + chunk.size() > spillThreshold) {
+                    spillList = new SpillList<>(rowType);
+                    spillList.addAll(list);
+                    list = spillList;
+                }
+                list.addAll(chunk);
+                chunk.clear();
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+                rowsRead.set(list.size());
+                readReporter.update(list.size(), size, message);
+            } while (more);
+            if (spillList != null)
+                spillList.finish();
+            success = true;
+            return list;
+        } finally {
+            if (!success && spillList != null)
+                spillList.close();
+        }
+    }
+
+    @Override
+    protected void handleOperationCompleted(List<R> result) {
         this.dataViewer.addQueryResult(this.operation, this.handle, this.config, result);
     }
+
+    @Override
+    protected void discardResult(List<R> result) {
+        if (result instanceof SpillList)
+            ((SpillList<R>)result).close();
+    }
+
+// Size Checks
+
+    /**
+     * Determine the expected result size and, if it exceeds the {@linkplain DataViewer#getLargeResultThreshold
+     * large result threshold}, ask the user to confirm.
+     *
+     * <p>
+     * The size reported by a {@link Spliterator#SIZED} result stream takes precedence over {@code estimate}.
+     *
+     * @param executingOperation the executing query
+     * @param spliterator result stream spliterator
+     * @param estimate size estimate from the query handle, or -1 if unknown
+     * @return expected result size, or -1 if unknown
+     * @throws InterruptedException if the operation is cancelled
+     */
+    static long checkSize(ExecutingOperation<?, ?, ?, ?> executingOperation, Spliterator<?> spliterator, long estimate)
+      throws InterruptedException {
+        return ExecutingQuery.checkSize(executingOperation, spliterator.getExactSizeIfKnown(), estimate);
+    }
+
+    /**
+     * Determine the expected result size and, if it exceeds the {@linkplain DataViewer#getLargeResultThreshold
+     * large result threshold}, ask the user to confirm.
+     *
+     * @param executingOperation the executing query
+     * @param exactSize exact result size, or -1 if unknown
+     * @param estimate size estimate from the query handle, or -1 if unknown
+     * @return expected result size, or -1 if unknown
+     * @throws InterruptedException if the operation is cancelled
+     */
+    static long checkSize(ExecutingOperation<?, ?, ?, ?> executingOperation, long exactSize, long estimate)
+      throws InterruptedException {
+        final long size = exactSize >= 0 ? exactSize : estimate;
+        final long threshold = executingOperation.dataViewer.getLargeResultThreshold();
+        if (threshold > 0 && size > threshold) {
+            executingOperation.confirmContinue(String.format("This query will return %s%,d rows. Continue?",
+              exactSize >= 0 ? "" : "about ", size));
+        }
+        return size;
+    }
+
+    /**
+     * Build a progress message for the given number of rows read.
+     *
+     * @param count number of rows read so far
+     * @param size expected result size, or -1 if unknown
+     * @return progress message
+     */
+    static String readMessage(long count, long size) {
+        if (size <= 0 || count > size)
+            return String.format("Read %,d rows...", count);
+        return String.format("Read %,d of %,d rows...", count, size);
+    }
 }
@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.viewer;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.dellroad.dataskin.ops.Operation;
+
+/**
+ * Executes background operations for {@link DataViewer}s.
+ *
+ * <p>
+ * By default, each operation runs in its own virtual thread, so operations that block on I/O don't tie up a limited
+ * pool of platform threads shared by all sessions. Virtual threads require Java 21 or later; on earlier versions,
+ * each operation runs in a (pooled) platform thread instead. Operations identified as CPU-bound by the predicate
+ * given to the constructor instead run in a fixed-size pool of platform threads, so that they can't monopolize the CPU.
+ *
+ * <p>
+ * Typically a single instance is shared by the whole application, and each {@link DataViewer} performs its operations
+ * in its own {@link Scope}; all of a scope's operations still in progress are cancelled when the UI containing its
+ * {@link DataViewer} is detached, e.g., when the UI is closed.
+ *
+ * <p>
+ * An {@link OperationExecutor} may itself be used wherever an executor function is required; operations submitted
+ * this way are not scoped and always run as if not CPU-bound.
+ *
+ * <p>
+ * Instances are thread safe.
+ *
+ * @see DataViewer#DataViewer(com.vaadin.flow.data.provider.hierarchy.HierarchicalDataProvider,
+ *  org.dellroad.dataskin.viewer.display.DisplayHooks, OperationExecutor)
+ */
+public class OperationExecutor implements Function<Runnable, Future<?>> {
+
+    /**
+     * Default maximum number of platform threads for CPU-bound operations.
+     */
+    public static final int DEFAULT_MAX_PLATFORM_THREADS = Runtime.getRuntime().availableProcessors();
+
+    private final ExecutorService blockingExecutor;
+    private final ExecutorService cpuBoundExecutor;
+    private final Predicate<? super Operation<?, ?>> cpuBound;
+    private final boolean virtualThreads;
+
+    /**
+     * Default constructor.
+     *
+     * <p>
+     * Uses {@link #DEFAULT_MAX_PLATFORM_THREADS} and treats no operations as CPU-bound.
+     */
+    public OperationExecutor() {
+        this(DEFAULT_MAX_PLATFORM_THREADS, operation -> false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxPlatformThreads maximum number of platform threads for CPU-bound operations
+     * @param cpuBound determines which operations are CPU-bound
+     * @throws IllegalArgumentException if {@code maxPlatformThreads} is not positive
+     * @throws IllegalArgumentException if {@code cpuBound} is null
+     */
+    public OperationExecutor(int maxPlatformThreads, Predicate<? super Operation<?, ?>> cpuBound) {
+        Preconditions.checkArgument(maxPlatformThreads > 0, "invalid maxPlatformThreads");
+        Preconditions.checkArgument(cpuBound != null, "null cpuBound");
+        final ExecutorService virtualThreadExecutor = OperationExecutor.newVirtualThreadExecutor();
+        this.virtualThreads = virtualThreadExecutor != null;
+        this.blockingExecutor = this.virtualThreads ? virtualThreadExecutor :
+          Executors.newCachedThreadPool(OperationExecutor.newThreadFactory("DataSkin-Operation-%d"));
+        this.cpuBoundExecutor = Executors.newFixedThreadPool(maxPlatformThreads,
+          OperationExecutor.newThreadFactory("DataSkin-CPU-%d"));
+        this.cpuBound = cpuBound;
+    }
+
+// Public Methods
+
+    /**
+     * Determine whether operations that are not CPU-bound run in virtual threads.
+     *
+     * @return true if virtual threads are in use, false if not supported by this JVM
+     */
+    public boolean isVirtualThreads() {
+        return this.virtualThreads;
+    }
+
+    /**
+     * Determine whether the given operation is CPU-bound.
+     *
+     * @param operation operation
+     * @return true if {@code operation} runs in the bounded platform thread pool
+     * @throws IllegalArgumentException if {@code operation} is null
+     */
+    public boolean isCpuBound(Operation<?, ?> operation) {
+        Preconditions.checkArgument(operation != null, "null operation");
+        return this.cpuBound.test(operation);
+    }
+
+    /**
+     * Submit a task that is not CPU-bound.
+     *
+     * @param task task to execute
+     * @return task future
+     * @throws IllegalArgumentException if {@code task} is null
+     * @throws RejectedExecutionException if this instance has been {@linkplain #shutdown shut down}
+     */
+    @Override
+    public Future<?> apply(Runnable task) {
+        Preconditions.checkArgument(task != null, "null task");
+        return this.blockingExecutor.submit(task);
+    }
+
+    /**
+     * Create a new scope for the operations of one {@link DataViewer}.
+     *
+     * @return new scope
+     */
+    public Scope newScope() {
+        return new Scope();
+    }
+
+    /**
+     * Shut down this instance, interrupting all operations in progress.
+     */
+    public void shutdown() {
+        this.blockingExecutor.shutdownNow();
+        this.cpuBoundExecutor.shutdownNow();
+    }
+
+// Internal Methods
+
+    // Executors.newVirtualThreadPerTaskExecutor() is only available on Java 21+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory newThreadFactory(String nameFormat) {
+        return new ThreadFactoryBuilder()
+          .setNameFormat(nameFormat)
+          .setDaemon(true)
+          .build();
+    }
+
+// Scope
+
+    /**
+     * A group of operations, typically those of a single {@link DataViewer}, that can be cancelled together.
+     *
+     * <p>
+     * A {@link Scope} is also an executor function for tasks that are not CPU-bound.
+     */
+    public final class Scope implements Function<Runnable, Future<?>> {
+
+        private final Set<Future<?>> futures = ConcurrentHashMap.newKeySet();
+
+        Scope() {
+        }
+
+        /**
+         * Get the {@link OperationExecutor} that owns this scope.
+         *
+         * @return owning executor
+         */
+        public OperationExecutor getOperationExecutor() {
+            return OperationExecutor.this;
+        }
+
+        /**
+         * Get an executor function for the given operation.
+         *
+         * <p>
+         * Tasks submitted to the returned function run in the bounded platform thread pool if {@code operation}
+         * is {@linkplain OperationExecutor#isCpuBound CPU-bound}, otherwise as with {@link #apply apply()};
+         * either way, they belong to this scope.
+         *
+         * @param operation operation
+         * @return executor function
+         * @throws IllegalArgumentException if {@code operation} is null
+         */
+        public Function<Runnable, Future<?>> forOperation(Operation<?, ?> operation) {
+            if (!OperationExecutor.this.isCpuBound(operation))
+                return this;
+            return task -> this.submit(OperationExecutor.this.cpuBoundExecutor, task);
+        }
+
+        /**
+         * Submit a task that is not CPU-bound.
+         *
+         * @param task task to execute
+         * @return task future
+         * @throws IllegalArgumentException if {@code task} is null
+         * @throws RejectedExecutionException if the owning {@link OperationExecutor} has been shut down
+         */
+        @Override
+        public Future<?> apply(Runnable task) {
+            return this.submit(OperationExecutor.this.blockingExecutor, task);
+        }
+
+        /**
+         * Cancel, and interrupt if running, all of this scope's tasks that have not yet completed.
+         *
+         * <p>
+         * This scope remains usable afterward.
+         *
+         * @return the number of tasks cancelled
+         */
+        public int cancelAll() {
+            int count = 0;
+            for (Future<?> future : new ArrayList<>(this.futures)) {
+                if (future.cancel(true))
+                    count++;
+            }
+            return count;
+        }
+
+        /**
+         * Get the number of this scope's tasks that have not yet completed.
+         *
+         * @return number of tasks in progress or waiting to run
+         */
+        public int getActiveCount() {
+            return this.futures.size();
+        }
+
+        private Future<?> submit(ExecutorService executor, Runnable task) {
+            Preconditions.checkArgument(task != null, "null task");
+            final FutureTask<Void> future = new FutureTask<Void>(task, null) {
+                @Override
+                protected void done() {
+                    Scope.this.futures.remove(this);
+                }
+            };
+            this.futures.add(future);
+            try {
+                executor.execute(future);
+            } catch (RejectedExecutionException e) {
+                this.futures.remove(future);
+                throw e;
+            }
+            return future;
+        }
+    }
+}
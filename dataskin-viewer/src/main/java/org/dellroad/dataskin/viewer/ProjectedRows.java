@@ -0,0 +1,611 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.viewer;
+
+import com.google.common.base.Preconditions;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.DoubleFunction;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.LongFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+import org.dellroad.dataskin.viewer.display.ItemIdentity;
+import org.dellroad.dataskin.viewer.display.RowProjection;
+
+/**
+ * A compact, columnar store of query result rows, each reduced to its {@linkplain RowProjection projected} column values
+ * and its {@linkplain ItemIdentity#getId ID}.
+ *
+ * <p>
+ * Each column is stored in its own array: primitive arrays for numeric, boolean, and {@code java.time} date and time
+ * values (with a {@link BitSet} marking nulls), and dictionary codes for strings and enums, so that repeated values are
+ * stored only once. Other values are stored as is.
+ *
+ * <p>
+ * Instances are not thread safe.
+ *
+ * @param <R> query result item type
+ */
+public class ProjectedRows<R> {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final RowProjection<R> rowProjection;
+    private final ItemIdentity<R> itemIdentity;
+    private final List<String> columnKeys = new ArrayList<>();
+    private final HashMap<String, Integer> columnIndexMap = new HashMap<>();
+    private final List<Function<? super R, ?>> extractors = new ArrayList<>();
+    private final Store[] columns;
+    private final Store ids = new ObjectStore();
+    private int size;
+
+    /**
+     * Constructor.
+     *
+     * @param rowProjection row projection
+     * @param itemIdentity item identity
+     * @throws IllegalArgumentException if either parameter is null
+     * @throws IllegalArgumentException if {@code rowProjection} has duplicate column keys
+     */
+    public ProjectedRows(RowProjection<R> rowProjection, ItemIdentity<R> itemIdentity) {
+        Preconditions.checkArgument(rowProjection != null, "null rowProjection");
+        Preconditions.checkArgument(itemIdentity != null, "null itemIdentity");
+        this.rowProjection = rowProjection;
+        this.itemIdentity = itemIdentity;
+        final List<RowProjection.Column<R>> columnList = rowProjection.getColumns();
+        this.columns = new Store[columnList.size()];
+        for (RowProjection.Column<R> column : columnList) {
+            Preconditions.checkArgument(this.columnIndexMap.put(column.getKey(), this.columnKeys.size()) == null,
+              "duplicate column key \"" + column.getKey() + "\"");
+            this.columns[this.columnKeys.size()] = ProjectedRows.newStore(column.getType());
+            this.columnKeys.add(column.getKey());
+            this.extractors.add(column.getExtractor());
+        }
+    }
+
+// Public Methods
+
+    /**
+     * Get the keys of the projected columns.
+     *
+     * @return column keys
+     */
+    public List<String> getColumnKeys() {
+        return this.columnKeys;
+    }
+
+    /**
+     * Get the index of the column with the given key.
+     *
+     * @param key column key
+     * @return column index, or -1 if not found
+     */
+    public int getColumnIndex(String key) {
+        return this.columnIndexMap.getOrDefault(key, -1);
+    }
+
+    /**
+     * Get the number of rows.
+     *
+     * @return row count
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Project and append the given item.
+     *
+     * @param item query result item
+     * @throws IllegalArgumentException if {@code item} is null
+     */
+    public void add(R item) {
+        Preconditions.checkArgument(item != null, "null item");
+        final int index = this.size;
+        this.ids.add(index, this.itemIdentity.getId(item));
+        for (int i = 0; i < this.columns.length; i++)
+            this.columns[i].add(index, this.extractors.get(i).apply(item));
+        this.size++;
+    }
+
+    /**
+     * Project and append the given items.
+     *
+     * @param items query result items
+     * @throws IllegalArgumentException if {@code items} is or contains null
+     */
+    public void addAll(Collection<? extends R> items) {
+        Preconditions.checkArgument(items != null, "null items");
+        items.forEach(this::add);
+    }
+
+    /**
+     * Get the ID of the item in the given row.
+     *
+     * @param index row index
+     * @return item ID
+     * @throws IndexOutOfBoundsException if {@code index} is out of range
+     */
+    public Object getId(int index) {
+        Preconditions.checkElementIndex(index, this.size);
+        return this.ids.get(index);
+    }
+
+    /**
+     * Get a column value.
+     *
+     * @param index row index
+     * @param column column index
+     * @return column value, possibly null
+     * @throws IndexOutOfBoundsException if either index is out of range
+     */
+    public Object getValue(int index, int column) {
+        Preconditions.checkElementIndex(index, this.size);
+        Preconditions.checkElementIndex(column, this.columns.length);
+        return this.columns[column].get(index);
+    }
+
+    /**
+     * Get a handle for the given row.
+     *
+     * @param index row index
+     * @return row handle
+     * @throws IndexOutOfBoundsException if {@code index} is out of range
+     */
+    public Row getRow(int index) {
+        Preconditions.checkElementIndex(index, this.size);
+        return new Row(index);
+    }
+
+    /**
+     * Re-fetch the full item in the given row.
+     *
+     * @param index row index
+     * @return item, or null if it no longer exists
+     * @throws IndexOutOfBoundsException if {@code index} is out of range
+     * @throws InterruptedException if interrupted
+     * @see RowProjection#refetch
+     */
+    public R refetch(int index) throws InterruptedException {
+        return this.rowProjection.refetch(this.getId(index));
+    }
+
+    /**
+     * Remove all rows.
+     */
+    public void clear() {
+        this.ids.clear();
+        for (Store column : this.columns)
+            column.clear();
+        this.size = 0;
+    }
+
+    /**
+     * Release any spare capacity, including the indexes used to dictionary-encode new values.
+     *
+     * <p>
+     * Rows may still be added afterward, at some extra cost.
+     */
+    public void trimToSize() {
+        this.ids.trimToSize(this.size);
+        for (Store column : this.columns)
+            column.trimToSize(this.size);
+    }
+
+// Row
+
+    /**
+     * A handle for one row in a {@link ProjectedRows}.
+     *
+     * <p>
+     * Handles are only valid until the {@link ProjectedRows} is {@linkplain ProjectedRows#clear cleared}.
+     */
+    public final class Row {
+
+        private final int index;
+
+        Row(int index) {
+            this.index = index;
+        }
+
+        public int getIndex() {
+            return this.index;
+        }
+
+        public Object getId() {
+            return ProjectedRows.this.getId(this.index);
+        }
+
+        public Object getValue(int column) {
+            return ProjectedRows.this.getValue(this.index, column);
+        }
+
+        public R refetch() throws InterruptedException {
+            return ProjectedRows.this.refetch(this.index);
+        }
+    }
+
+// Stores
+
+    private static Store newStore(Class<?> type) {
+        if (type == int.class || type == Integer.class)
+            return new IntStore(value -> (Integer)value, value -> value);
+        if (type == short.class || type == Short.class)
+            return new IntStore(value -> (Short)value, value -> (short)value);
+        if (type == byte.class || type == Byte.class)
+            return new IntStore(value -> (Byte)value, value -> (byte)value);
+        if (type == char.class || type == Character.class)
+            return new IntStore(value -> (Character)value, value -> (char)value);
+        if (type == long.class || type == Long.class)
+            return new LongStore(value -> (Long)value, value -> value);
+        if (type == LocalDate.class)
+            return new LongStore(value -> ((LocalDate)value).toEpochDay(), LocalDate::ofEpochDay);
+        if (type == LocalTime.class)
+            return new LongStore(value -> ((LocalTime)value).toNanoOfDay(), LocalTime::ofNanoOfDay);
+        if (type == double.class || type == Double.class)
+            return new DoubleStore(value -> value);
+        if (type == float.class || type == Float.class)
+            return new DoubleStore(value -> (float)value);
+        if (type == boolean.class || type == Boolean.class)
+            return new BooleanStore();
+        if (type == Instant.class)
+            return new TimestampStore(false);
+        if (type == LocalDateTime.class)
+            return new TimestampStore(true);
+        if (type == String.class || Enum.class.isAssignableFrom(type))
+            return new DictionaryStore();
+        return new ObjectStore();
+    }
+
+    private static int newCapacity(int capacity, int index) {
+        return Math.max(index + 1, Math.max(INITIAL_CAPACITY, capacity + (capacity >> 1)));
+    }
+
+    private abstract static class Store {
+
+        // Add a value; index is always the current number of rows
+        abstract void add(int index, Object value);
+
+        abstract Object get(int index);
+
+        abstract void clear();
+
+        abstract void trimToSize(int size);
+    }
+
+    private abstract static class PrimitiveStore extends Store {
+
+        protected BitSet nulls = new BitSet();
+
+        @Override
+        final void add(int index, Object value) {
+            if (value == null) {
+                this.nulls.set(index);
+                this.ensureCapacity(index);
+            } else
+                this.set(index, value);
+        }
+
+        @Override
+        final Object get(int index) {
+            return this.nulls.get(index) ? null : this.getNonNull(index);
+        }
+
+        @Override
+        void clear() {
+            this.nulls = new BitSet();
+        }
+
+        @Override
+        void trimToSize(int size) {
+            this.nulls = (BitSet)this.nulls.clone();            // clone() trims unused words
+        }
+
+        protected abstract void ensureCapacity(int index);
+
+        protected abstract void set(int index, Object value);
+
+        protected abstract Object getNonNull(int index);
+    }
+
+    private static final class IntStore extends PrimitiveStore {
+
+        private final ToIntFunction<Object> encoder;
+        private final IntFunction<Object> decoder;
+        private int[] values = new int[0];
+
+        IntStore(ToIntFunction<Object> encoder, IntFunction<Object> decoder) {
+            this.encoder = encoder;
+            this.decoder = decoder;
+        }
+
+        @Override
+        protected void ensureCapacity(int index) {
+            if (index >= this.values.length)
+                this.values = Arrays.copyOf(this.values, ProjectedRows.newCapacity(this.values.length, index));
+        }
+
+        @Override
+        protected void set(int index, Object value) {
+            this.ensureCapacity(index);
+            this.values[index] = this.encoder.applyAsInt(value);
+        }
+
+        @Override
+        protected Object getNonNull(int index) {
+            return this.decoder.apply(this.values[index]);
+        }
+
+        @Override
+        void clear() {
+            super.clear();
+            this.values = new int[0];
+        }
+
+        @Override
+        void trimToSize(int size) {
+            super.trimToSize(size);
+            this.values = Arrays.copyOf(this.values, size);
+        }
+    }
+
+    private static final class LongStore extends PrimitiveStore {
+
+        private final ToLongFunction<Object> encoder;
+        private final LongFunction<Object> decoder;
+        private long[] values = new long[0];
+
+        LongStore(ToLongFunction<Object> encoder, LongFunction<Object> decoder) {
+            this.encoder = encoder;
+            this.decoder = decoder;
+        }
+
+        @Override
+        protected void ensureCapacity(int index) {
+            if (index >= this.values.length)
+                this.values = Arrays.copyOf(this.values, ProjectedRows.newCapacity(this.values.length, index));
+        }
+
+        @Override
+        protected void set(int index, Object value) {
+            this.ensureCapacity(index);
+            this.values[index] = this.encoder.applyAsLong(value);
+        }
+
+        @Override
+        protected Object getNonNull(int index) {
+            return this.decoder.apply(this.values[index]);
+        }
+
+        @Override
+        void clear() {
+            super.clear();
+            this.values = new long[0];
+        }
+
+        @Override
+        void trimToSize(int size) {
+            super.trimToSize(size);
+            this.values = Arrays.copyOf(this.values, size);
+        }
+    }
+
+    private static final class DoubleStore extends PrimitiveStore {
+
+        private final DoubleFunction<Object> decoder;
+        private double[] values = new double[0];
+
+        DoubleStore(DoubleFunction<Object> decoder) {
+            this.decoder = decoder;
+        }
+
+        @Override
+        protected void ensureCapacity(int index) {
+            if (index >= this.values.length)
+                this.values = Arrays.copyOf(this.values, ProjectedRows.newCapacity(this.values.length, index));
+        }
+
+        @Override
+        protected void set(int index, Object value) {
+            this.ensureCapacity(index);
+            this.values[index] = ((Number)value).doubleValue();
+        }
+
+        @Override
+        protected Object getNonNull(int index) {
+            return this.decoder.apply(this.values[index]);
+        }
+
+        @Override
+        void clear() {
+            super.clear();
+            this.values = new double[0];
+        }
+
+        @Override
+        void trimToSize(int size) {
+            super.trimToSize(size);
+            this.values = Arrays.copyOf(this.values, size);
+        }
+    }
+
+    private static final class BooleanStore extends PrimitiveStore {
+
+        private BitSet values = new BitSet();
+
+        @Override
+        protected void ensureCapacity(int index) {
+        }
+
+        @Override
+        protected void set(int index, Object value) {
+            if ((Boolean)value)
+                this.values.set(index);
+        }
+
+        @Override
+        protected Object getNonNull(int index) {
+            return this.values.get(index);
+        }
+
+        @Override
+        void clear() {
+            super.clear();
+            this.values = new BitSet();
+        }
+
+        @Override
+        void trimToSize(int size) {
+            super.trimToSize(size);
+            this.values = (BitSet)this.values.clone();
+        }
+    }
+
+    // Stores Instant or LocalDateTime (as if UTC) values as epoch seconds plus nanoseconds
+    private static final class TimestampStore extends PrimitiveStore {
+
+        private final boolean local;
+        private long[] seconds = new long[0];
+        private int[] nanos = new int[0];
+
+        TimestampStore(boolean local) {
+            this.local = local;
+        }
+
+        @Override
+        protected void ensureCapacity(int index) {
+            if (index >= this.seconds.length) {
+                final int capacity = ProjectedRows.newCapacity(this.seconds.length, index);
+                this.seconds = Arrays.copyOf(this.seconds, capacity);
+                this.nanos = Arrays.copyOf(this.nanos, capacity);
+            }
+        }
+
+        @Override
+        protected void set(int index, Object value) {
+            this.ensureCapacity(index);
+            if (this.local) {
+                final LocalDateTime dateTime = (LocalDateTime)value;
+                this.seconds[index] = dateTime.toEpochSecond(ZoneOffset.UTC);
+                this.nanos[index] = dateTime.getNano();
+            } else {
+                final Instant instant = (Instant)value;
+                this.seconds[index] = instant.getEpochSecond();
+                this.nanos[index] = instant.getNano();
+            }
+        }
+
+        @Override
+        protected Object getNonNull(int index) {
+            return this.local ?
+              LocalDateTime.ofEpochSecond(this.seconds[index], this.nanos[index], ZoneOffset.UTC) :
+              Instant.ofEpochSecond(this.seconds[index], this.nanos[index]);
+        }
+
+        @Override
+        void clear() {
+            super.clear();
+            this.seconds = new long[0];
+            this.nanos = new int[0];
+        }
+
+        @Override
+        void trimToSize(int size) {
+            super.trimToSize(size);
+            this.seconds = Arrays.copyOf(this.seconds, size);
+            this.nanos = Arrays.copyOf(this.nanos, size);
+        }
+    }
+
+    // Stores each distinct value once; code -1 means null
+    private static final class DictionaryStore extends Store {
+
+        private final ArrayList<Object> dictionary = new ArrayList<>();
+        private HashMap<Object, Integer> dictionaryIndex = new HashMap<>();     // null after trimToSize()
+        private int[] codes = new int[0];
+
+        @Override
+        void add(int index, Object value) {
+            if (index >= this.codes.length)
+                this.codes = Arrays.copyOf(this.codes, ProjectedRows.newCapacity(this.codes.length, index));
+            if (value == null) {
+                this.codes[index] = -1;
+                return;
+            }
+            if (this.dictionaryIndex == null) {
+                this.dictionaryIndex = new HashMap<>(this.dictionary.size() * 2);
+                for (int code = 0; code < this.dictionary.size(); code++)
+                    this.dictionaryIndex.put(this.dictionary.get(code), code);
+            }
+            Integer code = this.dictionaryIndex.get(value);
+            if (code == null) {
+                code = this.dictionary.size();
+                this.dictionary.add(value);
+                this.dictionaryIndex.put(value, code);
+            }
+            this.codes[index] = code;
+        }
+
+        @Override
+        Object get(int index) {
+            final int code = this.codes[index];
+            return code != -1 ? this.dictionary.get(code) : null;
+        }
+
+        @Override
+        void clear() {
+            this.dictionary.clear();
+            this.dictionaryIndex = new HashMap<>();
+            this.codes = new int[0];
+        }
+
+        @Override
+        void trimToSize(int size) {
+            this.codes = Arrays.copyOf(this.codes, size);
+            this.dictionary.trimToSize();
+            this.dictionaryIndex = null;
+        }
+    }
+
+    private static final class ObjectStore extends Store {
+
+        private Object[] values = new Object[0];
+
+        @Override
+        void add(int index, Object value) {
+            if (index >= this.values.length)
+                this.values = Arrays.copyOf(this.values, ProjectedRows.newCapacity(this.values.length, index));
+            this.values[index] = value;
+        }
+
+        @Override
+        Object get(int index) {
+            return this.values[index];
+        }
+
+        @Override
+        void clear() {
+            this.values = new Object[0];
+        }
+
+        @Override
+        void trimToSize(int size) {
+            this.values = Arrays.copyOf(this.values, size);
+        }
+    }
+}
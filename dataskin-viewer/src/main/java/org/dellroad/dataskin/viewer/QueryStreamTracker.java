@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.viewer;
+
+import com.google.common.base.Preconditions;
+
+import java.lang.ref.Cleaner;
+import java.util.stream.Stream;
+
+import org.dellroad.dataskin.ops.Operation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Detects query result streams that are garbage collected without having been closed.
+ *
+ * <p>
+ * Query result streams may be backed by resources such as database cursors or open files, so they must always be
+ * closed. Streams passed through {@link #track track()} are registered with a {@link Cleaner}; if a tracked stream
+ * becomes unreachable before it is closed, a warning is logged that includes the label of the operation that created
+ * it, and, if {@linkplain #setCaptureStackTraces enabled}, the stack trace of where it was created.
+ */
+public final class QueryStreamTracker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(QueryStreamTracker.class);
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private static volatile boolean captureStackTraces;
+
+    private QueryStreamTracker() {
+    }
+
+    /**
+     * Track the given query result stream.
+     *
+     * @param stream query result stream
+     * @param operation the operation that created {@code stream}
+     * @param <R> stream item type
+     * @return tracked stream, which must be used in place of {@code stream}
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public static <R> Stream<R> track(Stream<R> stream, Operation<?, ?> operation) {
+        Preconditions.checkArgument(stream != null, "null stream");
+        Preconditions.checkArgument(operation != null, "null operation");
+        final Tracker tracker = new Tracker(operation.getLabel(),
+          QueryStreamTracker.captureStackTraces ? new Throwable("query stream created here") : null);
+        final Stream<R> trackedStream = stream.onClose(tracker::close);
+        tracker.cleanable = CLEANER.register(trackedStream, tracker);
+        return trackedStream;
+    }
+
+    /**
+     * Determine whether the stack trace of where each tracked stream is created is captured.
+     *
+     * @return true if stack traces are captured
+     */
+    public static boolean isCaptureStackTraces() {
+        return QueryStreamTracker.captureStackTraces;
+    }
+
+    /**
+     * Configure whether to capture the stack trace of where each tracked stream is created, for inclusion in warnings.
+     *
+     * <p>
+     * This is helpful for debugging leaks but adds overhead to every query. Default is false.
+     *
+     * @param captureStackTraces true to capture stack traces
+     */
+    public static void setCaptureStackTraces(boolean captureStackTraces) {
+        QueryStreamTracker.captureStackTraces = captureStackTraces;
+    }
+
+// Tracker
+
+    // Must not reference the tracked stream
+    private static final class Tracker implements Runnable {
+
+        private final String label;
+        private final Throwable origin;
+
+        private volatile boolean closed;
+        private volatile Cleaner.Cleanable cleanable;
+
+        Tracker(String label, Throwable origin) {
+            this.label = label;
+            this.origin = origin;
+        }
+
+        // Invoked when the stream is closed
+        void close() {
+            this.closed = true;
+            final Cleaner.Cleanable cleanable0 = this.cleanable;
+            if (cleanable0 != null)
+                cleanable0.clean();
+        }
+
+        // Invoked when the stream is closed or becomes unreachable
+        @Override
+        public void run() {
+            if (this.closed)
+                return;
+            if (this.origin != null)
+                LOG.warn("query result stream from \"{}\" was never closed", this.label, this.origin);
+            else
+                LOG.warn("query result stream from \"{}\" was never closed", this.label);
+        }
+    }
+}
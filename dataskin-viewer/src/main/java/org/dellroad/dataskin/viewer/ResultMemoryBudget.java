@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.viewer;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A limit on the total number of query result rows held on the heap by a group of {@link DataViewer}s.
+ *
+ * <p>
+ * A single instance may be {@linkplain DataViewer#setSharedBudget shared} by all of the {@link DataViewer}s in an
+ * application, across sessions, to impose a global limit. When the limit is exceeded, the {@link DataViewer} that
+ * is loading new rows unloads its own least recently viewed result tabs until the total is back within the limit,
+ * or it has no more tabs to unload.
+ *
+ * <p>
+ * Instances are thread safe.
+ *
+ * @see DataViewer#setRowBudget
+ */
+public class ResultMemoryBudget {
+
+    private final long maxRows;
+    private final AtomicLong rows = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param maxRows maximum total number of rows
+     * @throws IllegalArgumentException if {@code maxRows} is not positive
+     */
+    public ResultMemoryBudget(long maxRows) {
+        Preconditions.checkArgument(maxRows > 0, "non-positive maxRows");
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * Get the maximum total number of rows.
+     *
+     * @return row limit
+     */
+    public long getMaxRows() {
+        return this.maxRows;
+    }
+
+    /**
+     * Get the current total number of rows.
+     *
+     * @return row count
+     */
+    public long getRows() {
+        return this.rows.get();
+    }
+
+    /**
+     * Determine whether the current total exceeds the limit.
+     *
+     * @return true if over budget
+     */
+    public boolean isExceeded() {
+        return this.rows.get() > this.maxRows;
+    }
+
+    void adjust(long delta) {
+        this.rows.addAndGet(delta);
+    }
+}
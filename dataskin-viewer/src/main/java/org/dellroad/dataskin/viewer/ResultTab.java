@@ -6,33 +6,60 @@ package org.dellroad.dataskin.viewer;
 
 import com.google.common.base.Preconditions;
 import com.google.common.reflect.TypeToken;
+import com.vaadin.flow.component.Text;
+import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.contextmenu.MenuItem;
 import com.vaadin.flow.component.contextmenu.SubMenu;
 import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.grid.GridLazyDataView;
+import com.vaadin.flow.component.grid.HeaderRow;
 import com.vaadin.flow.component.grid.contextmenu.GridContextMenu;
 import com.vaadin.flow.component.html.Hr;
 import com.vaadin.flow.component.menubar.MenuBar;
+import com.vaadin.flow.component.orderedlayout.FlexComponent;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.textfield.TextField;
+import com.vaadin.flow.data.provider.CallbackDataProvider;
+import com.vaadin.flow.data.provider.DataCommunicator;
 import com.vaadin.flow.data.provider.ListDataProvider;
+import com.vaadin.flow.data.provider.SortDirection;
+import com.vaadin.flow.data.value.ValueChangeMode;
+import com.vaadin.flow.function.SerializablePredicate;
+import com.vaadin.flow.server.VaadinSession;
+import com.vaadin.flow.shared.Registration;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import org.dellroad.dataskin.ops.FilterableQuery;
 import org.dellroad.dataskin.ops.InstanceAction;
 import org.dellroad.dataskin.ops.InstanceOperation;
 import org.dellroad.dataskin.ops.InstanceQuery;
 import org.dellroad.dataskin.ops.Operation;
+import org.dellroad.dataskin.ops.OperationDescriptor;
+import org.dellroad.dataskin.ops.PageRequest;
+import org.dellroad.dataskin.ops.PageableQuery;
 import org.dellroad.dataskin.ops.Query;
+import org.dellroad.dataskin.ops.SortKey;
+import org.dellroad.dataskin.ops.SortableQuery;
 import org.dellroad.dataskin.ops.StaticAction;
 import org.dellroad.dataskin.ops.StaticOperation;
 import org.dellroad.dataskin.ops.StaticQuery;
+import org.dellroad.dataskin.viewer.display.ItemIdentity;
 import org.dellroad.dataskin.viewer.display.QueryDisplay;
+import org.dellroad.dataskin.viewer.display.RowProjection;
 
 @SuppressWarnings("serial")
 public class ResultTab<C, R> extends VerticalLayout {
@@ -43,31 +70,119 @@ public class ResultTab<C, R> extends VerticalLayout {
     // The original query that opened this tab
     private final Query<C, R> query;
     private final Operation.Handle<C, Stream<R>> handle;
+    private final PageableQuery.PageHandle<C, R> pageHandle;  // non-null if results are fetched lazily
+    private final SortableQuery<C, R> sortableQuery;          // non-null if sorting is pushed down into the query
+    private final FilterableQuery<C, R> filterableQuery;      // non-null if filtering is pushed down into the query
     private final C config;                             // possibly modified via EditQuery
 
     // GUI info
     private final MenuBar menuBar = new MenuBar();
     private final QueryDisplay<R> queryDisplay;
-    private final ListDataProvider<R> dataProvider = new ListDataProvider<R>(Collections.emptySet());
+    private final ListDataProvider<R> dataProvider = new ListDataProvider<R>(new ArrayList<>()) {
+        @Override
+        public Object getId(R item) {
+            return ResultTab.this.itemIdentity != null ? ResultTab.this.itemIdentity.getId(item) : super.getId(item);
+        }
+    };
+    private final ItemIdentity<R> itemIdentity;                 // null if items have no identity
     private final Grid<R> grid;
+    private final ProjectedRows<R> projectedRows;               // non-null if displaying projected rows
+    private final Grid<ProjectedRows<R>.Row> projectedGrid;
+    private final ListDataProvider<ProjectedRows<R>.Row> projectedDataProvider;
+    private HorizontalLayout streamingBar;
+    private Text streamingStatus;
+    private Runnable streamingAbandonAction;
+    private long expectedRowCount = -1;
+    private SpillList<R> spillList;                             // non-null if displaying spilled results
+    private Registration spillRegistration;
+
+    // Memory budget state
+    private boolean unloaded;                                   // rows discarded to free memory
+    private boolean reloading;                                  // a query to restore unloaded rows is running
+    private long lastViewed;
+
+    // Pushdown state
+    private final LinkedHashMap<String, String> filters = new LinkedHashMap<>();
+    private List<SortKey> sortKeys = Collections.emptyList();
 
 // Constructor
 
-    public ResultTab(DataViewer dataViewer, Query<C, R> query, C config, Operation.Handle<C, Stream<R>> handle, Stream<R> result) {
+    /**
+     * Constructor.
+     *
+     * <p>
+     * If {@code handle} is a {@link PageableQuery.PageHandle}, then rows are fetched lazily a page at a time as the
+     * grid requests them, and {@code result} must be empty; otherwise, {@code result} provides the rows to display.
+     *
+     * <p>
+     * If {@code query} is a {@link SortableQuery} or {@link FilterableQuery}, then sorting or filtering on grid
+     * columns whose keys match the query's sort or filter properties is pushed down into the query configuration
+     * and the query is re-executed (or, if pageable, the rows are fetched again).
+     *
+     * @param dataViewer owning viewer
+     * @param query the query
+     * @param config query configuration
+     * @param handle query handle
+     * @param result query result
+     * @throws IllegalArgumentException if any parameter other than {@code config} is null
+     */
+    @SuppressWarnings("unchecked")
+    public ResultTab(DataViewer dataViewer, Query<C, R> query, C config, Operation.Handle<C, Stream<R>> handle, List<R> result) {
         Preconditions.checkArgument(dataViewer != null, "null dataViewer");
         Preconditions.checkArgument(query != null, "null query");
-        Preconditions.checkArgument(config != null, "null config");
+        Preconditions.checkArgument(config != null || !query.requiresConfiguration(), "null config");
         Preconditions.checkArgument(handle != null, "null handle");
         Preconditions.checkArgument(result != null, "null result");
         this.dataViewer = dataViewer;
         this.query = query;
         this.config = config;
         this.handle = handle;
+        this.pageHandle = handle instanceof PageableQuery.PageHandle ? (PageableQuery.PageHandle<C, R>)handle : null;
+        Preconditions.checkArgument(this.pageHandle == null || result.isEmpty(), "non-empty result for pageable query");
+        this.sortableQuery = query instanceof SortableQuery && !((SortableQuery<C, R>)query).getSortProperties().isEmpty() ?
+          (SortableQuery<C, R>)query : null;
+        this.filterableQuery = query instanceof FilterableQuery && !((FilterableQuery<C, R>)query).getFilterProperties().isEmpty() ?
+          (FilterableQuery<C, R>)query : null;
         this.queryDisplay = this.dataViewer.displayHooks.buildQueryDisplay(this.query, this.config);
-        this.buildLayout();
         this.grid = this.queryDisplay.getGrid();
-        this.grid.setDataProvider(this.dataProvider);
-        this.reload(result);
+        this.itemIdentity = this.queryDisplay.getItemIdentity();
+        final RowProjection<R> rowProjection = this.queryDisplay.getRowProjection();
+        if (rowProjection != null && this.itemIdentity != null && this.pageHandle == null
+          && this.queryDisplay.getComponent() == this.grid) {
+            this.projectedRows = new ProjectedRows<>(rowProjection, this.itemIdentity);
+            this.projectedGrid = this.buildProjectedGrid();
+            this.projectedDataProvider = new ListDataProvider<ProjectedRows<R>.Row>(new ArrayList<>()) {
+                @Override
+                public Object getId(ProjectedRows<R>.Row row) {
+                    return row.getId();
+                }
+            };
+        } else {
+            this.projectedRows = null;
+            this.projectedGrid = null;
+            this.projectedDataProvider = null;
+        }
+        this.buildLayout();
+        if (this.projectedGrid != null)
+            this.configurePushdown(this.projectedGrid);
+        else
+            this.configurePushdown(this.grid);
+        if (this.pageHandle != null) {
+            final GridLazyDataView<R> dataView = this.grid.setItems(this::fetchPage);
+            if (this.pageHandle.supportsCount())
+                dataView.setItemCountCallback(vaadinQuery -> (int)Math.min(Math.max(this.countRows(), 0), Integer.MAX_VALUE));
+            else {
+                final long estimate = this.estimateRows();
+                if (estimate > 0)
+                    dataView.setItemCountEstimate((int)Math.min(estimate, Integer.MAX_VALUE));
+            }
+        } else {
+            if (this.projectedGrid != null)
+                this.projectedGrid.setDataProvider(this.projectedDataProvider);
+            else
+                this.grid.setDataProvider(this.dataProvider);
+            this.reload(result);
+        }
     }
 
 // Public Methods
@@ -87,16 +202,332 @@ public class ResultTab<C, R> extends VerticalLayout {
     public boolean matches(Query<?, ?> query, Operation.Handle<?, ?> handle, Object config) {
         Preconditions.checkArgument(query != null, "null query");
         Preconditions.checkArgument(handle != null, "null handle");
-        Preconditions.checkArgument(config != null, "null config");
         return Objects.equals(this.query, query)
           && Objects.equals(this.handle, handle)
           && Objects.equals(this.config, config);
     }
 
-    public void reload(Stream<R> result) {
+    /**
+     * Determine whether this tab fetches its rows lazily from a {@link PageableQuery}.
+     *
+     * @return true if rows are fetched lazily
+     */
+    public boolean isPageable() {
+        return this.pageHandle != null;
+    }
+
+    /**
+     * Determine whether this tab displays its rows {@linkplain QueryDisplay#getRowProjection projected} onto their
+     * columns instead of holding the full items.
+     *
+     * @return true if rows are projected
+     */
+    public boolean isProjected() {
+        return this.projectedRows != null;
+    }
+
+    /**
+     * Replace the rows displayed in this tab.
+     *
+     * <p>
+     * If the {@link QueryDisplay} defines an {@linkplain QueryDisplay#getItemIdentity item identity}, then the new rows
+     * are compared with the current rows; if the same rows are present in the same order, then only the changed rows
+     * are refreshed. Otherwise, all rows are refreshed.
+     *
+     * <p>
+     * Rows that were inserted, removed, or reordered are not applied individually: in Vaadin 24, the
+     * {@link com.vaadin.flow.data.provider.ListDataView} methods that add and remove items each end with a
+     * {@link com.vaadin.flow.data.provider.DataProvider#refreshAll refreshAll()} of the whole data provider, and
+     * {@link com.vaadin.flow.data.provider.DataProvider#refreshItem refreshItem()} can't express a position change.
+     * So any structural change costs at least one full refresh, and a single {@code refreshAll()} is the cheapest
+     * option. It is not as expensive as it sounds: the grid only resends the rows within the client's visible range.
+     *
+     * <p>
+     * If {@code result} is a {@link SpillList}, this tab takes ownership of it, displays it lazily, and
+     * {@linkplain SpillList#close closes} it when this tab is closed or reloaded, or the session ends.
+     *
+     * <p>
+     * If this tab {@linkplain #isProjected is projected}, the rows are projected (including any {@link SpillList},
+     * which is then closed) and all rows are refreshed.
+     *
+     * @param result new rows
+     * @throws IllegalArgumentException if {@code result} is null
+     * @throws IllegalStateException if this tab {@linkplain #isPageable is pageable}
+     */
+    public void reload(List<R> result) {
+        Preconditions.checkArgument(result != null, "null result");
+        Preconditions.checkState(this.pageHandle == null, "pageable result tab");
+        this.abandonStreaming();
+        this.unloaded = false;
+        if (this.projectedRows != null) {
+            this.projectedRows.clear();
+            this.projectedDataProvider.getItems().clear();
+            this.appendProjectedRows(result);
+            this.projectedRows.trimToSize();
+            if (result instanceof SpillList)
+                ((SpillList<R>)result).close();
+            return;
+        }
+        if (result instanceof SpillList) {
+            this.displaySpilled((SpillList<R>)result);
+            return;
+        }
+        if (this.spillList != null) {
+            this.releaseSpill();
+            this.grid.setDataProvider(this.dataProvider);
+        }
+        final List<R> changedRows = this.itemIdentity != null ? this.findChangedRows(result) : null;
+        this.dataProvider.getItems().clear();
+        this.dataProvider.getItems().addAll(result);
+        if (changedRows != null)
+            changedRows.forEach(this.dataProvider::refreshItem);
+        else
+            this.dataProvider.refreshAll();
+    }
+
+    // Returns the changed rows in the new result, or null if rows were added, removed, or reordered (see reload())
+    private List<R> findChangedRows(List<R> result) {
+        final List<R> rows = (List<R>)this.dataProvider.getItems();
+        if (rows.size() != result.size() || rows.isEmpty())
+            return null;
+        final ArrayList<R> changedRows = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            final R oldRow = rows.get(i);
+            final R newRow = result.get(i);
+            if (!this.itemIdentity.getId(oldRow).equals(this.itemIdentity.getId(newRow)))
+                return null;
+            if (!this.itemIdentity.isSameVersion(oldRow, newRow))
+                changedRows.add(newRow);
+        }
+        return changedRows;
+    }
+
+    /**
+     * Release resources held by this tab.
+     *
+     * <p>
+     * Invoked when this tab is closed: any query still delivering rows is {@linkplain #abandonStreaming abandoned},
+     * and any spilled results are deleted.
+     */
+    public void close() {
+        this.abandonStreaming();
+        this.releaseSpill();
+    }
+
+    /**
+     * Refresh the rows displayed in this tab.
+     *
+     * <p>
+     * For {@linkplain #isPageable pageable} tabs, this causes the rows to be fetched again.
+     */
+    public void refresh() {
+        (this.projectedGrid != null ? this.projectedGrid : this.grid).getDataProvider().refreshAll();
+    }
+
+// Memory Budget
+
+    /**
+     * Get the number of rows held on the heap by this tab.
+     *
+     * @return number of rows on the heap, including projected rows but not pageable or spilled rows
+     */
+    public int getLoadedRowCount() {
+        if (this.projectedRows != null)
+            return this.projectedRows.size();
+        return this.pageHandle == null && this.spillList == null ? this.dataProvider.getItems().size() : 0;
+    }
+
+    /**
+     * Determine whether this tab's rows were {@linkplain #unload unloaded}.
+     *
+     * @return true if unloaded and not since reloaded
+     */
+    public boolean isUnloaded() {
+        return this.unloaded;
+    }
+
+    /**
+     * Determine whether a query is still appending rows to this tab.
+     *
+     * @return true if streaming
+     * @see #beginStreaming beginStreaming()
+     */
+    public boolean isStreaming() {
+        return this.streamingAbandonAction != null;
+    }
+
+    /**
+     * Discard this tab's rows to free memory, keeping its query, handle, and configuration.
+     *
+     * <p>
+     * The rows are restored the next time this tab is {@linkplain #reload reloaded}. Does nothing if this tab
+     * {@linkplain #isPageable is pageable}.
+     */
+    public void unload() {
+        if (this.pageHandle != null)
+            return;
+        this.abandonStreaming();
+        if (this.projectedRows != null) {
+            this.projectedRows.clear();
+            this.projectedRows.trimToSize();
+            this.projectedDataProvider.getItems().clear();
+            this.projectedDataProvider.refreshAll();
+            this.unloaded = true;
+            return;
+        }
+        if (this.spillList != null) {
+            this.releaseSpill();
+            this.grid.setDataProvider(this.dataProvider);
+        }
         this.dataProvider.getItems().clear();
-        result.forEach(this.dataProvider.getItems()::add);
         this.dataProvider.refreshAll();
+        this.unloaded = true;
+    }
+
+    long getLastViewed() {
+        return this.lastViewed;
+    }
+
+    void setLastViewed(long lastViewed) {
+        this.lastViewed = lastViewed;
+    }
+
+    boolean isReloading() {
+        return this.reloading;
+    }
+
+    void setReloading(boolean reloading) {
+        this.reloading = reloading;
+    }
+
+// Spilled Results
+
+    private void displaySpilled(SpillList<R> spilled) {
+        this.releaseSpill();
+        this.dataProvider.getItems().clear();
+        this.spillList = spilled;
+        this.grid.setItems(
+          vaadinQuery -> spilled.subList(vaadinQuery.getOffset(),
+            (int)Math.min((long)vaadinQuery.getOffset() + vaadinQuery.getLimit(), spilled.size())).stream(),
+          vaadinQuery -> spilled.size());
+        final VaadinSession session = VaadinSession.getCurrent();
+        this.spillRegistration = session.getService().addSessionDestroyListener(e -> {
+            if (e.getSession() == session)
+                spilled.close();
+        });
+    }
+
+    private void releaseSpill() {
+        if (this.spillList == null)
+            return;
+        this.spillRegistration.remove();
+        this.spillList.close();
+        this.spillList = null;
+        this.spillRegistration = null;
+    }
+
+// Streaming
+
+    /**
+     * Display a row count indicator and stop button while rows are being appended via {@link #appendRows appendRows()}.
+     *
+     * <p>
+     * If rows from another query are still being appended, that query is {@linkplain #abandonStreaming abandoned} first.
+     *
+     * @param stopAction invoked when the stop button is clicked; rows already appended are kept
+     * @param abandonAction invoked if this tab is closed or reloaded before {@link #endStreaming endStreaming()}
+     *  is invoked; the query must then stop and not modify this tab further
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public void beginStreaming(Runnable stopAction, Runnable abandonAction) {
+        Preconditions.checkArgument(stopAction != null, "null stopAction");
+        Preconditions.checkArgument(abandonAction != null, "null abandonAction");
+        this.abandonStreaming();
+        this.streamingAbandonAction = abandonAction;
+        this.expectedRowCount = -1;
+        this.streamingStatus = new Text("Reading rows...");
+        final Button stopButton = new Button("Stop", e -> {
+            e.getSource().setEnabled(false);
+            stopAction.run();
+        });
+        this.streamingBar = new HorizontalLayout(stopButton, this.streamingStatus);
+        this.streamingBar.setDefaultVerticalComponentAlignment(FlexComponent.Alignment.CENTER);
+        this.addComponentAtIndex(0, this.streamingBar);
+    }
+
+    /**
+     * Append rows to the end of this tab.
+     *
+     * @param rows new rows
+     * @throws IllegalArgumentException if {@code rows} is null
+     */
+    public void appendRows(List<? extends R> rows) {
+        Preconditions.checkArgument(rows != null, "null rows");
+        if (this.projectedRows != null)
+            this.appendProjectedRows(rows);
+        else {
+            this.dataProvider.getItems().addAll(rows);
+            ResultTab.refreshAppended(this.grid, this.dataProvider);
+        }
+        if (this.streamingStatus != null)
+            this.streamingStatus.setText(ExecutingQuery.readMessage(this.getLoadedRowCount(), this.expectedRowCount));
+    }
+
+    /**
+     * Configure the total number of rows expected while rows are being appended via {@link #appendRows appendRows()}.
+     *
+     * @param expectedRowCount expected number of rows, or -1 if unknown
+     */
+    public void setExpectedRowCount(long expectedRowCount) {
+        this.expectedRowCount = expectedRowCount;
+    }
+
+    /**
+     * Remove the row count indicator and stop button added by {@link #beginStreaming beginStreaming()}, if any.
+     */
+    public void endStreaming() {
+        this.streamingAbandonAction = null;
+        if (this.projectedRows != null)
+            this.projectedRows.trimToSize();
+        if (this.streamingBar == null)
+            return;
+        this.remove(this.streamingBar);
+        this.streamingBar = null;
+        this.streamingStatus = null;
+    }
+
+    /**
+     * Abandon the query whose rows are being appended to this tab, if any.
+     *
+     * <p>
+     * Invoked when this tab is closed or reloaded, so that the query is cancelled and its result stream closed.
+     */
+    public void abandonStreaming() {
+        final Runnable abandonAction = this.streamingAbandonAction;
+        if (abandonAction != null) {
+            this.streamingAbandonAction = null;
+            abandonAction.run();
+        }
+        this.endStreaming();
+    }
+
+    /**
+     * Make rows just appended to the given grid's data provider visible.
+     *
+     * <p>
+     * Rather than {@link ListDataProvider#refreshAll refreshAll()}, which resends every visible row and discards any
+     * per-item state, this just has the grid recount its rows, so only newly visible rows are sent. That only works
+     * if appended rows follow the existing rows; if the grid is sorted, a full refresh is still required.
+     */
+    private static <T> void refreshAppended(Grid<T> grid, ListDataProvider<T> dataProvider) {
+        final DataCommunicator<T> communicator = grid.getDataCommunicator();
+        if (communicator.getInMemorySorting() != null
+          || !communicator.getBackEndSorting().isEmpty()
+          || dataProvider.getSortComparator() != null) {
+            dataProvider.refreshAll();
+            return;
+        }
+        communicator.setCountCallback((CallbackDataProvider.CountCallback<T, SerializablePredicate<T>>)dataProvider::size);
     }
 
 // Grid
@@ -129,7 +560,7 @@ public class ResultTab<C, R> extends VerticalLayout {
             this.add(this.menuBar);
 
         // Add grid/component
-        this.add(this.queryDisplay.getComponent());
+        this.add(this.projectedGrid != null ? this.projectedGrid : this.queryDisplay.getComponent());
 
         // Add context menu if there are any instance operations
         List<InstanceOperation<? super R, ?, ?>> instanceOps = this.query.getInstanceOperations(this.config)
@@ -140,22 +571,29 @@ public class ResultTab<C, R> extends VerticalLayout {
           new TypeToken<InstanceAction<? super R, ?, ?>>() { });
         instanceOps = this.combineWithSeparatingNull(instanceActions, instanceQueries);
         if (!instanceOps.isEmpty()) {
+            if (this.projectedGrid != null)
+                this.addContextMenu(this.projectedGrid, instanceOps, this::refetchTarget);
+            else
+                this.addContextMenu(this.grid, instanceOps, Function.identity());
+        }
+    }
 
-            // Add context menu with instance operations
-            final GridContextMenu<R> contextMenu = this.grid.addContextMenu();
-            this.generateMenuItems(instanceOps, (label, operation) -> {
-                if (label == null)
-                    contextMenu.add(new Hr());
-                else {
-                    contextMenu.addItem(label,
-                      e -> e.getItem().ifPresent(
-                        item -> this.dataViewer.initiateInstanceOperation(operation, item)));
-                }
-            });
+    // Add context menu with instance operations, whose target is mapped from the clicked item
+    private <T> void addContextMenu(Grid<T> targetGrid, List<InstanceOperation<? super R, ?, ?>> instanceOps,
+      Function<? super T, ? extends R> targetMapper) {
+        final GridContextMenu<T> contextMenu = targetGrid.addContextMenu();
+        this.generateMenuItems(instanceOps, (label, operation) -> {
+            if (label == null)
+                contextMenu.add(new Hr());
+            else {
+                contextMenu.addItem(label,
+                  e -> e.getItem().map(targetMapper).ifPresent(
+                    target -> this.dataViewer.initiateInstanceOperation(operation, target)));
+            }
+        });
 
-            // Only display the context menu when there is an item (i.e., not when clicked on header)
-            contextMenu.setDynamicContentHandler(Objects::nonNull);
-        }
+        // Only display the context menu when there is an item (i.e., not when clicked on header)
+        contextMenu.setDynamicContentHandler(Objects::nonNull);
     }
 
     private void addStaticMenu(String title, List<? extends StaticOperation<?, ?>> operations) {
@@ -200,6 +638,179 @@ public class ResultTab<C, R> extends VerticalLayout {
           .collect(Collectors.toList());
     }
 
+// Paging
+
+    private Stream<R> fetchPage(com.vaadin.flow.data.provider.Query<R, Void> vaadinQuery) {
+        if (this.sortableQuery != null) {
+            final Set<String> sortProperties = this.sortableQuery.getSortProperties();
+            this.applySort(vaadinQuery.getSortOrders().stream()
+              .filter(order -> sortProperties.contains(order.getSorted()))
+              .map(order -> new SortKey(order.getSorted(), order.getDirection() == SortDirection.ASCENDING))
+              .collect(Collectors.toList()));
+        }
+        final PageRequest page = new PageRequest(vaadinQuery.getOffset(), vaadinQuery.getLimit());
+        try (Stream<R> stream = QueryStreamTracker.track(this.pageHandle.fetch(this.config, page, progress -> { }), this.query)) {
+            return stream.collect(Collectors.toList()).stream();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while fetching " + page, e);
+        }
+    }
+
+    private long countRows() {
+        try {
+            return this.pageHandle.count(this.config);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while counting rows", e);
+        }
+    }
+
+    private long estimateRows() {
+        try {
+            return this.pageHandle.estimateSize(this.config);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while estimating rows", e);
+        }
+    }
+
+// Projection
+
+    // Build a grid with copies of the display grid's projected columns
+    private Grid<ProjectedRows<R>.Row> buildProjectedGrid() {
+        final Grid<ProjectedRows<R>.Row> projected = new Grid<>();
+        projected.setWidth(this.grid.getWidth());
+        projected.setHeight(this.grid.getHeight());
+        projected.getThemeNames().addAll(this.grid.getThemeNames());
+        for (Grid.Column<R> column : this.grid.getColumns()) {
+            final int index = column.getKey() != null ? this.projectedRows.getColumnIndex(column.getKey()) : -1;
+            if (index == -1)
+                continue;
+            final Grid.Column<ProjectedRows<R>.Row> copy = projected.addColumn(row -> row.getValue(index))
+              .setKey(column.getKey())
+              .setWidth(column.getWidth())
+              .setFlexGrow(column.getFlexGrow())
+              .setResizable(column.isResizable())
+              .setFrozen(column.isFrozen())
+              .setTextAlign(column.getTextAlign());
+            if (column.getHeaderText() != null)
+                copy.setHeader(column.getHeaderText());
+            if (column.isSortable()) {
+                final Comparator<ProjectedRows<R>.Row> comparator
+                  = (row1, row2) -> ResultTab.compareValues(row1.getValue(index), row2.getValue(index));
+                copy.setComparator(comparator);
+            }
+            copy.setVisible(column.isVisible());
+        }
+        return projected;
+    }
+
+    private void appendProjectedRows(List<? extends R> rows) {
+        final int start = this.projectedRows.size();
+        this.projectedRows.addAll(rows);
+        final List<ProjectedRows<R>.Row> items = (List<ProjectedRows<R>.Row>)this.projectedDataProvider.getItems();
+        for (int i = start; i < this.projectedRows.size(); i++)
+            items.add(this.projectedRows.getRow(i));
+        ResultTab.refreshAppended(this.projectedGrid, this.projectedDataProvider);
+    }
+
+    private R refetchTarget(ProjectedRows<R>.Row row) {
+        final R target;
+        try {
+            target = row.refetch();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while re-fetching item", e);
+        }
+        if (target == null)
+            Notifications.error("Item no longer exists");
+        return target;
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private static int compareValues(Object value1, Object value2) {
+        if (value1 == null || value2 == null)
+            return value1 == null ? value2 == null ? 0 : -1 : 1;
+        if (value1 instanceof Comparable && value1.getClass() == value2.getClass())
+            return ((Comparable)value1).compareTo(value2);
+        return String.valueOf(value1).compareTo(String.valueOf(value2));
+    }
+
+// Pushdown
+
+    private <T> void configurePushdown(Grid<T> targetGrid) {
+
+        // Push down sorting on matching columns; for in-memory results, the rows arrive already sorted
+        if (this.sortableQuery != null) {
+            final Set<String> sortProperties = this.sortableQuery.getSortProperties();
+            for (Grid.Column<T> column : targetGrid.getColumns()) {
+                if (column.getKey() == null || !sortProperties.contains(column.getKey()))
+                    continue;
+                column.setSortable(true);
+                column.setSortProperty(column.getKey());
+                if (this.pageHandle == null)
+                    column.setComparator((item1, item2) -> 0);
+            }
+            if (this.pageHandle == null) {
+                targetGrid.addSortListener(e -> {
+                    if (this.applySort(e.getSortOrder().stream()
+                      .filter(order -> sortProperties.contains(order.getSorted().getKey()))
+                      .map(order -> new SortKey(order.getSorted().getKey(), order.getDirection() == SortDirection.ASCENDING))
+                      .collect(Collectors.toList())))
+                        this.reexecute();
+                });
+            }
+        }
+
+        // Add filter fields to a new header row for matching columns
+        if (this.filterableQuery != null) {
+            final Set<String> filterProperties = this.filterableQuery.getFilterProperties();
+            HeaderRow filterRow = null;
+            for (Grid.Column<T> column : targetGrid.getColumns()) {
+                final String property = column.getKey();
+                if (property == null || !filterProperties.contains(property))
+                    continue;
+                if (filterRow == null)
+                    filterRow = targetGrid.appendHeaderRow();
+                final TextField field = new TextField();
+                field.setPlaceholder("Filter");
+                field.setClearButtonVisible(true);
+                field.setValueChangeMode(ValueChangeMode.LAZY);
+                field.setWidthFull();
+                field.addValueChangeListener(e -> this.applyFilter(property, e.getValue()));
+                filterRow.getCell(column).setComponent(field);
+            }
+        }
+    }
+
+    // Returns true if the sort order changed
+    private boolean applySort(List<SortKey> newSortKeys) {
+        if (newSortKeys.equals(this.sortKeys))
+            return false;
+        this.sortableQuery.applySort(this.config, newSortKeys);
+        this.sortKeys = newSortKeys;
+        return true;
+    }
+
+    private void applyFilter(String property, String value) {
+        if (value == null || value.isEmpty()) {
+            if (this.filters.remove(property) == null)
+                return;
+        } else if (value.equals(this.filters.put(property, value)))
+            return;
+        this.filterableQuery.applyFilters(this.config, new LinkedHashMap<>(this.filters));
+        this.reexecute();
+    }
+
+    // Re-execute the query with the modified configuration, reloading this tab
+    private void reexecute() {
+        if (this.pageHandle != null)
+            this.refresh();
+        else
+            this.dataViewer.executeOperation(this.query, this.handle, this.config);
+    }
+
 // DerivedQuery
 
     private abstract class DerivedQuery<C2> implements StaticQuery<C2, R> {
@@ -207,6 +818,8 @@ public class ResultTab<C, R> extends VerticalLayout {
         private final String description;
         private final TypeToken<C2> configType;
 
+        private OperationDescriptor descriptor;
+
         DerivedQuery(String description, TypeToken<C2> configType) {
             this.description = description;
             this.configType = configType;
@@ -224,6 +837,13 @@ public class ResultTab<C, R> extends VerticalLayout {
             return this.description;
         }
 
+        @Override
+        public final OperationDescriptor getDescriptor() {
+            if (this.descriptor == null)
+                this.descriptor = OperationDescriptor.of(this);
+            return this.descriptor;
+        }
+
     // Query
 
         @Override
@@ -241,12 +861,46 @@ public class ResultTab<C, R> extends VerticalLayout {
             return ResultTab.this.query.getInstanceOperations(this.mapConfig(config));
         }
 
+        @Override
+        public final Operation.Handle<C2, Stream<R>> getHandle(Object target) {
+            if (ResultTab.this.pageHandle == null)
+                return StaticQuery.super.getHandle(target);
+            return new PageableQuery.PageHandle<C2, R>() {
+
+                @Override
+                public Stream<R> fetch(C2 config, PageRequest page, Consumer<? super Operation.Progress> progressUpdater)
+                  throws InterruptedException {
+                    return ResultTab.this.pageHandle.fetch(DerivedQuery.this.mapConfig(config), page, progressUpdater);
+                }
+
+                @Override
+                public long count(C2 config) throws InterruptedException {
+                    return ResultTab.this.pageHandle.count(DerivedQuery.this.mapConfig(config));
+                }
+
+                @Override
+                public long estimateSize(C2 config) throws InterruptedException {
+                    return ResultTab.this.pageHandle.estimateSize(DerivedQuery.this.mapConfig(config));
+                }
+
+                @Override
+                public boolean supportsCount() {
+                    return ResultTab.this.pageHandle.supportsCount();
+                }
+            };
+        }
+
         @Override
         public final Stream<R> perform(C2 config, Consumer<? super Operation.Progress> progressUpdater)
           throws InterruptedException {
             return ResultTab.this.handle.perform(this.mapConfig(config), progressUpdater);
         }
 
+        @Override
+        public final CompletionStage<Stream<R>> performAsync(C2 config, Consumer<? super Operation.Progress> progressUpdater) {
+            return ResultTab.this.handle.performAsync(this.mapConfig(config), progressUpdater);
+        }
+
         protected abstract C mapConfig(C2 config);
     }
 
@@ -255,7 +909,7 @@ public class ResultTab<C, R> extends VerticalLayout {
     private class ReloadQuery extends DerivedQuery<Void> {
 
         ReloadQuery() {
-            super("Reload", TypeToken.of(Void.class));
+            super("Reload", Operation.VOID_TYPE);
         }
 
         @Override
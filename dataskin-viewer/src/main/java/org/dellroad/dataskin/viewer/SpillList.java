@@ -0,0 +1,357 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.viewer;
+
+import com.google.common.base.Preconditions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * An append-only {@link List} of query result rows that is stored in a temporary file instead of on the heap.
+ *
+ * <p>
+ * Rows are serialized in pages of {@link #PAGE_SIZE} rows. Once all rows have been {@linkplain #add added},
+ * {@link #finish} must be invoked; the file is then memory-mapped and rows are read back a page at a time, with the
+ * most recently used {@link #CACHED_PAGES} pages kept on the heap. Rows must be {@link Serializable}.
+ *
+ * <p>
+ * Instances must be {@linkplain #close closed} to delete the temporary file; as a safety net, the file is also
+ * deleted if the instance is garbage collected.
+ *
+ * <p>
+ * Instances are not safe for concurrent writing, but once finished may be read by multiple threads.
+ *
+ * @param <E> row type
+ */
+public class SpillList<E> extends AbstractList<E> implements RandomAccess, Closeable {
+
+    /**
+     * The number of rows serialized together as one page.
+     */
+    public static final int PAGE_SIZE = 256;
+
+    /**
+     * The maximum number of deserialized pages cached on the heap.
+     */
+    public static final int CACHED_PAGES = 16;
+
+    private static final long MAX_SEGMENT_SIZE = 1L << 30;
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final Class<E> rowType;
+    private final long maxSegmentSize;
+    private final Resources resources;
+    private final Cleaner.Cleanable cleanable;
+
+    // Writing state
+    private final ArrayList<E> pendingPage = new ArrayList<>(PAGE_SIZE);
+    private long[] pageOffsets = new long[16];                      // page i is at pageOffsets[i]..pageOffsets[i + 1]
+    private int numPages;
+    private int size;
+
+    // Reading state
+    private volatile boolean finished;
+    private MappedByteBuffer[] segments;
+    private long[] segmentOffsets;
+    private int[] pageSegments;
+    private final LinkedHashMap<Integer, List<E>> cache = new LinkedHashMap<>(CACHED_PAGES * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<E>> eldest) {
+            return this.size() > CACHED_PAGES;
+        }
+    };
+
+    /**
+     * Constructor.
+     *
+     * <p>
+     * The temporary file is created in the default temporary-file directory.
+     *
+     * @param rowType row type, used to find the class loader for deserialization
+     * @throws IllegalArgumentException if {@code rowType} is null or not {@link Serializable}
+     * @throws UncheckedIOException if the temporary file cannot be created
+     */
+    public SpillList(Class<E> rowType) {
+        this(rowType, MAX_SEGMENT_SIZE);
+    }
+
+    // Allows tests to exercise multiple segments without creating huge files
+    SpillList(Class<E> rowType, long maxSegmentSize) {
+        Preconditions.checkArgument(rowType != null, "null rowType");
+        Preconditions.checkArgument(Serializable.class.isAssignableFrom(rowType), "rowType is not serializable");
+        Preconditions.checkArgument(maxSegmentSize > 0, "invalid maxSegmentSize");
+        this.rowType = rowType;
+        this.maxSegmentSize = maxSegmentSize;
+        try {
+            final Path file = Files.createTempFile("dataskin-", ".spill");
+            this.resources = new Resources(file, FileChannel.open(file,
+              StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE));
+        } catch (IOException e) {
+            throw new UncheckedIOException("error creating spill file", e);
+        }
+        this.cleanable = CLEANER.register(this, this.resources);
+    }
+
+    /**
+     * Determine whether rows of the given type can be stored in a {@link SpillList}.
+     *
+     * @param rowType row type
+     * @return true if {@code rowType} is {@link Serializable}
+     */
+    public static boolean canSpill(Class<?> rowType) {
+        return rowType != null && Serializable.class.isAssignableFrom(rowType);
+    }
+
+// Writing
+
+    /**
+     * Append a row.
+     *
+     * @param row row to append
+     * @return true
+     * @throws IllegalStateException if this instance is {@linkplain #finish finished} or closed
+     * @throws UncheckedIOException if an I/O error occurs
+     */
+    @Override
+    public boolean add(E row) {
+        Preconditions.checkState(!this.finished, "already finished");
+        Preconditions.checkState(this.resources.channel.isOpen(), "closed");
+        this.pendingPage.add(row);
+        this.size++;
+        this.modCount++;
+        if (this.pendingPage.size() == PAGE_SIZE)
+            this.writePage();
+        return true;
+    }
+
+    /**
+     * Finish writing rows and prepare for reading.
+     *
+     * <p>
+     * Does nothing if already invoked.
+     *
+     * @throws IllegalStateException if this instance is closed
+     * @throws UncheckedIOException if an I/O error occurs
+     */
+    public synchronized void finish() {
+        if (this.finished)
+            return;
+        Preconditions.checkState(this.resources.channel.isOpen(), "closed");
+        if (!this.pendingPage.isEmpty())
+            this.writePage();
+
+        // Map the file in segments, each starting at a page boundary
+        final ArrayList<MappedByteBuffer> segmentList = new ArrayList<>();
+        final ArrayList<Long> segmentOffsetList = new ArrayList<>();
+        this.pageSegments = new int[this.numPages];
+        try {
+            int firstPage = 0;
+            while (firstPage < this.numPages) {
+                final long start = this.pageOffsets[firstPage];
+                int endPage = firstPage + 1;
+                while (endPage < this.numPages && this.pageOffsets[endPage + 1] - start <= this.maxSegmentSize)
+                    endPage++;
+                final long end = this.pageOffsets[endPage];
+                segmentList.add(this.resources.channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+                segmentOffsetList.add(start);
+                Arrays.fill(this.pageSegments, firstPage, endPage, segmentList.size() - 1);
+                firstPage = endPage;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("error mapping spill file", e);
+        }
+        this.segments = segmentList.toArray(new MappedByteBuffer[segmentList.size()]);
+        this.segmentOffsets = segmentOffsetList.stream().mapToLong(Long::longValue).toArray();
+        this.finished = true;
+    }
+
+    private void writePage() {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try {
+            try (ObjectOutputStream output = new ObjectOutputStream(buf)) {
+                output.writeInt(this.pendingPage.size());
+                for (E row : this.pendingPage)
+                    output.writeObject(row);
+            }
+            final long offset = this.pageOffsets[this.numPages];
+            final ByteBuffer data = ByteBuffer.wrap(buf.toByteArray());
+            for (long position = offset; data.hasRemaining(); )
+                position += this.resources.channel.write(data, position);
+            if (this.numPages + 2 > this.pageOffsets.length)
+                this.pageOffsets = Arrays.copyOf(this.pageOffsets, this.pageOffsets.length * 2);
+            this.pageOffsets[++this.numPages] = offset + buf.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException("error writing spill file", e);
+        }
+        this.pendingPage.clear();
+    }
+
+// Reading
+
+    /**
+     * Get a row.
+     *
+     * @param index row index
+     * @return row at {@code index}
+     * @throws IndexOutOfBoundsException if {@code index} is out of range
+     * @throws IllegalStateException if this instance is not {@linkplain #finish finished} or is closed
+     * @throws UncheckedIOException if an I/O error occurs
+     */
+    @Override
+    public E get(int index) {
+        Preconditions.checkElementIndex(index, this.size);
+        Preconditions.checkState(this.finished, "not finished");
+        final int page = index / PAGE_SIZE;
+        List<E> rows;
+        synchronized (this) {
+            Preconditions.checkState(this.segments != null, "closed");
+            rows = this.cache.get(page);
+            if (rows == null) {
+                rows = this.readPage(page);
+                this.cache.put(page, rows);
+            }
+        }
+        return rows.get(index % PAGE_SIZE);
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<E> readPage(int page) {
+        final int segment = this.pageSegments[page];
+        final ByteBuffer data = this.segments[segment].duplicate();
+        data.position((int)(this.pageOffsets[page] - this.segmentOffsets[segment]));
+        data.limit((int)(this.pageOffsets[page + 1] - this.segmentOffsets[segment]));
+        final ClassLoader loader = this.rowType.getClassLoader();
+        try (ObjectInputStream input = new ObjectInputStream(new ByteBufferInputStream(data)) {
+                @Override
+                protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                    try {
+                        return Class.forName(desc.getName(), false, loader);
+                    } catch (ClassNotFoundException e) {
+                        return super.resolveClass(desc);
+                    }
+                }
+            }) {
+            final int count = input.readInt();
+            final ArrayList<E> rows = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+                rows.add(this.rowType.cast(input.readObject()));
+            return rows;
+        } catch (IOException e) {
+            throw new UncheckedIOException("error reading spill file", e);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("error reading spill file", e);
+        }
+    }
+
+// Closeable
+
+    /**
+     * Close this instance and delete the temporary file.
+     *
+     * <p>
+     * The JDK provides no supported way to unmap a {@link MappedByteBuffer}; the mapping is released only when the
+     * buffer is garbage collected. This method drops all references to the mapped buffers (no other references
+     * exist, because rows are only read while synchronized on this instance), so the mapping is released by the
+     * next garbage collection that finds them. Until then, the file's disk space remains in use. On POSIX systems,
+     * the file's name is removed immediately; on Windows, a mapped file can't be deleted, but because the file was
+     * opened with {@link StandardOpenOption#DELETE_ON_CLOSE}, Windows deletes it once the mapping is released.
+     *
+     * <p>
+     * Does nothing if already closed.
+     */
+    @Override
+    public synchronized void close() {
+        this.segments = null;
+        this.cache.clear();
+        this.cleanable.clean();
+    }
+
+// Resources
+
+    // Must not reference the SpillList
+    private static final class Resources implements Runnable {
+
+        final Path file;
+        final FileChannel channel;
+
+        Resources(Path file, FileChannel channel) {
+            this.file = file;
+            this.channel = channel;
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            try {
+                Files.deleteIfExists(this.file);
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+// ByteBufferInputStream
+
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buf;
+
+        ByteBufferInputStream(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public int read() {
+            return this.buf.hasRemaining() ? this.buf.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] data, int off, int len) {
+            if (len == 0)
+                return 0;
+            if (!this.buf.hasRemaining())
+                return -1;
+            len = Math.min(len, this.buf.remaining());
+            this.buf.get(data, off, len);
+            return len;
+        }
+
+        @Override
+        public int available() {
+            return this.buf.remaining();
+        }
+    }
+}
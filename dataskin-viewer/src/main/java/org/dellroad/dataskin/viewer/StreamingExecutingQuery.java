@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.viewer;
+
+import java.util.ArrayList;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.dellroad.dataskin.ops.Operation;
+import org.dellroad.dataskin.ops.PublisherQuery;
+import org.dellroad.dataskin.ops.Query;
+import org.dellroad.dataskin.ops.Util;
+import org.dellroad.stuff.vaadin24.util.VaadinUtil;
+
+/**
+ * Represents a query in progress whose rows are displayed as they arrive.
+ *
+ * <p>
+ * Instead of a modal progress dialog, the query's {@link ResultTab} is opened immediately and rows are appended
+ * to it in batches as the background task reads them. Batches are pushed to the client at most once every
+ * {@link #REFRESH_INTERVAL_MILLIS} milliseconds, except that the first row is pushed immediately. While rows are
+ * arriving, the tab displays a row count and a stop button; stopping the query keeps the rows read so far.
+ * If the tab is closed or reloaded while rows are arriving, the query is cancelled and its rows discarded.
+ *
+ * <p>
+ * No more than {@link #MAX_PENDING_ROWS} rows are ever waiting to be displayed. When reading from a {@link Stream},
+ * the background thread stops reading when that many rows are pending and resumes once they have been appended to
+ * the tab. If the query's handle is a {@link PublisherQuery.PublisherHandle}, the query's publisher is subscribed to
+ * directly, and further rows are requested only as rows are appended to the tab, so the publisher is never asked to
+ * produce rows faster than they can be displayed. Cancelling the query cancels the subscription.
+ *
+ * <p>
+ * Requires Vaadin server push to be enabled.
+ */
+public class StreamingExecutingQuery<C, R> extends ExecutingOperation<C, Stream<R>, Query<C, R>, Integer> {
+
+    /**
+     * Minimum time between pushes of new rows to the client.
+     */
+    public static final long REFRESH_INTERVAL_MILLIS = 250;
+
+    /**
+     * Maximum number of rows read or requested that have not yet been appended to the result tab.
+     */
+    public static final int MAX_PENDING_ROWS = 5 * ExecutingQuery.CHUNK_SIZE;
+
+    // Rows read but not yet displayed
+    private final ArrayList<R> pendingRows = new ArrayList<>();        // notified when drained
+    private boolean flushScheduled;                                 // guarded by pendingRows
+    private long lastFlushTime = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(REFRESH_INTERVAL_MILLIS);
+
+    private volatile Flow.Subscription subscription;               // set when consuming a PublisherQuery
+
+    private ResultTab<C, R> resultTab;
+    private boolean abandoned;                                      // tab closed or reloaded; guarded by session lock
+
+    public StreamingExecutingQuery(DataViewer dataViewer, Query<C, R> query, Operation.Handle<C, Stream<R>> handle, C config) {
+        super(dataViewer, query, handle, config);
+    }
+
+    @Override
+    protected void openDisplay() {
+        this.resultTab = this.dataViewer.openQueryResult(this.operation, this.handle, this.config);
+        this.resultTab.beginStreaming(this::cancel, this::abandon);
+    }
+
+    @Override
+    protected void closeDisplay() {
+        if (!this.abandoned) {
+            this.flushRows();
+            this.resultTab.endStreaming();
+            this.dataViewer.updateMemoryUsage(this.resultTab);
+        }
+        super.closeDisplay();                           // in case opened by confirmContinue()
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected Integer performOperation(Consumer<? super Operation.Progress> progressUpdater) throws InterruptedException {
+        final long estimate = Query.estimateSize(this.handle, this.config);
+        if (this.handle instanceof PublisherQuery.PublisherHandle) {
+            this.setExpectedRowCount(ExecutingQuery.checkSize(this, -1, estimate));
+            return this.consume(((PublisherQuery.PublisherHandle<C, R>)this.handle).publish(this.config, progressUpdater));
+        }
+        int count = 0;
+        try (Stream<R> stream = QueryStreamTracker.track(
+          Util.await(this.handle.performAsync(this.config, progressUpdater)), this.operation)) {
+            final Spliterator<R> spliterator = stream.spliterator();
+            this.setExpectedRowCount(ExecutingQuery.checkSize(this, spliterator, estimate));
+            final Consumer<R> addRow = this::addRow;
+            while (true) {
+                this.awaitPendingRoom();
+                if (!spliterator.tryAdvance(addRow))
+                    break;
+                if (++count % ExecutingQuery.CHUNK_SIZE == 0 && Thread.interrupted())
+                    throw new InterruptedException();
+            }
+        }
+        return count;
+    }
+
+    // Invoked from the background thread; waits for all rows to be published
+    private int consume(Flow.Publisher<R> publisher) throws InterruptedException {
+        final RowSubscriber subscriber = new RowSubscriber();
+        publisher.subscribe(subscriber);
+        try {
+            return Util.await(subscriber.completion);
+        } catch (InterruptedException e) {
+            final Flow.Subscription cancelTarget = this.subscription;
+            if (cancelTarget != null)
+                cancelTarget.cancel();
+            throw e;
+        }
+    }
+
+    // Invoked from the background thread
+    private void setExpectedRowCount(long size) {
+        if (size >= 0)
+            VaadinUtil.accessSession(this.session, () -> this.resultTab.setExpectedRowCount(size));
+    }
+
+    @Override
+    protected void handleOperationCompleted(Integer count) {
+        // rows are flushed by closeDisplay()
+    }
+
+    @Override
+    protected void handleOperationError(Throwable error) {
+        this.resultTab.getUI().ifPresent(ui -> VaadinUtil.accessUI(ui,
+          () -> this.dataViewer.displayHooks.displayOperationError(ui, this.operation, this.config, error)));
+    }
+
+    // Invoked with the session locked when our result tab is closed or reloaded
+    private void abandon() {
+        VaadinUtil.assertCurrentSession(this.session);
+        this.abandoned = true;
+        synchronized (this.pendingRows) {
+            this.pendingRows.clear();
+            this.pendingRows.notifyAll();
+        }
+        this.cancel();
+    }
+
+    // Invoked from the background thread; blocks while MAX_PENDING_ROWS rows are waiting to be displayed
+    private void awaitPendingRoom() throws InterruptedException {
+        synchronized (this.pendingRows) {
+            while (this.pendingRows.size() >= MAX_PENDING_ROWS)
+                this.pendingRows.wait();
+        }
+    }
+
+    // Invoked from the background thread
+    private void addRow(R row) {
+        final long delay;
+        synchronized (this.pendingRows) {
+            this.pendingRows.add(row);
+            if (this.flushScheduled)
+                return;
+            this.flushScheduled = true;
+            delay = this.lastFlushTime + TimeUnit.MILLISECONDS.toNanos(REFRESH_INTERVAL_MILLIS) - System.nanoTime();
+        }
+        final Runnable flush = () -> VaadinUtil.accessSession(this.session, this::flushRows);
+        if (delay <= 0)
+            flush.run();
+        else
+            CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(flush);
+    }
+
+    // Invoked with the session locked
+    private void flushRows() {
+        VaadinUtil.assertCurrentSession(this.session);
+        final ArrayList<R> batch;
+        synchronized (this.pendingRows) {
+            batch = new ArrayList<>(this.pendingRows);
+            this.pendingRows.clear();
+            this.pendingRows.notifyAll();
+            this.flushScheduled = false;
+            this.lastFlushTime = System.nanoTime();
+        }
+        if (batch.isEmpty() || this.abandoned)
+            return;
+        this.resultTab.appendRows(batch);
+        final Flow.Subscription requestFrom = this.subscription;
+        if (requestFrom != null)
+            requestFrom.request(batch.size());                  // replace the rows just displayed
+    }
+
+// RowSubscriber
+
+    private class RowSubscriber implements Flow.Subscriber<R> {
+
+        final CompletableFuture<Integer> completion = new CompletableFuture<>();
+
+        private int count;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            if (StreamingExecutingQuery.this.subscription != null || this.completion.isDone()) {
+                subscription.cancel();
+                return;
+            }
+            StreamingExecutingQuery.this.subscription = subscription;
+            subscription.request(MAX_PENDING_ROWS);
+        }
+
+        @Override
+        public void onNext(R row) {
+            StreamingExecutingQuery.this.addRow(row);
+            this.count++;
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.completion.completeExceptionally(error);
+        }
+
+        @Override
+        public void onComplete() {
+            this.completion.complete(this.count);
+        }
+    }
+}
@@ -10,10 +10,13 @@ import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.dialog.Dialog;
 import com.vaadin.flow.component.formlayout.FormLayout;
+import com.vaadin.flow.component.grid.Grid;
 import com.vaadin.flow.data.binder.BeanValidationBinder;
 import com.vaadin.flow.data.binder.Binder;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.concurrent.Future;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -24,7 +27,9 @@ import org.dellroad.dataskin.ops.Query;
 import org.dellroad.dataskin.ops.scanner.OperationCache;
 import org.dellroad.dataskin.viewer.Notifications;
 import org.dellroad.dataskin.viewer.display.DisplayHooks;
+import org.dellroad.dataskin.viewer.display.ItemIdentity;
 import org.dellroad.dataskin.viewer.display.QueryDisplay;
+import org.dellroad.dataskin.viewer.display.RowProjection;
 import org.dellroad.stuff.vaadin24.field.AbstractFieldBuilder;
 import org.dellroad.stuff.vaadin24.field.FieldBuilder;
 import org.dellroad.stuff.vaadin24.field.FieldBuilderContextImpl;
@@ -90,7 +95,15 @@ public class BasicDisplayHooks implements DisplayHooks {
     @Override
     public <C, R> QueryDisplay<R> buildQueryDisplay(Query<C, R> query, C config) {
         VaadinUtil.assertCurrentSession();
-        return QueryDisplay.of(this.getGridColumnScanner(query.getResultItemType()).buildGrid());
+        final GridColumnScanner<R> gridColumnScanner = this.getGridColumnScanner(query.getResultItemType());
+        final Grid<R> grid = gridColumnScanner.buildGrid();
+        final ItemIdentity<R> itemIdentity = this.getItemIdentity(query, config);
+        if (itemIdentity == null)
+            return QueryDisplay.of(grid);
+        final RowProjection<R> rowProjection = this.buildRowProjection(query, config, gridColumnScanner);
+        if (rowProjection == null)
+            return QueryDisplay.of(grid, itemIdentity);
+        return QueryDisplay.of(grid, itemIdentity, rowProjection);
     }
 
     @Override
@@ -142,6 +155,23 @@ public class BasicDisplayHooks implements DisplayHooks {
         return new GridColumnScanner<>(prototype);
     }
 
+    /**
+     * Get projected columns corresponding to the columns found by the given {@link GridColumnScanner}.
+     *
+     * <p>
+     * Each column's values are extracted by invoking its annotated method; the method's return type determines
+     * how the values are stored.
+     *
+     * @see #buildRowProjection buildRowProjection()
+     */
+    protected <T> List<RowProjection.Column<T>> getProjectedColumns(GridColumnScanner<T> gridColumnScanner) {
+        Preconditions.checkArgument(gridColumnScanner != null, "null gridColumnScanner");
+        final ArrayList<RowProjection.Column<T>> columns = new ArrayList<>();
+        gridColumnScanner.getColumnMap().forEach((key, methodInfo) -> columns.add(
+          new RowProjection.Column<>(key, methodInfo.getMethod().getReturnType(), item -> methodInfo.invoke(item))));
+        return columns;
+    }
+
     @SuppressWarnings("unchecked")
     private <T> Class<T> toRaw(TypeToken<T> type) {
         return (Class<T>)type.getRawType();
@@ -178,6 +208,35 @@ public class BasicDisplayHooks implements DisplayHooks {
         return new GridColumnScanner<>(type);
     }
 
+    /**
+     * Get the identity of the items returned by the given query, if any.
+     *
+     * <p>
+     * The implementation in {@link BasicDisplayHooks} returns null.
+     *
+     * @see QueryDisplay#getItemIdentity
+     */
+    protected <C, R> ItemIdentity<R> getItemIdentity(Query<C, R> query, C config) {
+        return null;
+    }
+
+    /**
+     * Build a projection of the items returned by the given query onto the columns found by {@code gridColumnScanner}.
+     *
+     * <p>
+     * Only invoked if {@link #getItemIdentity getItemIdentity()} returns non-null. Subclasses that can re-fetch items
+     * by ID can enable projected results by returning a {@link RowProjection} with {@link #getProjectedColumns
+     * getProjectedColumns()} as its columns.
+     *
+     * <p>
+     * The implementation in {@link BasicDisplayHooks} returns null.
+     *
+     * @see QueryDisplay#getRowProjection
+     */
+    protected <C, R> RowProjection<R> buildRowProjection(Query<C, R> query, C config, GridColumnScanner<R> gridColumnScanner) {
+        return null;
+    }
+
 // FieldBuilderContext
 
     /**
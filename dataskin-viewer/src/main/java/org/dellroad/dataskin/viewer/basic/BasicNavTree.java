@@ -14,8 +14,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.dellroad.dataskin.ops.StaticAction;
@@ -24,6 +25,7 @@ import org.dellroad.dataskin.ops.Util;
 import org.dellroad.dataskin.ops.annotation.DataSkinAction;
 import org.dellroad.dataskin.ops.annotation.DataSkinQuery;
 import org.dellroad.dataskin.ops.scanner.OperationCache;
+import org.dellroad.dataskin.ops.scanner.OperationIndex;
 import org.dellroad.dataskin.viewer.DataViewer;
 import org.dellroad.dataskin.viewer.navtree.NavTreeNode;
 
@@ -57,6 +59,9 @@ public class BasicNavTree extends TreeData<NavTreeNode> {
     /**
      * Constructor.
      *
+     * <p>
+     * Types are scanned serially in the calling thread.
+     *
      * @param types stream of Java types
      * @param operationCache scanned operation cache
      * @param labeler node label generator, or null to auto-generate from class names
@@ -64,6 +69,26 @@ public class BasicNavTree extends TreeData<NavTreeNode> {
      */
     public BasicNavTree(Stream<? extends Class<?>> types, OperationCache operationCache,
       Function<? super Class<?>, String> labeler) {
+        this(types, operationCache, labeler, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * <p>
+     * If {@code warmUpExecutor} is not null, types are scanned in parallel using it, and this constructor blocks
+     * until scanning completes. Parallel scanning loads the types' classes in {@code warmUpExecutor}'s threads;
+     * in a container, consider whether its threads are suitable (e.g., avoid {@link ForkJoinPool#commonPool}).
+     *
+     * @param types stream of Java types
+     * @param operationCache scanned operation cache
+     * @param labeler node label generator, or null to auto-generate from class names
+     * @param warmUpExecutor executor for scanning types in parallel, or null to scan serially
+     * @throws IllegalArgumentException if {@code types} or any type therein is null
+     * @see OperationCache#warmUp(java.util.Collection, Executor, java.util.function.Consumer) OperationCache.warmUp()
+     */
+    public BasicNavTree(Stream<? extends Class<?>> types, OperationCache operationCache,
+      Function<? super Class<?>, String> labeler, Executor warmUpExecutor) {
         Preconditions.checkArgument(operationCache != null, "null operationCache");
         Preconditions.checkArgument(types != null, "null types");
         this.operationCache = operationCache;
@@ -79,6 +104,10 @@ public class BasicNavTree extends TreeData<NavTreeNode> {
             labelMap.put(type, label);
         });
 
+        // Scan types in parallel; any scan errors will be rethrown below when we look up the type again
+        if (warmUpExecutor != null)
+            operationCache.warmUp(labelMap.keySet(), warmUpExecutor, null).exceptionally(e -> null).join();
+
         // Build mapping from type to supertype (slow O(n^2))
         final HashMap<Class<?>, Class<?>> supertypeMap = new HashMap<>();
         for (Class<?> type : labelMap.keySet()) {
@@ -99,23 +128,12 @@ public class BasicNavTree extends TreeData<NavTreeNode> {
         // Scan for queries and action and create the nodes
         labelMap.forEach((type, label) -> {
 
-            // Gather queries
-            final List<StaticQuery<?, ?>> queries = this.operationCache.getOperations(type)
-              .filter(StaticQuery.class::isInstance)
-              .map(c -> (StaticQuery<?, ?>)c)
-              .collect(Collectors.toList());
-
-            // Gather actions
-            final List<StaticAction<?, ?>> actions = this.operationCache.getOperations(type)
-              .filter(StaticAction.class::isInstance)
-              .map(c -> (StaticAction<?, ?>)c)
-              .collect(Collectors.toList());
-
-            // Find default query
-            final Optional<StaticQuery<?, ?>> defaultQuery = this.operationCache.getDefaultQuery(type);
+            // Get precomputed queries, actions, and default query
+            final OperationIndex<?> index = this.operationCache.getIndex(type);
 
             // Create node
-            this.nodeMap.put(type, new Node(type, label, queries, actions, defaultQuery));
+            this.nodeMap.put(type,
+              new Node(type, label, index.getStaticQueries(), index.getStaticActions(), index.getDefaultQuery()));
         });
 
         // Populate tree
@@ -8,11 +8,13 @@ import com.google.common.base.Preconditions;
 import com.vaadin.flow.data.provider.DataProvider;
 
 import java.util.Optional;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.dellroad.dataskin.ops.InstanceQuery;
 import org.dellroad.dataskin.ops.Query;
 import org.dellroad.dataskin.ops.StaticQuery;
+import org.dellroad.dataskin.viewer.QueryStreamTracker;
 import org.dellroad.stuff.vaadin24.data.AsyncDataProvider;
 import org.dellroad.stuff.vaadin24.field.FieldBuilder;
 
@@ -65,6 +67,10 @@ public class QueryDataProvider<I> extends AsyncDataProvider<I> {
         Preconditions.checkArgument(query != null, "null query");
         Preconditions.checkArgument(config != null || !query.requiresConfiguration(), "null config");
         final Query.Handle<C, Stream<I>> handle = query.getHandle(target);
-        this.load(id -> handle.perform(config, progress -> { }));
+        this.load(id -> {
+            try (Stream<I> stream = QueryStreamTracker.track(handle.perform(config, progress -> { }), query)) {
+                return stream.collect(Collectors.toList()).stream();
+            }
+        });
     }
 }
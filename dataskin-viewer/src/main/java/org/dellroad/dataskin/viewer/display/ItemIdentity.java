@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.viewer.display;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Objects;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * Defines the identity of query result items, so that when a query is reloaded, only the rows that actually
+ * changed need to be sent to the client.
+ *
+ * <p>
+ * Two items with the same {@linkplain #getId ID} represent the same row; if they are not also the
+ * {@linkplain #isSameVersion same version}, the row has changed.
+ *
+ * @param <R> query result item type
+ * @see QueryDisplay#getItemIdentity
+ */
+@FunctionalInterface
+public interface ItemIdentity<R> {
+
+    /**
+     * Get the unique ID of the given item.
+     *
+     * <p>
+     * The returned object must properly implement {@link Object#equals equals()} and {@link Object#hashCode hashCode()}.
+     *
+     * @param item query result item
+     * @return item ID, never null
+     */
+    Object getId(R item);
+
+    /**
+     * Determine whether two items having the same ID are also the same version of that item.
+     *
+     * <p>
+     * The implementation in {@link ItemIdentity} compares the items using {@link Object#equals equals()}.
+     *
+     * @param oldItem previous item
+     * @param newItem reloaded item
+     * @return true if the row has not changed
+     */
+    default boolean isSameVersion(R oldItem, R newItem) {
+        return Objects.equals(oldItem, newItem);
+    }
+
+    /**
+     * Create an instance using the given ID extractor and {@link Object#equals equals()} for version comparison.
+     *
+     * @param idExtractor extracts item IDs
+     * @param <R> query result item type
+     * @return item identity
+     * @throws IllegalArgumentException if {@code idExtractor} is null
+     */
+    static <R> ItemIdentity<R> of(Function<? super R, ?> idExtractor) {
+        Preconditions.checkArgument(idExtractor != null, "null idExtractor");
+        return idExtractor::apply;
+    }
+
+    /**
+     * Create an instance using the given ID extractor and version comparison.
+     *
+     * @param idExtractor extracts item IDs
+     * @param sameVersion compares two items with the same ID
+     * @param <R> query result item type
+     * @return item identity
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    static <R> ItemIdentity<R> of(Function<? super R, ?> idExtractor, BiPredicate<? super R, ? super R> sameVersion) {
+        Preconditions.checkArgument(idExtractor != null, "null idExtractor");
+        Preconditions.checkArgument(sameVersion != null, "null sameVersion");
+        return new ItemIdentity<R>() {
+
+            @Override
+            public Object getId(R item) {
+                return idExtractor.apply(item);
+            }
+
+            @Override
+            public boolean isSameVersion(R oldItem, R newItem) {
+                return sameVersion.test(oldItem, newItem);
+            }
+        };
+    }
+}
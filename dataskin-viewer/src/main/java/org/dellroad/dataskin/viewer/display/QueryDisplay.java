@@ -49,8 +49,84 @@ public interface QueryDisplay<R> {
     default void customizeMenuBar(MenuBar menuBar) {
     }
 
+    /**
+     * Get the identity of the items displayed, if any.
+     *
+     * <p>
+     * If an identity is provided, then when the query results are reloaded and the same rows are present in the same
+     * order, only the rows that changed are refreshed. If any rows were inserted, removed, or reordered, or if no
+     * identity is provided, all rows are refreshed. See {@link org.dellroad.dataskin.viewer.ResultTab#reload}.
+     *
+     * <p>
+     * The implementation in {@link QueryDisplay} returns null.
+     *
+     * @return item identity, or null if items have no identity
+     */
+    default ItemIdentity<R> getItemIdentity() {
+        return null;
+    }
+
+    /**
+     * Get the projection of items onto the grid's columns, if any.
+     *
+     * <p>
+     * If a projection is provided, along with an {@linkplain #getItemIdentity item identity}, then query results that
+     * are held in memory are reduced to their column values, which are stored compactly, and the rows are displayed
+     * in a new grid having copies of the {@linkplain #getGrid grid}'s columns. Custom column renderers are not copied;
+     * values are displayed as text. Projection is only used when the {@linkplain #getComponent display component}
+     * is the grid itself.
+     *
+     * <p>
+     * The implementation in {@link QueryDisplay} returns null.
+     *
+     * @return row projection, or null to hold the full items in memory
+     */
+    default RowProjection<R> getRowProjection() {
+        return null;
+    }
+
     static <R> QueryDisplay<R> of(Grid<R> grid) {
         Preconditions.checkArgument(grid != null, "null grid");
         return () -> grid;
     }
+
+    static <R> QueryDisplay<R> of(Grid<R> grid, ItemIdentity<R> itemIdentity) {
+        Preconditions.checkArgument(grid != null, "null grid");
+        Preconditions.checkArgument(itemIdentity != null, "null itemIdentity");
+        return new QueryDisplay<R>() {
+
+            @Override
+            public Grid<R> getGrid() {
+                return grid;
+            }
+
+            @Override
+            public ItemIdentity<R> getItemIdentity() {
+                return itemIdentity;
+            }
+        };
+    }
+
+    static <R> QueryDisplay<R> of(Grid<R> grid, ItemIdentity<R> itemIdentity, RowProjection<R> rowProjection) {
+        Preconditions.checkArgument(grid != null, "null grid");
+        Preconditions.checkArgument(itemIdentity != null, "null itemIdentity");
+        Preconditions.checkArgument(rowProjection != null, "null rowProjection");
+        return new QueryDisplay<R>() {
+
+            @Override
+            public Grid<R> getGrid() {
+                return grid;
+            }
+
+            @Override
+            public ItemIdentity<R> getItemIdentity() {
+                return itemIdentity;
+            }
+
+            @Override
+            public RowProjection<R> getRowProjection() {
+                return rowProjection;
+            }
+        };
+    }
 }
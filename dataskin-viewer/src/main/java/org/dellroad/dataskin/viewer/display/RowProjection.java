@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.viewer.display;
+
+import com.google.common.base.Preconditions;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Defines how query result items are reduced to just the values displayed in their grid columns.
+ *
+ * <p>
+ * When a {@link QueryDisplay} provides a projection, the result tab extracts each column value once into a
+ * compact columnar store and discards the items themselves, which may be much larger than the values displayed,
+ * e.g., wide entities with lazily loaded collections. The full item is {@linkplain #refetch re-fetched} by its
+ * {@linkplain ItemIdentity#getId ID} only when it is needed as the target of an instance operation.
+ *
+ * @param <R> query result item type
+ * @see QueryDisplay#getRowProjection
+ */
+public interface RowProjection<R> {
+
+    /**
+     * Get the projected columns.
+     *
+     * <p>
+     * Each column's key should match the key of the corresponding {@link com.vaadin.flow.component.grid.Grid} column.
+     *
+     * @return projected columns, never null
+     */
+    List<Column<R>> getColumns();
+
+    /**
+     * Re-fetch the full item having the given ID.
+     *
+     * @param id item ID
+     * @return item, or null if the item no longer exists
+     * @throws InterruptedException if interrupted
+     */
+    R refetch(Object id) throws InterruptedException;
+
+// Column
+
+    /**
+     * A projected column.
+     *
+     * <p>
+     * The declared {@linkplain #getType type} determines how values are stored: primitive and boxed numeric and boolean
+     * values and common date and time types are stored in primitive arrays; strings and enums are dictionary-encoded;
+     * anything else is stored as is.
+     *
+     * @param <R> query result item type
+     */
+    final class Column<R> {
+
+        private final String key;
+        private final Class<?> type;
+        private final Function<? super R, ?> extractor;
+
+        /**
+         * Constructor.
+         *
+         * @param key column key
+         * @param type declared type of the column's values
+         * @param extractor extracts the column value from an item
+         * @throws IllegalArgumentException if any parameter is null
+         */
+        public Column(String key, Class<?> type, Function<? super R, ?> extractor) {
+            Preconditions.checkArgument(key != null, "null key");
+            Preconditions.checkArgument(type != null, "null type");
+            Preconditions.checkArgument(extractor != null, "null extractor");
+            this.key = key;
+            this.type = type;
+            this.extractor = extractor;
+        }
+
+        public String getKey() {
+            return this.key;
+        }
+
+        public Class<?> getType() {
+            return this.type;
+        }
+
+        public Function<? super R, ?> getExtractor() {
+            return this.extractor;
+        }
+    }
+}
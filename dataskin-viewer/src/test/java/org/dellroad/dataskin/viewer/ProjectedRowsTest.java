@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.viewer;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.dellroad.dataskin.viewer.display.ItemIdentity;
+import org.dellroad.dataskin.viewer.display.RowProjection;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ProjectedRowsTest {
+
+    private static final Class<?>[] COLUMN_TYPES = {
+        int.class, Short.class, byte.class, Character.class, long.class, LocalDate.class, LocalTime.class,
+        double.class, Float.class, Boolean.class, Instant.class, LocalDateTime.class, String.class, TimeUnit.class,
+        List.class
+    };
+
+    @Test
+    public void testValues() throws Exception {
+        final Projection projection = new Projection();
+        final ProjectedRows<Object[]> rows = new ProjectedRows<>(projection, ItemIdentity.of(item -> item[0]));
+        Assert.assertEquals(rows.getColumnKeys().size(), COLUMN_TYPES.length);
+        Assert.assertEquals(rows.getColumnIndex("c3"), 3);
+        Assert.assertEquals(rows.getColumnIndex("foo"), -1);
+
+        // Enough rows to grow every store several times
+        final Random random = new Random(123);
+        final List<Object[]> items = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            final Object[] item = ProjectedRowsTest.newItem(random, i);
+            items.add(item);
+            projection.items.put(i, item);
+        }
+        rows.addAll(items.subList(0, 500));
+        for (Object[] item : items.subList(500, items.size()))
+            rows.add(item);
+        ProjectedRowsTest.verify(rows, items);
+
+        // Rows can still be added after trimming
+        rows.trimToSize();
+        ProjectedRowsTest.verify(rows, items);
+        for (int i = 1000; i < 1100; i++) {
+            final Object[] item = ProjectedRowsTest.newItem(random, i);
+            items.add(item);
+            rows.add(item);
+        }
+        ProjectedRowsTest.verify(rows, items);
+
+        // Row handles and refetch
+        final ProjectedRows<Object[]>.Row row = rows.getRow(7);
+        Assert.assertEquals(row.getIndex(), 7);
+        Assert.assertEquals(row.getId(), 7);
+        Assert.assertEquals(row.getValue(1), items.get(7)[1]);
+        Assert.assertSame(row.refetch(), items.get(7));
+        Assert.assertNull(rows.refetch(1050));                 // not known to the projection
+
+        // Clear and reuse
+        rows.clear();
+        Assert.assertEquals(rows.size(), 0);
+        Assert.assertThrows(IndexOutOfBoundsException.class, () -> rows.getId(0));
+        rows.addAll(items.subList(900, 1000));
+        ProjectedRowsTest.verify(rows, items.subList(900, 1000));
+    }
+
+    @Test
+    public void testExtremeValues() {
+        final ProjectedRows<Object[]> rows = new ProjectedRows<>(new Projection(), ItemIdentity.of(item -> item[0]));
+        final Object[] min = new Object[] {
+            Integer.MIN_VALUE, Short.MIN_VALUE, Byte.MIN_VALUE, Character.MIN_VALUE, Long.MIN_VALUE, LocalDate.MIN,
+            LocalTime.MIN, Double.NEGATIVE_INFINITY, -Float.MAX_VALUE, false, Instant.MIN, LocalDateTime.MIN, "", TimeUnit.DAYS,
+            List.of()
+        };
+        final Object[] max = new Object[] {
+            Integer.MAX_VALUE, Short.MAX_VALUE, Byte.MAX_VALUE, Character.MAX_VALUE, Long.MAX_VALUE, LocalDate.MAX,
+            LocalTime.MAX, Double.NaN, Float.MIN_VALUE, true, Instant.MAX, LocalDateTime.MAX, "\u0000", TimeUnit.NANOSECONDS,
+            List.of(1)
+        };
+        final Object[] nulls = new Object[COLUMN_TYPES.length];
+        nulls[0] = 0;                                           // the ID
+        rows.add(min);
+        rows.add(max);
+        rows.add(nulls);
+        ProjectedRowsTest.verify(rows, List.of(min, max, nulls));
+    }
+
+    @Test
+    public void testInvalid() {
+        final RowProjection<Object[]> duplicate = new RowProjection<>() {
+            @Override
+            public List<Column<Object[]>> getColumns() {
+                return List.of(new Column<>("a", int.class, item -> item[0]), new Column<>("a", int.class, item -> item[1]));
+            }
+
+            @Override
+            public Object[] refetch(Object id) {
+                return null;
+            }
+        };
+        Assert.assertThrows(IllegalArgumentException.class, () -> new ProjectedRows<>(duplicate, ItemIdentity.of(item -> item)));
+        Assert.assertThrows(IllegalArgumentException.class, () -> new ProjectedRows<>(new Projection(), null));
+        final ProjectedRows<Object[]> rows = new ProjectedRows<>(new Projection(), ItemIdentity.of(item -> item[0]));
+        Assert.assertThrows(IllegalArgumentException.class, () -> rows.add(null));
+        rows.add(new Object[COLUMN_TYPES.length]);
+        Assert.assertThrows(IndexOutOfBoundsException.class, () -> rows.getValue(1, 0));
+        Assert.assertThrows(IndexOutOfBoundsException.class, () -> rows.getValue(0, COLUMN_TYPES.length));
+        Assert.assertThrows(IndexOutOfBoundsException.class, () -> rows.getRow(-1));
+    }
+
+    private static void verify(ProjectedRows<Object[]> rows, List<Object[]> items) {
+        Assert.assertEquals(rows.size(), items.size());
+        for (int i = 0; i < items.size(); i++) {
+            final Object[] item = items.get(i);
+            Assert.assertEquals(rows.getId(i), item[0], "row " + i);
+            for (int column = 0; column < COLUMN_TYPES.length; column++)
+                Assert.assertEquals(rows.getValue(i, column), item[column], "row " + i + " column " + column);
+        }
+    }
+
+    // Column zero is the item ID; other columns are random and sometimes null
+    private static Object[] newItem(Random random, int id) {
+        final Object[] item = new Object[COLUMN_TYPES.length];
+        item[0] = id;
+        for (int column = 1; column < COLUMN_TYPES.length; column++) {
+            if (random.nextInt(10) == 0)
+                continue;
+            final Class<?> type = COLUMN_TYPES[column];
+            if (type == Short.class)
+                item[column] = (short)random.nextInt();
+            else if (type == byte.class)
+                item[column] = (byte)random.nextInt();
+            else if (type == Character.class)
+                item[column] = (char)random.nextInt();
+            else if (type == long.class)
+                item[column] = random.nextLong();
+            else if (type == LocalDate.class)
+                item[column] = LocalDate.ofEpochDay(random.nextInt(100000));
+            else if (type == LocalTime.class)
+                item[column] = LocalTime.ofNanoOfDay(Math.floorMod(random.nextLong(), 86400_000_000_000L));
+            else if (type == double.class)
+                item[column] = random.nextGaussian();
+            else if (type == Float.class)
+                item[column] = random.nextFloat();
+            else if (type == Boolean.class)
+                item[column] = random.nextBoolean();
+            else if (type == Instant.class)
+                item[column] = Instant.ofEpochSecond(random.nextInt(), random.nextInt(1000000000));
+            else if (type == LocalDateTime.class)
+                item[column] = LocalDateTime.of(LocalDate.ofEpochDay(random.nextInt(100000)),
+                  LocalTime.ofSecondOfDay(random.nextInt(86400)));
+            else if (type == String.class)
+                item[column] = "value" + random.nextInt(20);
+            else if (type == TimeUnit.class)
+                item[column] = TimeUnit.values()[random.nextInt(TimeUnit.values().length)];
+            else if (type == List.class)
+                item[column] = List.of(random.nextInt(5));
+            else
+                throw new AssertionError();
+        }
+        return item;
+    }
+
+// Projection
+
+    private static class Projection implements RowProjection<Object[]> {
+
+        final HashMap<Object, Object[]> items = new HashMap<>();
+
+        @Override
+        public List<Column<Object[]>> getColumns() {
+            final List<Column<Object[]>> columns = new ArrayList<>();
+            for (int i = 0; i < COLUMN_TYPES.length; i++) {
+                final int column = i;
+                columns.add(new Column<>("c" + i, COLUMN_TYPES[i], item -> item[column]));
+            }
+            return columns;
+        }
+
+        @Override
+        public Object[] refetch(Object id) {
+            return this.items.get(id);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.dataskin.viewer;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class SpillListTest {
+
+    @Test(dataProvider = "sizes")
+    public void testGet(int numRows, long maxSegmentSize) {
+        final List<String> expected = SpillListTest.rows(numRows);
+        try (SpillList<String> list = new SpillList<>(String.class, maxSegmentSize)) {
+            list.addAll(expected);
+            list.finish();
+            Assert.assertEquals(list.size(), numRows);
+
+            // Sequential, reverse, and random access, the latter two defeating the page cache
+            for (int i = 0; i < numRows; i++)
+                Assert.assertEquals(list.get(i), expected.get(i), "row " + i);
+            for (int i = numRows - 1; i >= 0; i--)
+                Assert.assertEquals(list.get(i), expected.get(i), "row " + i);
+            final Random random = new Random(numRows);
+            for (int count = 0; count < 1000 && numRows > 0; count++) {
+                final int i = random.nextInt(numRows);
+                Assert.assertEquals(list.get(i), expected.get(i), "row " + i);
+            }
+            Assert.assertEquals(list, expected);
+            Assert.assertThrows(IndexOutOfBoundsException.class, () -> list.get(-1));
+            Assert.assertThrows(IndexOutOfBoundsException.class, () -> list.get(numRows));
+        }
+    }
+
+    @DataProvider(name = "sizes")
+    public Object[][] genSizes() {
+        final int pages = SpillList.CACHED_PAGES * 2;
+        return new Object[][] {
+            { 0,                                    Long.MAX_VALUE },
+            { 1,                                    Long.MAX_VALUE },
+            { SpillList.PAGE_SIZE,                  Long.MAX_VALUE },
+            { SpillList.PAGE_SIZE + 1,              Long.MAX_VALUE },
+            { SpillList.PAGE_SIZE * pages + 17,     Long.MAX_VALUE },
+
+            // Every page in its own segment
+            { SpillList.PAGE_SIZE * 3 + 5,          1 },
+            { SpillList.PAGE_SIZE * pages + 17,     1 },
+
+            // Several pages per segment, with segment boundaries falling between pages
+            { SpillList.PAGE_SIZE * pages + 17,     20000 },
+        };
+    }
+
+    @Test
+    public void testNotFinished() {
+        try (SpillList<String> list = new SpillList<>(String.class)) {
+            list.add("foo");
+            Assert.assertEquals(list.size(), 1);
+            Assert.assertThrows(IllegalStateException.class, () -> list.get(0));
+            list.finish();
+            list.finish();
+            Assert.assertEquals(list.get(0), "foo");
+            Assert.assertThrows(IllegalStateException.class, () -> list.add("bar"));
+        }
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        final Set<Path> before = SpillListTest.spillFiles();
+        final SpillList<String> list = new SpillList<>(String.class);
+        list.addAll(SpillListTest.rows(SpillList.PAGE_SIZE * 2));
+        list.finish();
+        Assert.assertEquals(list.get(SpillList.PAGE_SIZE), "row" + SpillList.PAGE_SIZE);
+        list.close();
+
+        // Some platforms delete the spill file as soon as it's opened, others not until it's closed
+        final Set<Path> remaining = SpillListTest.spillFiles();
+        remaining.removeAll(before);
+        Assert.assertTrue(remaining.isEmpty(), "spill files not deleted: " + remaining);
+        Assert.assertThrows(IllegalStateException.class, () -> list.get(0));
+        list.close();
+    }
+
+    @Test
+    public void testCloseBeforeFinish() {
+        final SpillList<String> list = new SpillList<>(String.class);
+        list.add("foo");
+        list.close();
+        Assert.assertThrows(IllegalStateException.class, () -> list.add("bar"));
+        Assert.assertThrows(IllegalStateException.class, list::finish);
+    }
+
+    @Test
+    public void testCanSpill() {
+        Assert.assertTrue(SpillList.canSpill(String.class));
+        Assert.assertTrue(SpillList.canSpill(Integer.class));
+        Assert.assertFalse(SpillList.canSpill(Object.class));
+        Assert.assertFalse(SpillList.canSpill(null));
+        Assert.assertThrows(IllegalArgumentException.class, () -> new SpillList<>(Object.class));
+    }
+
+    private static List<String> rows(int count) {
+        final ArrayList<String> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            list.add("row" + i);
+        return list;
+    }
+
+    private static Set<Path> spillFiles() throws IOException {
+        final HashSet<Path> files = new HashSet<>();
+        final Path tempDir = Path.of(System.getProperty("java.io.tmpdir"));
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(tempDir, "dataskin-*.spill")) {
+            dir.forEach(files::add);
+        }
+        return files;
+    }
+}
@@ -0,0 +1,8 @@
+/*
+ * Copyright (C) 2024 Archie L. Cobbs. All rights reserved.
+ */
+
+/**
+ * Unit tests for {@link DataViewer} support classes.
+ */
+package org.dellroad.dataskin.viewer;